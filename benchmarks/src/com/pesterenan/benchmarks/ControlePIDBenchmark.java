@@ -0,0 +1,38 @@
+package com.pesterenan.benchmarks;
+
+import com.pesterenan.utils.ControlePID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede o custo de {@link ControlePID#calcPID(double, double)}. O controlador só recalcula os termos a cada 25ms, então
+ * a maior parte das chamadas medidas aqui passa pelo caminho que apenas limita a saída já calculada.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ControlePIDBenchmark {
+
+	private ControlePID pid;
+	private double value;
+
+	@Setup
+	public void setup() {
+		pid = new ControlePID();
+		pid.adjustOutput(0, 1);
+		pid.adjustPID(0.025, 0.001, 0.01);
+	}
+
+	@Benchmark
+	public double calcPID() {
+		value = (value + 0.37) % 100;
+		return pid.calcPID(value, 50);
+	}
+}
@@ -0,0 +1,70 @@
+package com.pesterenan.benchmarks;
+
+import com.pesterenan.utils.KeplerOrbit;
+import com.pesterenan.utils.Lambert;
+import com.pesterenan.utils.PorkchopPlot;
+import com.pesterenan.utils.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede uma solução de {@link Lambert} e a busca de encontro do {@link PorkchopPlot} (órbita circular de 100 km até
+ * uma de 400 km em Kerbin), com todos os núcleos e com um só, para ver o ganho da divisão da grade.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LambertBenchmark {
+
+	private static final double MU = 3.5316e12;
+	private KeplerOrbit vessel, target;
+	private Vector departure, arrival, normal;
+	private double flightTime;
+	private ForkJoinPool singleThread;
+
+	@Setup
+	public void setup() {
+		double r1 = 700000, r2 = 1000000, angle = 1.0;
+		vessel = new KeplerOrbit(MU, new Vector(r1, 0, 0), new Vector(0, Math.sqrt(MU / r1), 0));
+		target = new KeplerOrbit(MU, new Vector(r2 * Math.cos(angle), r2 * Math.sin(angle), 0),
+		                         new Vector(-Math.sin(angle), Math.cos(angle), 0).multiply(Math.sqrt(MU / r2))
+		);
+		flightTime = Math.PI * Math.sqrt(Math.pow((r1 + r2) / 2, 3) / MU);
+		departure = vessel.getPosition();
+		arrival = target.propagate(flightTime).getPosition();
+		normal = vessel.getAngularMomentum();
+		singleThread = new ForkJoinPool(1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		singleThread.shutdown();
+	}
+
+	@Benchmark
+	public Vector[] solve() {
+		return Lambert.solve(MU, departure, arrival, flightTime, normal);
+	}
+
+	@Benchmark
+	public double porkchopParallel() {
+		return new PorkchopPlot(vessel, target).search(60, 6000, 120, flightTime * 0.25, flightTime * 2, 80)
+		                                      .getBestDeltaV();
+	}
+
+	@Benchmark
+	public double porkchopSingleThread() {
+		return new PorkchopPlot(vessel, target, singleThread).search(60, 6000, 120, flightTime * 0.25,
+		                                                             flightTime * 2, 80
+		                                                            ).getBestDeltaV();
+	}
+}
@@ -0,0 +1,49 @@
+package com.pesterenan.benchmarks;
+
+import com.pesterenan.utils.LandingMpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede uma otimização do {@link LandingMpc}, que roda a cada ciclo de 25ms do pouso. O prazo é de uma hora, para medir
+ * a busca inteira até convergir, e não o prazo: o tempo medido tem que ficar bem abaixo dos 5ms que o
+ * {@code LandingController} reserva para ela.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LandingMpcBenchmark {
+
+	private static final double GRAVITY = 9.81, MASS = 10000, THRUST = 250000, EXHAUST_VELOCITY = 300 * GRAVITY;
+
+	private LandingMpc mpc;
+
+	@Setup
+	public void setup() {
+		mpc = new LandingMpc(GRAVITY, TimeUnit.HOURS.toNanos(1));
+	}
+
+	/**
+	 * Começo da queima, partindo do acelerador zerado: o pior caso, com mais iterações.
+	 */
+	@Benchmark
+	public double solveColdStart() {
+		mpc.reset();
+		return mpc.solve(900, -120, MASS, THRUST, THRUST, EXHAUST_VELOCITY);
+	}
+
+	/**
+	 * Meio da queima, partindo do plano do ciclo anterior, como no laço de pouso.
+	 */
+	@Benchmark
+	public double solveWarmStart() {
+		return mpc.solve(400, -60, MASS, THRUST, THRUST, EXHAUST_VELOCITY);
+	}
+}
@@ -0,0 +1,75 @@
+package com.pesterenan.benchmarks;
+
+import com.pesterenan.utils.Utilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede as funções de {@link Utilities} usadas a cada ciclo da decolagem (remap e curvas de easing). A estimativa da
+ * trajetória do pouso em elipse, que o {@code LandingPredictor} substituiu, fica aqui como referência de custo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UtilitiesBenchmark {
+
+	@Param({ "0.1", "0.5", "0.9" })
+	public double progress;
+
+	@Benchmark
+	public double remap() {
+		return Utilities.remap(100, 80000, 1, 0.01, progress * 80000, false);
+	}
+
+	@Benchmark
+	public double remapClamped() {
+		return Utilities.remap(3, 30, 0.1, 0.5, progress * 30, true);
+	}
+
+	@Benchmark
+	public double easeInCirc() {
+		return Utilities.easeInCirc(progress);
+	}
+
+	@Benchmark
+	public double easeInSine() {
+		return Utilities.easeInSine(progress);
+	}
+
+	@Benchmark
+	public double easeInQuad() {
+		return Utilities.easeInQuad(progress);
+	}
+
+	@Benchmark
+	public double easeInCubic() {
+		return Utilities.easeInCubic(progress);
+	}
+
+	@Benchmark
+	public double easeInExpo() {
+		return Utilities.easeInExpo(progress);
+	}
+
+	@Benchmark
+	public double elipseTrajectory() {
+		return calculateElipseTrajectory(progress * 250, progress * 1500);
+	}
+
+	/**
+	 * Antiga estimativa do pouso: aproxima o comprimento de um quarto de elipse com semi-eixos a e b.
+	 */
+	private static double calculateElipseTrajectory(double a, double b) {
+		double semiMajor = Math.max(a * 2, b * 2);
+		double semiMinor = Math.min(a * 2, b * 2);
+		double totalCircumference = 2 * Math.PI * Math.sqrt((semiMajor * semiMajor + semiMinor * semiMinor) / 2);
+		return totalCircumference / 4;
+	}
+}
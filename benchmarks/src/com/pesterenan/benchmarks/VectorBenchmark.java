@@ -0,0 +1,114 @@
+package com.pesterenan.benchmarks;
+
+import com.pesterenan.utils.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara as operações de {@link Vector} que criam um novo vetor com as variantes "Into", que escrevem em um vetor
+ * de destino. Rodar com {@code -prof gc} para ver a alocação por operação.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VectorBenchmark {
+
+	private Vector a;
+	private Vector b;
+	private Vector dest;
+	private Vector tmp;
+
+	@Setup
+	public void setup() {
+		a = new Vector(12.5, -3.25, 7.0);
+		b = new Vector(-1.0, 4.5, 2.75);
+		dest = new Vector();
+		tmp = new Vector();
+	}
+
+	@Benchmark
+	public Vector sum() {
+		return a.sum(b);
+	}
+
+	@Benchmark
+	public Vector sumInto() {
+		return a.sumInto(b, dest);
+	}
+
+	@Benchmark
+	public Vector subtract() {
+		return a.subtract(b);
+	}
+
+	@Benchmark
+	public Vector subtractInto() {
+		return a.subtractInto(b, dest);
+	}
+
+	@Benchmark
+	public Vector multiply() {
+		return a.multiply(3.5);
+	}
+
+	@Benchmark
+	public Vector multiplyInto() {
+		return a.multiplyInto(3.5, dest);
+	}
+
+	@Benchmark
+	public Vector normalize() {
+		return a.normalize();
+	}
+
+	@Benchmark
+	public Vector normalizeInto() {
+		return a.normalizeInto(dest);
+	}
+
+	@Benchmark
+	public double heading() {
+		return a.heading();
+	}
+
+	@Benchmark
+	public double distance() {
+		return Vector.distance(a, b);
+	}
+
+	@Benchmark
+	public void toTripletUnchanged(Blackhole bh) {
+		bh.consume(a.toTriplet());
+	}
+
+	@Benchmark
+	public void toTripletChanged(Blackhole bh) {
+		dest.x += 1;
+		bh.consume(dest.toTriplet());
+	}
+
+	/**
+	 * Mesma sequência de operações de um raio do radar do rover (ponto + direção * distância, somado ao total).
+	 */
+	@Benchmark
+	public Vector radarRayAllocating() {
+		return new Vector().sum(a.multiply(20)).sum(b.multiply(22)).normalize();
+	}
+
+	@Benchmark
+	public Vector radarRayInPlace() {
+		dest.setVector(0, 0, 0);
+		a.multiplyInto(20, dest);
+		b.multiplyInto(22, tmp);
+		dest.sumInto(tmp, dest);
+		return dest.normalizeInto(dest);
+	}
+}
@@ -6,6 +6,12 @@ import com.pesterenan.controllers.LiftoffController;
 import com.pesterenan.controllers.ManeuverController;
 import com.pesterenan.controllers.RoverController;
 import com.pesterenan.resources.Bundle;
+import com.pesterenan.utils.ConstantsCache;
+import com.pesterenan.utils.FlightCapture;
+import com.pesterenan.utils.FlightRecorder;
+import com.pesterenan.utils.ModuleExecutor;
+import com.pesterenan.utils.RpcMonitor;
+import com.pesterenan.utils.StreamRegistry;
 import com.pesterenan.views.MainGui;
 import com.pesterenan.views.StatusJPanel;
 import krpc.client.Connection;
@@ -13,8 +19,11 @@ import krpc.client.RPCException;
 import krpc.client.services.KRPC;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Map;
 
 import static com.pesterenan.utils.Modulos.*;
@@ -27,7 +36,9 @@ public class MechPeste {
 	private static Thread threadTelemetria = null;
 	private static FlightController flightCtrl = null;
 	private static KRPC krpc;
-	private static final List<Thread> runningThreads = new ArrayList<>();
+	private static RpcMonitor rpcMonitor;
+	private static FlightRecorder flightRecorder;
+	private static final ModuleExecutor modules = new ModuleExecutor();
 
 	private MechPeste() {
 		MainGui.getInstance();
@@ -47,58 +58,30 @@ public class MechPeste {
 
 	public static void startModule(Map<String, String> commands) {
 		String moduleToRun = commands.get(MODULO.get());
+		if (rpcMonitor != null) {
+			rpcMonitor.mark(FlightCapture.moduleMark(commands));
+		}
 		if (moduleToRun.equals(MODULO_DECOLAGEM.get())) {
-			executeLiftoffModule(commands);
+			modules.start("Decolagem", new LiftoffController(commands));
 		}
 		if (moduleToRun.equals(MODULO_POUSO_SOBREVOAR.get()) || moduleToRun.equals(MODULO_POUSO.get())) {
-			executeLandingModule(commands);
+			modules.start("Pouso", new LandingController(commands));
 		}
 		if (moduleToRun.equals(MODULO_MANOBRAS.get())) {
-			executeManeuverModule(commands);
+			modules.start("Manobras", new ManeuverController(commands));
 		}
 		if (moduleToRun.equals(MODULO_ROVER.get())) {
-			executeRoverModule(commands);
+			modules.start("Rover", new RoverController(commands));
 		}
 		MainGui.getParametros().firePropertyChange("Telemetria", false, true);
 	}
 
-	private static void executeLiftoffModule(Map<String, String> commands) {
-		Thread liftoffThread = new Thread(new LiftoffController(commands));
-		runningThreads.add(liftoffThread);
-		liftoffThread.start();
-	}
-
-	private static void executeLandingModule(Map<String, String> commands) {
-		Thread landingThread = new Thread(new LandingController(commands));
-		runningThreads.add(landingThread);
-		landingThread.start();
-	}
-
-	private static void executeManeuverModule(Map<String, String> commands) {
-		Thread maneuverThread = new Thread(new ManeuverController(commands));
-		runningThreads.add(maneuverThread);
-		maneuverThread.start();
-	}
-
-	private static void executeRoverModule(Map<String, String> commands) {
-		Thread roverThread = new Thread(new RoverController(commands));
-		runningThreads.add(roverThread);
-		roverThread.start();
-	}
-
+	/**
+	 * Cancela todos os módulos em andamento, incluindo os iniciados por outros módulos.
+	 */
 	public static void finalizarTarefa() {
-		System.out.println("Active Threads: " + Thread.activeCount());
-		System.out.println(runningThreads);
-		for (int i = runningThreads.size() - 1; i >= 0; i--) {
-			System.out.println(runningThreads.get(i).getName());
-			System.out.println(runningThreads.get(i).getState());
-			runningThreads.get(i).interrupt();
-			if (runningThreads.get(i).getState().equals(Thread.State.TERMINATED)) {
-				runningThreads.remove(i);
-			}
-		}
-		System.out.println("Active Threads: " + Thread.activeCount());
-		System.out.println(runningThreads);
+		System.out.println("Módulos cancelados: " + modules.getRunning());
+		modules.cancelAll();
 	}
 
 	public static Connection getConnection() {
@@ -120,9 +103,14 @@ public class MechPeste {
 	public void connectToKSP() {
 		setStatus(Bundle.getString("status_connecting"));
 		try {
+			if (connection != null) {
+				StreamRegistry.discard(connection);
+				ConstantsCache.discard(connection);
+			}
 			connection = null;
-			connection = Connection.newInstance("MechPeste - Pesterenan");
+			connection = openConnection();
 			krpc = KRPC.newInstance(connection);
+			startFlightRecorder();
 			startTelemetry();
 			setStatus(Bundle.getString("status_connected"));
 			StatusJPanel.isBtnConnectVisible(false);
@@ -132,6 +120,73 @@ public class MechPeste {
 		}
 	}
 
+	/**
+	 * @return O monitor das chamadas RPC da conexão atual, ou {@code null} se o monitor estiver desligado.
+	 */
+	public static RpcMonitor getRpcMonitor() {
+		return rpcMonitor;
+	}
+
+	/**
+	 * Abre a conexão com o KRPC, passando pelo {@link RpcMonitor} se ele for ligado com
+	 * {@code -Dmechpeste.rpcmonitor=true}.
+	 */
+	private static Connection openConnection() throws IOException {
+		if (rpcMonitor != null) {
+			rpcMonitor.close();
+			rpcMonitor = null;
+		}
+		if (!Boolean.parseBoolean(System.getProperty("mechpeste.rpcmonitor", "false"))) {
+			return Connection.newInstance("MechPeste - Pesterenan");
+		}
+		RpcMonitor monitor = new RpcMonitor("127.0.0.1", 50000, 50001);
+		try {
+			monitor.start();
+		} catch (IOException e) {
+			monitor.close();
+			return Connection.newInstance("MechPeste - Pesterenan");
+		}
+		try {
+			Connection monitored = Connection.newInstance("MechPeste - Pesterenan", "127.0.0.1", monitor.getRpcPort(),
+			                                              monitor.getStreamPort()
+			                                             );
+			rpcMonitor = monitor;
+			return monitored;
+		} catch (IOException e) {
+			monitor.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return O gravador de voo da conexão atual, ou {@code null} se o gravador estiver desligado.
+	 */
+	public static FlightRecorder getFlightRecorder() {
+		return flightRecorder;
+	}
+
+	/**
+	 * Começa um novo registro de voo em {@code ~/MechPeste/voos}, se o gravador for ligado com
+	 * {@code -Dmechpeste.flightrecorder=true}. Cada conexão cria um arquivo novo, que não é apagado depois.
+	 */
+	private static void startFlightRecorder() {
+		FlightRecorder previous = flightRecorder;
+		flightRecorder = null;
+		try {
+			if (previous != null) {
+				previous.close();
+			}
+			if (Boolean.parseBoolean(System.getProperty("mechpeste.flightrecorder", "false"))) {
+				Path folder = Paths.get(System.getProperty("user.home"), "MechPeste", "voos");
+				Files.createDirectories(folder);
+				String name = "voo-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".mpfr";
+				flightRecorder = new FlightRecorder(folder.resolve(name), 4096);
+			}
+		} catch (IOException e) {
+			System.err.println("Gravador de voo desligado: " + e.getMessage());
+		}
+	}
+
 	private void startTelemetry() {
 		flightCtrl = new FlightController(getConnection());
 		setThreadTelemetria(new Thread(flightCtrl));
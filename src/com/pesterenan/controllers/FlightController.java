@@ -2,7 +2,10 @@ package com.pesterenan.controllers;
 
 import com.pesterenan.MechPeste;
 import com.pesterenan.model.ActiveVessel;
+import com.pesterenan.model.TelemetrySnapshot;
 import com.pesterenan.resources.Bundle;
+import com.pesterenan.utils.ConstantsCache.VesselConstants;
+import com.pesterenan.utils.FlightRecorder.Channel;
 import com.pesterenan.views.MainGui;
 import com.pesterenan.views.StatusJPanel;
 import krpc.client.Connection;
@@ -14,6 +17,8 @@ import krpc.client.services.SpaceCenter.Vessel;
 
 public class FlightController extends ActiveVessel implements Runnable {
 
+	// A telemetria é lida a cada 250 ms
+	private static final float STREAM_RATE = 4;
 	protected Stream<Double> altitude, altitudeSup, apoastro, periastro, velVertical, tempoMissao, velHorizontal;
 
 	public FlightController(Connection con) {
@@ -23,18 +28,19 @@ public class FlightController extends ActiveVessel implements Runnable {
 
 	private void iniciarStreams(Vessel naveAtual) {
 		try {
-			pontoRefOrbital = naveAtual.getOrbit().getBody().getReferenceFrame();
-			pontoRefSuperficie = naveAtual.getSurfaceReferenceFrame();
-			parametrosDeVoo = naveAtual.flight(pontoRefOrbital);
-			altitude = getConexao().addStream(parametrosDeVoo, "getMeanAltitude");
-			altitudeSup = getConexao().addStream(parametrosDeVoo, "getSurfaceAltitude");
-			apoastro = getConexao().addStream(naveAtual.getOrbit(), "getApoapsisAltitude");
-			periastro = getConexao().addStream(naveAtual.getOrbit(), "getPeriapsisAltitude");
-			velVertical = getConexao().addStream(parametrosDeVoo, "getVerticalSpeed");
-			velHorizontal = getConexao().addStream(parametrosDeVoo, "getHorizontalSpeed");
-			tempoMissao = getConexao().addStream(naveAtual, "getMET");
-			bateriaTotal = naveAtual.getResources().max("ElectricCharge");
-			naveAtual.getAutoPilot().setReferenceFrame(pontoRefSuperficie);
+			VesselConstants vessel = constants().vessel(naveAtual);
+			pontoRefOrbital = constants().body(naveAtual.getOrbit().getBody()).getReferenceFrame();
+			pontoRefSuperficie = vessel.getSurfaceReferenceFrame();
+			parametrosDeVoo = vessel.flight(pontoRefOrbital);
+			altitude = addStream(STREAM_RATE, parametrosDeVoo, "getMeanAltitude");
+			altitudeSup = addStream(STREAM_RATE, parametrosDeVoo, "getSurfaceAltitude");
+			apoastro = addStream(STREAM_RATE, naveAtual.getOrbit(), "getApoapsisAltitude");
+			periastro = addStream(STREAM_RATE, naveAtual.getOrbit(), "getPeriapsisAltitude");
+			velVertical = addStream(STREAM_RATE, parametrosDeVoo, "getVerticalSpeed");
+			velHorizontal = addStream(STREAM_RATE, parametrosDeVoo, "getHorizontalSpeed");
+			tempoMissao = addStream(STREAM_RATE, naveAtual, "getMET");
+			bateriaTotal = vessel.getMaxElectricCharge();
+			vessel.getAutoPilot().setReferenceFrame(pontoRefSuperficie);
 		} catch (StreamException | RPCException | NullPointerException | IllegalArgumentException e) {
 			checarConexao();
 		}
@@ -57,8 +63,11 @@ public class FlightController extends ActiveVessel implements Runnable {
 
 	private void trocaDeNaves() {
 		try {
-			if (!centroEspacial.getActiveVessel().equals(this.naveAtual)) {
-				this.naveAtual = centroEspacial.getActiveVessel();
+			Vessel activeVessel = centroEspacial.getActiveVessel();
+			if (!activeVessel.equals(this.naveAtual)) {
+				this.naveAtual = activeVessel;
+				releaseStreams();
+				constants().invalidateVessels();
 				iniciarStreams(this.naveAtual);
 			}
 		} catch (RPCException e) {
@@ -68,12 +77,18 @@ public class FlightController extends ActiveVessel implements Runnable {
 	}
 
 	private void enviarTelemetria() throws RPCException, StreamException {
-		MainGui.getParametros().getTelemetria().firePropertyChange("altitude", 0.0, altitude.get());
-		MainGui.getParametros().getTelemetria().firePropertyChange("altitudeSup", 0.0, altitudeSup.get());
-		MainGui.getParametros().getTelemetria().firePropertyChange("apoastro", 0.0, apoastro.get());
-		MainGui.getParametros().getTelemetria().firePropertyChange("periastro", 0.0, periastro.get());
-		MainGui.getParametros().getTelemetria().firePropertyChange("velVertical", 0.0, velVertical.get());
-		MainGui.getParametros().getTelemetria().firePropertyChange("velHorizontal", 0.0, velHorizontal.get());
-		MainGui.getParametros().getTelemetria().firePropertyChange("tempoMissao", 0.0, tempoMissao.get());
+		double alt = altitude.get(), altSup = altitudeSup.get(), apo = apoastro.get(), peri = periastro.get();
+		double velVert = velVertical.get(), velHor = velHorizontal.get(), met = tempoMissao.get();
+		record(Channel.ALTITUDE, alt);
+		record(Channel.SURFACE_ALTITUDE, altSup);
+		record(Channel.APOAPSIS, apo);
+		record(Channel.PERIAPSIS, peri);
+		record(Channel.VERTICAL_SPEED, velVert);
+		record(Channel.HORIZONTAL_SPEED, velHor);
+		record(Channel.MISSION_TIME, met);
+		recordSample();
+		MainGui.getParametros()
+		       .getTelemetria()
+		       .publish(new TelemetrySnapshot(alt, altSup, apo, peri, velVert, velHor, met));
 	}
 }
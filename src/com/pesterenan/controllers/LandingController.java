@@ -3,11 +3,16 @@ package com.pesterenan.controllers;
 import com.pesterenan.model.ActiveVessel;
 import com.pesterenan.resources.Bundle;
 import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.LandingMpc;
+import com.pesterenan.utils.LandingPredictor;
+import com.pesterenan.utils.MissionClock;
 import com.pesterenan.utils.Modulos;
 import com.pesterenan.utils.Navigation;
+import com.pesterenan.utils.StreamWaits;
 import com.pesterenan.utils.Utilities;
 import com.pesterenan.views.StatusJPanel;
 import krpc.client.RPCException;
+import krpc.client.Stream;
 import krpc.client.StreamException;
 import krpc.client.services.SpaceCenter.VesselSituation;
 
@@ -15,15 +20,28 @@ import java.util.Map;
 
 public class LandingController extends ActiveVessel implements Runnable {
 
-	private static final double velP = 0.025;
-	private static final double velI = 0.001;
-	private static final double velD = 0.01;
+	// O laço de pouso roda a cada 25 ms
+	private static final float STREAM_RATE = 40;
+	private static final double VEL_P = 0.025;
+	private static final double VEL_I = 0.001;
+	private static final double VEL_D = 0.01;
+	private static final long REAIM_MILLIS = 1000;
+	// Antecedência da ignição da queima de pouso, e a fração da altitude em que a queima deve parar a nave
+	private static final double IGNITION_LEAD_SECONDS = 0.1;
+	private static final double BURN_ALTITUDE_FRACTION = 0.9;
+	// Prazo de cálculo do controle preditivo em cada ciclo, deixando o resto do ciclo para as requisições
+	private static final long MPC_BUDGET_NANOS = 5_000_000;
 	private static boolean landFromHovering = false;
 	private final ControlePID altitudeCtrl = new ControlePID();
 	private final ControlePID velocityCtrl = new ControlePID();
 	private final Navigation navigation = new Navigation();
+	private LandingPredictor predictor;
+	private LandingMpc mpc;
+	private double exhaustVelocity = Double.POSITIVE_INFINITY;
 	private double hoverAltitude = 100;
 	private boolean hoveringMode = false;
+	private boolean landingBurn = false;
+	private double velP, velI, velD;
 
 	public LandingController(Map<String, String> commands) {
 		super(getConexao());
@@ -36,32 +54,55 @@ public class LandingController extends ActiveVessel implements Runnable {
 	}
 
 	private void initializeParameters() {
+		velP = gain(Modulos.VEL_P, VEL_P);
+		velI = gain(Modulos.VEL_I, VEL_I);
+		velD = gain(Modulos.VEL_D, VEL_D);
 		try {
 			altitudeCtrl.adjustOutput(0, 1);
 			velocityCtrl.adjustOutput(0, 1);
-			currentBody = naveAtual.getOrbit().getBody();
-			pontoRefSuperficie = naveAtual.getSurfaceReferenceFrame();
-			pontoRefOrbital = currentBody.getReferenceFrame();
-			parametrosDeVoo = naveAtual.flight(pontoRefOrbital);
-			altitudeSup = getConexao().addStream(parametrosDeVoo, "getSurfaceAltitude");
-			velVertical = getConexao().addStream(parametrosDeVoo, "getVerticalSpeed");
-			velHorizontal = getConexao().addStream(parametrosDeVoo, "getHorizontalSpeed");
-			periastro = getConexao().addStream(naveAtual.getOrbit(), "getPeriapsisAltitude");
-			gravityAcel = currentBody.getSurfaceGravity();
+			altitudeSup = addStream(STREAM_RATE, parametrosDeVoo, "getSurfaceAltitude");
+			velVertical = addStream(STREAM_RATE, parametrosDeVoo, "getVerticalSpeed");
+			velHorizontal = addStream(STREAM_RATE, parametrosDeVoo, "getHorizontalSpeed");
+			periastro = addStream(STREAM_RATE, naveAtual.getOrbit(), "getPeriapsisAltitude");
+			gravityAcel = constants().body(currentBody).getSurfaceGravity();
+			predictor = new LandingPredictor(gravityAcel, constants().body(currentBody).getEquatorialRadius());
+			if (Boolean.parseBoolean(commands.get(Modulos.POUSO_PREDITIVO.get()))) {
+				mpc = new LandingMpc(gravityAcel, MPC_BUDGET_NANOS);
+				double isp = naveAtual.getSpecificImpulse();
+				if (isp > 0) {
+					exhaustVelocity = isp * CONST_GRAV;
+				}
+			}
 		} catch (StreamException | RPCException ignored) {
 		}
 	}
 
+	private double gain(Modulos command, double standard) {
+		String value = commands.get(command.get());
+		return value == null ? standard : Double.parseDouble(value);
+	}
+
+	@Override
+	public void cleanup() {
+		navigation.releaseStreams();
+		super.cleanup();
+	}
+
 	@Override
 	public void run() {
-		if (commands.get(Modulos.MODULO.get()).equals(Modulos.MODULO_POUSO_SOBREVOAR.get())) {
-			this.hoverAltitude = Double.parseDouble(commands.get(Modulos.ALTITUDE_SOBREVOO.get()));
-			hoveringMode = true;
+		try {
+			if (commands.get(Modulos.MODULO.get()).equals(Modulos.MODULO_POUSO_SOBREVOAR.get())) {
+				this.hoverAltitude = Double.parseDouble(commands.get(Modulos.ALTITUDE_SOBREVOO.get()));
+				hoveringMode = true;
 
-			hoverArea();
-		}
-		if (commands.get(Modulos.MODULO.get()).equals(Modulos.MODULO_POUSO.get())) {
-			startAutoLanding();
+				hoverArea();
+			}
+			if (commands.get(Modulos.MODULO.get()).equals(Modulos.MODULO_POUSO.get())) {
+				startAutoLanding();
+			}
+		} finally {
+			navigation.releaseStreams();
+			releaseStreams();
 		}
 	}
 
@@ -70,37 +111,38 @@ public class LandingController extends ActiveVessel implements Runnable {
 			altitudeCtrl.adjustOutput(-0.8, 1.2);
 			velocityCtrl.adjustOutput(0, 1);
 			ap.engage();
-			while (hoveringMode) {
-				try {
-					if (velHorizontal.get() > 15) {
-						navigation.targetLanding();
-					} else {
-						navigation.targetRadialOut();
-					}
-					double altPID = altitudeCtrl.calcPID((altitudeSup.get() / hoverAltitude) * 50, 50);
-					System.out.println(altPID + "ALT PID");
-					double velPID = velocityCtrl.calcPID((velVertical.get() / (altPID * gravityAcel)) * 50, 50);
-					System.out.println(velPID + "VEL PID");
-					throttle(velPID);
-					if (landFromHovering) {
-						naveAtual.getControl().setGear(true);
-						hoverAltitude = 2;
-						hasTheVesselLanded();
-					}
-					Thread.sleep(25);
-				} catch (RPCException | StreamException e) {
-					disengageAfterException(Bundle.getString("status_function_abort"));
-					break;
+			runControlLoop("Hover", 25, () -> {
+				if (!hoveringMode) {
+					return false;
 				}
-			}
-		} catch (InterruptedException | RPCException e) {
+				if (velHorizontal.get() > 15) {
+					navigation.targetLanding();
+				} else {
+					navigation.targetRadialOut();
+				}
+				double altPID = altitudeCtrl.calcPID((altitudeSup.get() / hoverAltitude) * 50, 50);
+				System.out.println(altPID + "ALT PID");
+				double velPID = velocityCtrl.calcPID((velVertical.get() / (altPID * gravityAcel)) * 50, 50);
+				System.out.println(velPID + "VEL PID");
+				throttle(velPID);
+				if (landFromHovering) {
+					sendControl(controle, "setGear", true);
+					hoverAltitude = 2;
+					hasTheVesselLanded();
+				}
+				return true;
+			});
+		} catch (RPCException | StreamException e) {
+			disengageAfterException(Bundle.getString("status_function_abort"));
+		} catch (InterruptedException e) {
 			disengageAfterException(Bundle.getString("status_liftoff_abort"));
 		}
 	}
 
 	private void startAutoLanding() {
 		try {
-			StatusJPanel.setStatus(Bundle.getString("status_starting_landing_at") + " " + currentBody.getName());
+			StatusJPanel.setStatus(
+					Bundle.getString("status_starting_landing_at") + " " + constants().body(currentBody).getName());
 			deOrbitShip();
 			autoLanding();
 		} catch (RPCException | StreamException | InterruptedException e) {
@@ -113,27 +155,35 @@ public class LandingController extends ActiveVessel implements Runnable {
 		if (naveAtual.getSituation().equals(VesselSituation.ORBITING) ||
 				naveAtual.getSituation().equals(VesselSituation.SUB_ORBITAL)) {
 			StatusJPanel.setStatus(Bundle.getString("status_going_suborbital"));
-			Thread.sleep(1000);
+			MissionClock.sleep(1000);
 			ap.engage();
-			while (ap.getHeadingError() > 5) {
+			StatusJPanel.setStatus(Bundle.getString("status_orienting_ship"));
+			Stream<Float> headingError = addStream(STREAM_RATE, ap, "getHeadingError");
+			// Reaponta a nave a cada prazo, já que a direção de pouso muda ao longo da órbita
+			do {
 				navigation.targetLanding();
-				Thread.sleep(100);
-				StatusJPanel.setStatus(Bundle.getString("status_orienting_ship"));
-			}
-			while (periastro.get() > 0) {
+			} while (StreamWaits.waitFor(headingError, error -> error <= 5, REAIM_MILLIS) == null);
+			releaseStream(headingError);
+			runControlLoop("Deorbit", 100, () -> {
+				if (periastro.get() <= 0) {
+					return false;
+				}
 				navigation.targetLanding();
 				throttle(altitudeCtrl.calcPID(0, periastro.get()));
-				Thread.sleep(100);
 				StatusJPanel.setStatus(Bundle.getString("status_lowering_periapsis"));
-			}
+				return true;
+			});
 			throttle(0.0f);
 		}
 	}
 
 	private void autoLanding() throws InterruptedException, RPCException, StreamException {
 		ap.engage();
-		while (!hasTheVesselLanded()) {
-			naveAtual.getControl().setBrakes(true);
+		runControlLoop("Landing", 25, () -> {
+			if (hasTheVesselLanded()) {
+				return false;
+			}
+			sendControl(controle, "setBrakes", true);
 			if (velVertical.get() > 1) {
 				StatusJPanel.setStatus(Bundle.getString("status_waiting_for_landing"));
 				changeDirection();
@@ -143,30 +193,66 @@ public class LandingController extends ActiveVessel implements Runnable {
 				changeDirection();
 				checkAltitude();
 			}
-			Thread.sleep(25);
-		}
+			return true;
+		});
 	}
 
 	private void checkAltitude() throws RPCException, StreamException {
-		velocityCtrl.adjustPID(getTWR() * velP, velI, velD);
-		altitudeCtrl.adjustPID(getTWR() * velP, velI, velD);
-		double currentVelocityMagnitude = calculateCurrentVelocityMagnitude();
-		double zeroVelocityMagnitude = calculateZeroVelocityMagnitude();
-		double landingDistanceThreshold = Math.max(300, getMaxAcel() * 3);
-		if (altitudeSup.get() < landingDistanceThreshold) {
-			naveAtual.getControl().setGear(true);
+		double twr = getTWR();
+		velocityCtrl.adjustPID(twr * velP, velI, velD);
+		double altitudeToGround = altitudeSup.get();
+		LandingPredictor.Prediction prediction =
+				predictor.predict(altitudeToGround, velVertical.get(), velHorizontal.get(), twr * gravityAcel);
+		double landingDistanceThreshold = Math.max(300, (twr * gravityAcel - gravityAcel) * 3);
+		if (altitudeToGround < landingDistanceThreshold) {
+			sendControl(controle, "setGear", true);
 		}
-		changeThrottle(currentVelocityMagnitude, zeroVelocityMagnitude, landingDistanceThreshold);
+		if (mpc != null) {
+			throttleByMpc(altitudeToGround, twr);
+			return;
+		}
+		if (!landingBurn && prediction.getTimeToIgnition() <= IGNITION_LEAD_SECONDS) {
+			landingBurn = true;
+		}
+		if (!landingBurn) {
+			StatusJPanel.setStatus(
+					String.format(Bundle.getString("status_landing_ignition_in"), prediction.getTimeToIgnition()));
+		}
+		changeThrottle(altitudeToGround, prediction.getStoppingAltitude(), twr * gravityAcel,
+		               landingDistanceThreshold
+		              );
 	}
 
-	private void changeThrottle(double currentVelocityMagnitude, double zeroVelocityMagnitude,
+	/**
+	 * Até a ignição prevista a nave cai sem empuxo. Depois, o acelerador é o que para a nave a uma fração da altitude
+	 * atual, proporcional ao que o empuxo máximo consome, e perto do chão passa a controlar só a velocidade vertical.
+	 */
+	private void changeThrottle(double altitudeToGround, double stoppingAltitude, double thrustAcel,
 	                            double landingDistanceThreshold) throws RPCException, StreamException {
-		double acelPIDValue = altitudeCtrl.calcPID(currentVelocityMagnitude / zeroVelocityMagnitude * 100, 100);
-		double velPIDValue = velocityCtrl.calcPID(velVertical.get(), -Utilities.clamp(altitudeSup.get() * 0.1, 3, 30));
+		double burnThrottle = 0;
+		if (landingBurn) {
+			burnThrottle = Double.isInfinite(stoppingAltitude) ? 1 :
+					((thrustAcel - gravityAcel) * stoppingAltitude /
+							(Math.max(1, altitudeToGround) * BURN_ALTITUDE_FRACTION) + gravityAcel) / thrustAcel;
+		}
+		double velPIDValue = velocityCtrl.calcPID(velVertical.get(), -Utilities.clamp(altitudeToGround * 0.1, 3, 30));
 		double threshold = Utilities.clamp(
-				((currentVelocityMagnitude + zeroVelocityMagnitude) - landingDistanceThreshold) /
-						landingDistanceThreshold, 0, 1);
-		throttle(Utilities.linearInterpolation(velPIDValue, acelPIDValue, threshold));
+				((altitudeToGround + stoppingAltitude) - landingDistanceThreshold) / landingDistanceThreshold, 0, 1);
+		throttle(Utilities.linearInterpolation(velPIDValue, Utilities.clamp(burnThrottle, 0, 1), threshold));
+	}
+
+	/**
+	 * O controle preditivo escolhe o acelerador sozinho, da queda livre até o toque. O modelo dele é só vertical, então
+	 * acelera com a parte vertical do empuxo, que aponta contra a velocidade enquanto houver velocidade horizontal, mas
+	 * consome massa com o empuxo inteiro.
+	 */
+	private void throttleByMpc(double altitudeToGround, double twr) throws RPCException, StreamException {
+		double mass = massaTotal.get();
+		double verticalSpeed = velVertical.get(), horizontalSpeed = velHorizontal.get();
+		double verticalFraction = Math.abs(horizontalSpeed) > 0.5 ?
+				Math.abs(verticalSpeed) / Math.hypot(verticalSpeed, horizontalSpeed) : 1;
+		double thrust = twr * gravityAcel * mass;
+		throttle(mpc.solve(altitudeToGround, verticalSpeed, mass, thrust, thrust * verticalFraction, exhaustVelocity));
 	}
 
 	private void changeDirection() throws RPCException, StreamException {
@@ -184,31 +270,13 @@ public class LandingController extends ActiveVessel implements Runnable {
 			hoveringMode = false;
 			landFromHovering = false;
 			throttle(0.0f);
-			naveAtual.getControl().setSAS(true);
-			naveAtual.getControl().setRCS(true);
-			naveAtual.getControl().setBrakes(false);
+			sendControl(controle, "setSAS", true);
+			sendControl(controle, "setRCS", true);
+			sendControl(controle, "setBrakes", false);
+			flushControls();
 			ap.disengage();
 			return true;
 		}
 		return false;
 	}
-
-	private double calculateCurrentVelocityMagnitude() throws RPCException, StreamException {
-		double timeToGround = altitudeSup.get() / velVertical.get();
-		double horizontalDistance = velHorizontal.get() * timeToGround;
-		return calculateElipseTrajectory(horizontalDistance, altitudeSup.get());
-	}
-
-	private double calculateZeroVelocityMagnitude() throws RPCException, StreamException {
-		double zeroVelocityDistance = calculateElipseTrajectory(velHorizontal.get(), velVertical.get());
-		double zeroVelocityBurnTime = zeroVelocityDistance / getMaxAcel();
-		return zeroVelocityDistance * zeroVelocityBurnTime;
-	}
-
-	private double calculateElipseTrajectory(double a, double b) {
-		double semiMajor = Math.max(a * 2, b * 2);
-		double semiMinor = Math.min(a * 2, b * 2);
-		double totalCircumference = 2 * Math.PI * Math.sqrt((semiMajor * semiMajor + semiMinor * semiMinor) / 2);
-		return totalCircumference / 4;
-	}
 }
@@ -4,13 +4,16 @@ import com.pesterenan.MechPeste;
 import com.pesterenan.model.ActiveVessel;
 import com.pesterenan.resources.Bundle;
 import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.MissionClock;
 import com.pesterenan.utils.Modulos;
 import com.pesterenan.utils.Utilities;
 import com.pesterenan.views.StatusJPanel;
 import krpc.client.RPCException;
+import krpc.client.Stream;
 import krpc.client.StreamException;
 import krpc.client.services.SpaceCenter.Engine;
 import krpc.client.services.SpaceCenter.Fairing;
+import org.javatuples.Triplet;
 
 import java.util.HashMap;
 import java.util.List;
@@ -18,6 +21,8 @@ import java.util.Map;
 
 public class LiftoffController extends ActiveVessel implements Runnable {
 
+	// Os laços da decolagem rodam a cada 100 ms ou mais
+	private static final float STREAM_RATE = 10;
 	private static final float PITCH_UP = 90;
 	private final ControlePID thrControl = new ControlePID();
 	private float currentPitch;
@@ -25,6 +30,7 @@ public class LiftoffController extends ActiveVessel implements Runnable {
 	private float heading = 90;
 	private float roll = 90;
 	private boolean willDecoupleStages, willDeployPanelsAndRadiators;
+	private boolean stageToDecouple;
 	private String gravityCurveModel = Modulos.CIRCULAR.get();
 
 	public LiftoffController(Map<String, String> commands) {
@@ -42,18 +48,14 @@ public class LiftoffController extends ActiveVessel implements Runnable {
 			setGravityCurveModel(commands.get(Modulos.INCLINACAO.get()));
 			willDeployPanelsAndRadiators = Boolean.parseBoolean(commands.get(Modulos.ABRIR_PAINEIS.get()));
 			willDecoupleStages = Boolean.parseBoolean(commands.get(Modulos.USAR_ESTAGIOS.get()));
-			currentBody = naveAtual.getOrbit().getBody();
-			pontoRefSuperficie = naveAtual.getSurfaceReferenceFrame();
-			pontoRefOrbital = currentBody.getReferenceFrame();
-			parametrosDeVoo = naveAtual.flight(pontoRefOrbital);
-			altitude = getConexao().addStream(parametrosDeVoo, "getMeanAltitude");
-			altitudeSup = getConexao().addStream(parametrosDeVoo, "getSurfaceAltitude");
-			velVertical = getConexao().addStream(parametrosDeVoo, "getVerticalSpeed");
-			velHorizontal = getConexao().addStream(parametrosDeVoo, "getHorizontalSpeed");
-			apoastro = getConexao().addStream(naveAtual.getOrbit(), "getApoapsisAltitude");
-			periastro = getConexao().addStream(naveAtual.getOrbit(), "getPeriapsisAltitude");
+			altitude = addStream(STREAM_RATE, parametrosDeVoo, "getMeanAltitude");
+			altitudeSup = addStream(STREAM_RATE, parametrosDeVoo, "getSurfaceAltitude");
+			velVertical = addStream(STREAM_RATE, parametrosDeVoo, "getVerticalSpeed");
+			velHorizontal = addStream(STREAM_RATE, parametrosDeVoo, "getHorizontalSpeed");
+			apoastro = addStream(STREAM_RATE, naveAtual.getOrbit(), "getApoapsisAltitude");
+			periastro = addStream(STREAM_RATE, naveAtual.getOrbit(), "getPeriapsisAltitude");
 			thrControl.adjustOutput(0.0, 1.0);
-			gravityAcel = currentBody.getSurfaceGravity();
+			gravityAcel = constants().body(currentBody).getSurfaceGravity();
 		} catch (StreamException | RPCException ignored) {
 		}
 	}
@@ -67,6 +69,8 @@ public class LiftoffController extends ActiveVessel implements Runnable {
 			circularizeOrbitOnApoapsis();
 		} catch (RPCException | InterruptedException | StreamException e) {
 			disengageAfterException(Bundle.getString("status_liftoff_abort"));
+		} finally {
+			releaseStreams();
 		}
 	}
 
@@ -79,36 +83,54 @@ public class LiftoffController extends ActiveVessel implements Runnable {
 		ap.engage();
 		throttle(1f);
 
-		while (currentPitch > 1) {
-			if (apoastro.get() > getFinalApoapsis()) {
-				throttle(0);
-				break;
-			}
-			float startCurveAlt = 100;
-			double altitudeProgress =
-					Utilities.remap(startCurveAlt, getFinalApoapsis(), 1, 0.01, altitude.get(), false);
-			currentPitch = (float) (calculateCurrentPitch(altitudeProgress));
-			ap.setTargetPitch(currentPitch);
-			throttle(thrControl.calcPID(apoastro.get() / getFinalApoapsis() * 1000, 1000));
-
-			if (willDecoupleStages && isCurrentStageWithoutFuel()) {
+		do {
+			stageToDecouple = false;
+			runControlLoop("Liftoff", 250, () -> {
+				if (currentPitch <= 1) {
+					return false;
+				}
+				if (apoastro.get() > getFinalApoapsis()) {
+					throttle(0);
+					return false;
+				}
+				float startCurveAlt = 100;
+				double altitudeProgress =
+						Utilities.remap(startCurveAlt, getFinalApoapsis(), 1, 0.01, altitude.get(), false);
+				currentPitch = (float) (calculateCurrentPitch(altitudeProgress));
+				sendControl(ap, "setTargetPitch", currentPitch);
+				throttle(thrControl.calcPID(apoastro.get() / getFinalApoapsis() * 1000, 1000));
+
+				// A separação espera alguns segundos, então sai do laço e volta depois dela
+				if (willDecoupleStages && isCurrentStageWithoutFuel()) {
+					stageToDecouple = true;
+					return false;
+				}
+				StatusJPanel.setStatus(
+						String.format(Bundle.getString("status_liftoff_inclination") + " %.1f", currentPitch));
+				return true;
+			});
+			if (stageToDecouple) {
 				decoupleStage();
 			}
-			StatusJPanel.setStatus(
-					String.format(Bundle.getString("status_liftoff_inclination") + " %.1f", currentPitch));
-			Thread.sleep(250);
-		}
+		} while (stageToDecouple);
 	}
 
 	private void finalizeCurve() throws RPCException, StreamException, InterruptedException {
 		StatusJPanel.setStatus(Bundle.getString("status_maintaining_until_orbit"));
 		naveAtual.getControl().setRCS(true);
 		ap.setReferenceFrame(pontoRefOrbital);
-		while (parametrosDeVoo.getDynamicPressure() > 10) {
-			ap.setTargetDirection(parametrosDeVoo.getPrograde());
+		Stream<Float> pressaoDinamica = addStream(STREAM_RATE, parametrosDeVoo, "getDynamicPressure");
+		Stream<Triplet<Double, Double, Double>> prograde = addStream(STREAM_RATE, parametrosDeVoo, "getPrograde");
+		runControlLoop("Liftoff", 100, () -> {
+			if (pressaoDinamica.get() <= 10) {
+				return false;
+			}
+			sendControl(ap, "setTargetDirection", prograde.get());
 			throttle(thrControl.calcPID(apoastro.get() / getFinalApoapsis() * 1000, 1000));
-			Thread.sleep(100);
-		}
+			return true;
+		});
+		releaseStream(pressaoDinamica);
+		releaseStream(prograde);
 		throttle(0.0f);
 		if (willDeployPanelsAndRadiators) {
 			deployPanelsAndRadiators();
@@ -126,9 +148,9 @@ public class LiftoffController extends ActiveVessel implements Runnable {
 
 	private void decoupleStage() throws InterruptedException, RPCException {
 		StatusJPanel.setStatus(Bundle.getString("status_separating_stage"));
-		Thread.sleep(1000);
+		MissionClock.sleep(1000);
 		naveAtual.getControl().activateNextStage();
-		Thread.sleep(1000);
+		MissionClock.sleep(1000);
 	}
 
 	private void deployPanelsAndRadiators() throws RPCException, InterruptedException {
@@ -141,7 +163,7 @@ public class LiftoffController extends ActiveVessel implements Runnable {
 					// to jettison the fairing, since the jettison method doesn't work.
 					String eventName = f.getPart().getModules().get(0).getEvents().get(0);
 					f.getPart().getModules().get(0).triggerEvent(eventName);
-					Thread.sleep(10000);
+					MissionClock.sleep(10000);
 				}
 			}
 		}
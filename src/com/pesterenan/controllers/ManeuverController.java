@@ -3,25 +3,40 @@ package com.pesterenan.controllers;
 import com.pesterenan.model.ActiveVessel;
 import com.pesterenan.resources.Bundle;
 import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.KeplerOrbit;
 import com.pesterenan.utils.Modulos;
 import com.pesterenan.utils.Navigation;
+import com.pesterenan.utils.OrbitalManeuvers;
+import com.pesterenan.utils.PorkchopPlot;
+import com.pesterenan.utils.StreamWaits;
+import com.pesterenan.utils.Vector;
 import com.pesterenan.views.MainGui;
 import com.pesterenan.views.StatusJPanel;
 import krpc.client.RPCException;
 import krpc.client.Stream;
 import krpc.client.StreamException;
+import krpc.client.services.SpaceCenter.CelestialBody;
 import krpc.client.services.SpaceCenter.Engine;
 import krpc.client.services.SpaceCenter.Node;
 import krpc.client.services.SpaceCenter.Orbit;
 import krpc.client.services.SpaceCenter.RCS;
+import krpc.client.services.SpaceCenter.ReferenceFrame;
+import krpc.client.services.SpaceCenter.Vessel;
 import krpc.client.services.SpaceCenter.VesselSituation;
 import org.javatuples.Triplet;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 public class ManeuverController extends ActiveVessel implements Runnable {
 
+	// A queima da manobra é ajustada a cada 25 ms
+	private static final float STREAM_RATE = 40;
+	// Grade da busca de encontro: partidas x tempos de voo, e a antecedência mínima da queima
+	private static final int RENDEZVOUS_DEPARTURES = 120, RENDEZVOUS_FLIGHT_TIMES = 80;
+	private static final double RENDEZVOUS_MIN_LEAD_TIME = 60, RENDEZVOUS_MAX_ORBITS = 10;
 	private final ControlePID ctrlRCS = new ControlePID();
 	private final ControlePID ctrlManeuver = new ControlePID();
 	private final Navigation nav = new Navigation();
@@ -44,10 +59,21 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 		}
 	}
 
+	@Override
+	public void cleanup() {
+		nav.releaseStreams();
+		super.cleanup();
+	}
+
 	@Override
 	public void run() {
-		calculateManeuver();
-		executeNextManeuver();
+		try {
+			calculateManeuver();
+			executeNextManeuver();
+		} finally {
+			nav.releaseStreams();
+			releaseStreams();
+		}
 	}
 
 	public void calculateManeuver() {
@@ -63,7 +89,11 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 				this.alignPlanes();
 				return;
 			}
-			double parametroGravitacional = currentBody.getGravitationalParameter();
+			if (commands.get(Modulos.FUNCAO.get()).equals(Modulos.TRANSFERIR.get())) {
+				this.planTransfer();
+				return;
+			}
+			double parametroGravitacional = constants().body(currentBody).getGravitationalParameter();
 			double altitudeInicial = 0, tempoAteAltitude = 0;
 			if (commands.get(Modulos.FUNCAO.get()).equals(Modulos.APOASTRO.get())) {
 				altitudeInicial = naveAtual.getOrbit().getApoapsis();
@@ -82,143 +112,198 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 			double deltaVdaManobra = velOrbitalAlvo - velOrbitalAtual;
 			double[] deltaV = { deltaVdaManobra, 0, 0 };
 			createManeuver(tempoAteAltitude, deltaV);
-		} catch (RPCException | InterruptedException e) {
+		} catch (RPCException | InterruptedException | NumberFormatException | IllegalStateException e) {
 			disengageAfterException(Bundle.getString("status_maneuver_not_possible"));
 		}
 	}
 
-	public void matchOrbitApoapsis() {
-		try {
-			Orbit targetOrbit = getTargetOrbit();
-			System.out.println(targetOrbit.getApoapsis() + "-- APO");
-			Node maneuver = hohmannTransferToOrbit(targetOrbit, naveAtual.getOrbit().getTimeToPeriapsis());
-			while (true) {
-				double currentDeltaApo = compareOrbitParameter(maneuver.getOrbit(), targetOrbit, Compare.AP);
-				String deltaApoFormatted = String.format("%.2f", currentDeltaApo);
-				System.out.println(deltaApoFormatted);
-				if (deltaApoFormatted.equals(String.format("%.2f", 0.00))) {
-					break;
+	/**
+	 * Cria de uma vez todos os nós da transferência escolhida: Hohmann ou bi-elíptica até uma órbita circular na
+	 * altitude alvo, ou mudança para o plano do alvo no nó mais próximo, circularizando na mesma queima. As queimas
+	 * são calculadas por {@link OrbitalManeuvers} a partir dos elementos da órbita atual.
+	 */
+	public void planTransfer() throws RPCException {
+		Orbit orbit = naveAtual.getOrbit();
+		double mu = constants().body(currentBody).getGravitationalParameter();
+		String type = commands.get(Modulos.TIPO_TRANSFERENCIA.get());
+		List<OrbitalManeuvers.Burn> burns;
+		if (Modulos.ENCONTRO.get().equals(type)) {
+			planRendezvous();
+			return;
+		}
+		if (Modulos.PLANO_CIRCULAR.get().equals(type)) {
+			burns = Collections.singletonList(planeChangeAtClosestNode(orbit, mu));
+		} else {
+			double radius = constants().body(currentBody).getEquatorialRadius();
+			double finalRadius = radius + Double.parseDouble(commands.get(Modulos.ALTITUDE_ALVO.get()));
+			// Subindo, a transferência começa no periastro; descendo, no apoastro
+			boolean fromPeriapsis = finalRadius >= orbit.getSemiMajorAxis();
+			double startRadius = fromPeriapsis ? orbit.getPeriapsis() : orbit.getApoapsis();
+			double timeToStart = fromPeriapsis ? orbit.getTimeToPeriapsis() : orbit.getTimeToApoapsis();
+			if (Modulos.BI_ELIPTICA.get().equals(type)) {
+				String intermediate = commands.get(Modulos.ALTITUDE_INTERMEDIARIA.get());
+				double intermediateRadius = intermediate != null ? radius + Double.parseDouble(intermediate) :
+						Math.min(3 * Math.max(startRadius, finalRadius), 0.9 * currentBody.getSphereOfInfluence());
+				if (intermediateRadius < Math.max(startRadius, finalRadius)) {
+					throw new IllegalStateException();
 				}
-				double dvPrograde = maneuver.getPrograde();
-				double ctrlOutput = ctrlManeuver.calcPID(currentDeltaApo, 0);
-
-				maneuver.setPrograde(dvPrograde - (ctrlOutput));
-				Thread.sleep(50);
+				burns = OrbitalManeuvers.biElliptic(mu, orbit.getSemiMajorAxis(), startRadius, finalRadius,
+				                                    intermediateRadius
+				                                   );
+			} else {
+				burns = OrbitalManeuvers.hohmann(mu, orbit.getSemiMajorAxis(), startRadius, finalRadius);
 			}
-		} catch (Exception e) {
-			disengageAfterException("Não foi possivel ajustar a inclinação");
+			List<OrbitalManeuvers.Burn> delayed = new ArrayList<>();
+			for (OrbitalManeuvers.Burn burn : burns) {
+				delayed.add(burn.delayedBy(timeToStart));
+			}
+			burns = delayed;
+		}
+		for (OrbitalManeuvers.Burn burn : burns) {
+			createManeuver(burn.getTime(), burn.toArray());
 		}
+		StatusJPanel.setStatus(String.format(Bundle.getString("status_transfer_planned"), burns.size(),
+		                                     OrbitalManeuvers.totalDeltaV(burns)
+		                                    ));
 	}
 
-	private Node hohmannTransferToOrbit(Orbit targetOrbit, double timeToStart) {
-		double[] totalDv = { 0, 0, 0 };
-		try {
-			double startingRadius = naveAtual.getOrbit().getPeriapsis();
-			double finalRadius = targetOrbit.getApoapsis();
-			System.out.println(startingRadius + " --- " + finalRadius);
-			double gravitationalParameter = currentBody.getGravitationalParameter();
-			// DeltaV used to get to the second Node
-			double firstNodeDv = Math.sqrt(gravitationalParameter * ((2.0 / startingRadius) -
-					(1.0 / naveAtual.getOrbit().getSemiMajorAxis())));
-			// DeltaV used to orbit in the second Node
-			double secondNodeDv = Math.sqrt(gravitationalParameter * ((2.0 / startingRadius) - (1.0 / finalRadius)));
-			// Time taken between the two points
-			totalDv[0] = secondNodeDv - firstNodeDv;
-		} catch (RPCException e) {
-			e.printStackTrace();
+	/**
+	 * Calcula a queima que leva a nave ao plano da órbita do alvo e circulariza a órbita, no nó ascendente ou
+	 * descendente que vier primeiro.
+	 */
+	private OrbitalManeuvers.Burn planeChangeAtClosestNode(Orbit orbit, double mu) throws RPCException {
+		Orbit targetOrbit = getTargetOrbit();
+		if (targetOrbit == null) {
+			throw new IllegalStateException();
 		}
-		return createManeuver(timeToStart, totalDv);
+		double ut = centroEspacial.getUT();
+		double ascendingNode = orbit.trueAnomalyAtAN(targetOrbit);
+		double descendingNode = orbit.trueAnomalyAtDN(targetOrbit);
+		double timeToAN = timeUntil(orbit.uTAtTrueAnomaly(ascendingNode) - ut, orbit.getPeriod());
+		double timeToDN = timeUntil(orbit.uTAtTrueAnomaly(descendingNode) - ut, orbit.getPeriod());
+		boolean atAN = timeToAN < timeToDN;
+		// No nó ascendente a nave sobe através do plano do alvo: a queima é anti-normal; no descendente, normal
+		double deltaPlane = orbit.relativeInclination(targetOrbit) * (atAN ? -1 : 1);
+		return OrbitalManeuvers.planeChange(mu, orbit.getSemiMajorAxis(), orbit.getEccentricity(),
+		                                    atAN ? ascendingNode : descendingNode, deltaPlane, true
+		                                   ).delayedBy(atAN ? timeToAN : timeToDN);
 	}
 
-	private Node createManeuverAtClosestIncNode(Orbit targetOrbit) {
-		double uTatClosestNode = 1;
-		double[] dv = { 0, 0, 0 };
-		try {
-			double[] incNodesUt = getTimeToIncNodes(targetOrbit);
-			uTatClosestNode = Math.min(incNodesUt[0], incNodesUt[1]) - centroEspacial.getUT();
-		} catch (Exception ignored) {
-		}
-		return createManeuver(uTatClosestNode, dv);
+	private static double timeUntil(double seconds, double period) {
+		return seconds < 0 ? seconds + period : seconds;
 	}
 
-	private double[] getTimeToIncNodes(Orbit targetOrbit) throws RPCException {
-		Orbit vesselOrbit = naveAtual.getOrbit();
-		double ascendingNode = vesselOrbit.trueAnomalyAtAN(targetOrbit);
-		double descendingNode = vesselOrbit.trueAnomalyAtDN(targetOrbit);
-		return new double[]{ vesselOrbit.uTAtTrueAnomaly(ascendingNode), vesselOrbit.uTAtTrueAnomaly(descendingNode) };
+	/**
+	 * Cria uma manobra no periastro que leva o apoastro até o apoastro da órbita do alvo. O delta-V é calculado
+	 * localmente com {@link KeplerOrbit}, e o nó é criado uma única vez, já com o valor final.
+	 */
+	public void matchOrbitApoapsis() {
+		try {
+			Orbit targetOrbit = getTargetOrbit();
+			KeplerOrbit orbit = currentKeplerOrbit();
+			double timeToPeriapsis = orbit.timeToPeriapsis();
+			KeplerOrbit atNode = orbit.propagate(timeToPeriapsis);
+			double[] deltaV = { atNode.progradeDeltaVForApsis(targetOrbit.getApoapsis()), 0, 0 };
+			createManeuver(timeToPeriapsis, deltaV);
+		} catch (Exception e) {
+			disengageAfterException(Bundle.getString("status_maneuver_not_possible"));
+		}
 	}
 
+	/**
+	 * Cria uma manobra no nó mais próximo entre o plano da órbita atual e o plano da órbita do alvo, que gira a
+	 * velocidade da nave para dentro do plano do alvo. O delta-V é calculado localmente com {@link KeplerOrbit}, e o nó
+	 * é criado uma única vez, já com o valor final.
+	 */
 	public void alignPlanes() {
 		try {
-			Orbit targetOrbit = getTargetOrbit();
-			Node maneuver = createManeuverAtClosestIncNode(targetOrbit);
-			double[] incNodesUt = getTimeToIncNodes(targetOrbit);
-			boolean closestIsAN = incNodesUt[0] < incNodesUt[1];
-			double timeToExecute = 0;
-			while (timeToExecute < 5000) {
-				double currentDeltaInc = compareOrbitParameter(maneuver.getOrbit(), targetOrbit, Compare.INC);
-				String deltaIncFormatted = String.format("%.2f", currentDeltaInc);
-				System.out.println(deltaIncFormatted);
-				if (deltaIncFormatted.equals(String.format("%.2f", 10.00))) {
-					break;
-				}
-				double dvNormal = maneuver.getNormal();
-				double ctrlOutput = ctrlManeuver.calcPID(currentDeltaInc, 10.0);// * limitPIDOutput(Math.abs
-				// (currentDeltaInc));
-				if ((closestIsAN ? currentDeltaInc : -currentDeltaInc) > 0.0) {
-					maneuver.setNormal(dvNormal + (ctrlOutput));
-				} else {
-					maneuver.setNormal(dvNormal - (ctrlOutput));
-				}
-				timeToExecute += 25;
-				Thread.sleep(25);
+			Vector targetNormal = getTargetOrbitNormal();
+			KeplerOrbit orbit = currentKeplerOrbit();
+			double timeToNode = orbit.timeToPlaneIntersection(targetNormal);
+			if (Double.isNaN(timeToNode)) {
+				throw new IllegalStateException();
 			}
+			KeplerOrbit atNode = orbit.propagate(timeToNode);
+			createManeuver(timeToNode, atNode.burnComponents(atNode.velocityInPlane(targetNormal)));
 		} catch (Exception e) {
 			disengageAfterException("Não foi possivel ajustar a inclinação");
 		}
 	}
 
-	private double limitPIDOutput(double absDeltaInc) {
-		if (absDeltaInc < 0.05) {
-			return 0.1;
+	/**
+	 * @return A órbita atual da nave, lida no sistema de referência não rotativo do corpo.
+	 */
+	private KeplerOrbit currentKeplerOrbit() throws RPCException {
+		ReferenceFrame frame = constants().body(currentBody).getNonRotatingReferenceFrame();
+		return KeplerOrbit.fromKrpc(constants().body(currentBody).getGravitationalParameter(),
+		                            naveAtual.position(frame), naveAtual.velocity(frame)
+		                           );
+	}
+
+	/**
+	 * @return A direção do momento angular da órbita do alvo, no sistema de {@link KeplerOrbit}.
+	 */
+	private Vector getTargetOrbitNormal() throws RPCException {
+		return targetKeplerOrbit().getAngularMomentum();
+	}
+
+	/**
+	 * @return A órbita do alvo (corpo celeste ou nave), lida no sistema de referência não rotativo do corpo atual.
+	 */
+	private KeplerOrbit targetKeplerOrbit() throws RPCException {
+		ReferenceFrame frame = constants().body(currentBody).getNonRotatingReferenceFrame();
+		double mu = constants().body(currentBody).getGravitationalParameter();
+		if (centroEspacial.getTargetBody() != null) {
+			CelestialBody target = centroEspacial.getTargetBody();
+			return KeplerOrbit.fromKrpc(mu, target.position(frame), target.velocity(frame));
 		}
-		if (absDeltaInc < 0.5) {
-			return 5;
+		if (centroEspacial.getTargetVessel() != null) {
+			Vessel target = centroEspacial.getTargetVessel();
+			return KeplerOrbit.fromKrpc(mu, target.position(frame), target.velocity(frame));
 		}
-		return 10;
+		throw new IllegalStateException();
 	}
 
-	private double compareOrbitParameter(Orbit maneuverOrbit, Orbit targetOrbit, Compare parameter) {
-		double maneuverParameter;
-		double targetParameter;
-		double delta = 0;
-		try {
-			switch (parameter) {
-				case INC:
-					maneuverParameter = maneuverOrbit.getInclination();
-					System.out.println(maneuverParameter + " maneuver");
-					targetParameter = targetOrbit.getInclination();
-					System.out.println(targetParameter + " target");
-					delta = (maneuverParameter / targetParameter) * 10;
-					break;
-				case AP:
-					maneuverParameter = Math.round(maneuverOrbit.getApoapsis() / 100000.0);
-					targetParameter = Math.round(targetOrbit.getApoapsis() / 100000.0);
-					delta = (targetParameter - maneuverParameter);
-					break;
-				case PE:
-					maneuverParameter = Math.round(maneuverOrbit.getPeriapsis()) / 100.0;
-					targetParameter = Math.round(targetOrbit.getPeriapsis()) / 100.0;
-					delta = (targetParameter - maneuverParameter);
-					break;
-				default:
-					break;
-			}
-
-		} catch (RPCException e) {
-			e.printStackTrace();
+	/**
+	 * Procura, em uma grade de horários de partida e tempos de voo, a transferência de encontro com o alvo de menor
+	 * delta-V total (partida e chegada), e cria o nó da queima de partida. O alvo precisa orbitar o mesmo corpo.
+	 */
+	private void planRendezvous() throws RPCException {
+		Orbit targetOrbit = getTargetOrbit();
+		if (targetOrbit == null || !targetOrbit.getBody().equals(currentBody)) {
+			throw new IllegalStateException();
+		}
+		double ut = centroEspacial.getUT();
+		KeplerOrbit orbit = currentKeplerOrbit();
+		KeplerOrbit target = targetKeplerOrbit();
+		double mu = orbit.getGravitationalParameter();
+		double vesselPeriod = period(mu, orbit.getSemiMajorAxis());
+		double targetPeriod = period(mu, target.getSemiMajorAxis());
+		if (Double.isNaN(vesselPeriod) || Double.isNaN(targetPeriod)) {
+			throw new IllegalStateException();
 		}
-		return delta;
+		// As partidas cobrem um período sinódico (até o alinhamento se repetir), limitado a algumas voltas da nave
+		double synodicPeriod = 1 / Math.abs(1 / vesselPeriod - 1 / targetPeriod);
+		double window = Math.min(synodicPeriod, RENDEZVOUS_MAX_ORBITS * vesselPeriod);
+		double hohmannTime = period(mu, (orbit.getSemiMajorAxis() + target.getSemiMajorAxis()) / 2) / 2;
+		StatusJPanel.setStatus(Bundle.getString("status_planning_rendezvous"));
+		PorkchopPlot.Result transfer = new PorkchopPlot(orbit, target).search(
+				RENDEZVOUS_MIN_LEAD_TIME, window, RENDEZVOUS_DEPARTURES, hohmannTime * 0.25, hohmannTime * 2,
+				RENDEZVOUS_FLIGHT_TIMES
+		);
+		Vector departureVelocity = transfer.getBestDepartureVelocity();
+		if (departureVelocity == null) {
+			throw new IllegalStateException();
+		}
+		double[] deltaV = transfer.getBestDepartureOrbit().burnComponents(departureVelocity);
+		createManeuver(transfer.getBestDeparture() - (centroEspacial.getUT() - ut), deltaV);
+		StatusJPanel.setStatus(String.format(Bundle.getString("status_rendezvous_planned"),
+		                                     transfer.getBestFlightTime(), transfer.getBestDeltaV()
+		                                    ));
+	}
+
+	private static double period(double mu, double semiMajorAxis) {
+		return semiMajorAxis > 0 ? 2 * Math.PI * Math.sqrt(Math.pow(semiMajorAxis, 3) / mu) : Double.NaN;
 	}
 
 	private Orbit getTargetOrbit() throws RPCException {
@@ -269,15 +354,15 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 			ap.setTargetRoll(0);
 			nav.targetManeuver(maneuverNode);
 			System.out.println("iniciando rolagem");
-			while (ap.getRollError() > 3) {
-				ap.wait_();
-			}
+			Stream<Float> rollError = addStream(STREAM_RATE, ap, "getRollError");
+			StreamWaits.waitFor(rollError, error -> error <= 3);
+			releaseStream(rollError);
 			System.out.println("iniciando miragem");
-			while (ap.getError() > 3) {
-				ap.wait_();
-			}
+			Stream<Float> error = addStream(STREAM_RATE, ap, "getError");
+			StreamWaits.waitFor(error, value -> value <= 3);
+			releaseStream(error);
 			System.out.println("miragem terminada");
-		} catch (RPCException e) {
+		} catch (RPCException | StreamException | InterruptedException e) {
 			disengageAfterException(Bundle.getString("status_couldnt_orient"));
 		}
 	}
@@ -310,23 +395,25 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 			}
 			// Mostrar tempo de ignição:
 			StatusJPanel.setStatus(String.format(Bundle.getString("status_maneuver_duration"), duracaoDaQueima));
-			while (inicioDaQueima > 0) {
-				inicioDaQueima = noDeManobra.getTimeTo() - (duracaoDaQueima / 2.0);
-				inicioDaQueima = Math.max(inicioDaQueima, 0.0);
-				nav.targetManeuver(noDeManobra);
-				StatusJPanel.setStatus(String.format(Bundle.getString("status_maneuver_ignition_in"), inicioDaQueima));
-				Thread.sleep(100);
+			if (inicioDaQueima > 0) {
+				runControlLoop("Maneuver", 100, () -> {
+					double tempoAteIgnicao = Math.max(noDeManobra.getTimeTo() - (duracaoDaQueima / 2.0), 0.0);
+					nav.targetManeuver(noDeManobra);
+					StatusJPanel.setStatus(
+							String.format(Bundle.getString("status_maneuver_ignition_in"), tempoAteIgnicao));
+					return tempoAteIgnicao > 0;
+				});
 			}
 			// Executar a manobra:
 			Stream<Triplet<Double, Double, Double>> queimaRestante =
-					getConexao().addStream(noDeManobra, "remainingBurnVector", noDeManobra.getReferenceFrame());
+					addStream(STREAM_RATE, noDeManobra, "remainingBurnVector", noDeManobra.getReferenceFrame());
 			StatusJPanel.setStatus(Bundle.getString("status_maneuver_executing"));
 			double limiteParaDesacelerar =
 					noDeManobra.getDeltaV() > 1000 ? 0.025 : noDeManobra.getDeltaV() > 250 ? 0.10 : 0.25;
 
-			while (!noDeManobra.equals(null)) {
+			runControlLoop("Maneuver", 25, () -> {
 				if (queimaRestante.get().getValue1() < (fineAdjustment ? 2 : 0.5)) {
-					break;
+					return false;
 				}
 				nav.targetManeuver(noDeManobra);
 				throttle(ctrlManeuver.calcPID(
@@ -336,8 +423,8 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 				MainGui.getParametros()
 				       .getComponent(0)
 				       .firePropertyChange("distancia", 0, queimaRestante.get().getValue1());
-				Thread.sleep(25);
-			}
+				return true;
+			});
 			throttle(0.0f);
 			if (fineAdjustment) {
 				adjustManeuverWithRCS(queimaRestante);
@@ -346,7 +433,7 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 			ap.disengage();
 			naveAtual.getControl().setSAS(true);
 			naveAtual.getControl().setRCS(false);
-			queimaRestante.remove();
+			releaseStream(queimaRestante);
 			noDeManobra.remove();
 			StatusJPanel.setStatus(Bundle.getString("status_ready"));
 		} catch (StreamException | RPCException e) {
@@ -359,10 +446,13 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 	private void adjustManeuverWithRCS(Stream<Triplet<Double, Double, Double>> remainingDeltaV) throws RPCException,
 			StreamException, InterruptedException {
 		naveAtual.getControl().setRCS(true);
-		while (Math.floor(remainingDeltaV.get().getValue1()) > 0.2) {
-			naveAtual.getControl().setForward((float) ctrlRCS.calcPID(-remainingDeltaV.get().getValue1() * 10, 0));
-			Thread.sleep(25);
-		}
+		runControlLoop("Maneuver", 25, () -> {
+			if (Math.floor(remainingDeltaV.get().getValue1()) <= 0.2) {
+				return false;
+			}
+			sendControl(controle, "setForward", (float) ctrlRCS.calcPID(-remainingDeltaV.get().getValue1() * 10, 0));
+			return true;
+		});
 		naveAtual.getControl().setForward(0);
 	}
 
@@ -384,8 +474,4 @@ public class ManeuverController extends ActiveVessel implements Runnable {
 		return false;
 	}
 
-	enum Compare {
-		INC, AP, PE
-	}
-
 }
\ No newline at end of file
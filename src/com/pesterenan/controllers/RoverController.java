@@ -1,9 +1,14 @@
 package com.pesterenan.controllers;
 
+import com.google.protobuf.ByteString;
 import com.pesterenan.model.ActiveVessel;
 import com.pesterenan.utils.ControlePID;
+import com.pesterenan.utils.FrameTransformer;
+import com.pesterenan.utils.MissionClock;
 import com.pesterenan.utils.Modulos;
 import com.pesterenan.utils.PathFinding;
+import com.pesterenan.utils.RoverRadar;
+import com.pesterenan.utils.RpcBatch;
 import com.pesterenan.utils.Utilities;
 import com.pesterenan.utils.Vector;
 import com.pesterenan.views.StatusJPanel;
@@ -11,6 +16,7 @@ import krpc.client.RPCException;
 import krpc.client.Stream;
 import krpc.client.StreamException;
 import krpc.client.services.Drawing;
+import krpc.client.services.SpaceCenter;
 import krpc.client.services.SpaceCenter.ReferenceFrame;
 import krpc.client.services.SpaceCenter.SolarPanel;
 import krpc.client.services.SpaceCenter.SolarPanelState;
@@ -24,7 +30,15 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 public class RoverController extends ActiveVessel implements Runnable {
-	private static final int MAX_RADAR_LINES = 9;
+	// O laço do rover roda a cada 50 ms
+	private static final float STREAM_RATE = 20;
+	private static final Vector RADAR_HEIGHT = new Vector(0.0, 3.0, 0.0);
+	// Alcance mínimo do raio à frente do rover (m); com mais velocidade ele acompanha o raio da frente do radar
+	private static final double FORWARD_RADAR_DISTANCE = 30;
+	// Obstáculo a menos dessa distância (m), com o rover quase parado, bloqueia a rota à frente
+	private static final double BLOCKED_DISTANCE = 5, BLOCKED_SPEED = 0.5;
+	private static final long REPLAN_MILLIS = 10000;
+
 	private final ControlePID sterringCtrl = new ControlePID();
 	private final ControlePID acelCtrl = new ControlePID();
 	private final Map<String, String> commands;
@@ -38,10 +52,20 @@ public class RoverController extends ActiveVessel implements Runnable {
 	private Stream<Float> bateriaAtual;
 	private Drawing.Line steeringLine;
 	private PathFinding pathFinding;
+	private FrameTransformer frames;
 	private Vector targetPoint = new Vector();
 	private Vector roverDirection = new Vector();
 	private Drawing.Line dirRover;
+	private long lastReplan;
 	private boolean haveSolarPanels;
+	// Vetores reaproveitados a cada ciclo do radar, para não criar novos objetos a cada 50ms
+	private final Vector radarDirection = new Vector();
+	private final Vector radarEnd = new Vector();
+	private final RoverRadar radar = new RoverRadar();
+	// Quantas linhas do radar estão visíveis, uma para cada raio do leque
+	private int visibleRadarLines = RoverRadar.MAX_RAYS;
+	// Varredura do radar, enviada em uma só requisição a cada ciclo
+	private RpcBatch radarSweep;
 
 	public RoverController(Map<String, String> commands) {
 		super(getConexao());
@@ -61,9 +85,11 @@ public class RoverController extends ActiveVessel implements Runnable {
 		try {
 			currentBody = naveAtual.getOrbit().getBody();
 			parametrosDeVoo = naveAtual.flight(pontoRefOrbital);
-			pontoRefRover = naveAtual.getReferenceFrame();
-			velHorizontal = getConexao().addStream(parametrosDeVoo, "getHorizontalSpeed");
-			bateriaAtual = getConexao().addStream(naveAtual.getResources(), "amount", "ElectricCharge");
+			pontoRefRover = constants().vessel(naveAtual).getReferenceFrame();
+			velHorizontal = addStream(STREAM_RATE, parametrosDeVoo, "getHorizontalSpeed");
+			bateriaAtual = addStream(STREAM_RATE, constants().vessel(naveAtual).getResources(), "amount",
+			                         "ElectricCharge"
+			                        );
 			maxSpeed = Float.parseFloat(commands.get(Modulos.VELOCIDADE_MAX.get()));
 			roverDirection = new Vector(naveAtual.direction(pontoRefRover));
 			drawing = Drawing.newInstance(getConexao());
@@ -72,13 +98,17 @@ public class RoverController extends ActiveVessel implements Runnable {
 			dirRover.setThickness(0.2f);
 			steeringLine = drawing.addDirection(roverDirection.toTriplet(), pontoRefRover, 10, true);
 			steeringLine.setColor(new Triplet<>(1.0, 0.0, 1.0));
-			for (int i = 0; i < MAX_RADAR_LINES; i++) {
+			steeringLine.setReferenceFrame(pontoRefSuperficie);
+			for (int i = 0; i < RoverRadar.MAX_RAYS; i++) {
 				Drawing.Line line = drawing.addDirection(roverDirection.toTriplet(), pontoRefSuperficie, 1, true);
-				line.setColor(new Triplet<>(0.0, (1.0 / MAX_RADAR_LINES), 0.0));
+				line.setColor(new Triplet<>(0.0, (1.0 / RoverRadar.MAX_RAYS), 0.0));
 				line.setThickness(0.2f);
 				radarLines.add(line);
 			}
 			pathFinding = new PathFinding(getConexao());
+			frames = new FrameTransformer();
+			radarSweep = new RpcBatch(getConexao());
+			setBoundingBox(naveAtual.boundingBox(pontoRefRover));
 			haveSolarPanels = detectSolarPanels();
 			// AJUSTAR CONTROLES PID:
 			acelCtrl.adjustOutput(0, 1);
@@ -88,6 +118,23 @@ public class RoverController extends ActiveVessel implements Runnable {
 		}
 	}
 
+	@Override
+	public void cleanup() {
+		if (pathFinding != null) {
+			pathFinding.releaseStreams();
+		}
+		if (frames != null) {
+			frames.releaseStreams();
+		}
+		if (drawing != null) {
+			try {
+				drawing.clear(false);
+			} catch (RPCException ignored) {
+			}
+		}
+		super.cleanup();
+	}
+
 	@Override
 	public void run() {
 		if (commands.get(Modulos.MODULO.get()).equals(Modulos.MODULO_ROVER.get())) {
@@ -104,11 +151,19 @@ public class RoverController extends ActiveVessel implements Runnable {
 					throw new RuntimeException(ex);
 				}
 				disengageAfterException("Rovering cancelled");
+			} finally {
+				if (pathFinding != null) {
+					pathFinding.releaseStreams();
+				}
+				if (frames != null) {
+					frames.releaseStreams();
+				}
+				releaseStreams();
 			}
 		}
 	}
 
-	private void setTarget() throws IOException, RPCException, InterruptedException {
+	private void setTarget() throws IOException, RPCException, StreamException, InterruptedException {
 		if (commands.get(Modulos.TIPO_ALVO_ROVER.get()).equals(Modulos.MARCADOR_MAPA.get())) {
 			pathFinding.addWaypointsOnSameBody(commands.get(Modulos.NOME_MARCADOR.get()));
 			pathFinding.buildPathToTarget(pathFinding.findNearestWaypoint());
@@ -119,8 +174,12 @@ public class RoverController extends ActiveVessel implements Runnable {
 		}
 	}
 
-	private void driveRoverToTarget() throws IOException, RPCException, InterruptedException, StreamException {
-		while (isAutoRoverRunning) {
+	private void driveRoverToTarget() throws RPCException, InterruptedException, StreamException {
+		runControlLoop("Rover", 50, () -> {
+			if (!isAutoRoverRunning) {
+				return false;
+			}
+			frames.update();
 			if (pathFinding.isPathToTargetEmpty()) {
 				isAutoRoverRunning = false;
 			} else {
@@ -130,15 +189,17 @@ public class RoverController extends ActiveVessel implements Runnable {
 			
 			if (!needToChargeBatteries()) {
 				if (isFarFromTarget()) {
-					naveAtual.getControl().setBrakes(false);
+					sendControl(controle, "setBrakes", false);
 					driveRover();
 				} else { // Rover arrived at destiny
-					naveAtual.getControl().setBrakes(true);
+					sendControl(controle, "setBrakes", true);
 					pathFinding.removePathsCurrentPoint();
 					if (commands.get(Modulos.TIPO_ALVO_ROVER.get()).equals(Modulos.MARCADOR_MAPA.get()) &&
 							pathFinding.isPathToTargetEmpty()) {
 						pathFinding.removeWaypointFromList();
-						pathFinding.findNearestWaypoint();
+						if (pathFinding.hasNextWaypoint()) {
+							pathFinding.buildPathToTarget(pathFinding.nextWaypoint());
+						}
 					}
 				}
 			} else { // Rover needs recharging 
@@ -150,26 +211,24 @@ public class RoverController extends ActiveVessel implements Runnable {
 				}
 				
 			}
-			
-			
-			Thread.sleep(50);
-		}
+			return true;
+		});
 		naveAtual.getControl().setBrakes(true);
-		Thread.sleep(1000); // I don't know what's the purpose of this, but will keep it as you probably had your reasons, in the future you may replace this comment with an explanation
+		MissionClock.sleep(1000); // I don't know what's the purpose of this, but will keep it as you probably had your reasons, in the future you may replace this comment with an explanation
 	}
 
 	private void setNextPointInPath() {
 		targetPoint = pathFinding.getPathsFirstPoint();
 	}
 
-	private boolean isFarFromTarget() throws RPCException {
-		double distance = Vector.distance(new Vector(naveAtual.position(pontoRefOrbital)), targetPoint);
+	private boolean isFarFromTarget() {
+		double distance = Vector.distance(frames.getVesselPosition(), targetPoint);
 		return distance > distanceFromTargetLimit;
 	}
 
-	private boolean needToChargeBatteries() throws RPCException, IOException, StreamException, InterruptedException {
-		float totalCharge = naveAtual.getResources().max("ElectricCharge");
-		float currentCharge = naveAtual.getResources().amount("ElectricCharge");
+	private boolean needToChargeBatteries() throws RPCException, StreamException {
+		float totalCharge = constants().vessel(naveAtual).getMaxElectricCharge();
+		float currentCharge = bateriaAtual.get();
 		float minChargeLevel = 10.0f;
 		float chargePercentage = (float) Math.ceil(currentCharge * 100 / totalCharge);
 		if (chargePercentage > minChargeLevel) {
@@ -181,15 +240,16 @@ public class RoverController extends ActiveVessel implements Runnable {
 	
 	private void rechargeRover() throws RPCException, StreamException, InterruptedException {
 		
-		float totalCharge = naveAtual.getResources().max("ElectricCharge");
-		float currentCharge = naveAtual.getResources().amount("ElectricCharge");
+		float totalCharge = constants().vessel(naveAtual).getMaxElectricCharge();
+		float currentCharge = bateriaAtual.get();
 		
 		setRoverThrottle(0);
-		naveAtual.getControl().setLights(false);
-		naveAtual.getControl().setBrakes(true);
+		sendControl(controle, "setLights", false);
+		sendControl(controle, "setBrakes", true);
+		flushControls();
 		
-		if (velHorizontal.get() < 1 && naveAtual.getControl().getBrakes()) {
-			Thread.sleep(1000); // I don't know what's the purpose of this, but will keep it as you probably had your reasons, in the future you may replace this comment with an explanation
+		if (velHorizontal.get() < 1 && controle.getBrakes()) {
+			MissionClock.sleep(1000); // I don't know what's the purpose of this, but will keep it as you probably had your reasons, in the future you may replace this comment with an explanation
 			double chargeTime = 0;
 			double TotalEnergyFlow = 0;
 			List<SolarPanel> solarPanels = naveAtual.getParts()
@@ -207,7 +267,7 @@ public class RoverController extends ActiveVessel implements Runnable {
 				chargeTime = 3600;
 			}
 			centroEspacial.warpTo((centroEspacial.getUT() + chargeTime), 10000, 4);
-			naveAtual.getControl().setLights(true);
+			sendControl(controle, "setLights", true);
 		}
 	}
 	
@@ -225,25 +285,24 @@ public class RoverController extends ActiveVessel implements Runnable {
 		}
 	}
 
-	private void driveRover() throws IOException, RPCException, StreamException {
-		Vector targetDirection = posSurfToRover(posOrbToSurf(targetPoint)).normalize();
-		Vector radarSourcePosition =
-				posRoverToSurf(new Vector(naveAtual.position(pontoRefRover)).sum(new Vector(0.0, 3.0, 0.0)));
+	private void driveRover() throws RPCException, StreamException {
+		Vector targetDirection = posSurfToRover(posOrbToSurf(targetPoint));
+		targetDirection.normalizeInto(targetDirection);
+		// A posição da nave no próprio sistema de referência é a origem, então o radar fica só na altura dele
+		Vector radarSourcePosition = posRoverToSurf(RADAR_HEIGHT);
 
 		double roverAngle = (roverDirection.heading());
-		// fazer um raycast pra frente e verificar a distancia
-		double obstacleAhead =
-				pathFinding.raycastDistance(radarSourcePosition, transformDirection(roverDirection),
-				                            pontoRefSuperficie,
-				                            30
-				                           );
-		double steeringPower = Utilities.remap(3, 30, 0.1, 0.5, obstacleAhead, true);
+		// fazer um raycast pra frente e verificar a distancia, junto com os raios do radar
+		double obstacleAhead = sweepRadar(radarSourcePosition);
+		replanIfBlocked(obstacleAhead);
+		double steeringPower = Utilities.remap(3, forwardRadarDistance(), 0.1, 0.5, obstacleAhead, true);
 		// usar esse valor pra muiltiplicar a direcao alvo
-		double targetAndRadarAngle = (targetDirection.multiply(steeringPower)
-		                                             .sum(directionFromRadar(naveAtual.boundingBox(pontoRefRover)))
-		                                             .normalize()).heading();
+		double targetAndRadarAngle = targetDirection.multiplyInto(steeringPower, targetDirection)
+		                                            .sumInto(directionFromRadar(), targetDirection)
+		                                            .normalizeInto(targetDirection)
+		                                            .heading();
 		double deltaAngle = Math.abs(targetAndRadarAngle - roverAngle);
-		naveAtual.getControl().setSAS(velHorizontal.get() > velocidadeCurva && deltaAngle < 1);
+		sendControl(controle, "setSAS", velHorizontal.get() > velocidadeCurva && deltaAngle < 1);
 		// Control Rover Throttle
 		setRoverThrottle(acelCtrl.calcPID(velHorizontal.get() / maxSpeed * 50, 50));
 		// Control Rover Steering
@@ -254,99 +313,91 @@ public class RoverController extends ActiveVessel implements Runnable {
 		}
 	}
 
+	/**
+	 * Quando o rover fica parado na frente de um obstáculo, bloqueia a rota à frente e a refaz, no máximo uma vez a
+	 * cada {@link #REPLAN_MILLIS}.
+	 */
+	private void replanIfBlocked(double obstacleAhead) throws RPCException, StreamException {
+		long now = MissionClock.currentTimeMillis();
+		if (obstacleAhead > BLOCKED_DISTANCE || velHorizontal.get() > BLOCKED_SPEED ||
+				now - lastReplan < REPLAN_MILLIS) {
+			return;
+		}
+		lastReplan = now;
+		Vector forward = frames.surfaceToBodyDirection(transformDirection(roverDirection));
+		if (pathFinding.replanAround(frames.getVesselPosition(), forward)) {
+			setNextPointInPath();
+		}
+	}
 
-	private Vector directionFromRadar(Pair<Triplet<Double, Double, Double>, Triplet<Double, Double, Double>> boundingBox) throws RPCException, IOException {
-		// PONTO REF ROVER: X = DIREITA, Y = FRENTE, Z = BAIXO;
-		// Bounding box points from rover (LBU: Left, Back, Up - RFD: Right, Front, Down):
-		Vector LBU = new Vector(boundingBox.getValue0());
-		Vector RFD = new Vector(boundingBox.getValue1());
-
-		// Pre-calculated bbox positions
-		Vector lateralEsq = new Vector(LBU.x, LBU.y * 0.5 + RFD.y * 0.5, LBU.z * 0.5 + RFD.z * 0.5);
-		Vector latFrontEsq = new Vector(LBU.x, RFD.y * 0.5, LBU.z * 0.5 + RFD.z * 0.5);
-		Vector frontalEsq = new Vector(LBU.x, RFD.y, LBU.z * 0.5 + RFD.z * 0.5);
-		Vector frontalEsq2 = new Vector(LBU.x * 0.5, RFD.y, LBU.z * 0.5 + RFD.z * 0.5);
-		Vector frontal = new Vector(LBU.x * 0.5 + RFD.x * 0.5, RFD.y, LBU.z * 0.5 + RFD.z * 0.5);
-		Vector frontalDir2 = new Vector(RFD.x * 0.5, RFD.y, LBU.z * 0.5 + RFD.z * 0.5);
-		Vector frontalDir = new Vector(RFD.x, RFD.y, LBU.z * 0.5 + RFD.z * 0.5);
-		Vector latFrontDir = new Vector(RFD.x, RFD.y * 0.5, LBU.z * 0.5 + RFD.z * 0.5);
-		Vector lateralDir = new Vector(RFD.x, LBU.y * 0.5 + RFD.y * 0.5, LBU.z * 0.5 + RFD.z * 0.5);
-
-		// Pre-calculated bbox directions
-		Vector lateralEsqAngulo = new Vector(-Math.sin(Math.toRadians(90)), Math.cos(Math.toRadians(90)), 0.0);
-		Vector latFrontEsqAngulo = new Vector(-Math.sin(Math.toRadians(67.5)), Math.cos(Math.toRadians(67.5)), 0.0);
-		Vector frontalEsqAngulo = new Vector(-Math.sin(Math.toRadians(45)), Math.cos(Math.toRadians(45)), 0.0);
-		Vector frontalEsqAngulo2 = new Vector(-Math.sin(Math.toRadians(22.5)), Math.cos(Math.toRadians(22.5)), 0.0);
-		Vector frontalAngulo = new Vector(0.0, 1.0, 0.0);
-		Vector frontalDirAngulo2 = new Vector(Math.sin(Math.toRadians(22.5)), Math.cos(Math.toRadians(22.5)), 0.0);
-		Vector frontalDirAngulo = new Vector(Math.sin(Math.toRadians(45)), Math.cos(Math.toRadians(45)), 0.0);
-		Vector latFrontDirAngulo = new Vector(Math.sin(Math.toRadians(67.5)), Math.cos(Math.toRadians(67.5)), 0.0);
-		Vector lateralDirAngulo = new Vector(Math.sin(Math.toRadians(90)), Math.cos(Math.toRadians(90)), 0.0);
-
-		// Raytracing distance from points:
-		Vector lateralEsqRay = calculateRaycastDirection(lateralEsq, lateralEsqAngulo, 20);
-		Vector latFrontEsqRay = calculateRaycastDirection(latFrontEsq, latFrontEsqAngulo, 22);
-		Vector frontalEsqRay = calculateRaycastDirection(frontalEsq, frontalEsqAngulo, 24);
-		Vector frontalEsqRay2 = calculateRaycastDirection(frontalEsq2, frontalEsqAngulo2, 26);
-		Vector frontalRay = calculateRaycastDirection(frontal, frontalAngulo, 30);
-		Vector frontalDirRay2 = calculateRaycastDirection(frontalDir2, frontalDirAngulo2, 26);
-		Vector frontalDirRay = calculateRaycastDirection(frontalDir, frontalDirAngulo, 24);
-		Vector latFrontDirRay = calculateRaycastDirection(latFrontDir, latFrontDirAngulo, 22);
-		Vector lateralDirRay = calculateRaycastDirection(lateralDir, lateralDirAngulo, 20);
-
-		Drawing.Line line0 = radarLines.get(0);
-		line0.setStart(posRoverToSurf(lateralEsq).toTriplet());
-		line0.setEnd(posRoverToSurf(lateralEsqRay).toTriplet());
-		Drawing.Line line1 = radarLines.get(1);
-		line1.setStart(posRoverToSurf(latFrontEsq).toTriplet());
-		line1.setEnd(posRoverToSurf(latFrontEsqRay).toTriplet());
-		Drawing.Line line2 = radarLines.get(2);
-		line2.setStart(posRoverToSurf(frontalEsq).toTriplet());
-		line2.setEnd(posRoverToSurf(frontalEsqRay).toTriplet());
-		Drawing.Line line3 = radarLines.get(3);
-		line3.setStart(posRoverToSurf(frontalEsq2).toTriplet());
-		line3.setEnd(posRoverToSurf(frontalEsqRay2).toTriplet());
-		Drawing.Line line4 = radarLines.get(4);
-		line4.setStart(posRoverToSurf(frontal).toTriplet());
-		line4.setEnd(posRoverToSurf(frontalRay).toTriplet());
-		Drawing.Line line5 = radarLines.get(5);
-		line5.setStart(posRoverToSurf(frontalDir2).toTriplet());
-		line5.setEnd(posRoverToSurf(frontalDirRay2).toTriplet());
-		Drawing.Line line6 = radarLines.get(6);
-		line6.setStart(posRoverToSurf(frontalDir).toTriplet());
-		line6.setEnd(posRoverToSurf(frontalDirRay).toTriplet());
-		Drawing.Line line7 = radarLines.get(7);
-		line7.setStart(posRoverToSurf(latFrontDir).toTriplet());
-		line7.setEnd(posRoverToSurf(latFrontDirRay).toTriplet());
-		Drawing.Line line8 = radarLines.get(8);
-		line8.setStart(posRoverToSurf(lateralDir).toTriplet());
-		line8.setEnd(posRoverToSurf(lateralDirRay).toTriplet());
-
-
-		Vector calculatedDirection = new Vector().sum(lateralEsqRay)
-		                                         .sum(latFrontEsqRay)
-		                                         .sum(frontalEsqRay)
-		                                         .sum(frontalEsqRay2)
-		                                         .sum(frontalRay)
-		                                         .sum(frontalDirRay2)
-		                                         .sum(frontalDirRay)
-		                                         .sum(latFrontDirRay)
-		                                         .sum(lateralDirRay);
-
-		steeringLine.setReferenceFrame(pontoRefSuperficie);
-		steeringLine.setStart(posRoverToSurf(frontal).toTriplet());
-		steeringLine.setEnd(
-				posRoverToSurf(frontal).sum(transformDirection(calculatedDirection.normalize()).multiply(10))
-				                       .toTriplet());
-		return (calculatedDirection.normalize());
+	/**
+	 * Faz a varredura do radar em uma só requisição: o raio à frente do rover, os raios do leque do {@link RoverRadar}
+	 * que precisam ser lançados neste ciclo e a caixa atualizada, usada na próxima varredura.
+	 *
+	 * @return A distância até o obstáculo à frente, até {@link #forwardRadarDistance()}
+	 */
+	private double sweepRadar(Vector radarSourcePosition) throws RPCException, StreamException {
+		int rays = radar.prepare(velHorizontal.get());
+		addRaycast(radarSourcePosition, transformDirection(roverDirection));
+		for (int i = 0; i < rays; i++) {
+			if (radar.needsCast(i)) {
+				addRaycast(posRoverToSurf(radar.getOrigin(i)), transformDirection(radar.getDirection(i)));
+			}
+		}
+		int boundingBox = radarSweep.add(naveAtual, "boundingBox", pontoRefRover);
+		List<ByteString> values = radarSweep.execute();
+		int value = 1;
+		for (int i = 0; i < rays; i++) {
+			if (radar.needsCast(i)) {
+				radar.setHit(i, RpcBatch.decodeDouble(values.get(value++)));
+			}
+		}
+		Vector[] corners = RpcBatch.decodeVectors(values.get(boundingBox));
+		radar.setBoundingBox(corners[0], corners[1]);
+		return Math.min(RpcBatch.decodeDouble(values.get(0)), forwardRadarDistance());
 	}
 
-	private Vector calculateRaycastDirection(Vector point, Vector direction, double distance) throws RPCException {
-		double raycast =
-				pathFinding.raycastDistance(posRoverToSurf(point), transformDirection(direction), pontoRefSuperficie,
-				                            distance
-				                           );
-		return direction.multiply(raycast);
+	/**
+	 * @return O alcance do raio à frente do rover neste ciclo (m): {@value #FORWARD_RADAR_DISTANCE} m devagar, e o
+	 * alcance do raio da frente do radar quando ele for maior.
+	 */
+	private double forwardRadarDistance() {
+		return Math.max(FORWARD_RADAR_DISTANCE, radar.getFrontLength());
+	}
+
+	private void addRaycast(Vector position, Vector direction) throws RPCException {
+		radarSweep.add(SpaceCenter.class, "raycastDistance", position.toTriplet(), direction.toTriplet(),
+		               pontoRefSuperficie
+		              );
+	}
+
+	private void setBoundingBox(Pair<Triplet<Double, Double, Double>, Triplet<Double, Double, Double>> boundingBox) {
+		radar.setBoundingBox(new Vector(boundingBox.getValue0()), new Vector(boundingBox.getValue1()));
+	}
+
+	/**
+	 * Soma os raios da última varredura em uma direção de desvio. As linhas de desenho vão no lote de comandos do
+	 * passo, junto com os controles; as que sobram quando o leque tem menos raios ficam escondidas.
+	 */
+	private Vector directionFromRadar() throws RPCException {
+		int rays = radar.getRayCount();
+		for (int i = 0; i < rays; i++) {
+			Drawing.Line line = radarLines.get(i);
+			Vector origin = radar.getOrigin(i);
+			sendControl(line, "setStart", posRoverToSurf(origin).toTriplet());
+			sendControl(line, "setEnd", posRoverToSurf(origin.sumInto(radar.getHit(i), radarEnd)).toTriplet());
+		}
+		for (int i = Math.min(rays, visibleRadarLines); i < Math.max(rays, visibleRadarLines); i++) {
+			sendControl(radarLines.get(i), "setVisible", i < rays);
+		}
+		visibleRadarLines = rays;
+		radar.direction(radarDirection);
+
+		Vector frontal = posRoverToSurf(radar.getOrigin(rays / 2));
+		sendControl(steeringLine, "setStart", frontal.toTriplet());
+		Vector steering = transformDirection(radarDirection);
+		sendControl(steeringLine, "setEnd", steering.multiplyInto(10, steering).sumInto(frontal, steering).toTriplet());
+		return radarDirection;
 	}
 
 	private Vector createRadarDirection(double angle) {
@@ -355,33 +406,33 @@ public class RoverController extends ActiveVessel implements Runnable {
 		return new Vector(Math.sin(Math.toRadians(angle)) * sign, Math.cos(Math.toRadians(angle)), 0.0);
 	}
 
-	private Vector transformDirection(Vector vector) throws RPCException {
-		return new Vector(centroEspacial.transformDirection(vector.toTriplet(), pontoRefRover, pontoRefSuperficie));
+	private Vector transformDirection(Vector vector) {
+		return frames.vesselToSurface(vector);
 	}
 
-	private Vector posSurfToRover(Vector vector) throws RPCException {
-		return new Vector(centroEspacial.transformPosition(vector.toTriplet(), pontoRefSuperficie, pontoRefRover));
+	private Vector posSurfToRover(Vector vector) {
+		return frames.surfaceToVessel(vector);
 	}
 
-	private Vector posRoverToSurf(Vector vector) throws RPCException {
-		return new Vector(centroEspacial.transformPosition(vector.toTriplet(), pontoRefRover, pontoRefSuperficie));
+	private Vector posRoverToSurf(Vector vector) {
+		return frames.vesselToSurface(vector);
 	}
 
-	private Vector posOrbToSurf(Vector vector) throws RPCException {
-		return new Vector(centroEspacial.transformPosition(vector.toTriplet(), pontoRefOrbital, pontoRefSuperficie));
+	private Vector posOrbToSurf(Vector vector) {
+		return frames.bodyToSurfacePosition(vector);
 	}
 
 	private void setRoverThrottle(double throttle) throws RPCException, StreamException {
 		if (velHorizontal.get() < (maxSpeed * 1.01)) {
-			naveAtual.getControl().setBrakes(false);
-			naveAtual.getControl().setWheelThrottle((float) throttle);
+			sendControl(controle, "setBrakes", false);
+			sendControl(controle, "setWheelThrottle", (float) throttle);
 		} else {
-			naveAtual.getControl().setBrakes(true);
+			sendControl(controle, "setBrakes", true);
 		}
 	}
 
 	private void setRoverSteering(double steering) throws RPCException {
-		naveAtual.getControl().setWheelSteering((float) steering);
+		sendControl(controle, "setWheelSteering", (float) steering);
 	}
 
 	private void drawLineBetweenPoints(Vector pointA, Vector pointB) throws RPCException {
@@ -2,21 +2,33 @@ package com.pesterenan.model;
 
 import com.pesterenan.MechPeste;
 import com.pesterenan.resources.Bundle;
+import com.pesterenan.utils.ConstantsCache;
+import com.pesterenan.utils.ConstantsCache.VesselConstants;
+import com.pesterenan.utils.ControlLoop;
+import com.pesterenan.utils.FlightRecorder;
+import com.pesterenan.utils.FlightRecorder.Channel;
+import com.pesterenan.utils.MissionClock;
+import com.pesterenan.utils.RpcBatch;
+import com.pesterenan.utils.StreamRegistry;
 import com.pesterenan.utils.Vector;
 import com.pesterenan.views.StatusJPanel;
 import krpc.client.Connection;
 import krpc.client.RPCException;
+import krpc.client.RemoteObject;
 import krpc.client.Stream;
 import krpc.client.StreamException;
 import krpc.client.services.KRPC.GameScene;
 import krpc.client.services.SpaceCenter;
 import krpc.client.services.SpaceCenter.AutoPilot;
 import krpc.client.services.SpaceCenter.CelestialBody;
+import krpc.client.services.SpaceCenter.Control;
 import krpc.client.services.SpaceCenter.Flight;
 import krpc.client.services.SpaceCenter.ReferenceFrame;
 import krpc.client.services.SpaceCenter.Vessel;
 import krpc.client.services.SpaceCenter.VesselSituation;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static com.pesterenan.views.StatusJPanel.isBtnConnectVisible;
@@ -25,11 +37,15 @@ import static com.pesterenan.views.StatusJPanel.setStatus;
 public class ActiveVessel {
 
 	protected final static float CONST_GRAV = 9.81f;
+	// A massa só muda com o consumo de combustível e a troca de estágios
+	private static final float MASS_STREAM_RATE = 10;
+	private static final ThreadLocal<RpcBatch> tickCommands = new ThreadLocal<>();
 
 	protected static SpaceCenter centroEspacial;
 	private static Connection conexao;
 	protected Vessel naveAtual;
 	protected AutoPilot ap;
+	protected Control controle;
 	protected Flight parametrosDeVoo;
 	protected ReferenceFrame pontoRefOrbital, pontoRefSuperficie;
 	protected Stream<Float> massaTotal;
@@ -38,7 +54,9 @@ public class ActiveVessel {
 
 	protected Map<String, String> commands;
 	protected Stream<Double> altitude, altitudeSup, apoastro, periastro, velVertical, tempoMissao, velHorizontal;
-
+	private final List<Stream<?>> openStreams = new ArrayList<>();
+	// Taxa pedida para cada stream de openStreams, na mesma posição
+	private final List<Float> openStreamRates = new ArrayList<>();
 
 	public ActiveVessel(Connection con) {
 		setConexao(con);
@@ -57,17 +75,79 @@ public class ActiveVessel {
 		try {
 			centroEspacial = SpaceCenter.newInstance(getConexao());
 			naveAtual = centroEspacial.getActiveVessel();
-			ap = naveAtual.getAutoPilot();
+			VesselConstants vessel = constants().vessel(naveAtual);
+			ap = vessel.getAutoPilot();
+			controle = vessel.getControl();
 			currentBody = naveAtual.getOrbit().getBody();
-			pontoRefOrbital = currentBody.getReferenceFrame();
-			pontoRefSuperficie = naveAtual.getSurfaceReferenceFrame();
-			parametrosDeVoo = naveAtual.flight(pontoRefOrbital);
-			massaTotal = getConexao().addStream(naveAtual, "getMass");
+			pontoRefOrbital = constants().body(currentBody).getReferenceFrame();
+			pontoRefSuperficie = vessel.getSurfaceReferenceFrame();
+			parametrosDeVoo = vessel.flight(pontoRefOrbital);
+			massaTotal = addStream(MASS_STREAM_RATE, naveAtual, "getMass");
 		} catch (RPCException | StreamException e) {
 			checarConexao();
 		}
 	}
 
+	/**
+	 * @return O cache de constantes dos corpos celestes e das naves da conexão atual.
+	 */
+	protected static ConstantsCache constants() {
+		return ConstantsCache.of(getConexao());
+	}
+
+	/**
+	 * Obtém um stream compartilhado do registro da conexão. Streams idênticos abertos por outros controladores são
+	 * reaproveitados, e todos os obtidos por esta instância são liberados em {@link #releaseStreams()}.
+	 */
+	protected <T> Stream<T> addStream(RemoteObject target, String method, Object... args)
+			throws StreamException, RPCException {
+		return addStream(StreamRegistry.UNLIMITED, target, method, args);
+	}
+
+	/**
+	 * Obtém um stream compartilhado, pedindo ao servidor apenas as atualizações por segundo de que o controlador
+	 * precisa. Se outro controlador usar o mesmo stream com uma taxa maior, vale a maior.
+	 *
+	 * @param rate - Atualizações por segundo, ou {@link StreamRegistry#UNLIMITED} para todo quadro da física
+	 */
+	protected <T> Stream<T> addStream(float rate, RemoteObject target, String method, Object... args)
+			throws StreamException, RPCException {
+		Stream<T> stream = StreamRegistry.of(getConexao()).acquire(rate, target, method, args);
+		synchronized (openStreams) {
+			openStreams.add(stream);
+			openStreamRates.add(rate);
+		}
+		return stream;
+	}
+
+	/**
+	 * Libera um stream obtido por {@link #addStream(RemoteObject, String, Object...)} antes do fim do controlador.
+	 */
+	protected void releaseStream(Stream<?> stream) {
+		synchronized (openStreams) {
+			int index = openStreams.indexOf(stream);
+			if (index >= 0) {
+				openStreams.remove(index);
+				StreamRegistry.of(getConexao()).release(stream, openStreamRates.remove(index));
+			}
+		}
+	}
+
+	/**
+	 * Libera todos os streams obtidos por esta instância. Os streams só são removidos do servidor quando nenhum
+	 * outro controlador estiver usando.
+	 */
+	public void releaseStreams() {
+		StreamRegistry registry = StreamRegistry.of(getConexao());
+		synchronized (openStreams) {
+			for (int i = 0; i < openStreams.size(); i++) {
+				registry.release(openStreams.get(i), openStreamRates.get(i));
+			}
+			openStreams.clear();
+			openStreamRates.clear();
+		}
+	}
+
 	protected void checarConexao() {
 		try {
 			if (MechPeste.getCurrentGameScene().equals(GameScene.FLIGHT)) {
@@ -83,8 +163,86 @@ public class ActiveVessel {
 		}
 	}
 
+	/**
+	 * Executa o passo do controlador em um {@link ControlLoop} de período fixo. Os comandos enviados com
+	 * {@link #sendControl(RemoteObject, String, Object...)} durante cada passo são acumulados e enviados juntos em
+	 * uma única requisição ao fim do passo.
+	 */
+	protected void runControlLoop(String name, long periodMillis, ControlLoop.Step step)
+			throws RPCException, StreamException, InterruptedException {
+		ControlLoop.every(name, periodMillis).run(() -> {
+			RpcBatch commands = new RpcBatch(getConexao());
+			tickCommands.set(commands);
+			try {
+				boolean keepRunning = step.tick();
+				commands.execute();
+				recordSample();
+				return keepRunning;
+			} finally {
+				tickCommands.remove();
+			}
+		});
+	}
+
+	/**
+	 * Envia um comando de controle (ex: aceleração, freios, direção). Dentro de um passo de
+	 * {@link #runControlLoop(String, long, ControlLoop.Step)} o comando é acumulado para o envio em lote, fora dele
+	 * é enviado imediatamente.
+	 *
+	 * @param target - Objeto remoto que recebe o comando (ex: Control, AutoPilot)
+	 * @param method - Nome do método (ex: "setThrottle")
+	 * @param args   - Argumentos com os mesmos tipos da assinatura do método
+	 */
+	protected static void sendControl(RemoteObject target, String method, Object... args) throws RPCException {
+		if (args.length == 1 && args[0] instanceof Number) {
+			Channel channel = Channel.forControl(method);
+			if (channel != null) {
+				record(channel, ((Number) args[0]).doubleValue());
+			}
+		}
+		RpcBatch commands = tickCommands.get();
+		if (commands != null) {
+			commands.add(target, method, args);
+			return;
+		}
+		RpcBatch single = new RpcBatch(getConexao());
+		single.add(target, method, args);
+		single.execute();
+	}
+
+	/**
+	 * Envia imediatamente os comandos acumulados no passo atual, para quando o passo precisa ler um valor que
+	 * depende deles.
+	 */
+	protected static void flushControls() throws RPCException {
+		RpcBatch commands = tickCommands.get();
+		if (commands != null) {
+			commands.execute();
+		}
+	}
+
+	/**
+	 * Atualiza um canal do gravador de voo, se houver um gravando.
+	 */
+	protected static void record(Channel channel, double value) {
+		FlightRecorder recorder = MechPeste.getFlightRecorder();
+		if (recorder != null) {
+			recorder.set(channel, value);
+		}
+	}
+
+	/**
+	 * Grava um registro com os valores atuais dos canais, se houver um gravador de voo gravando.
+	 */
+	protected static void recordSample() {
+		FlightRecorder recorder = MechPeste.getFlightRecorder();
+		if (recorder != null) {
+			recorder.sample();
+		}
+	}
+
 	protected void throttle(float acel) throws RPCException {
-		naveAtual.getControl().setThrottle(acel);
+		sendControl(controle, "setThrottle", acel);
 	}
 
 	protected void throttle(double acel) throws RPCException {
@@ -104,7 +262,7 @@ public class ActiveVessel {
 			if (naveAtual.getSituation().equals(VesselSituation.PRE_LAUNCH)) {
 				for (float count = 5f; count >= 0; count -= 0.1) {
 					StatusJPanel.setStatus(String.format(Bundle.getString("status_launching_in"), count));
-					Thread.sleep(100);
+					MissionClock.sleep(100);
 				}
 				naveAtual.getControl().activateNextStage();
 			}
@@ -113,6 +271,15 @@ public class ActiveVessel {
 		}
 	}
 
+	/**
+	 * Libera tudo o que o controlador abriu no servidor (streams, desenhos). Chamado pelo
+	 * {@link com.pesterenan.utils.ModuleExecutor} quando o módulo termina ou é cancelado, e pode ser chamado mais de
+	 * uma vez.
+	 */
+	public void cleanup() {
+		releaseStreams();
+	}
+
 	protected double getTWR() throws RPCException, StreamException {
 		return naveAtual.getAvailableThrust() / ((massaTotal.get() * gravityAcel));
 	}
@@ -127,7 +294,7 @@ public class ActiveVessel {
 			ap.setReferenceFrame(pontoRefSuperficie);
 			ap.disengage();
 			throttle(0);
-			Thread.sleep(3000);
+			MissionClock.sleep(3000);
 			StatusJPanel.setStatus(Bundle.getString("status_ready"));
 		} catch (Exception ignored) {
 		}
@@ -0,0 +1,51 @@
+package com.pesterenan.model;
+
+/**
+ * Valores de telemetria lidos em um mesmo instante, publicados de uma vez para a interface.
+ * <p>
+ * Imutável, para poder ser criado pela thread de telemetria e lido pela thread da interface sem sincronização.
+ */
+public final class TelemetrySnapshot {
+
+	private final double altitude, surfaceAltitude, apoapsis, periapsis;
+	private final double verticalSpeed, horizontalSpeed, missionTime;
+
+	public TelemetrySnapshot(double altitude, double surfaceAltitude, double apoapsis, double periapsis,
+	                         double verticalSpeed, double horizontalSpeed, double missionTime) {
+		this.altitude = altitude;
+		this.surfaceAltitude = surfaceAltitude;
+		this.apoapsis = apoapsis;
+		this.periapsis = periapsis;
+		this.verticalSpeed = verticalSpeed;
+		this.horizontalSpeed = horizontalSpeed;
+		this.missionTime = missionTime;
+	}
+
+	public double getAltitude() {
+		return altitude;
+	}
+
+	public double getSurfaceAltitude() {
+		return surfaceAltitude;
+	}
+
+	public double getApoapsis() {
+		return apoapsis;
+	}
+
+	public double getPeriapsis() {
+		return periapsis;
+	}
+
+	public double getVerticalSpeed() {
+		return verticalSpeed;
+	}
+
+	public double getHorizontalSpeed() {
+		return horizontalSpeed;
+	}
+
+	public double getMissionTime() {
+		return missionTime;
+	}
+}
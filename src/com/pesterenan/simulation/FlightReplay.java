@@ -0,0 +1,443 @@
+package com.pesterenan.simulation;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.pesterenan.controllers.LandingController;
+import com.pesterenan.controllers.LiftoffController;
+import com.pesterenan.controllers.ManeuverController;
+import com.pesterenan.model.ActiveVessel;
+import com.pesterenan.utils.ConstantsCache;
+import com.pesterenan.utils.ControlLoop;
+import com.pesterenan.utils.FlightCapture;
+import com.pesterenan.utils.MissionClock;
+import com.pesterenan.utils.Modulos;
+import com.pesterenan.utils.StreamRegistry;
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.Stream;
+import krpc.client.StreamException;
+import krpc.client.services.KRPC;
+import krpc.schema.KRPC.Argument;
+import krpc.schema.KRPC.ProcedureCall;
+import krpc.schema.KRPC.ProcedureResult;
+import krpc.schema.KRPC.Request;
+import krpc.schema.KRPC.Response;
+import krpc.schema.KRPC.StreamResult;
+import krpc.schema.KRPC.StreamUpdate;
+import krpc.schema.KRPC.Type;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Reproduz voos capturados pelo {@link com.pesterenan.utils.RpcMonitor} através dos controladores de pouso,
+ * decolagem e manobras, sem o jogo e muito mais rápido que o tempo real.
+ * <p>
+ * Cada leitura que o controlador faz (chamada ou stream) é respondida com o valor que o jogo deu para a mesma chamada
+ * no voo gravado, no instante mais recente que não passa do tempo atual da reprodução. O tempo é o do
+ * {@link MissionClock} virtual, que só anda quando o controlador espera, então o resultado é sempre o mesmo para a
+ * mesma captura e o mesmo código. Os comandos que o controlador envia são comparados com os do voo gravado.
+ * <p>
+ * A reprodução é em malha aberta: a nave gravada não reage aos comandos da reprodução. Ela mostra como um controlador
+ * alterado responderia à mesma sequência de estados, o que serve para comparar ajustes (ex: os ganhos do pouso com
+ * {@code --set "Vel P=0.03"}), mas não simula o voo que esses comandos produziriam.
+ * <p>
+ * Uso: {@code FlightReplay [--module=landing|liftoff|maneuver] [--set chave=valor]... arquivos ou pastas...}. O
+ * módulo e os comandos vêm da marca de início de módulo da captura; {@code --module} os define para capturas sem a
+ * marca e {@code --set} substitui comandos específicos.
+ */
+public class FlightReplay {
+
+	private static final Set<String> BLOCKING_PROCEDURES =
+			new HashSet<>(Arrays.asList("AutoPilot_Wait", "WarpTo"));
+	private static final long SYNC_TIMEOUT_NANOS = 10_000_000_000L;
+	private static final long SAFETY_TIMEOUT_MILLIS = 120_000;
+
+	private final Map<ByteString, Timeline> reads = new HashMap<>();
+	private final Map<ByteString, Timeline> commandsSent = new HashMap<>();
+	private final Map<String, CommandDifference> differences = new TreeMap<>();
+	private final Map<String, Long> unmatched = new TreeMap<>();
+	private final AtomicLong served = new AtomicLong();
+	private final long startMillis, offsetNanos, endNanos;
+	private final Map<String, String> moduleCommands;
+
+	private FlightReplay(FlightCapture.Recording recording) throws IOException {
+		Map<Long, ByteString> streamCalls = new HashMap<>();
+		long offset = -1, end = 0;
+		Map<String, String> module = null;
+		for (FlightCapture.Entry entry : recording.getEntries()) {
+			end = Math.max(end, entry.getEndNanos());
+			switch (entry.getKind()) {
+				case CALL:
+					addCall(entry, streamCalls);
+					break;
+				case STREAM_UPDATE:
+					for (StreamResult result : StreamUpdate.parseFrom(entry.getMessage()).getResultsList()) {
+						ByteString call = streamCalls.get(result.getId());
+						if (call != null) {
+							timeline(reads, call).add(entry.getNanos(), entry.getNanos(), result.getResult());
+						}
+					}
+					break;
+				case MARK:
+					Map<String, String> commands = FlightCapture.parseModuleMark(entry.getText());
+					if (commands != null && offset < 0) {
+						offset = entry.getNanos();
+						module = commands;
+					}
+					break;
+			}
+		}
+		reads.values().forEach(Timeline::sort);
+		commandsSent.values().forEach(Timeline::sort);
+		startMillis = recording.getStartMillis();
+		offsetNanos = Math.max(0, offset);
+		endNanos = end - offsetNanos;
+		moduleCommands = module;
+	}
+
+	private void addCall(FlightCapture.Entry entry, Map<Long, ByteString> streamCalls) throws IOException {
+		Request request = Request.parseFrom(entry.getMessage());
+		Response response = Response.parseFrom(entry.getReply());
+		for (int i = 0; i < Math.min(request.getCallsCount(), response.getResultsCount()); i++) {
+			ProcedureCall call = request.getCalls(i);
+			ProcedureResult result = response.getResults(i);
+			if ("KRPC".equals(call.getService())) {
+				if ("AddStream".equals(call.getProcedure()) && call.getArgumentsCount() > 0 && !result.hasError()) {
+					long id = krpc.schema.KRPC.Stream.parseFrom(result.getValue()).getId();
+					streamCalls.put(id, call.getArguments(0).getValue());
+				}
+			} else if (isSetter(call)) {
+				timeline(commandsSent, commandKey(call)).add(entry.getNanos(), entry.getEndNanos(),
+				                                             lastArgument(call));
+			} else {
+				timeline(reads, call.toByteString()).add(entry.getNanos(), entry.getEndNanos(), result);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String module = null;
+		Map<String, String> overrides = new LinkedHashMap<>();
+		List<Path> files = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].startsWith("--module=")) {
+				module = args[i].substring(args[i].indexOf('=') + 1);
+			} else if (args[i].equals("--set") && i + 1 < args.length) {
+				String setting = args[++i];
+				overrides.put(setting.substring(0, setting.indexOf('=')), setting.substring(setting.indexOf('=') + 1));
+			} else {
+				Path path = Paths.get(args[i]);
+				if (Files.isDirectory(path)) {
+					try (java.util.stream.Stream<Path> children = Files.list(path)) {
+						files.addAll(children.filter(child -> child.toString().endsWith(".mpcap"))
+						                     .sorted()
+						                     .collect(Collectors.toList()));
+					}
+				} else {
+					files.add(path);
+				}
+			}
+		}
+		if (files.isEmpty()) {
+			System.err.println(
+					"Uso: FlightReplay [--module=landing|liftoff|maneuver] [--set chave=valor]... arquivos...");
+			System.exit(2);
+		}
+		boolean failed = false;
+		for (Path file : files) {
+			try {
+				FlightReplay replay = new FlightReplay(FlightCapture.read(file));
+				Map<String, String> commands = replay.moduleCommands;
+				if (module != null || commands == null) {
+					commands = MockFlightHarness.commandsFor(module == null ? "landing" : module);
+				}
+				if (commands == null) {
+					System.err.println("Módulo desconhecido: " + module);
+					System.exit(2);
+				}
+				commands = new HashMap<>(commands);
+				commands.putAll(overrides);
+				replay.run(file, commands);
+			} catch (IOException | RuntimeException e) {
+				System.out.println("== " + file + ": falhou: " + e);
+				failed = true;
+			}
+		}
+		System.exit(failed ? 1 : 0);
+	}
+
+	private void run(Path file, Map<String, String> commands) throws IOException, InterruptedException {
+		try (MockKrpcServer server = new MockKrpcServer()) {
+			server.setLatencyMillis(0);
+			server.setTickMillis(0);
+			server.setResponder(this::answer);
+			server.start(0, 0);
+			Connection connection = Connection.newInstance("MechPeste - Replay", "127.0.0.1", server.getRpcPort(),
+			                                               server.getStreamPort()
+			                                              );
+			try {
+				Stream<krpc.schema.KRPC.Status> sentinel = connection.addStream(KRPC.class, "getStatus");
+				sentinel.get();
+				ControlLoop.resetStatistics();
+				MissionClock.useVirtualTime(startMillis + offsetNanos / 1_000_000, nanos -> {
+					synchronize(server, sentinel);
+					if (nanos > endNanos) {
+						throw new InterruptedException();
+					}
+				});
+				new ActiveVessel(connection);
+				Runnable controller = controllerFor(commands);
+				long start = System.nanoTime();
+				Thread thread = new Thread(() -> {
+					try {
+						controller.run();
+					} catch (RuntimeException e) {
+						System.err.println("Controlador encerrado com erro: " + e);
+					}
+				}, "MechPeste-Replay");
+				thread.start();
+				thread.join(SAFETY_TIMEOUT_MILLIS);
+				if (thread.isAlive()) {
+					thread.interrupt();
+					thread.join(10000);
+				}
+				report(file, commands, MissionClock.nanoTime() / 1e9, (System.nanoTime() - start) / 1e9);
+			} catch (RPCException | StreamException e) {
+				throw new IOException(e);
+			} finally {
+				MissionClock.useRealTime();
+				StreamRegistry.discard(connection);
+				ConstantsCache.discard(connection);
+				connection.close();
+			}
+		}
+	}
+
+	private static Runnable controllerFor(Map<String, String> commands) {
+		String module = commands.get(Modulos.MODULO.get());
+		if (module.equals(Modulos.MODULO_DECOLAGEM.get())) {
+			return new LiftoffController(commands);
+		}
+		if (module.equals(Modulos.MODULO_POUSO.get()) || module.equals(Modulos.MODULO_POUSO_SOBREVOAR.get())) {
+			return new LandingController(commands);
+		}
+		if (module.equals(Modulos.MODULO_MANOBRAS.get())) {
+			return new ManeuverController(commands);
+		}
+		throw new IllegalArgumentException("Módulo sem reprodução: " + module);
+	}
+
+	/**
+	 * Envia os streams com os valores do instante atual e espera o cliente recebê-los, para que o controlador não
+	 * leia valores de antes do avanço do relógio.
+	 */
+	private static void synchronize(MockKrpcServer server, Stream<krpc.schema.KRPC.Status> sentinel)
+			throws InterruptedException {
+		long publish = server.publishStreams();
+		long deadline = System.nanoTime() + SYNC_TIMEOUT_NANOS;
+		try {
+			synchronized (sentinel.getCondition()) {
+				while (sentinel.get().getStreamRpcsExecuted() < publish) {
+					if (System.nanoTime() > deadline) {
+						throw new IllegalStateException("Streams não sincronizados na reprodução");
+					}
+					sentinel.waitForUpdateWithTimeout(0.5);
+				}
+			}
+		} catch (RPCException | StreamException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ProcedureResult answer(ProcedureCall call) {
+		long now = MissionClock.nanoTime() + offsetNanos;
+		if (isSetter(call)) {
+			compare(call, now);
+			return ProcedureResult.getDefaultInstance();
+		}
+		Timeline timeline = reads.get(call.toByteString());
+		if (timeline == null) {
+			unmatched.merge(call.getService() + "." + call.getProcedure(), 1L, Long::sum);
+			return null;
+		}
+		served.incrementAndGet();
+		int index = timeline.indexAt(now);
+		if (BLOCKING_PROCEDURES.contains(call.getProcedure())) {
+			try {
+				MissionClock.advance(timeline.durations.get(index));
+			} catch (InterruptedException ignored) {
+				// O fim da captura é tratado no próximo avanço feito pelo controlador
+			}
+		}
+		return (ProcedureResult) timeline.values.get(index);
+	}
+
+	private void compare(ProcedureCall call, long now) {
+		Timeline recorded = commandsSent.get(commandKey(call));
+		CommandDifference difference =
+				differences.computeIfAbsent(call.getService() + "." + call.getProcedure(), name -> new CommandDifference());
+		difference.sent++;
+		Double replayed = decode(call, lastArgument(call));
+		if (recorded == null || replayed == null) {
+			return;
+		}
+		Double original = decode(call, (ByteString) recorded.values.get(recorded.indexAt(now)));
+		if (original != null) {
+			double delta = Math.abs(replayed - original);
+			difference.compared++;
+			difference.sum += delta;
+			difference.max = Math.max(difference.max, delta);
+		}
+	}
+
+	private void report(Path file, Map<String, String> commands, double virtualSeconds, double realSeconds) {
+		System.out.println(String.format("== %s: %s, %.1f s de voo em %.2f s (%.0fx)", file.getFileName(),
+		                                 commands.get(Modulos.MODULO.get()), virtualSeconds, realSeconds,
+		                                 virtualSeconds / Math.max(realSeconds, 1e-9)
+		                                ));
+		for (ControlLoop.Statistics loop : ControlLoop.getStatistics().values()) {
+			System.out.println(String.format("   Laço %-10s %6d passos", loop.getName(), loop.getTicks()));
+		}
+		long missing = unmatched.values().stream().mapToLong(Long::longValue).sum();
+		System.out.println(String.format("   Leituras da captura: %d, sem correspondência: %d", served.get(), missing));
+		if (!unmatched.isEmpty()) {
+			System.out.println("   Sem correspondência: " + unmatched);
+		}
+		differences.forEach((procedure, difference) -> System.out.println(
+				String.format("   Comando %-32s %6d enviados, %6d comparados, diferença média %.4f, máxima %.4f",
+				              procedure, difference.sent, difference.compared,
+				              difference.compared == 0 ? 0 : difference.sum / difference.compared, difference.max
+				             )));
+	}
+
+	private static boolean isSetter(ProcedureCall call) {
+		return call.getProcedure().contains("_set_");
+	}
+
+	/**
+	 * @return A chamada sem o valor atribuído, para associar o mesmo comando entre a captura e a reprodução.
+	 */
+	private static ByteString commandKey(ProcedureCall call) {
+		ProcedureCall.Builder key = call.toBuilder().clearArguments();
+		if (call.getArgumentsCount() > 1) {
+			key.addArguments(call.getArguments(0));
+		}
+		return key.build().toByteString();
+	}
+
+	private static ByteString lastArgument(ProcedureCall call) {
+		Argument last = null;
+		for (Argument argument : call.getArgumentsList()) {
+			if (last == null || argument.getPosition() > last.getPosition()) {
+				last = argument;
+			}
+		}
+		return last == null ? ByteString.EMPTY : last.getValue();
+	}
+
+	/**
+	 * @return O valor numérico atribuído pelo comando, ou {@code null} se ele não for numérico.
+	 */
+	private static Double decode(ProcedureCall call, ByteString value) {
+		List<Type> parameters = KrpcValues.parameterTypes(call.getService(), call.getProcedure());
+		if (parameters.isEmpty()) {
+			return null;
+		}
+		try {
+			CodedInputStream input = value.newCodedInput();
+			switch (parameters.get(parameters.size() - 1).getCode()) {
+				case FLOAT:
+					return (double) input.readFloat();
+				case DOUBLE:
+					return input.readDouble();
+				case SINT32:
+					return (double) input.readSInt32();
+				case BOOL:
+					return input.readBool() ? 1.0 : 0.0;
+				default:
+					return null;
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static Timeline timeline(Map<ByteString, Timeline> timelines, ByteString key) {
+		return timelines.computeIfAbsent(key, k -> new Timeline());
+	}
+
+	/**
+	 * Valores de uma chamada ao longo da captura, em ordem de tempo.
+	 */
+	private static class Timeline {
+		private final List<Long> times = new ArrayList<>();
+		private final List<Long> durations = new ArrayList<>();
+		private final List<Object> values = new ArrayList<>();
+
+		private void add(long nanos, long endNanos, Object value) {
+			times.add(nanos);
+			durations.add(endNanos - nanos);
+			values.add(value);
+		}
+
+		/**
+		 * Ordena pelo tempo, já que as chamadas são gravadas na ordem das respostas e os streams na ordem de chegada.
+		 */
+		private void sort() {
+			Integer[] order = new Integer[times.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, Comparator.comparing(times::get));
+			List<Long> sortedTimes = new ArrayList<>(), sortedDurations = new ArrayList<>();
+			List<Object> sortedValues = new ArrayList<>();
+			for (int i : order) {
+				sortedTimes.add(times.get(i));
+				sortedDurations.add(durations.get(i));
+				sortedValues.add(values.get(i));
+			}
+			times.clear();
+			times.addAll(sortedTimes);
+			durations.clear();
+			durations.addAll(sortedDurations);
+			values.clear();
+			values.addAll(sortedValues);
+		}
+
+		/**
+		 * @return O índice do valor mais recente até o instante informado, ou do primeiro se todos forem posteriores.
+		 */
+		private int indexAt(long nanos) {
+			int index = Collections.binarySearch(times, nanos);
+			if (index < 0) {
+				index = -index - 2;
+			} else {
+				while (index + 1 < times.size() && times.get(index + 1) == nanos) {
+					index++;
+				}
+			}
+			return Math.max(0, index);
+		}
+	}
+
+	private static class CommandDifference {
+		private long sent, compared;
+		private double sum, max;
+	}
+}
@@ -0,0 +1,277 @@
+package com.pesterenan.simulation;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import com.pesterenan.utils.Vector;
+import krpc.client.RemoteEnum;
+import krpc.schema.KRPC;
+import krpc.schema.KRPC.Type;
+import org.javatuples.Tuple;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificação dos valores do protocolo KRPC do lado do servidor.
+ * <p>
+ * Os tipos de cada procedimento são lidos das classes {@code _Types} geradas no cliente, assim qualquer chamada
+ * conhecida pelo cliente pode ser respondida com um valor do tipo certo, mesmo sem uma simulação própria.
+ */
+final class KrpcValues {
+
+	private static final Map<String, Method> typeTables = new HashMap<>();
+	private static final Type NONE = Type.newBuilder().setCode(Type.TypeCode.NONE).build();
+
+	private KrpcValues() {
+	}
+
+	/**
+	 * @return O tipo de retorno do procedimento ({@code NONE} para procedimentos sem retorno), ou {@code null} se o
+	 * serviço ou procedimento não existir.
+	 */
+	static Type returnType(String service, String procedure) {
+		try {
+			Method table = typeTable(service, "getReturnType");
+			if (table == null) {
+				return null;
+			}
+			Type type = (Type) table.invoke(null, procedure);
+			return type == null ? NONE : type;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return Os tipos dos parâmetros do procedimento, ou uma lista vazia se o procedimento não existir.
+	 */
+	static List<Type> parameterTypes(String service, String procedure) {
+		try {
+			Method table = typeTable(service, "getParameterTypes");
+			return table == null ? Collections.emptyList() : Arrays.asList((Type[]) table.invoke(null, procedure));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Collections.emptyList();
+		}
+	}
+
+	private static synchronized Method typeTable(String service, String method) {
+		String key = service + "." + method;
+		if (!typeTables.containsKey(key)) {
+			Method table = null;
+			try {
+				table = Class.forName("krpc.client.services." + service + "$_Types").getMethod(method, String.class);
+			} catch (ReflectiveOperationException ignored) {
+			}
+			typeTables.put(key, table);
+		}
+		return typeTables.get(key);
+	}
+
+	/**
+	 * Codifica um valor Java no formato do protocolo. Valores nulos ou ausentes viram o valor padrão do tipo (zero,
+	 * falso, texto vazio, objeto nulo), e tuplas aceitam {@link Vector}, tuplas do javatuples, listas ou arrays.
+	 */
+	static ByteString encode(Object value, Type type) throws IOException {
+		switch (type.getCode()) {
+			case NONE:
+				return ByteString.EMPTY;
+			case TUPLE: {
+				List<?> items = elements(value);
+				KRPC.Tuple.Builder tuple = KRPC.Tuple.newBuilder();
+				for (int i = 0; i < type.getTypesCount(); i++) {
+					tuple.addItems(encode(i < items.size() ? items.get(i) : null, type.getTypes(i)));
+				}
+				return tuple.build().toByteString();
+			}
+			case LIST: {
+				KRPC.List.Builder list = KRPC.List.newBuilder();
+				for (Object item : elements(value)) {
+					list.addItems(encode(item, type.getTypes(0)));
+				}
+				return list.build().toByteString();
+			}
+			case SET: {
+				KRPC.Set.Builder set = KRPC.Set.newBuilder();
+				for (Object item : elements(value)) {
+					set.addItems(encode(item, type.getTypes(0)));
+				}
+				return set.build().toByteString();
+			}
+			case DICTIONARY: {
+				KRPC.Dictionary.Builder dictionary = KRPC.Dictionary.newBuilder();
+				if (value instanceof Map) {
+					for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+						dictionary.addEntries(KRPC.DictionaryEntry.newBuilder()
+						                                          .setKey(encode(entry.getKey(), type.getTypes(0)))
+						                                          .setValue(encode(entry.getValue(),
+						                                                           type.getTypes(1)
+						                                                          )));
+					}
+				}
+				return dictionary.build().toByteString();
+			}
+			case EVENT:
+			case PROCEDURE_CALL:
+			case STREAM:
+			case STATUS:
+			case SERVICES:
+				return value instanceof Message ? ((Message) value).toByteString() : ByteString.EMPTY;
+			default:
+				break;
+		}
+		ByteString.Output bytes = ByteString.newOutput();
+		CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+		switch (type.getCode()) {
+			case DOUBLE:
+				output.writeDoubleNoTag(number(value).doubleValue());
+				break;
+			case FLOAT:
+				output.writeFloatNoTag(number(value).floatValue());
+				break;
+			case SINT32:
+				output.writeSInt32NoTag(number(value).intValue());
+				break;
+			case SINT64:
+				output.writeSInt64NoTag(number(value).longValue());
+				break;
+			case UINT32:
+				output.writeUInt32NoTag(number(value).intValue());
+				break;
+			case UINT64:
+			case CLASS:
+				output.writeUInt64NoTag(number(value).longValue());
+				break;
+			case ENUMERATION:
+				output.writeSInt32NoTag(number(value).intValue());
+				break;
+			case BOOL:
+				output.writeBoolNoTag(Boolean.TRUE.equals(value));
+				break;
+			case STRING:
+				output.writeStringNoTag(value == null ? "" : value.toString());
+				break;
+			case BYTES:
+				output.writeBytesNoTag(value instanceof ByteString ? (ByteString) value : ByteString.EMPTY);
+				break;
+			default:
+				break;
+		}
+		output.flush();
+		return bytes.toByteString();
+	}
+
+	/**
+	 * Decodifica um valor do protocolo. Objetos remotos viram o seu id ({@link Long}), enumerações o seu valor
+	 * ({@link Integer}), tuplas e listas viram {@link List} e dicionários {@link Map}.
+	 */
+	static Object decode(ByteString value, Type type) throws IOException {
+		switch (type.getCode()) {
+			case TUPLE: {
+				List<ByteString> items = KRPC.Tuple.parseFrom(value).getItemsList();
+				List<Object> tuple = new ArrayList<>(items.size());
+				for (int i = 0; i < items.size(); i++) {
+					tuple.add(decode(items.get(i), type.getTypes(i)));
+				}
+				return tuple;
+			}
+			case LIST:
+			case SET: {
+				List<ByteString> items = type.getCode() == Type.TypeCode.LIST ? KRPC.List.parseFrom(value)
+				                                                                          .getItemsList() :
+				                         KRPC.Set.parseFrom(value).getItemsList();
+				List<Object> list = new ArrayList<>(items.size());
+				for (ByteString item : items) {
+					list.add(decode(item, type.getTypes(0)));
+				}
+				return list;
+			}
+			case DICTIONARY: {
+				Map<Object, Object> dictionary = new LinkedHashMap<>();
+				for (KRPC.DictionaryEntry entry : KRPC.Dictionary.parseFrom(value).getEntriesList()) {
+					dictionary.put(decode(entry.getKey(), type.getTypes(0)), decode(entry.getValue(), type.getTypes(1)));
+				}
+				return dictionary;
+			}
+			case PROCEDURE_CALL:
+				return KRPC.ProcedureCall.parseFrom(value);
+			case NONE:
+			case EVENT:
+			case STREAM:
+			case STATUS:
+			case SERVICES:
+			case BYTES:
+				return value;
+			default:
+				break;
+		}
+		CodedInputStream input = value.newCodedInput();
+		switch (type.getCode()) {
+			case DOUBLE:
+				return input.readDouble();
+			case FLOAT:
+				return input.readFloat();
+			case SINT32:
+			case ENUMERATION:
+				return input.readSInt32();
+			case SINT64:
+				return input.readSInt64();
+			case UINT32:
+				return input.readUInt32();
+			case UINT64:
+			case CLASS:
+				return input.readUInt64();
+			case BOOL:
+				return input.readBool();
+			case STRING:
+				return input.readString();
+			default:
+				return value;
+		}
+	}
+
+	private static Number number(Object value) {
+		if (value instanceof Number) {
+			return (Number) value;
+		}
+		if (value instanceof RemoteEnum) {
+			return ((RemoteEnum) value).getValue();
+		}
+		if (value instanceof Boolean) {
+			return (Boolean) value ? 1 : 0;
+		}
+		return 0;
+	}
+
+	private static List<?> elements(Object value) {
+		if (value instanceof Vector) {
+			Vector vector = (Vector) value;
+			return Arrays.asList(vector.x, vector.y, vector.z);
+		}
+		if (value instanceof Tuple) {
+			return ((Tuple) value).toList();
+		}
+		if (value instanceof List) {
+			return (List<?>) value;
+		}
+		if (value instanceof double[]) {
+			List<Double> items = new ArrayList<>();
+			for (double item : (double[]) value) {
+				items.add(item);
+			}
+			return items;
+		}
+		if (value instanceof Object[]) {
+			return Arrays.asList((Object[]) value);
+		}
+		return Collections.emptyList();
+	}
+}
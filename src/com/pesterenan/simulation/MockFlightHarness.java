@@ -0,0 +1,251 @@
+package com.pesterenan.simulation;
+
+import com.pesterenan.controllers.LandingController;
+import com.pesterenan.controllers.LiftoffController;
+import com.pesterenan.controllers.RoverController;
+import com.pesterenan.model.ActiveVessel;
+import com.pesterenan.utils.ConstantsCache;
+import com.pesterenan.utils.ControlLoop;
+import com.pesterenan.utils.FlightCapture;
+import com.pesterenan.utils.Modulos;
+import com.pesterenan.utils.RpcMonitor;
+import com.pesterenan.utils.StreamRegistry;
+import krpc.client.Connection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Roda os controladores de decolagem, pouso e rover contra o {@link MockKrpcServer}, sem o jogo, e relata as
+ * chamadas RPC por passo e a duração dos passos dos laços de controle.
+ * <p>
+ * Uso: {@code MockFlightHarness [--latency=ms] [--duration=s] [--max-rpcs-per-tick=n] [--max-tick-ms=ms] [--monitor]
+ * [--capture=pasta] [liftoff] [landing] [rover]}. Com {@code --monitor}, a conexão passa pelo {@link RpcMonitor} e o
+ * seu relatório é impresso ao final de cada cenário; com {@code --capture}, cada cenário também é gravado em
+ * {@code pasta/<cenário>.mpcap}, para uso com o {@link FlightReplay}. Sem cenários, roda os três. Com os limites
+ * informados, o processo termina com código 1 quando algum cenário os ultrapassa, para uso como teste de regressão de
+ * desempenho.
+ */
+public class MockFlightHarness {
+
+	private long latencyMillis = 5;
+	private long durationMillis = 15000;
+	private double maxRpcsPerTick = Double.MAX_VALUE;
+	private double maxTickMillis = Double.MAX_VALUE;
+	private boolean monitor;
+	private Path captureFolder;
+	private boolean failed;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		MockFlightHarness harness = new MockFlightHarness();
+		List<String> scenarios = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.startsWith("--latency=")) {
+				harness.latencyMillis = Long.parseLong(value(arg));
+			} else if (arg.startsWith("--duration=")) {
+				harness.durationMillis = (long) (Double.parseDouble(value(arg)) * 1000);
+			} else if (arg.startsWith("--max-rpcs-per-tick=")) {
+				harness.maxRpcsPerTick = Double.parseDouble(value(arg));
+			} else if (arg.startsWith("--max-tick-ms=")) {
+				harness.maxTickMillis = Double.parseDouble(value(arg));
+			} else if (arg.equals("--monitor")) {
+				harness.monitor = true;
+			} else if (arg.startsWith("--capture=")) {
+				harness.monitor = true;
+				harness.captureFolder = Paths.get(value(arg));
+			} else {
+				scenarios.add(arg);
+			}
+		}
+		if (scenarios.isEmpty()) {
+			scenarios.addAll(Arrays.asList("liftoff", "landing", "rover"));
+		}
+		for (String scenario : scenarios) {
+			harness.run(scenario);
+		}
+		System.exit(harness.failed ? 1 : 0);
+	}
+
+	private static String value(String arg) {
+		return arg.substring(arg.indexOf('=') + 1);
+	}
+
+	private void run(String scenario) throws IOException, InterruptedException {
+		Map<String, String> commands = commandsFor(scenario);
+		switch (scenario) {
+			case "liftoff":
+				run(scenario, SimulatedVessel.onLaunchpad(), commands, LiftoffController::new);
+				break;
+			case "landing":
+			case "landing-mpc":
+				run(scenario, SimulatedVessel.descending(3000, -120, 40), commands, LandingController::new);
+				break;
+			case "rover":
+				run(scenario, SimulatedVessel.roverWithTarget(800, 600), commands, RoverController::new);
+				break;
+			default:
+				System.err.println("Cenário desconhecido: " + scenario);
+				failed = true;
+		}
+	}
+
+	/**
+	 * @return Os comandos usados para iniciar o módulo do cenário, como a interface os montaria, ou {@code null} para
+	 * um cenário desconhecido.
+	 */
+	static Map<String, String> commandsFor(String scenario) {
+		Map<String, String> commands = new HashMap<>();
+		switch (scenario) {
+			case "liftoff":
+				commands.put(Modulos.MODULO.get(), Modulos.MODULO_DECOLAGEM.get());
+				commands.put(Modulos.APOASTRO.get(), "80000");
+				commands.put(Modulos.DIRECAO.get(), "90");
+				commands.put(Modulos.ROLAGEM.get(), "90");
+				commands.put(Modulos.INCLINACAO.get(), Modulos.CIRCULAR.get());
+				commands.put(Modulos.ABRIR_PAINEIS.get(), "false");
+				commands.put(Modulos.USAR_ESTAGIOS.get(), "false");
+				return commands;
+			case "landing":
+				commands.put(Modulos.MODULO.get(), Modulos.MODULO_POUSO.get());
+				return commands;
+			case "landing-mpc":
+				commands.put(Modulos.MODULO.get(), Modulos.MODULO_POUSO.get());
+				commands.put(Modulos.POUSO_PREDITIVO.get(), "true");
+				return commands;
+			case "maneuver":
+				commands.put(Modulos.MODULO.get(), Modulos.MODULO_MANOBRAS.get());
+				commands.put(Modulos.FUNCAO.get(), Modulos.EXECUTAR.get());
+				return commands;
+			case "rover":
+				commands.put(Modulos.MODULO.get(), Modulos.MODULO_ROVER.get());
+				commands.put(Modulos.TIPO_ALVO_ROVER.get(), Modulos.NAVE_ALVO.get());
+				commands.put(Modulos.VELOCIDADE_MAX.get(), "10");
+				return commands;
+			default:
+				return null;
+		}
+	}
+
+	private void run(String scenario, SimulatedVessel vessel, Map<String, String> commands,
+	                 Function<Map<String, String>, Runnable> controllerFactory)
+			throws IOException, InterruptedException {
+		RpcMonitor rpcMonitor = null;
+		try (MockKrpcServer server = new MockKrpcServer()) {
+			vessel.install(server);
+			server.setLatencyMillis(latencyMillis);
+			server.start(0, 0);
+			int rpcPort = server.getRpcPort(), streamPort = server.getStreamPort();
+			if (monitor) {
+				rpcMonitor = new RpcMonitor("127.0.0.1", rpcPort, streamPort);
+				rpcMonitor.start();
+				if (captureFolder != null) {
+					Files.createDirectories(captureFolder);
+					Path capture = captureFolder.resolve(scenario + ".mpcap");
+					Files.deleteIfExists(capture);
+					rpcMonitor.startCapture(capture);
+				}
+				rpcPort = rpcMonitor.getRpcPort();
+				streamPort = rpcMonitor.getStreamPort();
+			}
+			Connection connection = Connection.newInstance("MechPeste - Harness", "127.0.0.1", rpcPort, streamPort);
+			try {
+				if (rpcMonitor != null) {
+					rpcMonitor.mark(FlightCapture.moduleMark(commands));
+				}
+				new ActiveVessel(connection);
+				Runnable controller = controllerFactory.apply(commands);
+				server.resetStatistics();
+				ControlLoop.resetStatistics();
+				if (rpcMonitor != null) {
+					rpcMonitor.reset();
+				}
+				long start = System.nanoTime();
+				Thread thread = new Thread(() -> {
+					try {
+						controller.run();
+					} catch (RuntimeException e) {
+						System.err.println("Controlador encerrado com erro: " + e);
+					}
+				}, "MechPeste-Harness-" + scenario);
+				thread.start();
+				thread.join(durationMillis);
+				if (thread.isAlive()) {
+					thread.interrupt();
+					thread.join(10000);
+				}
+				report(scenario, server, vessel, (System.nanoTime() - start) / 1e9);
+				if (rpcMonitor != null) {
+					System.out.print(rpcMonitor.report());
+				}
+			} finally {
+				StreamRegistry.discard(connection);
+				ConstantsCache.discard(connection);
+				connection.close();
+			}
+		} finally {
+			if (rpcMonitor != null) {
+				rpcMonitor.close();
+			}
+		}
+	}
+
+	private void report(String scenario, MockKrpcServer server, SimulatedVessel vessel, double seconds) {
+		System.out.println(String.format("== Cenário %s: latência %d ms, %.1f s", scenario, latencyMillis, seconds));
+		long ticks = 0;
+		double worstTick = 0;
+		for (ControlLoop.Statistics loop : ControlLoop.getStatistics().values()) {
+			System.out.println(String.format(
+					"   Laço %-10s %6d passos, média %6.2f ms, pior %7.2f ms, %d estouros, %d ciclos perdidos",
+					loop.getName(), loop.getTicks(), loop.getAverageTickMillis(), loop.getWorstTickMillis(),
+					loop.getOverruns(), loop.getDroppedTicks()
+			                                ));
+			ticks += loop.getTicks();
+			worstTick = Math.max(worstTick, loop.getWorstTickMillis());
+		}
+		double requestsPerTick = ticks == 0 ? 0 : (double) server.getRequests() / ticks;
+		double callsPerTick = ticks == 0 ? 0 : (double) server.getCalls() / ticks;
+		System.out.println(String.format("   Requisições RPC: %d (%.2f por passo), chamadas: %d (%.2f por passo), " +
+				                                 "valores de stream: %d", server.getRequests(), requestsPerTick,
+		                                 server.getCalls(), callsPerTick, server.getStreamResults()
+		                                ));
+		System.out.println(String.format(
+				"   Nave: altitude %.0f m, apoastro %.0f m, velocidade %.1f m/s, pior impacto %.1f m/s, " +
+						"distância do alvo %.0f m", vessel.getAltitude(), vessel.getApoapsisAltitude(),
+				vessel.getSpeed(), vessel.getWorstImpactSpeed(), vessel.getDistanceToTarget()
+		                                ));
+		printTopProcedures(server.getCallsByProcedure());
+		if (!server.getDefaultedProcedures().isEmpty()) {
+			System.out.println("   Respondidos com valor padrão: " + server.getDefaultedProcedures());
+		}
+		check(ticks > 0, "nenhum passo de laço executado");
+		check(requestsPerTick <= maxRpcsPerTick,
+		      String.format("%.2f requisições por passo, limite %.2f", requestsPerTick, maxRpcsPerTick)
+		     );
+		check(worstTick <= maxTickMillis, String.format("pior passo %.2f ms, limite %.2f", worstTick, maxTickMillis));
+	}
+
+	private static void printTopProcedures(Map<String, Long> callsByProcedure) {
+		List<Map.Entry<String, Long>> entries = new ArrayList<>(callsByProcedure.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+		StringBuilder top = new StringBuilder("   Mais chamados:");
+		for (int i = 0; i < Math.min(8, entries.size()); i++) {
+			top.append(' ').append(entries.get(i).getKey()).append('=').append(entries.get(i).getValue());
+		}
+		System.out.println(top);
+	}
+
+	private void check(boolean condition, String failure) {
+		if (!condition) {
+			System.out.println("   FALHOU: " + failure);
+			failed = true;
+		}
+	}
+}
@@ -0,0 +1,604 @@
+package com.pesterenan.simulation;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import com.pesterenan.utils.Vector;
+import krpc.client.services.KRPC.GameScene;
+import krpc.schema.KRPC;
+import krpc.schema.KRPC.ConnectionRequest;
+import krpc.schema.KRPC.ConnectionResponse;
+import krpc.schema.KRPC.ProcedureCall;
+import krpc.schema.KRPC.ProcedureResult;
+import krpc.schema.KRPC.Request;
+import krpc.schema.KRPC.Response;
+import krpc.schema.KRPC.StreamResult;
+import krpc.schema.KRPC.StreamUpdate;
+import krpc.schema.KRPC.Type;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Servidor KRPC local, para rodar os controladores sem o jogo.
+ * <p>
+ * Fala o mesmo protocolo do servidor do KSP (mensagens protobuf delimitadas pelo tamanho, em um socket para as
+ * chamadas RPC e outro para os streams), com uma latência configurável em cada requisição. As chamadas são
+ * respondidas pelos procedimentos registrados com {@link #register(String, String, Procedure)}; as demais recebem o
+ * valor padrão do seu tipo de retorno, e as que retornam objetos recebem um id estável, para que o cliente possa
+ * continuar navegando pelos objetos remotos. Os streams são avaliados e enviados a cada passo da simulação.
+ * <p>
+ * Com {@code setTickMillis(0)} os passos deixam de ser automáticos e os streams só são enviados em
+ * {@link #publishStreams()} (e o primeiro valor de cada stream, logo ao ser iniciado), o que a reprodução de voos usa
+ * para controlar exatamente quais valores o cliente vê a cada instante.
+ */
+public class MockKrpcServer implements Closeable {
+
+	private final Map<String, Procedure> procedures = new ConcurrentHashMap<>();
+	private final Map<String, Long> objectIds = new HashMap<>();
+	private final List<Session> sessions = new CopyOnWriteArrayList<>();
+	private final Object world = new Object();
+	private final AtomicLong nextStreamId = new AtomicLong(1);
+	private final AtomicLong requests = new AtomicLong(), calls = new AtomicLong(), streamResults = new AtomicLong();
+	private final Map<String, AtomicLong> callsByProcedure = new ConcurrentHashMap<>();
+	private final Set<String> defaultedProcedures = ConcurrentHashMap.newKeySet();
+	private ServerSocket rpcServer, streamServer;
+	private Simulation simulation;
+	private volatile Responder responder;
+	private final AtomicLong publishes = new AtomicLong();
+	private volatile long latencyMillis;
+	private volatile long tickMillis = 20;
+	private volatile boolean running;
+
+	public MockKrpcServer() {
+		registerKrpcService();
+	}
+
+	/**
+	 * Registra a resposta de um procedimento. O procedimento é executado com a simulação travada, então pode ler e
+	 * alterar o estado dela livremente.
+	 *
+	 * @param service   - Nome do serviço (ex: "SpaceCenter")
+	 * @param procedure - Nome do procedimento no protocolo (ex: "Flight_get_SurfaceAltitude")
+	 * @param handler   - Código que calcula o valor de retorno
+	 * @throws IllegalArgumentException Caso o procedimento não exista no cliente KRPC
+	 */
+	public void register(String service, String procedure, Procedure handler) {
+		if (KrpcValues.returnType(service, procedure) == null) {
+			throw new IllegalArgumentException("Procedimento desconhecido: " + service + "." + procedure);
+		}
+		procedures.put(service + "." + procedure, handler);
+	}
+
+	/**
+	 * Define a simulação avançada a cada passo do servidor, antes do envio dos streams.
+	 */
+	public void setSimulation(Simulation simulation) {
+		synchronized (world) {
+			this.simulation = simulation;
+		}
+	}
+
+	/**
+	 * Define quem responde as chamadas antes dos procedimentos registrados. Chamadas do serviço KRPC (conexão e
+	 * streams) são sempre atendidas pelo próprio servidor.
+	 */
+	public void setResponder(Responder responder) {
+		this.responder = responder;
+	}
+
+	/**
+	 * @param latencyMillis - Atraso adicionado à resposta de cada requisição RPC, simulando a rede e o jogo.
+	 */
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @param tickMillis - Intervalo entre os passos da simulação e os envios de streams (padrão 20 ms, 50 Hz), ou 0
+	 *                   para enviar os streams só em {@link #publishStreams()}.
+	 */
+	public void setTickMillis(long tickMillis) {
+		this.tickMillis = Math.max(0, tickMillis);
+	}
+
+	/**
+	 * Envia agora o valor de todos os streams iniciados, em uma única atualização por cliente. Os streams do serviço
+	 * KRPC vão por último, então quando o cliente vê o {@code stream_rpcs_executed} de um stream de
+	 * {@code KRPC.GetStatus} igual ao número retornado, todos os outros valores da mesma atualização já chegaram.
+	 *
+	 * @return O número desta publicação, que também é o {@code stream_rpcs_executed} enviado
+	 */
+	public long publishStreams() {
+		long publish = publishes.incrementAndGet();
+		long now = System.nanoTime();
+		for (Session session : sessions) {
+			sendStreamUpdate(session, now, stream -> stream.started);
+		}
+		return publish;
+	}
+
+	/**
+	 * Retorna um id de objeto remoto estável para a chave informada, criando um novo se necessário.
+	 */
+	public long objectId(String key) {
+		synchronized (objectIds) {
+			return objectIds.computeIfAbsent(key, k -> (long) objectIds.size() + 1);
+		}
+	}
+
+	/**
+	 * Abre os sockets do servidor e começa a avançar a simulação.
+	 *
+	 * @param rpcPort    - Porta das chamadas RPC, ou 0 para uma porta livre qualquer
+	 * @param streamPort - Porta dos streams, ou 0 para uma porta livre qualquer
+	 */
+	public void start(int rpcPort, int streamPort) throws IOException {
+		InetAddress localhost = InetAddress.getLoopbackAddress();
+		rpcServer = new ServerSocket(rpcPort, 50, localhost);
+		streamServer = new ServerSocket(streamPort, 50, localhost);
+		running = true;
+		startThread("MockKrpc-RPC", this::acceptRpcClients);
+		startThread("MockKrpc-Stream", this::acceptStreamClients);
+		startThread("MockKrpc-Tick", this::tickLoop);
+	}
+
+	public int getRpcPort() {
+		return rpcServer.getLocalPort();
+	}
+
+	public int getStreamPort() {
+		return streamServer.getLocalPort();
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		closeQuietly(rpcServer);
+		closeQuietly(streamServer);
+		for (Session session : sessions) {
+			session.close();
+		}
+		sessions.clear();
+	}
+
+	/**
+	 * @return Quantidade de requisições RPC recebidas, isto é, idas e voltas pela rede.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return Quantidade de chamadas recebidas. Uma requisição pode conter várias chamadas.
+	 */
+	public long getCalls() {
+		return calls.get();
+	}
+
+	/**
+	 * @return Quantidade de valores de streams enviados aos clientes.
+	 */
+	public long getStreamResults() {
+		return streamResults.get();
+	}
+
+	/**
+	 * @return Quantidade de chamadas recebidas por procedimento, em ordem alfabética.
+	 */
+	public Map<String, Long> getCallsByProcedure() {
+		Map<String, Long> snapshot = new TreeMap<>();
+		callsByProcedure.forEach((procedure, count) -> snapshot.put(procedure, count.get()));
+		return snapshot;
+	}
+
+	/**
+	 * @return Procedimentos chamados que não têm simulação própria e foram respondidos com o valor padrão.
+	 */
+	public Set<String> getDefaultedProcedures() {
+		return Collections.unmodifiableSet(new TreeSet<>(defaultedProcedures));
+	}
+
+	/**
+	 * Zera os contadores de chamadas, para medir um novo trecho de execução.
+	 */
+	public void resetStatistics() {
+		requests.set(0);
+		calls.set(0);
+		streamResults.set(0);
+		callsByProcedure.clear();
+		defaultedProcedures.clear();
+	}
+
+	private void registerKrpcService() {
+		register("KRPC", "GetClientID", call -> call.session.clientId);
+		register("KRPC", "GetClientName", call -> call.session.clientName);
+		register("KRPC", "GetStatus", call -> KRPC.Status.newBuilder()
+		                                               .setVersion("0.4.9")
+		                                               .setStreamRpcsExecuted(publishes.get())
+		                                               .build());
+		register("KRPC", "get_CurrentGameScene", call -> GameScene.FLIGHT);
+		register("KRPC", "get_Paused", call -> false);
+		register("KRPC", "AddStream", call -> {
+			long id = nextStreamId.getAndIncrement();
+			call.session.streams.put(id, new StreamEntry((ProcedureCall) call.argument(0), call.bool(1)));
+			return KRPC.Stream.newBuilder().setId(id).build();
+		});
+		register("KRPC", "StartStream", call -> {
+			StreamEntry stream = call.session.streams.get(call.object(0));
+			if (stream != null) {
+				stream.started = true;
+			}
+			return null;
+		});
+		register("KRPC", "SetStreamRate", call -> {
+			StreamEntry stream = call.session.streams.get(call.object(0));
+			if (stream != null) {
+				stream.rate = call.number(1);
+			}
+			return null;
+		});
+		register("KRPC", "RemoveStream", call -> call.session.streams.remove(call.object(0)));
+	}
+
+	private void acceptRpcClients() {
+		while (running) {
+			try {
+				Socket socket = rpcServer.accept();
+				socket.setTcpNoDelay(true);
+				Session session = new Session(socket);
+				ConnectionRequest request = ConnectionRequest.parseFrom(readMessage(session.rpcInput));
+				session.clientName = request.getClientName();
+				sessions.add(session);
+				writeMessage(session.rpcOutput, ConnectionResponse.newBuilder()
+				                                                  .setStatus(ConnectionResponse.Status.OK)
+				                                                  .setClientIdentifier(session.clientId)
+				                                                  .build());
+				startThread("MockKrpc-Client-" + sessions.size(), () -> serve(session));
+			} catch (IOException e) {
+				if (running) {
+					System.err.println("Servidor KRPC local: falha ao aceitar cliente RPC: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void acceptStreamClients() {
+		while (running) {
+			try {
+				Socket socket = streamServer.accept();
+				socket.setTcpNoDelay(true);
+				CodedInputStream input = CodedInputStream.newInstance(socket.getInputStream());
+				CodedOutputStream output = CodedOutputStream.newInstance(socket.getOutputStream());
+				ConnectionRequest request = ConnectionRequest.parseFrom(readMessage(input));
+				Session owner = null;
+				for (Session session : sessions) {
+					if (session.clientId.equals(request.getClientIdentifier())) {
+						owner = session;
+					}
+				}
+				if (owner == null) {
+					writeMessage(output, ConnectionResponse.newBuilder()
+					                                       .setStatus(ConnectionResponse.Status.WRONG_TYPE)
+					                                       .setMessage("Unknown client identifier")
+					                                       .build());
+					socket.close();
+					continue;
+				}
+				writeMessage(output, ConnectionResponse.newBuilder().setStatus(ConnectionResponse.Status.OK).build());
+				owner.streamSocket = socket;
+				owner.streamOutput = output;
+			} catch (IOException e) {
+				if (running) {
+					System.err.println("Servidor KRPC local: falha ao aceitar cliente de stream: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void serve(Session session) {
+		try {
+			while (running) {
+				Request request = Request.parseFrom(readMessage(session.rpcInput));
+				requests.incrementAndGet();
+				Response.Builder response = Response.newBuilder();
+				for (ProcedureCall call : request.getCallsList()) {
+					calls.incrementAndGet();
+					callsByProcedure.computeIfAbsent(call.getService() + "." + call.getProcedure(),
+					                                 k -> new AtomicLong()
+					                                ).incrementAndGet();
+					response.addResults(execute(session, call, true));
+				}
+				if (latencyMillis > 0) {
+					Thread.sleep(latencyMillis);
+				}
+				writeMessage(session.rpcOutput, response.build());
+				if (tickMillis == 0) {
+					sendStreamUpdate(session, System.nanoTime(), stream -> stream.started && stream.lastSent == 0);
+				}
+			}
+		} catch (IOException | InterruptedException e) {
+			// Cliente desconectado
+		} finally {
+			sessions.remove(session);
+			session.close();
+		}
+	}
+
+	private ProcedureResult execute(Session session, ProcedureCall call, boolean countDefaults) {
+		String service = call.getService();
+		String procedure = call.getProcedure();
+		Type returnType = KrpcValues.returnType(service, procedure);
+		if (returnType == null) {
+			return error(service, "ProcedureNotFound", "Procedure not found: " + service + "." + procedure);
+		}
+		try {
+			Responder current = responder;
+			if (current != null && !"KRPC".equals(service)) {
+				ProcedureResult result = current.answer(call);
+				if (result != null) {
+					return result;
+				}
+			}
+			List<Type> parameterTypes = KrpcValues.parameterTypes(service, procedure);
+			List<Object> arguments = new ArrayList<>(Collections.nCopies(parameterTypes.size(), null));
+			for (KRPC.Argument argument : call.getArgumentsList()) {
+				if (argument.getPosition() < parameterTypes.size()) {
+					arguments.set(argument.getPosition(),
+					              KrpcValues.decode(argument.getValue(), parameterTypes.get(argument.getPosition()))
+					             );
+				}
+			}
+			Procedure handler = procedures.get(service + "." + procedure);
+			Object value;
+			synchronized (world) {
+				if (handler != null) {
+					value = handler.call(new Call(session, procedure, arguments));
+				} else {
+					if (countDefaults) {
+						defaultedProcedures.add(service + "." + procedure);
+					}
+					value = returnType.getCode() == Type.TypeCode.CLASS ? objectId(procedure + arguments) : null;
+				}
+			}
+			return ProcedureResult.newBuilder().setValue(KrpcValues.encode(value, returnType)).build();
+		} catch (Exception e) {
+			return error(service, e.getClass().getSimpleName(), String.valueOf(e.getMessage()));
+		}
+	}
+
+	private static ProcedureResult error(String service, String name, String description) {
+		return ProcedureResult.newBuilder()
+		                      .setError(KRPC.Error.newBuilder()
+		                                          .setService(service)
+		                                          .setName(name)
+		                                          .setDescription(description))
+		                      .build();
+	}
+
+	private void tickLoop() {
+		long last = System.nanoTime();
+		while (running) {
+			try {
+				Thread.sleep(Math.max(1, tickMillis));
+			} catch (InterruptedException e) {
+				return;
+			}
+			long now = System.nanoTime();
+			if (tickMillis == 0) {
+				last = now;
+				continue;
+			}
+			synchronized (world) {
+				if (simulation != null) {
+					simulation.step((now - last) / 1e9);
+				}
+			}
+			last = now;
+			for (Session session : sessions) {
+				sendStreamUpdate(session, now, stream -> stream.started && stream.isDue(now));
+			}
+		}
+	}
+
+	private void sendStreamUpdate(Session session, long now, Predicate<StreamEntry> due) {
+		if (session.streamOutput == null) {
+			return;
+		}
+		List<Map.Entry<Long, StreamEntry>> streams = new ArrayList<>(session.streams.entrySet());
+		streams.sort(Comparator.comparing((Map.Entry<Long, StreamEntry> entry) -> "KRPC".equals(
+				entry.getValue().call.getService())).thenComparing(Map.Entry::getKey));
+		StreamUpdate.Builder update = StreamUpdate.newBuilder();
+		for (Map.Entry<Long, StreamEntry> entry : streams) {
+			StreamEntry stream = entry.getValue();
+			if (!due.test(stream)) {
+				continue;
+			}
+			stream.lastSent = now;
+			update.addResults(StreamResult.newBuilder()
+			                              .setId(entry.getKey())
+			                              .setResult(execute(session, stream.call, false)));
+		}
+		if (update.getResultsCount() == 0) {
+			return;
+		}
+		try {
+			writeMessage(session.streamOutput, update.build());
+			streamResults.addAndGet(update.getResultsCount());
+		} catch (IOException e) {
+			session.streamOutput = null;
+		}
+	}
+
+	private static ByteString readMessage(CodedInputStream input) throws IOException {
+		int size = input.readRawVarint32();
+		return ByteString.copyFrom(input.readRawBytes(size));
+	}
+
+	private static void writeMessage(CodedOutputStream output, Message message) throws IOException {
+		synchronized (output) {
+			output.writeMessageNoTag(message);
+			output.flush();
+		}
+	}
+
+	private static void startThread(String name, Runnable task) {
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			if (closeable != null) {
+				closeable.close();
+			}
+		} catch (IOException ignored) {
+		}
+	}
+
+	/**
+	 * Simulação avançada pelo servidor a cada passo.
+	 */
+	@FunctionalInterface
+	public interface Simulation {
+		void step(double deltaSeconds);
+	}
+
+	/**
+	 * Resposta de um procedimento. O valor retornado é codificado com o tipo de retorno do procedimento: números,
+	 * booleanos, textos, enumerações do cliente, ids de objetos ({@code long}), {@link Vector} para tuplas de três
+	 * números, e listas ou arrays para as demais tuplas e listas. {@code null} vira o valor padrão do tipo.
+	 */
+	@FunctionalInterface
+	public interface Procedure {
+		Object call(Call call) throws Exception;
+	}
+
+	/**
+	 * Resposta direta a uma chamada, já codificada.
+	 */
+	@FunctionalInterface
+	public interface Responder {
+		/**
+		 * @return O resultado da chamada, ou {@code null} para deixar o servidor responder normalmente.
+		 */
+		ProcedureResult answer(ProcedureCall call) throws Exception;
+	}
+
+	/**
+	 * Chamada recebida, com os argumentos já decodificados.
+	 */
+	public static class Call {
+		private final Session session;
+		private final String procedure;
+		private final List<Object> arguments;
+
+		private Call(Session session, String procedure, List<Object> arguments) {
+			this.session = session;
+			this.procedure = procedure;
+			this.arguments = arguments;
+		}
+
+		public String getProcedure() {
+			return procedure;
+		}
+
+		public Object argument(int position) {
+			return position < arguments.size() ? arguments.get(position) : null;
+		}
+
+		public long object(int position) {
+			Object value = argument(position);
+			return value instanceof Number ? ((Number) value).longValue() : 0;
+		}
+
+		public double number(int position) {
+			Object value = argument(position);
+			return value instanceof Number ? ((Number) value).doubleValue() : 0;
+		}
+
+		public boolean bool(int position) {
+			return Boolean.TRUE.equals(argument(position));
+		}
+
+		public String string(int position) {
+			Object value = argument(position);
+			return value == null ? "" : value.toString();
+		}
+
+		public Vector vector(int position) {
+			Object value = argument(position);
+			if (!(value instanceof List) || ((List<?>) value).size() < 3) {
+				return new Vector();
+			}
+			List<?> items = (List<?>) value;
+			return new Vector(((Number) items.get(0)).doubleValue(), ((Number) items.get(1)).doubleValue(),
+			                  ((Number) items.get(2)).doubleValue()
+			);
+		}
+	}
+
+	private static class StreamEntry {
+		private final ProcedureCall call;
+		private volatile boolean started;
+		private volatile double rate;
+		private long lastSent;
+
+		private StreamEntry(ProcedureCall call, boolean started) {
+			this.call = call;
+			this.started = started;
+		}
+
+		private boolean isDue(long now) {
+			return rate <= 0 || lastSent == 0 || (now - lastSent) >= 1e9 / rate;
+		}
+	}
+
+	private static class Session {
+		private final Socket rpcSocket;
+		private final CodedInputStream rpcInput;
+		private final CodedOutputStream rpcOutput;
+		private final ByteString clientId;
+		private final Map<Long, StreamEntry> streams = new ConcurrentHashMap<>();
+		private String clientName = "";
+		private volatile Socket streamSocket;
+		private volatile CodedOutputStream streamOutput;
+
+		private Session(Socket rpcSocket) throws IOException {
+			this.rpcSocket = rpcSocket;
+			this.rpcInput = CodedInputStream.newInstance(rpcSocket.getInputStream());
+			this.rpcOutput = CodedOutputStream.newInstance(rpcSocket.getOutputStream());
+			UUID uuid = UUID.randomUUID();
+			this.clientId = ByteString.copyFrom(
+					ByteBuffer.allocate(16)
+					          .putLong(uuid.getMostSignificantBits())
+					          .putLong(uuid.getLeastSignificantBits())
+					          .array());
+		}
+
+		private void close() {
+			closeQuietly(rpcSocket);
+			closeQuietly(streamSocket);
+		}
+	}
+}
@@ -0,0 +1,512 @@
+package com.pesterenan.simulation;
+
+import com.pesterenan.utils.Vector;
+import krpc.client.services.SpaceCenter.VesselSituation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Simulação simplificada de uma nave em Kerbin, para o {@link MockKrpcServer}.
+ * <p>
+ * O terreno é um plano, com a física de um ponto com massa: empuxo do motor na direção do nariz da nave, gravidade
+ * constante, arrasto nenhum e um piloto automático que aponta a nave instantaneamente para o alvo. Em solo a nave
+ * anda como um rover, com aceleração, freio e esterçamento das rodas. O apoastro e o periastro são calculados a
+ * partir da altitude e das velocidades como se o planeta fosse esférico, o suficiente para os controladores.
+ * <p>
+ * Sistemas de referência (como no KSP, X = cima, Y = norte, Z = leste na superfície):
+ * <ul>
+ * <li>Corpo celeste: origem no ponto (0, 0, 0) do terreno, altitude no eixo X;</li>
+ * <li>Superfície: mesmos eixos do corpo, com origem na nave;</li>
+ * <li>Nave: origem na nave, X = direita, Y = nariz, Z = baixo;</li>
+ * <li>Velocidade na superfície: origem na nave, Y na direção da velocidade.</li>
+ * </ul>
+ */
+public class SimulatedVessel implements MockKrpcServer.Simulation {
+
+	private static final double RADIUS = 600000;
+	private static final double GRAVITATIONAL_PARAMETER = 3.5316e12;
+	private static final double GRAVITY = 9.81;
+	private static final double ATMOSPHERE_DEPTH = 70000;
+	private static final double ISP = 300;
+	private static final double ROVER_ACCELERATION = 2, ROVER_BRAKING = 5, ROVER_TURN_RATE = 6;
+	private static final double MAX_CHARGE = 1000;
+	private static final Vector UP = new Vector(1, 0, 0), NORTH = new Vector(0, 1, 0), EAST = new Vector(0, 0, 1);
+
+	private final Vector position = new Vector(), velocity = new Vector(), facing = new Vector(UP);
+	private final Vector targetPosition = new Vector();
+	private final Vector apTargetDirection = new Vector();
+	private final Map<Long, FrameKind> frames = new HashMap<>();
+	private final Map<Long, Long> flightFrames = new HashMap<>();
+	private long vesselId, targetId;
+	private double mass = 10000, dryMass = 4000, maxThrust = 250000;
+	private double throttle, wheelThrottle, wheelSteering, heading;
+	private double apPitch = 90, apHeading = 90;
+	private long apFrame;
+	private boolean apEngaged, apUsesDirection, brakes, enginesActive, preLaunch, rover;
+	private double charge = MAX_CHARGE, ut = 1000, met;
+	private double worstImpactSpeed;
+
+	private SimulatedVessel() {
+	}
+
+	/**
+	 * Foguete parado na plataforma, com os motores já ativos e a contagem regressiva dispensada.
+	 */
+	public static SimulatedVessel onLaunchpad() {
+		SimulatedVessel vessel = new SimulatedVessel();
+		vessel.enginesActive = true;
+		return vessel;
+	}
+
+	/**
+	 * Nave em queda livre, para o pouso.
+	 *
+	 * @param altitude        - Altitude inicial, em metros
+	 * @param verticalSpeed   - Velocidade vertical inicial (negativa para baixo), em m/s
+	 * @param horizontalSpeed - Velocidade horizontal inicial para o norte, em m/s
+	 */
+	public static SimulatedVessel descending(double altitude, double verticalSpeed, double horizontalSpeed) {
+		SimulatedVessel vessel = new SimulatedVessel();
+		vessel.enginesActive = true;
+		vessel.mass = 6000;
+		vessel.dryMass = 3000;
+		vessel.maxThrust = 120000;
+		vessel.position.setVector(altitude, 0, 0);
+		vessel.velocity.setVector(verticalSpeed, horizontalSpeed, 0);
+		return vessel;
+	}
+
+	/**
+	 * Rover parado no solo, virado para o norte, com uma nave alvo na posição informada.
+	 *
+	 * @param targetNorth - Distância do alvo para o norte, em metros
+	 * @param targetEast  - Distância do alvo para o leste, em metros
+	 */
+	public static SimulatedVessel roverWithTarget(double targetNorth, double targetEast) {
+		SimulatedVessel vessel = new SimulatedVessel();
+		vessel.rover = true;
+		vessel.mass = 1500;
+		vessel.dryMass = 1500;
+		vessel.maxThrust = 0;
+		vessel.facing.set(NORTH);
+		vessel.targetPosition.setVector(0, targetNorth, targetEast);
+		return vessel;
+	}
+
+	public double getAltitude() {
+		return position.x;
+	}
+
+	public double getApoapsisAltitude() {
+		return orbit()[0];
+	}
+
+	public double getSpeed() {
+		return velocity.magnitude();
+	}
+
+	/**
+	 * @return A maior velocidade de impacto com o solo até agora, em m/s.
+	 */
+	public double getWorstImpactSpeed() {
+		return worstImpactSpeed;
+	}
+
+	/**
+	 * @return A distância horizontal até a nave alvo, em metros.
+	 */
+	public double getDistanceToTarget() {
+		return Math.hypot(targetPosition.y - position.y, targetPosition.z - position.z);
+	}
+
+	public boolean isLanded() {
+		return isOnGround();
+	}
+
+	/**
+	 * Registra no servidor os procedimentos do SpaceCenter usados pelos controladores.
+	 */
+	public void install(MockKrpcServer server) {
+		vesselId = server.objectId("Vessel:active");
+		targetId = server.objectId("Vessel:target");
+		server.setSimulation(this);
+		String sc = "SpaceCenter";
+
+		server.register(sc, "get_ActiveVessel", call -> vesselId);
+		server.register(sc, "get_TargetVessel", call -> targetId);
+		server.register(sc, "get_UT", call -> ut);
+		server.register(sc, "WarpTo", call -> {
+			charge = MAX_CHARGE;
+			ut = Math.max(ut, call.number(0));
+			return null;
+		});
+		server.register(sc, "TransformPosition", call -> {
+			Vector world = toWorld(call.object(1), call.vector(0), true);
+			return fromWorld(call.object(2), world, true);
+		});
+		server.register(sc, "TransformDirection", call -> {
+			Vector world = toWorld(call.object(1), call.vector(0), false);
+			return fromWorld(call.object(2), world, false);
+		});
+		server.register(sc, "RaycastDistance", call -> {
+			Vector origin = toWorld(call.object(2), call.vector(0), true);
+			return raycast(origin, toWorld(call.object(2), call.vector(1), false));
+		});
+
+		// Sistemas de referência
+		server.register(sc, "CelestialBody_get_ReferenceFrame", call -> frame(server, FrameKind.BODY));
+		server.register(sc, "CelestialBody_get_NonRotatingReferenceFrame", call -> frame(server, FrameKind.BODY));
+		server.register(sc, "Vessel_get_ReferenceFrame", call -> frame(server, FrameKind.VESSEL));
+		server.register(sc, "Vessel_get_SurfaceReferenceFrame", call -> frame(server, FrameKind.SURFACE));
+		server.register(sc, "Vessel_get_SurfaceVelocityReferenceFrame",
+		                call -> frame(server, FrameKind.SURFACE_VELOCITY)
+		               );
+		server.register(sc, "Vessel_get_OrbitalReferenceFrame", call -> frame(server, FrameKind.SURFACE_VELOCITY));
+
+		// Nave
+		server.register(sc, "Vessel_Flight", call -> {
+			long flight = server.objectId("Flight:" + call.object(1));
+			flightFrames.put(flight, call.object(1));
+			return flight;
+		});
+		server.register(sc, "Vessel_get_Name", call -> call.object(0) == vesselId ? "Simulada" : "Alvo");
+		server.register(sc, "Vessel_get_Mass", call -> mass);
+		server.register(sc, "Vessel_get_DryMass", call -> dryMass);
+		server.register(sc, "Vessel_get_AvailableThrust", call -> enginesActive && hasFuel() ? maxThrust : 0);
+		server.register(sc, "Vessel_get_MaxThrust", call -> maxThrust);
+		server.register(sc, "Vessel_get_SpecificImpulse", call -> ISP);
+		server.register(sc, "Vessel_get_Thrust", call -> currentThrust());
+		server.register(sc, "Vessel_get_Situation", call -> situation());
+		server.register(sc, "Vessel_get_MET", call -> met);
+		server.register(sc, "Vessel_get_MomentOfInertia", call -> new Vector(1000, 1000, 1000));
+		server.register(sc, "Vessel_Position",
+		                call -> fromWorld(call.object(1), call.object(0) == vesselId ? position : targetPosition,
+		                                  true
+		                                 )
+		               );
+		server.register(sc, "Vessel_Velocity", call -> fromWorld(call.object(1), velocity, false));
+		server.register(sc, "Vessel_Direction", call -> fromWorld(call.object(1), facing, false));
+		server.register(sc, "Vessel_Rotation", call -> rotation(orientedBasis(facing), basis(call.object(1))));
+		server.register(sc, "Vessel_BoundingBox",
+		                call -> Arrays.asList(new Vector(-1.5, -2, -1), new Vector(1.5, 2, 1))
+		               );
+
+		// Voo
+		server.register(sc, "Flight_get_MeanAltitude", call -> position.x);
+		server.register(sc, "Flight_get_SurfaceAltitude", call -> position.x);
+		server.register(sc, "Flight_get_BedrockAltitude", call -> position.x);
+		server.register(sc, "Flight_get_Elevation", call -> 0.0);
+		server.register(sc, "Flight_get_VerticalSpeed", call -> velocity.x);
+		server.register(sc, "Flight_get_HorizontalSpeed", call -> Math.hypot(velocity.y, velocity.z));
+		server.register(sc, "Flight_get_Speed", call -> velocity.magnitude());
+		server.register(sc, "Flight_get_DynamicPressure", call -> dynamicPressure());
+		server.register(sc, "Flight_get_Prograde", call -> flightDirection(call.object(0), 1));
+		server.register(sc, "Flight_get_Retrograde", call -> flightDirection(call.object(0), -1));
+		server.register(sc, "Flight_get_Velocity",
+		                call -> fromWorld(flightFrames.getOrDefault(call.object(0), 0L), velocity, false)
+		               );
+
+		// Órbita
+		server.register(sc, "Orbit_get_ApoapsisAltitude", call -> orbit()[0]);
+		server.register(sc, "Orbit_get_PeriapsisAltitude", call -> orbit()[1]);
+		server.register(sc, "Orbit_get_Apoapsis", call -> orbit()[0] + RADIUS);
+		server.register(sc, "Orbit_get_Periapsis", call -> orbit()[1] + RADIUS);
+		server.register(sc, "Orbit_get_SemiMajorAxis", call -> RADIUS + (orbit()[0] + orbit()[1]) / 2);
+		server.register(sc, "Orbit_get_Radius", call -> RADIUS + position.x);
+		server.register(sc, "Orbit_get_Speed", call -> velocity.magnitude());
+		server.register(sc, "Orbit_get_TimeToApoapsis", call -> Math.max(0, velocity.x / GRAVITY));
+
+		// Corpo celeste
+		server.register(sc, "CelestialBody_get_Name", call -> "Kerbin");
+		server.register(sc, "CelestialBody_get_SurfaceGravity", call -> GRAVITY);
+		server.register(sc, "CelestialBody_get_GravitationalParameter", call -> GRAVITATIONAL_PARAMETER);
+		server.register(sc, "CelestialBody_get_EquatorialRadius", call -> RADIUS);
+		server.register(sc, "CelestialBody_get_HasAtmosphere", call -> true);
+		server.register(sc, "CelestialBody_get_AtmosphereDepth", call -> ATMOSPHERE_DEPTH);
+		server.register(sc, "CelestialBody_LatitudeAtPosition",
+		                call -> toDegrees(toWorld(call.object(2), call.vector(1), true).y)
+		               );
+		server.register(sc, "CelestialBody_LongitudeAtPosition",
+		                call -> toDegrees(toWorld(call.object(2), call.vector(1), true).z)
+		               );
+		server.register(sc, "CelestialBody_SurfacePosition", call -> {
+			Vector surface = new Vector(0, toMeters(call.number(1)), toMeters(call.number(2)));
+			return fromWorld(call.object(3), surface, true);
+		});
+		server.register(sc, "CelestialBody_SurfaceHeight", call -> 0.0);
+		server.register(sc, "CelestialBody_BedrockHeight", call -> 0.0);
+
+		// Recursos
+		server.register(sc, "Resources_Max", call -> call.string(1).equals("ElectricCharge") ? MAX_CHARGE : 0);
+		server.register(sc, "Resources_Amount", call -> call.string(1).equals("ElectricCharge") ? charge : 0);
+		server.register(sc, "Resources_HasResource", call -> call.string(1).equals("ElectricCharge"));
+
+		// Controles
+		server.register(sc, "Control_get_Throttle", call -> throttle);
+		server.register(sc, "Control_set_Throttle", call -> throttle = clamp(call.number(1), 0, 1));
+		server.register(sc, "Control_set_WheelThrottle", call -> wheelThrottle = clamp(call.number(1), -1, 1));
+		server.register(sc, "Control_set_WheelSteering", call -> wheelSteering = clamp(call.number(1), -1, 1));
+		server.register(sc, "Control_get_Brakes", call -> brakes);
+		server.register(sc, "Control_set_Brakes", call -> brakes = call.bool(1));
+		server.register(sc, "Control_get_CurrentStage", call -> 0);
+		server.register(sc, "Control_ActivateNextStage", call -> {
+			enginesActive = true;
+			preLaunch = false;
+			return Collections.emptyList();
+		});
+
+		// Piloto automático
+		server.register(sc, "AutoPilot_Engage", call -> apEngaged = true);
+		server.register(sc, "AutoPilot_Disengage", call -> apEngaged = false);
+		server.register(sc, "AutoPilot_set_ReferenceFrame", call -> apFrame = call.object(1));
+		server.register(sc, "AutoPilot_get_ReferenceFrame", call -> apFrame);
+		server.register(sc, "AutoPilot_TargetPitchAndHeading", call -> {
+			apPitch = call.number(1);
+			apHeading = call.number(2);
+			apUsesDirection = false;
+			return null;
+		});
+		server.register(sc, "AutoPilot_set_TargetPitch", call -> {
+			apPitch = call.number(1);
+			apUsesDirection = false;
+			return null;
+		});
+		server.register(sc, "AutoPilot_set_TargetHeading", call -> {
+			apHeading = call.number(1);
+			apUsesDirection = false;
+			return null;
+		});
+		server.register(sc, "AutoPilot_set_TargetDirection", call -> {
+			apTargetDirection.set(call.vector(1));
+			apUsesDirection = true;
+			return null;
+		});
+		server.register(sc, "AutoPilot_get_Error", call -> 0f);
+		server.register(sc, "AutoPilot_get_HeadingError", call -> 0f);
+		server.register(sc, "AutoPilot_get_PitchError", call -> 0f);
+	}
+
+	@Override
+	public void step(double deltaSeconds) {
+		met += deltaSeconds;
+		ut += deltaSeconds;
+		if (rover) {
+			charge = Math.max(0, charge - deltaSeconds * (0.2 + Math.abs(wheelThrottle)));
+		}
+		if (apEngaged) {
+			pointAutoPilot();
+		}
+		double thrustAcceleration = currentThrust() / mass;
+		if (thrustAcceleration > 0) {
+			mass = Math.max(dryMass, mass - currentThrust() / (ISP * GRAVITY) * deltaSeconds);
+		}
+		double verticalAcceleration = facing.x * thrustAcceleration - GRAVITY;
+		if (isOnGround() && verticalAcceleration <= 0) {
+			driveOnGround(deltaSeconds);
+			return;
+		}
+		velocity.setVector(velocity.x + verticalAcceleration * deltaSeconds,
+		                   velocity.y + facing.y * thrustAcceleration * deltaSeconds,
+		                   velocity.z + facing.z * thrustAcceleration * deltaSeconds
+		                  );
+		position.sumInto(velocity.multiply(deltaSeconds), position);
+		if (position.x <= 0) {
+			worstImpactSpeed = Math.max(worstImpactSpeed, velocity.magnitude());
+			position.x = 0;
+			velocity.setVector(0, 0, 0);
+		}
+	}
+
+	private void driveOnGround(double deltaSeconds) {
+		position.x = 0;
+		if (!rover) {
+			velocity.setVector(0, 0, 0);
+			return;
+		}
+		Vector forward = new Vector(0, Math.cos(Math.toRadians(heading)), Math.sin(Math.toRadians(heading)));
+		double speed = velocity.dotP(forward);
+		speed += (charge > 0 ? wheelThrottle * ROVER_ACCELERATION : 0) * deltaSeconds;
+		if (brakes) {
+			speed = Math.signum(speed) * Math.max(0, Math.abs(speed) - ROVER_BRAKING * deltaSeconds);
+		}
+		// Esterçamento positivo vira para a esquerda, como no KSP
+		heading = (heading - wheelSteering * speed * ROVER_TURN_RATE * deltaSeconds + 360) % 360;
+		forward.setVector(0, Math.cos(Math.toRadians(heading)), Math.sin(Math.toRadians(heading)));
+		facing.set(forward);
+		velocity.set(forward.multiply(speed));
+		position.sumInto(velocity.multiply(deltaSeconds), position);
+	}
+
+	private void pointAutoPilot() {
+		if (apUsesDirection) {
+			Vector direction = toWorld(apFrame, apTargetDirection, false);
+			if (direction.magnitude() > 0) {
+				facing.set(direction.normalize());
+			}
+			return;
+		}
+		double pitch = Math.toRadians(apPitch), azimuth = Math.toRadians(apHeading);
+		facing.setVector(Math.sin(pitch), Math.cos(pitch) * Math.cos(azimuth), Math.cos(pitch) * Math.sin(azimuth));
+	}
+
+	private double currentThrust() {
+		return enginesActive && hasFuel() ? throttle * maxThrust : 0;
+	}
+
+	private boolean hasFuel() {
+		return mass > dryMass;
+	}
+
+	private boolean isOnGround() {
+		return position.x <= 0;
+	}
+
+	private VesselSituation situation() {
+		if (isOnGround()) {
+			return preLaunch ? VesselSituation.PRE_LAUNCH : VesselSituation.LANDED;
+		}
+		double[] orbit = orbit();
+		if (orbit[1] > ATMOSPHERE_DEPTH) {
+			return VesselSituation.ORBITING;
+		}
+		return position.x > ATMOSPHERE_DEPTH ? VesselSituation.SUB_ORBITAL : VesselSituation.FLYING;
+	}
+
+	/**
+	 * @return Apoastro e periastro, em altitude acima da superfície.
+	 */
+	private double[] orbit() {
+		double radius = RADIUS + position.x;
+		double horizontalSpeed = Math.hypot(velocity.y, velocity.z);
+		double energy = velocity.magnitude() * velocity.magnitude() / 2 - GRAVITATIONAL_PARAMETER / radius;
+		if (energy >= 0) {
+			return new double[]{ Double.POSITIVE_INFINITY, radius - RADIUS };
+		}
+		double semiMajorAxis = -GRAVITATIONAL_PARAMETER / (2 * energy);
+		double angularMomentum = radius * horizontalSpeed;
+		double eccentricity = Math.sqrt(Math.max(0, 1 + 2 * energy * angularMomentum * angularMomentum /
+				(GRAVITATIONAL_PARAMETER * GRAVITATIONAL_PARAMETER)));
+		return new double[]{ semiMajorAxis * (1 + eccentricity) - RADIUS,
+				semiMajorAxis * (1 - eccentricity) - RADIUS };
+	}
+
+	private double dynamicPressure() {
+		if (position.x >= ATMOSPHERE_DEPTH) {
+			return 0;
+		}
+		double density = 1.225 * Math.exp(-position.x / 5600);
+		return 0.5 * density * velocity.magnitude() * velocity.magnitude();
+	}
+
+	private Vector flightDirection(long flight, int sign) {
+		if (velocity.magnitude() < 1e-6) {
+			return new Vector();
+		}
+		return fromWorld(flightFrames.getOrDefault(flight, 0L), velocity.normalize().multiply(sign), false);
+	}
+
+	/**
+	 * Distância até o solo na direção informada, ou infinito se o raio não atingir o solo.
+	 */
+	private double raycast(Vector origin, Vector direction) {
+		Vector unit = direction.normalize();
+		if (unit.x >= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return Math.max(0, origin.x) / -unit.x;
+	}
+
+	private long frame(MockKrpcServer server, FrameKind kind) {
+		long id = server.objectId("ReferenceFrame:" + kind);
+		frames.put(id, kind);
+		return id;
+	}
+
+	private Vector toWorld(long frameId, Vector vector, boolean isPosition) {
+		Vector[] basis = basis(frameId);
+		Vector world = basis[1].multiply(vector.x).sum(basis[2].multiply(vector.y)).sum(basis[3].multiply(vector.z));
+		return isPosition ? world.sum(basis[0]) : world;
+	}
+
+	private Vector fromWorld(long frameId, Vector vector, boolean isPosition) {
+		Vector[] basis = basis(frameId);
+		Vector local = isPosition ? vector.subtract(basis[0]) : vector;
+		return new Vector(local.dotP(basis[1]), local.dotP(basis[2]), local.dotP(basis[3]));
+	}
+
+	/**
+	 * @return Origem e eixos X, Y e Z do sistema de referência, nas coordenadas do corpo celeste.
+	 */
+	private Vector[] basis(long frameId) {
+		switch (frames.getOrDefault(frameId, FrameKind.BODY)) {
+			case SURFACE:
+				return new Vector[]{ position, UP, NORTH, EAST };
+			case VESSEL:
+				return orientedBasis(facing);
+			case SURFACE_VELOCITY:
+				return orientedBasis(velocity.magnitude() > 1e-6 ? velocity.normalize() : facing);
+			default:
+				return new Vector[]{ new Vector(), UP, NORTH, EAST };
+		}
+	}
+
+	private Vector[] orientedBasis(Vector forward) {
+		Vector reference = Math.abs(forward.dotP(UP)) > 0.99 ? NORTH : UP;
+		Vector right = cross(reference, forward).normalize();
+		Vector third = cross(right, forward);
+		return new Vector[]{ position, right, forward, third };
+	}
+
+	/**
+	 * @return O quatérnio (x, y, z, w) que leva vetores do sistema {@code from} para o sistema {@code to}.
+	 */
+	private static double[] rotation(Vector[] from, Vector[] to) {
+		double[][] m = new double[3][3];
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < 3; j++) {
+				m[i][j] = to[i + 1].dotP(from[j + 1]);
+			}
+		}
+		double trace = m[0][0] + m[1][1] + m[2][2];
+		if (trace > 0) {
+			double s = 0.5 / Math.sqrt(trace + 1);
+			return new double[]{ (m[2][1] - m[1][2]) * s, (m[0][2] - m[2][0]) * s, (m[1][0] - m[0][1]) * s,
+					0.25 / s };
+		}
+		if (m[0][0] > m[1][1] && m[0][0] > m[2][2]) {
+			double s = 2 * Math.sqrt(1 + m[0][0] - m[1][1] - m[2][2]);
+			return new double[]{ 0.25 * s, (m[0][1] + m[1][0]) / s, (m[0][2] + m[2][0]) / s,
+					(m[2][1] - m[1][2]) / s };
+		}
+		if (m[1][1] > m[2][2]) {
+			double s = 2 * Math.sqrt(1 + m[1][1] - m[0][0] - m[2][2]);
+			return new double[]{ (m[0][1] + m[1][0]) / s, 0.25 * s, (m[1][2] + m[2][1]) / s,
+					(m[0][2] - m[2][0]) / s };
+		}
+		double s = 2 * Math.sqrt(1 + m[2][2] - m[0][0] - m[1][1]);
+		return new double[]{ (m[0][2] + m[2][0]) / s, (m[1][2] + m[2][1]) / s, 0.25 * s, (m[1][0] - m[0][1]) / s };
+	}
+
+	private static Vector cross(Vector a, Vector b) {
+		return new Vector(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+	}
+
+	private static double toDegrees(double meters) {
+		return Math.toDegrees(meters / RADIUS);
+	}
+
+	private static double toMeters(double degrees) {
+		return Math.toRadians(degrees) * RADIUS;
+	}
+
+	private static double clamp(double value, double min, double max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	private enum FrameKind {
+		BODY, SURFACE, VESSEL, SURFACE_VELOCITY
+	}
+}
@@ -0,0 +1,206 @@
+package com.pesterenan.utils;
+
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.services.SpaceCenter.AutoPilot;
+import krpc.client.services.SpaceCenter.CelestialBody;
+import krpc.client.services.SpaceCenter.Control;
+import krpc.client.services.SpaceCenter.Flight;
+import krpc.client.services.SpaceCenter.ReferenceFrame;
+import krpc.client.services.SpaceCenter.Resources;
+import krpc.client.services.SpaceCenter.Vessel;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Cache por conexão dos valores que não mudam durante a missão.
+ * <p>
+ * As constantes dos corpos celestes (gravidade, parâmetro gravitacional, sistema de referência...) valem enquanto a
+ * conexão existir. As da nave (piloto automático, controles, sistemas de referência, capacidade da bateria) valem
+ * até a troca de nave, quando {@link #invalidateVessels()} deve ser chamado. Cada valor só é buscado no servidor na
+ * primeira vez em que é pedido.
+ */
+public class ConstantsCache {
+
+	private static final Map<Connection, ConstantsCache> caches = new IdentityHashMap<>();
+
+	private final Map<CelestialBody, BodyConstants> bodies = new HashMap<>();
+	private final Map<Vessel, VesselConstants> vessels = new HashMap<>();
+
+	private ConstantsCache() {
+	}
+
+	/**
+	 * Retorna o cache da conexão informada, criando um novo se necessário.
+	 */
+	public static synchronized ConstantsCache of(Connection connection) {
+		return caches.computeIfAbsent(connection, c -> new ConstantsCache());
+	}
+
+	/**
+	 * Descarta o cache da conexão informada, quando ela é fechada ou substituída.
+	 */
+	public static synchronized void discard(Connection connection) {
+		caches.remove(connection);
+	}
+
+	/**
+	 * @return As constantes do corpo celeste informado.
+	 */
+	public synchronized BodyConstants body(CelestialBody body) {
+		return bodies.computeIfAbsent(body, BodyConstants::new);
+	}
+
+	/**
+	 * @return As constantes da nave informada, válidas até a próxima troca de nave.
+	 */
+	public synchronized VesselConstants vessel(Vessel vessel) {
+		return vessels.computeIfAbsent(vessel, VesselConstants::new);
+	}
+
+	/**
+	 * Descarta as constantes das naves, para serem buscadas de novo. Chamado na troca de nave.
+	 */
+	public synchronized void invalidateVessels() {
+		vessels.clear();
+	}
+
+	/**
+	 * Constantes de um corpo celeste.
+	 */
+	public static class BodyConstants {
+		private final CelestialBody body;
+		private ReferenceFrame referenceFrame, nonRotatingReferenceFrame;
+		private Float surfaceGravity, gravitationalParameter, equatorialRadius;
+		private String name;
+
+		private BodyConstants(CelestialBody body) {
+			this.body = body;
+		}
+
+		public synchronized ReferenceFrame getReferenceFrame() throws RPCException {
+			if (referenceFrame == null) {
+				referenceFrame = body.getReferenceFrame();
+			}
+			return referenceFrame;
+		}
+
+		public synchronized ReferenceFrame getNonRotatingReferenceFrame() throws RPCException {
+			if (nonRotatingReferenceFrame == null) {
+				nonRotatingReferenceFrame = body.getNonRotatingReferenceFrame();
+			}
+			return nonRotatingReferenceFrame;
+		}
+
+		public synchronized float getSurfaceGravity() throws RPCException {
+			if (surfaceGravity == null) {
+				surfaceGravity = body.getSurfaceGravity();
+			}
+			return surfaceGravity;
+		}
+
+		public synchronized float getGravitationalParameter() throws RPCException {
+			if (gravitationalParameter == null) {
+				gravitationalParameter = body.getGravitationalParameter();
+			}
+			return gravitationalParameter;
+		}
+
+		public synchronized float getEquatorialRadius() throws RPCException {
+			if (equatorialRadius == null) {
+				equatorialRadius = body.getEquatorialRadius();
+			}
+			return equatorialRadius;
+		}
+
+		public synchronized String getName() throws RPCException {
+			if (name == null) {
+				name = body.getName();
+			}
+			return name;
+		}
+	}
+
+	/**
+	 * Constantes de uma nave.
+	 */
+	public static class VesselConstants {
+		private final Vessel vessel;
+		private final Map<ReferenceFrame, Flight> flights = new HashMap<>();
+		private AutoPilot autoPilot;
+		private Control control;
+		private Resources resources;
+		private ReferenceFrame referenceFrame, surfaceReferenceFrame, surfaceVelocityReferenceFrame;
+		private Float maxElectricCharge;
+
+		private VesselConstants(Vessel vessel) {
+			this.vessel = vessel;
+		}
+
+		public synchronized AutoPilot getAutoPilot() throws RPCException {
+			if (autoPilot == null) {
+				autoPilot = vessel.getAutoPilot();
+			}
+			return autoPilot;
+		}
+
+		public synchronized Control getControl() throws RPCException {
+			if (control == null) {
+				control = vessel.getControl();
+			}
+			return control;
+		}
+
+		public synchronized Resources getResources() throws RPCException {
+			if (resources == null) {
+				resources = vessel.getResources();
+			}
+			return resources;
+		}
+
+		public synchronized ReferenceFrame getReferenceFrame() throws RPCException {
+			if (referenceFrame == null) {
+				referenceFrame = vessel.getReferenceFrame();
+			}
+			return referenceFrame;
+		}
+
+		public synchronized ReferenceFrame getSurfaceReferenceFrame() throws RPCException {
+			if (surfaceReferenceFrame == null) {
+				surfaceReferenceFrame = vessel.getSurfaceReferenceFrame();
+			}
+			return surfaceReferenceFrame;
+		}
+
+		public synchronized ReferenceFrame getSurfaceVelocityReferenceFrame() throws RPCException {
+			if (surfaceVelocityReferenceFrame == null) {
+				surfaceVelocityReferenceFrame = vessel.getSurfaceVelocityReferenceFrame();
+			}
+			return surfaceVelocityReferenceFrame;
+		}
+
+		/**
+		 * @return O objeto de parâmetros de voo da nave no sistema de referência informado.
+		 */
+		public synchronized Flight flight(ReferenceFrame referenceFrame) throws RPCException {
+			Flight flight = flights.get(referenceFrame);
+			if (flight == null) {
+				flight = vessel.flight(referenceFrame);
+				flights.put(referenceFrame, flight);
+			}
+			return flight;
+		}
+
+		/**
+		 * @return A capacidade total de carga elétrica da nave.
+		 */
+		public synchronized float getMaxElectricCharge() throws RPCException {
+			if (maxElectricCharge == null) {
+				maxElectricCharge = getResources().max("ElectricCharge");
+			}
+			return maxElectricCharge;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.pesterenan.utils;
+
+import krpc.client.RPCException;
+import krpc.client.StreamException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Laço de controle com período fixo.
+ * <p>
+ * Os passos de cada controlador são executados na própria thread do módulo, em uma taxa fixa medida a partir do
+ * início do laço, e não mais com um {@code Thread.sleep} fixo após o trabalho de cada iteração. Assim o período real
+ * não varia com a latência das chamadas RPC, e um passo que bloqueia só atrasa o próprio laço. Quando um passo demora
+ * mais do que o período, o atraso é contabilizado como estouro e os ciclos perdidos são descartados em vez de
+ * executados em sequência para "recuperar o tempo". Os estouros ficam nas estatísticas ({@link #getStatistics()}),
+ * mostradas no diálogo de diagnóstico.
+ * <p>
+ * Com o {@link MissionClock} virtual, os passos são executados em sequência na própria thread, e o relógio avança
+ * exatamente um período entre eles.
+ */
+public class ControlLoop {
+
+	private static final Map<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+	private final String name;
+	private final long periodNanos;
+	private long nextSlot;
+	private long startTime;
+	private int ticks, overruns, droppedTicks;
+	private long worstTickNanos;
+
+	private ControlLoop(String name, long periodMillis) {
+		this.name = name;
+		this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+	}
+
+	/**
+	 * Cria um laço de controle com o período informado.
+	 *
+	 * @param name         - Nome do laço, usado nas estatísticas
+	 * @param periodMillis - Período entre o início de cada passo, em milissegundos
+	 * @return Um novo laço de controle
+	 */
+	public static ControlLoop every(String name, long periodMillis) {
+		return new ControlLoop(name, periodMillis);
+	}
+
+	/**
+	 * Executa o passo na taxa fixa do laço até que ele retorne {@code false} ou lance uma exceção. O passo roda na
+	 * thread que chama este método, que ao ser interrompida cancela o laço.
+	 *
+	 * @param step - Passo do controlador, que retorna se o laço deve continuar
+	 */
+	public void run(Step step) throws RPCException, StreamException, InterruptedException {
+		if (MissionClock.isVirtual()) {
+			runVirtual(step);
+			return;
+		}
+		startTime = System.nanoTime();
+		nextSlot = 0;
+		while (true) {
+			long wait = startTime + nextSlot * periodNanos - System.nanoTime();
+			if (wait > 0) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} else if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (!tick(step)) {
+				return;
+			}
+		}
+	}
+
+	private void runVirtual(Step step) throws RPCException, StreamException, InterruptedException {
+		while (true) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			long start = System.nanoTime();
+			boolean keepRunning = step.tick();
+			long tickTime = System.nanoTime() - start;
+			ticks++;
+			worstTickNanos = Math.max(worstTickNanos, tickTime);
+			statistics.computeIfAbsent(name, Statistics::new).record(tickTime, false, 0);
+			if (!keepRunning) {
+				return;
+			}
+			MissionClock.advance(periodNanos);
+		}
+	}
+
+	/**
+	 * Executa um passo no ciclo atual, descartando os ciclos que já passaram.
+	 *
+	 * @return Se o laço deve continuar
+	 */
+	private boolean tick(Step step) throws RPCException, StreamException, InterruptedException {
+		long now = System.nanoTime();
+		long slot = Math.max(nextSlot, (now - startTime) / periodNanos);
+		long dropped = slot - nextSlot;
+		droppedTicks += dropped;
+		nextSlot = slot + 1;
+		boolean keepRunning = step.tick();
+		ticks++;
+		long tickTime = System.nanoTime() - now;
+		worstTickNanos = Math.max(worstTickNanos, tickTime);
+		if (tickTime > periodNanos) {
+			overruns++;
+		}
+		statistics.computeIfAbsent(name, Statistics::new).record(tickTime, tickTime > periodNanos, dropped);
+		return keepRunning;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getTicks() {
+		return ticks;
+	}
+
+	public int getOverruns() {
+		return overruns;
+	}
+
+	public int getDroppedTicks() {
+		return droppedTicks;
+	}
+
+	/**
+	 * @return Estatísticas acumuladas de todos os laços já executados, agrupadas pelo nome do laço.
+	 */
+	public static Map<String, Statistics> getStatistics() {
+		return Collections.unmodifiableMap(new TreeMap<>(statistics));
+	}
+
+	/**
+	 * Zera as estatísticas acumuladas, para medir um novo trecho de execução.
+	 */
+	public static void resetStatistics() {
+		statistics.clear();
+	}
+
+	/**
+	 * Estatísticas acumuladas dos laços com um mesmo nome.
+	 */
+	public static class Statistics {
+		private final String name;
+		private long ticks, overruns, droppedTicks, totalTickNanos, worstTickNanos;
+
+		private Statistics(String name) {
+			this.name = name;
+		}
+
+		private synchronized void record(long tickNanos, boolean overrun, long dropped) {
+			ticks++;
+			totalTickNanos += tickNanos;
+			worstTickNanos = Math.max(worstTickNanos, tickNanos);
+			if (overrun) {
+				overruns++;
+			}
+			droppedTicks += dropped;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public synchronized long getTicks() {
+			return ticks;
+		}
+
+		public synchronized long getOverruns() {
+			return overruns;
+		}
+
+		public synchronized long getDroppedTicks() {
+			return droppedTicks;
+		}
+
+		public synchronized double getAverageTickMillis() {
+			return ticks == 0 ? 0 : totalTickNanos / 1e6 / ticks;
+		}
+
+		public synchronized double getWorstTickMillis() {
+			return worstTickNanos / 1e6;
+		}
+	}
+
+	/**
+	 * Passo de um controlador, executado uma vez por ciclo do laço.
+	 */
+	@FunctionalInterface
+	public interface Step {
+		/**
+		 * @return {@code true} para continuar o laço, {@code false} para encerrá-lo.
+		 */
+		boolean tick() throws RPCException, StreamException, InterruptedException;
+	}
+}
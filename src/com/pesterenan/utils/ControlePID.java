@@ -11,7 +11,7 @@ public class ControlePID {
 	private double lastValue, lastTime = 0;
 
 	public double calcPID(double currentValue, double limitValue) {
-		double now = System.currentTimeMillis();
+		double now = MissionClock.currentTimeMillis();
 		double changeInTime = now - this.lastTime;
 
 		if (changeInTime >= this.timeSample) {
@@ -0,0 +1,236 @@
+package com.pesterenan.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Captura do tráfego com o servidor KRPC, para reproduzir o voo depois sem o jogo.
+ * <p>
+ * Gravada pelo {@link RpcMonitor}: cada requisição é guardada junto com a sua resposta e os instantes de envio e
+ * recebimento, cada atualização de streams com o instante em que chegou, e marcas de texto (ex: o início de um
+ * módulo) servem de referência para alinhar a reprodução. As mensagens são guardadas como vieram do protocolo.
+ * <p>
+ * Formato: a assinatura "MPCP", a versão ({@code short}) e o horário de início (ms desde 1970); depois as entradas,
+ * cada uma com o tipo ({@code byte}), o instante desde o início (ns) e o conteúdo do tipo.
+ */
+public class FlightCapture implements Closeable {
+
+	private static final int MAGIC = 0x4D504350; // "MPCP"
+	private static final short VERSION = 1;
+	private static final String MODULE_MARK = "module";
+
+	private final DataOutputStream output;
+	private final long startNanos = MissionClock.nanoTime();
+
+	/**
+	 * Cria o arquivo de captura.
+	 *
+	 * @param path - Arquivo a criar. Não pode existir.
+	 */
+	public FlightCapture(Path path) throws IOException {
+		output = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE_NEW), 1 << 16));
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeLong(MissionClock.currentTimeMillis());
+	}
+
+	/**
+	 * Grava uma requisição e a sua resposta.
+	 *
+	 * @param sentNanos     - Instante do envio da requisição, de {@link MissionClock#nanoTime()}
+	 * @param receivedNanos - Instante da chegada da resposta, de {@link MissionClock#nanoTime()}
+	 */
+	public synchronized void call(long sentNanos, long receivedNanos, byte[] request, byte[] response)
+			throws IOException {
+		output.writeByte(Kind.CALL.ordinal());
+		output.writeLong(sentNanos - startNanos);
+		output.writeLong(receivedNanos - startNanos);
+		writeBytes(request);
+		writeBytes(response);
+	}
+
+	/**
+	 * Grava uma atualização de streams ({@code StreamUpdate}).
+	 *
+	 * @param receivedNanos - Instante da chegada da atualização, de {@link MissionClock#nanoTime()}
+	 */
+	public synchronized void streamUpdate(long receivedNanos, byte[] update) throws IOException {
+		output.writeByte(Kind.STREAM_UPDATE.ordinal());
+		output.writeLong(receivedNanos - startNanos);
+		writeBytes(update);
+	}
+
+	/**
+	 * Grava uma marca de texto no instante atual.
+	 */
+	public synchronized void mark(String text) throws IOException {
+		output.writeByte(Kind.MARK.ordinal());
+		output.writeLong(MissionClock.nanoTime() - startNanos);
+		output.writeUTF(text);
+	}
+
+	/**
+	 * @return O texto da marca de início de um módulo, com os comandos usados para iniciá-lo.
+	 */
+	public static String moduleMark(Map<String, String> commands) {
+		StringBuilder text = new StringBuilder(MODULE_MARK);
+		commands.forEach((key, value) -> text.append('\n').append(key).append('=').append(value));
+		return text.toString();
+	}
+
+	/**
+	 * @return Os comandos gravados em uma marca de {@link #moduleMark(Map)}, ou {@code null} se a marca for outra.
+	 */
+	public static Map<String, String> parseModuleMark(String text) {
+		String[] lines = text.split("\n");
+		if (!lines[0].equals(MODULE_MARK)) {
+			return null;
+		}
+		Map<String, String> commands = new HashMap<>();
+		for (int i = 1; i < lines.length; i++) {
+			int separator = lines[i].indexOf('=');
+			if (separator > 0) {
+				commands.put(lines[i].substring(0, separator), lines[i].substring(separator + 1));
+			}
+		}
+		return commands;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		output.close();
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Lê todas as entradas de um arquivo de captura. Uma entrada incompleta no fim do arquivo (captura interrompida)
+	 * é ignorada.
+	 *
+	 * @return O horário de início da captura e as entradas, na ordem em que foram gravadas
+	 */
+	public static Recording read(Path path) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (input.readInt() != MAGIC) {
+				throw new IOException("Arquivo não é uma captura de voo: " + path);
+			}
+			input.readShort();
+			Recording recording = new Recording(input.readLong());
+			try {
+				while (true) {
+					int kind = input.read();
+					if (kind < 0) {
+						break;
+					}
+					Entry entry = new Entry(Kind.values()[kind], input.readLong());
+					switch (entry.kind) {
+						case CALL:
+							entry.endNanos = input.readLong();
+							entry.message = readBytes(input);
+							entry.reply = readBytes(input);
+							break;
+						case STREAM_UPDATE:
+							entry.endNanos = entry.nanos;
+							entry.message = readBytes(input);
+							break;
+						case MARK:
+							entry.endNanos = entry.nanos;
+							entry.text = input.readUTF();
+							break;
+					}
+					recording.entries.add(entry);
+				}
+			} catch (EOFException ignored) {
+				// Captura interrompida no meio de uma entrada
+			}
+			return recording;
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream input) throws IOException {
+		byte[] bytes = new byte[input.readInt()];
+		input.readFully(bytes);
+		return bytes;
+	}
+
+	public enum Kind {
+		CALL, STREAM_UPDATE, MARK
+	}
+
+	/**
+	 * Conteúdo de um arquivo de captura.
+	 */
+	public static class Recording {
+		private final long startMillis;
+		private final List<Entry> entries = new ArrayList<>();
+
+		private Recording(long startMillis) {
+			this.startMillis = startMillis;
+		}
+
+		public long getStartMillis() {
+			return startMillis;
+		}
+
+		public List<Entry> getEntries() {
+			return entries;
+		}
+	}
+
+	/**
+	 * Entrada da captura. Em {@link Kind#CALL}, {@link #getMessage()} é o {@code Request} e {@link #getReply()} o
+	 * {@code Response}; em {@link Kind#STREAM_UPDATE}, {@link #getMessage()} é o {@code StreamUpdate}.
+	 */
+	public static class Entry {
+		private final Kind kind;
+		private final long nanos;
+		private long endNanos;
+		private byte[] message, reply;
+		private String text;
+
+		private Entry(Kind kind, long nanos) {
+			this.kind = kind;
+			this.nanos = nanos;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public long getEndNanos() {
+			return endNanos;
+		}
+
+		public byte[] getMessage() {
+			return message;
+		}
+
+		public byte[] getReply() {
+			return reply;
+		}
+
+		public String getText() {
+			return text;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package com.pesterenan.utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gravador de voo em formato binário.
+ * <p>
+ * Os valores mais recentes de cada {@link Channel} (telemetria e comandos dos controladores) são guardados com
+ * {@link #set(Channel, double)}, e cada {@link #sample()} acrescenta um registro com todos eles a um buffer circular
+ * fora do heap, de tamanho fixo. Uma thread própria copia os registros novos do buffer para um arquivo mapeado em
+ * memória a cada segundo, então gravar um voo longo não cria objetos Java nem aumenta o heap. Se o buffer encher
+ * antes da cópia, os registros mais antigos são descartados e contados em {@link #getDroppedRecords()}.
+ * <p>
+ * Formato do arquivo (little-endian): um cabeçalho de {@value #HEADER_SIZE} bytes com a assinatura "MPFR", a versão,
+ * a quantidade de canais, o tamanho do registro, o horário de início (ms desde 1970), a quantidade de registros
+ * gravados e os nomes dos canais separados por vírgula. Em seguida os registros, cada um com o tempo desde o início
+ * (ns, {@code long}) e o valor de cada canal ({@code double}, NaN enquanto o canal não tiver valor).
+ */
+public class FlightRecorder implements Closeable {
+
+	public static final int MAGIC = 0x5246504D; // "MPFR"
+	public static final int HEADER_SIZE = 256;
+	private static final short VERSION = 1;
+	private static final int COUNT_OFFSET = 20, NAMES_OFFSET = 28;
+	private static final int RECORD_SIZE = Long.BYTES + Channel.values().length * Double.BYTES;
+	private static final int RECORDS_PER_SEGMENT = 8192;
+	private static final long FLUSH_PERIOD_MILLIS = 1000;
+
+	private final FileChannel file;
+	private final MappedByteBuffer header;
+	private final ByteBuffer ring;
+	private final int capacity;
+	private final double[] values = new double[Channel.values().length];
+	private final long startNanos = System.nanoTime();
+	private final ScheduledExecutorService flusher;
+	private MappedByteBuffer segment;
+	// Registros escritos no buffer, copiados do buffer, e gravados no arquivo (sem contar os descartados)
+	private long written, flushed, stored, dropped;
+	private boolean closed;
+
+	/**
+	 * Cria o arquivo de registro e começa a gravar.
+	 *
+	 * @param path     - Arquivo a criar. Não pode existir.
+	 * @param capacity - Quantidade de registros que cabem no buffer circular entre duas cópias para o arquivo
+	 */
+	public FlightRecorder(Path path, int capacity) throws IOException {
+		this.capacity = capacity;
+		Arrays.fill(values, Double.NaN);
+		ring = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+		                        StandardOpenOption.WRITE
+		                       );
+		header = file.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		byte[] names = Channel.names().getBytes(StandardCharsets.US_ASCII);
+		header.putInt(MAGIC)
+		      .putShort(VERSION)
+		      .putShort((short) Channel.values().length)
+		      .putInt(RECORD_SIZE)
+		      .putLong(System.currentTimeMillis())
+		      .putLong(0)
+		      .putShort((short) names.length)
+		      .put(names);
+		flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "FlightRecorder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(this::flushQuietly, FLUSH_PERIOD_MILLIS, FLUSH_PERIOD_MILLIS,
+		                               TimeUnit.MILLISECONDS
+		                              );
+	}
+
+	/**
+	 * Atualiza o valor de um canal. O valor entra no próximo registro gravado por {@link #sample()}.
+	 */
+	public synchronized void set(Channel channel, double value) {
+		values[channel.ordinal()] = value;
+	}
+
+	/**
+	 * Acrescenta ao buffer um registro com o valor atual de todos os canais.
+	 */
+	public synchronized void sample() {
+		if (closed) {
+			return;
+		}
+		int position = (int) (written % capacity) * RECORD_SIZE;
+		ring.putLong(position, System.nanoTime() - startNanos);
+		for (int i = 0; i < values.length; i++) {
+			ring.putDouble(position + Long.BYTES + i * Double.BYTES, values[i]);
+		}
+		written++;
+		if (written - flushed > capacity) {
+			flushed = written - capacity;
+			dropped++;
+		}
+	}
+
+	/**
+	 * Copia os registros ainda não gravados do buffer para o arquivo.
+	 */
+	public synchronized void flush() throws IOException {
+		if (closed) {
+			return;
+		}
+		while (flushed < written) {
+			int inSegment = (int) (stored % RECORDS_PER_SEGMENT);
+			if (segment == null || inSegment == 0) {
+				segment = file.map(FileChannel.MapMode.READ_WRITE,
+				                   HEADER_SIZE + (stored / RECORDS_PER_SEGMENT) * RECORDS_PER_SEGMENT * RECORD_SIZE,
+				                   (long) RECORDS_PER_SEGMENT * RECORD_SIZE
+				                  );
+			}
+			int inRing = (int) (flushed % capacity);
+			int count = (int) Math.min(written - flushed,
+			                           Math.min(capacity - inRing, RECORDS_PER_SEGMENT - inSegment)
+			                          );
+			ByteBuffer records = ring.duplicate();
+			records.limit((inRing + count) * RECORD_SIZE).position(inRing * RECORD_SIZE);
+			segment.position(inSegment * RECORD_SIZE);
+			segment.put(records);
+			flushed += count;
+			stored += count;
+		}
+		header.putLong(COUNT_OFFSET, stored);
+	}
+
+	/**
+	 * @return Quantidade de registros descartados porque o buffer encheu antes da cópia para o arquivo.
+	 */
+	public synchronized long getDroppedRecords() {
+		return dropped;
+	}
+
+	/**
+	 * Grava os registros pendentes e fecha o arquivo.
+	 */
+	@Override
+	public void close() throws IOException {
+		flusher.shutdownNow();
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			flush();
+			header.force();
+			if (segment != null) {
+				segment.force();
+			}
+			closed = true;
+			file.close();
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (IOException e) {
+			System.err.println("Gravador de voo: falha ao gravar o registro: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Converte um arquivo gravado para CSV, com uma coluna de tempo em segundos e uma coluna por canal.
+	 */
+	public static void exportCsv(Path log, Path csv) throws IOException {
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ);
+		     BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+			                         .order(ByteOrder.LITTLE_ENDIAN);
+			if (data.getInt(0) != MAGIC) {
+				throw new IOException("Arquivo não é um registro de voo: " + log);
+			}
+			int channels = data.getShort(6);
+			int recordSize = data.getInt(8);
+			long records = data.getLong(COUNT_OFFSET);
+			byte[] names = new byte[data.getShort(NAMES_OFFSET)];
+			data.position(NAMES_OFFSET + Short.BYTES);
+			data.get(names);
+			out.write("time," + new String(names, StandardCharsets.US_ASCII));
+			out.newLine();
+			StringBuilder line = new StringBuilder();
+			for (long i = 0; i < records; i++) {
+				int position = (int) (HEADER_SIZE + i * recordSize);
+				line.setLength(0);
+				line.append(data.getLong(position) / 1e9);
+				for (int c = 0; c < channels; c++) {
+					double value = data.getDouble(position + Long.BYTES + c * Double.BYTES);
+					line.append(',');
+					if (!Double.isNaN(value)) {
+						line.append(value);
+					}
+				}
+				out.write(line.toString());
+				out.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Canais gravados. Os comandos dos controladores são associados pelo nome do método de controle.
+	 */
+	public enum Channel {
+		ALTITUDE, SURFACE_ALTITUDE, APOAPSIS, PERIAPSIS, VERTICAL_SPEED, HORIZONTAL_SPEED, MISSION_TIME,
+		THROTTLE("setThrottle"), TARGET_PITCH("setTargetPitch"), TARGET_HEADING("setTargetHeading"),
+		WHEEL_THROTTLE("setWheelThrottle"), WHEEL_STEERING("setWheelSteering");
+
+		private final String controlMethod;
+
+		Channel() {
+			this(null);
+		}
+
+		Channel(String controlMethod) {
+			this.controlMethod = controlMethod;
+		}
+
+		/**
+		 * @return O canal do comando de controle com o nome informado, ou {@code null} se ele não for gravado.
+		 */
+		public static Channel forControl(String method) {
+			for (Channel channel : values()) {
+				if (method.equals(channel.controlMethod)) {
+					return channel;
+				}
+			}
+			return null;
+		}
+
+		private static String names() {
+			StringBuilder names = new StringBuilder();
+			for (Channel channel : values()) {
+				names.append(names.length() == 0 ? "" : ",").append(channel.name().toLowerCase());
+			}
+			return names.toString();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.pesterenan.utils;
+
+import com.pesterenan.model.ActiveVessel;
+import krpc.client.RPCException;
+import krpc.client.Stream;
+import krpc.client.StreamException;
+import org.javatuples.Quartet;
+import org.javatuples.Triplet;
+
+/**
+ * Transformações entre os sistemas de referência da nave, da superfície e do corpo celeste, calculadas localmente.
+ * <p>
+ * Em vez de uma chamada {@code transformPosition}/{@code transformDirection} ao servidor para cada vetor, a rotação
+ * da nave nos sistemas da superfície e do corpo celeste e a posição da nave no corpo celeste são recebidas por
+ * streams. A cada ciclo do controlador, {@link #update()} lê esses valores uma única vez e as transformações
+ * seguintes são apenas contas com quatérnios.
+ * <p>
+ * Os sistemas da nave e da superfície têm a mesma origem (o centro de massa da nave), então entre eles posições e
+ * direções são transformadas pela mesma rotação.
+ */
+public class FrameTransformer extends ActiveVessel {
+
+	// Atualizado uma vez por ciclo do rover (50 ms)
+	private static final float STREAM_RATE = 20;
+	private Stream<Quartet<Double, Double, Double, Double>> rotationOnSurface, rotationOnBody;
+	private Stream<Triplet<Double, Double, Double>> positionOnBody;
+	// Rotação da nave no sistema da superfície, e da superfície no sistema do corpo celeste (x, y, z, w)
+	private final double[] vesselToSurface = { 0, 0, 0, 1 };
+	private final double[] surfaceToBody = { 0, 0, 0, 1 };
+	private final double[] vesselToBody = { 0, 0, 0, 1 }, surfaceToVessel = { 0, 0, 0, 1 };
+	private final Vector vesselPosition = new Vector();
+
+	public FrameTransformer() {
+		super(getConexao());
+		initializeParameters();
+	}
+
+	private void initializeParameters() {
+		try {
+			rotationOnSurface = addStream(STREAM_RATE, naveAtual, "rotation", pontoRefSuperficie);
+			rotationOnBody = addStream(STREAM_RATE, naveAtual, "rotation", pontoRefOrbital);
+			positionOnBody = addStream(STREAM_RATE, naveAtual, "position", pontoRefOrbital);
+		} catch (RPCException | StreamException ignored) {
+		}
+	}
+
+	/**
+	 * Lê a rotação e a posição atuais da nave. Deve ser chamado uma vez por ciclo, antes das transformações.
+	 */
+	public void update() throws RPCException, StreamException {
+		setQuaternion(vesselToSurface, rotationOnSurface.get());
+		setQuaternion(vesselToBody, rotationOnBody.get());
+		// Superfície -> corpo = (nave -> corpo) * (superfície -> nave), sendo superfície -> nave o conjugado
+		surfaceToVessel[0] = -vesselToSurface[0];
+		surfaceToVessel[1] = -vesselToSurface[1];
+		surfaceToVessel[2] = -vesselToSurface[2];
+		surfaceToVessel[3] = vesselToSurface[3];
+		multiply(vesselToBody, surfaceToVessel, surfaceToBody);
+		vesselPosition.set(positionOnBody.get());
+	}
+
+	/**
+	 * @return A posição da nave no sistema de referência do corpo celeste, lida no último {@link #update()}.
+	 */
+	public Vector getVesselPosition() {
+		return new Vector(vesselPosition);
+	}
+
+	/**
+	 * Transforma uma posição ou direção do sistema da nave para o da superfície.
+	 */
+	public Vector vesselToSurface(Vector vector) {
+		return rotate(vesselToSurface, vector, false);
+	}
+
+	/**
+	 * Transforma uma posição ou direção do sistema da superfície para o da nave.
+	 */
+	public Vector surfaceToVessel(Vector vector) {
+		return rotate(vesselToSurface, vector, true);
+	}
+
+	/**
+	 * Transforma uma posição do sistema da superfície para o do corpo celeste.
+	 */
+	public Vector surfaceToBodyPosition(Vector position) {
+		return rotate(surfaceToBody, position, false).sum(vesselPosition);
+	}
+
+	/**
+	 * Transforma uma posição do sistema do corpo celeste para o da superfície.
+	 */
+	public Vector bodyToSurfacePosition(Vector position) {
+		return rotate(surfaceToBody, position.subtract(vesselPosition), true);
+	}
+
+	/**
+	 * Transforma uma direção do sistema da superfície para o do corpo celeste.
+	 */
+	public Vector surfaceToBodyDirection(Vector direction) {
+		return rotate(surfaceToBody, direction, false);
+	}
+
+	/**
+	 * Transforma uma direção do sistema do corpo celeste para o da superfície.
+	 */
+	public Vector bodyToSurfaceDirection(Vector direction) {
+		return rotate(surfaceToBody, direction, true);
+	}
+
+	private static void setQuaternion(double[] dest, Quartet<Double, Double, Double, Double> quaternion) {
+		dest[0] = quaternion.getValue0();
+		dest[1] = quaternion.getValue1();
+		dest[2] = quaternion.getValue2();
+		dest[3] = quaternion.getValue3();
+	}
+
+	private static void multiply(double[] a, double[] b, double[] dest) {
+		double x = a[3] * b[0] + a[0] * b[3] + a[1] * b[2] - a[2] * b[1];
+		double y = a[3] * b[1] - a[0] * b[2] + a[1] * b[3] + a[2] * b[0];
+		double z = a[3] * b[2] + a[0] * b[1] - a[1] * b[0] + a[2] * b[3];
+		double w = a[3] * b[3] - a[0] * b[0] - a[1] * b[1] - a[2] * b[2];
+		dest[0] = x;
+		dest[1] = y;
+		dest[2] = z;
+		dest[3] = w;
+	}
+
+	/**
+	 * Rotaciona o vetor pelo quatérnio (ou pelo seu inverso): v' = v + 2w(u x v) + 2u x (u x v).
+	 */
+	private static Vector rotate(double[] q, Vector v, boolean inverse) {
+		double ux = inverse ? -q[0] : q[0], uy = inverse ? -q[1] : q[1], uz = inverse ? -q[2] : q[2], w = q[3];
+		double tx = 2 * (uy * v.z - uz * v.y);
+		double ty = 2 * (uz * v.x - ux * v.z);
+		double tz = 2 * (ux * v.y - uy * v.x);
+		return new Vector(v.x + w * tx + (uy * tz - uz * ty), v.y + w * ty + (uz * tx - ux * tz),
+		                  v.z + w * tz + (ux * ty - uy * tx)
+		);
+	}
+}
@@ -0,0 +1,525 @@
+package com.pesterenan.utils;
+
+import krpc.client.RPCException;
+
+import java.util.Arrays;
+
+/**
+ * Planejador de caminhos do rover em uma grade sobre o relevo, com custo pela inclinação do terreno.
+ * <p>
+ * Cada nó da grade é ligado aos oito vizinhos. O custo de uma aresta é a distância entre os dois pontos da superfície,
+ * aumentada com o quadrado da inclinação até {@code 1 + }{@value #SLOPE_WEIGHT} vezes no limite de inclinação; acima
+ * do limite, ou passando por um nó bloqueado, a aresta não existe. A heurística é a distância em linha reta até o
+ * destino, que nunca passa do custo real.
+ * <p>
+ * Há dois modos: {@link #findPath(int, int)} faz uma busca A* do início ao destino, e
+ * {@link #planIncremental(int, int)} faz uma busca D* Lite (do destino ao início), que depois de
+ * {@link #setBlocked(int)} é refeita por {@link #replan(int)} reaproveitando o que não mudou. Os nós só são amostrados
+ * na superfície quando a busca chega neles, e o estado da busca fica em vetores de tipos primitivos, indexados pelo
+ * número do nó ({@code linha * colunas + coluna}), com uma fila de prioridade própria.
+ */
+public class GridPathPlanner {
+
+	/**
+	 * A superfície sob a grade.
+	 */
+	public interface Surface {
+		/**
+		 * Preenche {@code out} com a posição (x, y, z) do ponto da superfície no nó e a altitude dele (m). Todas as
+		 * posições devem estar no mesmo sistema de referência.
+		 */
+		void sample(int row, int column, double[] out) throws RPCException;
+	}
+
+	private static final int[] ROW_STEPS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+	private static final int[] COLUMN_STEPS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+	private static final double SLOPE_WEIGHT = 2;
+	private static final byte SAMPLED = 1, BLOCKED = 2, CLOSED = 4;
+
+	private final int rows, columns;
+	private final Surface surface;
+	private final double maxSlopeSquared;
+	// Posição de cada nó relativa ao primeiro amostrado, e a altitude: quatro valores por nó
+	private final float[] samples;
+	private final byte[] flags;
+	private final double[] g;
+	private final int[] parent;
+	private final NodeHeap open;
+	private final double[] sample = new double[4];
+	private double originX, originY, originZ;
+	private boolean hasOrigin;
+	// Estado do D* Lite, criado no primeiro planejamento incremental
+	private double[] rhs;
+	private int goal = -1, lastStart;
+	private double keyModifier;
+	private int expansions;
+	private double pathCost = INFINITY;
+
+	/**
+	 * @param maxSlope - Inclinação máxima que o rover consegue subir (graus)
+	 */
+	public GridPathPlanner(int rows, int columns, double maxSlope, Surface surface) {
+		this.rows = rows;
+		this.columns = columns;
+		this.surface = surface;
+		double tangent = Math.tan(Math.toRadians(maxSlope));
+		this.maxSlopeSquared = tangent * tangent;
+		int nodes = rows * columns;
+		this.samples = new float[4 * nodes];
+		this.flags = new byte[nodes];
+		this.g = new double[nodes];
+		this.parent = new int[nodes];
+		this.open = new NodeHeap(nodes);
+	}
+
+	public int node(int row, int column) {
+		return row * columns + column;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return Quantos nós a última busca (ou replanejamento) expandiu.
+	 */
+	public int getExpansions() {
+		return expansions;
+	}
+
+	/**
+	 * @return O custo do caminho encontrado pela última busca (ou replanejamento), infinito se não houve caminho.
+	 */
+	public double getPathCost() {
+		return pathCost;
+	}
+
+	/**
+	 * Preenche {@code out} com a posição (x, y, z) do ponto da superfície no nó.
+	 */
+	public void position(int node, double[] out) throws RPCException {
+		ensureSampled(node);
+		out[0] = originX + samples[4 * node];
+		out[1] = originY + samples[4 * node + 1];
+		out[2] = originZ + samples[4 * node + 2];
+	}
+
+	/**
+	 * Busca A* do início ao destino. Descarta o plano incremental, se houver.
+	 *
+	 * @return Os nós do caminho, do início ao destino, ou {@code null} se não houver caminho
+	 */
+	public int[] findPath(int start, int destination) throws RPCException {
+		goal = -1;
+		expansions = 0;
+		pathCost = INFINITY;
+		Arrays.fill(g, INFINITY);
+		for (int i = 0; i < flags.length; i++) {
+			flags[i] &= ~CLOSED;
+		}
+		open.clear();
+		g[start] = 0;
+		parent[start] = -1;
+		double startHeuristic = heuristic(start, destination);
+		open.update(start, startHeuristic, startHeuristic);
+		while (!open.isEmpty()) {
+			int node = open.pop();
+			if (node == destination) {
+				pathCost = g[destination];
+				return pathFromParents(destination);
+			}
+			flags[node] |= CLOSED;
+			expansions++;
+			int row = node / columns, column = node % columns;
+			for (int k = 0; k < 8; k++) {
+				int neighbor = neighbor(row, column, k);
+				if (neighbor < 0 || (flags[neighbor] & CLOSED) != 0) {
+					continue;
+				}
+				double tentative = g[node] + cost(node, neighbor);
+				if (tentative < g[neighbor]) {
+					g[neighbor] = tentative;
+					parent[neighbor] = node;
+					// Desempate pela menor distância ao destino, para não espalhar a busca em terreno plano
+					double heuristic = heuristic(neighbor, destination);
+					open.update(neighbor, tentative + heuristic, heuristic);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Busca D* Lite do início ao destino, guardando o estado para replanejar depois.
+	 *
+	 * @return Os nós do caminho, do início ao destino, ou {@code null} se não houver caminho
+	 */
+	public int[] planIncremental(int start, int destination) throws RPCException {
+		if (rhs == null) {
+			rhs = new double[flags.length];
+		}
+		expansions = 0;
+		Arrays.fill(g, INFINITY);
+		Arrays.fill(rhs, INFINITY);
+		open.clear();
+		goal = destination;
+		lastStart = start;
+		keyModifier = 0;
+		rhs[goal] = 0;
+		open.update(goal, heuristic(start, goal), 0);
+		computeShortestPath(start);
+		return pathFromCosts(start);
+	}
+
+	/**
+	 * Refaz o plano incremental a partir de uma nova posição, considerando os nós bloqueados desde o último plano.
+	 *
+	 * @return Os nós do caminho, do início ao destino, ou {@code null} se não houver caminho
+	 * @throws IllegalStateException Se ainda não houver um plano incremental
+	 */
+	public int[] replan(int start) throws RPCException {
+		if (goal < 0) {
+			throw new IllegalStateException("Nenhum plano incremental para refazer");
+		}
+		expansions = 0;
+		keyModifier += heuristic(lastStart, start);
+		lastStart = start;
+		computeShortestPath(start);
+		return pathFromCosts(start);
+	}
+
+	/**
+	 * Bloqueia um nó, por exemplo onde o radar encontrou um obstáculo. Se houver um plano incremental, os vizinhos
+	 * são atualizados para o próximo {@link #replan(int)}.
+	 */
+	public void setBlocked(int node) throws RPCException {
+		if ((flags[node] & BLOCKED) != 0) {
+			return;
+		}
+		flags[node] |= BLOCKED;
+		if (goal < 0) {
+			return;
+		}
+		// As arestas do nó, e as diagonais que passam pelo canto dele, mudaram: todas ligam vizinhos do nó
+		updateVertex(node);
+		int row = node / columns, column = node % columns;
+		for (int k = 0; k < 8; k++) {
+			int neighbor = neighbor(row, column, k);
+			if (neighbor >= 0) {
+				updateVertex(neighbor);
+			}
+		}
+	}
+
+	public boolean isBlocked(int node) {
+		return (flags[node] & BLOCKED) != 0;
+	}
+
+	private void computeShortestPath(int start) throws RPCException {
+		while (!open.isEmpty()) {
+			int node = open.peek();
+			double oldKey1 = open.key1(node), oldKey2 = open.key2(node);
+			double startKey2 = Math.min(g[start], rhs[start]);
+			double startKey1 = startKey2 + keyModifier;
+			boolean topIsLess = oldKey1 < startKey1 || (oldKey1 == startKey1 && oldKey2 < startKey2);
+			if (!topIsLess && rhs[start] == g[start]) {
+				break;
+			}
+			expansions++;
+			double key2 = Math.min(g[node], rhs[node]);
+			double key1 = key2 + heuristic(lastStart, node) + keyModifier;
+			int row = node / columns, column = node % columns;
+			if (oldKey1 < key1 || (oldKey1 == key1 && oldKey2 < key2)) {
+				open.update(node, key1, key2);
+			} else if (g[node] > rhs[node]) {
+				g[node] = rhs[node];
+				open.remove(node);
+				for (int k = 0; k < 8; k++) {
+					int neighbor = neighbor(row, column, k);
+					if (neighbor >= 0 && neighbor != goal) {
+						double throughNode = cost(neighbor, node) + g[node];
+						if (throughNode < rhs[neighbor]) {
+							rhs[neighbor] = throughNode;
+							updateKey(neighbor);
+						}
+					}
+				}
+			} else {
+				g[node] = INFINITY;
+				updateVertex(node);
+				for (int k = 0; k < 8; k++) {
+					int neighbor = neighbor(row, column, k);
+					if (neighbor >= 0) {
+						updateVertex(neighbor);
+					}
+				}
+			}
+		}
+	}
+
+	private void updateVertex(int node) throws RPCException {
+		if (node != goal) {
+			double best = INFINITY;
+			int row = node / columns, column = node % columns;
+			for (int k = 0; k < 8; k++) {
+				int neighbor = neighbor(row, column, k);
+				if (neighbor >= 0 && g[neighbor] < INFINITY) {
+					best = Math.min(best, cost(node, neighbor) + g[neighbor]);
+				}
+			}
+			rhs[node] = best;
+		}
+		updateKey(node);
+	}
+
+	private void updateKey(int node) throws RPCException {
+		if (g[node] != rhs[node]) {
+			double key2 = Math.min(g[node], rhs[node]);
+			open.update(node, key2 + heuristic(lastStart, node) + keyModifier, key2);
+		} else {
+			open.remove(node);
+		}
+	}
+
+	private int[] pathFromParents(int destination) {
+		int length = 0;
+		for (int node = destination; node >= 0; node = parent[node]) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int node = destination; node >= 0; node = parent[node]) {
+			path[--length] = node;
+		}
+		return path;
+	}
+
+	/**
+	 * Desce pelos custos do D* Lite: de cada nó, vai para o vizinho com menor custo da aresta mais o custo até o
+	 * destino.
+	 */
+	private int[] pathFromCosts(int start) throws RPCException {
+		pathCost = g[start];
+		if (g[start] == INFINITY) {
+			return null;
+		}
+		int[] path = new int[64];
+		int length = 0;
+		int node = start;
+		path[length++] = node;
+		while (node != goal) {
+			int row = node / columns, column = node % columns;
+			int next = -1;
+			double best = INFINITY;
+			for (int k = 0; k < 8; k++) {
+				int neighbor = neighbor(row, column, k);
+				if (neighbor >= 0 && g[neighbor] < INFINITY) {
+					double through = cost(node, neighbor) + g[neighbor];
+					if (through < best) {
+						best = through;
+						next = neighbor;
+					}
+				}
+			}
+			if (next < 0 || length > flags.length) {
+				return null;
+			}
+			if (length == path.length) {
+				path = Arrays.copyOf(path, 2 * length);
+			}
+			path[length++] = next;
+			node = next;
+		}
+		return Arrays.copyOf(path, length);
+	}
+
+	/**
+	 * @return O nó vizinho na direção {@code k} (0 a 7), ou -1 se estiver fora da grade.
+	 */
+	private int neighbor(int row, int column, int k) {
+		int neighborRow = row + ROW_STEPS[k], neighborColumn = column + COLUMN_STEPS[k];
+		if (neighborRow < 0 || neighborRow >= rows || neighborColumn < 0 || neighborColumn >= columns) {
+			return -1;
+		}
+		return neighborRow * columns + neighborColumn;
+	}
+
+	/**
+	 * Custo da aresta entre dois nós vizinhos, infinito se ela não existir.
+	 */
+	private double cost(int from, int to) throws RPCException {
+		ensureSampled(from);
+		ensureSampled(to);
+		if (((flags[from] | flags[to]) & BLOCKED) != 0) {
+			return INFINITY;
+		}
+		int fromRow = from / columns, fromColumn = from % columns, toRow = to / columns, toColumn = to % columns;
+		// Na diagonal, não corta o canto de um nó bloqueado
+		if (fromRow != toRow && fromColumn != toColumn &&
+				((flags[fromRow * columns + toColumn] | flags[toRow * columns + fromColumn]) & BLOCKED) != 0) {
+			return INFINITY;
+		}
+		int a = 4 * from, b = 4 * to;
+		double dx = samples[b] - samples[a], dy = samples[b + 1] - samples[a + 1], dz = samples[b + 2] - samples[a + 2];
+		double distanceSquared = dx * dx + dy * dy + dz * dz;
+		double rise = samples[b + 3] - samples[a + 3];
+		double run = Math.max(distanceSquared - rise * rise, 1e-6);
+		double slopeSquared = rise * rise / run;
+		if (slopeSquared > maxSlopeSquared) {
+			return INFINITY;
+		}
+		return Math.sqrt(distanceSquared) * (1 + SLOPE_WEIGHT * slopeSquared / maxSlopeSquared);
+	}
+
+	private double heuristic(int from, int to) throws RPCException {
+		ensureSampled(from);
+		ensureSampled(to);
+		int a = 4 * from, b = 4 * to;
+		double dx = samples[b] - samples[a], dy = samples[b + 1] - samples[a + 1], dz = samples[b + 2] - samples[a + 2];
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	private void ensureSampled(int node) throws RPCException {
+		if ((flags[node] & SAMPLED) != 0) {
+			return;
+		}
+		surface.sample(node / columns, node % columns, sample);
+		if (!hasOrigin) {
+			originX = sample[0];
+			originY = sample[1];
+			originZ = sample[2];
+			hasOrigin = true;
+		}
+		int i = 4 * node;
+		samples[i] = (float) (sample[0] - originX);
+		samples[i + 1] = (float) (sample[1] - originY);
+		samples[i + 2] = (float) (sample[2] - originZ);
+		samples[i + 3] = (float) sample[3];
+		flags[node] |= SAMPLED;
+		if (Double.isNaN(sample[3])) {
+			flags[node] |= BLOCKED;
+		}
+	}
+
+	/**
+	 * Fila de prioridade de nós, um heap binário com a posição de cada nó para alterar ou remover a chave. A chave é
+	 * comparada pelo primeiro valor e, no empate, pelo segundo.
+	 */
+	private static final class NodeHeap {
+		private final int[] heap, position;
+		private final double[] key1, key2;
+		private int size;
+
+		private NodeHeap(int nodes) {
+			heap = new int[nodes];
+			position = new int[nodes];
+			key1 = new double[nodes];
+			key2 = new double[nodes];
+			Arrays.fill(position, -1);
+		}
+
+		private boolean isEmpty() {
+			return size == 0;
+		}
+
+		private int peek() {
+			return heap[0];
+		}
+
+		private double key1(int node) {
+			return key1[node];
+		}
+
+		private double key2(int node) {
+			return key2[node];
+		}
+
+		private int pop() {
+			int node = heap[0];
+			remove(node);
+			return node;
+		}
+
+		/**
+		 * Insere o nó, ou muda a chave dele se já estiver na fila.
+		 */
+		private void update(int node, double first, double second) {
+			key1[node] = first;
+			key2[node] = second;
+			int index = position[node];
+			if (index < 0) {
+				index = size++;
+				heap[index] = node;
+				position[node] = index;
+			}
+			siftDown(siftUp(index));
+		}
+
+		private void remove(int node) {
+			int index = position[node];
+			if (index < 0) {
+				return;
+			}
+			position[node] = -1;
+			int last = heap[--size];
+			if (index < size) {
+				heap[index] = last;
+				position[last] = index;
+				siftDown(siftUp(index));
+			}
+		}
+
+		private void clear() {
+			for (int i = 0; i < size; i++) {
+				position[heap[i]] = -1;
+			}
+			size = 0;
+		}
+
+		private int siftUp(int index) {
+			int node = heap[index];
+			while (index > 0) {
+				int parentIndex = (index - 1) >>> 1;
+				int parentNode = heap[parentIndex];
+				if (!less(node, parentNode)) {
+					break;
+				}
+				heap[index] = parentNode;
+				position[parentNode] = index;
+				index = parentIndex;
+			}
+			heap[index] = node;
+			position[node] = index;
+			return index;
+		}
+
+		private void siftDown(int index) {
+			int node = heap[index];
+			while (true) {
+				int child = 2 * index + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && less(heap[child + 1], heap[child])) {
+					child++;
+				}
+				if (!less(heap[child], node)) {
+					break;
+				}
+				heap[index] = heap[child];
+				position[heap[index]] = index;
+				index = child;
+			}
+			heap[index] = node;
+			position[node] = index;
+		}
+
+		private boolean less(int a, int b) {
+			return key1[a] < key1[b] || (key1[a] == key1[b] && key2[a] < key2[b]);
+		}
+	}
+}
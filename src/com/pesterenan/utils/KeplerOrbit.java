@@ -0,0 +1,330 @@
+package com.pesterenan.utils;
+
+import org.javatuples.Triplet;
+
+/**
+ * Órbita kepleriana de dois corpos, calculada localmente a partir da posição e velocidade da nave.
+ * <p>
+ * Permite planejar manobras sem consultar o servidor a cada tentativa: a órbita é propagada no tempo pelo método das
+ * variáveis universais (válido para órbitas elípticas, parabólicas e hiperbólicas), e o efeito de uma queima nos
+ * elementos orbitais é calculado na hora. Não considera trocas de esfera de influência nem outras perturbações.
+ * <p>
+ * Os vetores ficam em um sistema destro com o eixo Z apontando para o polo norte do corpo. Os sistemas de referência
+ * do KRPC são canhotos, com o eixo Y no polo; use {@link #fromKrpc(double, Triplet, Triplet)} e
+ * {@link #toKrpc(Vector)} para converter.
+ */
+public final class KeplerOrbit {
+
+	private static final double TWO_PI = 2 * Math.PI;
+	private static final double TOLERANCE = 1e-10;
+	private static final int MAX_ITERATIONS = 100;
+
+	private final double gravitationalParameter;
+	private final Vector position, velocity;
+
+	/**
+	 * @param gravitationalParameter - Parâmetro gravitacional do corpo (m³/s²)
+	 * @param position               - Posição em relação ao centro do corpo (m), sistema destro
+	 * @param velocity               - Velocidade (m/s), sistema destro
+	 */
+	public KeplerOrbit(double gravitationalParameter, Vector position, Vector velocity) {
+		this.gravitationalParameter = gravitationalParameter;
+		this.position = new Vector(position);
+		this.velocity = new Vector(velocity);
+	}
+
+	/**
+	 * Cria a órbita a partir da posição e velocidade lidas em um sistema de referência não rotativo do corpo.
+	 */
+	public static KeplerOrbit fromKrpc(double gravitationalParameter, Triplet<Double, Double, Double> position,
+	                                  Triplet<Double, Double, Double> velocity) {
+		return new KeplerOrbit(gravitationalParameter, fromKrpc(position), fromKrpc(velocity));
+	}
+
+	/**
+	 * Converte um vetor de um sistema de referência do KRPC (canhoto, Y no polo) para o sistema destro usado aqui.
+	 */
+	public static Vector fromKrpc(Triplet<Double, Double, Double> vector) {
+		return new Vector(vector.getValue0(), vector.getValue2(), vector.getValue1());
+	}
+
+	/**
+	 * Converte um vetor do sistema destro usado aqui para o sistema de referência do KRPC.
+	 */
+	public static Triplet<Double, Double, Double> toKrpc(Vector vector) {
+		return new Triplet<>(vector.x, vector.z, vector.y);
+	}
+
+	/**
+	 * @return O produto vetorial a × b.
+	 */
+	public static Vector cross(Vector a, Vector b) {
+		return new Vector(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+	}
+
+	/**
+	 * Propaga a órbita no tempo, pelo método das variáveis universais.
+	 *
+	 * @param seconds - Tempo a avançar (pode ser negativo)
+	 * @return A órbita com a posição e a velocidade da nave depois desse tempo
+	 */
+	public KeplerOrbit propagate(double seconds) {
+		if (seconds == 0) {
+			return this;
+		}
+		double sqrtMu = Math.sqrt(gravitationalParameter);
+		double r0 = position.magnitude();
+		double radialVelocity = position.dotP(velocity) / r0;
+		double alpha = 2 / r0 - velocity.dotP(velocity) / gravitationalParameter;
+
+		// Resolve a equação de Kepler universal para a anomalia universal chi, pelo método de Newton
+		double chi = sqrtMu * Math.abs(alpha) * seconds;
+		for (int i = 0; i < MAX_ITERATIONS; i++) {
+			double z = alpha * chi * chi;
+			double c = stumpffC(z), s = stumpffS(z);
+			double f = r0 * radialVelocity / sqrtMu * chi * chi * c + (1 - alpha * r0) * chi * chi * chi * s +
+					r0 * chi - sqrtMu * seconds;
+			double derivative = r0 * radialVelocity / sqrtMu * chi * (1 - z * s) + (1 - alpha * r0) * chi * chi * c +
+					r0;
+			double step = f / derivative;
+			chi -= step;
+			if (Math.abs(step) < TOLERANCE * Math.max(1, Math.abs(chi))) {
+				break;
+			}
+		}
+
+		// Coeficientes de Lagrange
+		double z = alpha * chi * chi;
+		double c = stumpffC(z), s = stumpffS(z);
+		double f = 1 - chi * chi / r0 * c;
+		double g = seconds - chi * chi * chi / sqrtMu * s;
+		Vector newPosition = position.multiply(f).sum(velocity.multiply(g));
+		double r = newPosition.magnitude();
+		double fDot = sqrtMu / (r * r0) * (alpha * chi * chi * chi * s - chi);
+		double gDot = 1 - chi * chi / r * c;
+		Vector newVelocity = position.multiply(fDot).sum(velocity.multiply(gDot));
+		return new KeplerOrbit(gravitationalParameter, newPosition, newVelocity);
+	}
+
+	/**
+	 * Aplica uma queima instantânea, com os componentes no sistema de uma manobra do KSP.
+	 *
+	 * @return A órbita resultante
+	 */
+	public KeplerOrbit burn(double prograde, double normal, double radial) {
+		Vector[] axes = maneuverAxes();
+		Vector deltaV = axes[0].multiply(prograde).sum(axes[1].multiply(normal)).sum(axes[2].multiply(radial));
+		return new KeplerOrbit(gravitationalParameter, position, velocity.sum(deltaV));
+	}
+
+	/**
+	 * @return Os componentes (progrado, normal, radial) da queima que muda a velocidade atual para a informada.
+	 */
+	public double[] burnComponents(Vector newVelocity) {
+		Vector deltaV = newVelocity.subtract(velocity);
+		Vector[] axes = maneuverAxes();
+		return new double[]{ deltaV.dotP(axes[0]), deltaV.dotP(axes[1]), deltaV.dotP(axes[2]) };
+	}
+
+	/**
+	 * Eixos de uma manobra do KSP: progrado (na direção da velocidade), normal (na direção do momento angular) e
+	 * radial (para fora, perpendicular aos outros dois).
+	 */
+	private Vector[] maneuverAxes() {
+		Vector prograde = velocity.normalize();
+		Vector normal = getAngularMomentum().normalize();
+		return new Vector[]{ prograde, normal, cross(prograde, normal) };
+	}
+
+	/**
+	 * Calcula a queima progrado que leva o apoastro (ou o periastro, se o alvo estiver abaixo da posição atual) ao
+	 * raio informado.
+	 *
+	 * @param radius - Raio desejado, a partir do centro do corpo (m)
+	 * @return O delta-V progrado (negativo para retrógrado)
+	 */
+	public double progradeDeltaVForApsis(double radius) {
+		double speed = velocity.magnitude();
+		double escape = Math.sqrt(2 * gravitationalParameter / position.magnitude());
+		boolean raising = radius >= position.magnitude();
+		double low = -speed, high = escape - speed;
+		for (int i = 0; i < MAX_ITERATIONS; i++) {
+			double middle = (low + high) / 2;
+			KeplerOrbit result = burn(middle, 0, 0);
+			double apsis = raising ? result.getApoapsis() : result.getPeriapsis();
+			if (apsis < radius) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+			if (high - low < 1e-6) {
+				break;
+			}
+		}
+		return (low + high) / 2;
+	}
+
+	/**
+	 * Calcula a velocidade que coloca a nave no plano orbital informado, na posição atual, mantendo a velocidade
+	 * radial e a horizontal. Deve ser usada em um dos nós de interseção dos planos, senão a posição atual fica fora do
+	 * novo plano.
+	 *
+	 * @param planeNormal - Direção do momento angular do plano desejado
+	 */
+	public Vector velocityInPlane(Vector planeNormal) {
+		Vector radialDirection = position.normalize();
+		double radialSpeed = velocity.dotP(radialDirection);
+		double horizontalSpeed = velocity.subtract(radialDirection.multiply(radialSpeed)).magnitude();
+		Vector horizontal = cross(planeNormal.normalize(), radialDirection).normalize();
+		return radialDirection.multiply(radialSpeed).sum(horizontal.multiply(horizontalSpeed));
+	}
+
+	/**
+	 * @return O tempo até o próximo nó de interseção com o plano informado (o mais próximo entre o ascendente e o
+	 * descendente), ou NaN se a órbita não for elíptica ou os planos forem iguais.
+	 */
+	public double timeToPlaneIntersection(Vector planeNormal) {
+		Vector lineOfNodes = cross(getAngularMomentum(), planeNormal);
+		if (lineOfNodes.magnitude() < TOLERANCE * getAngularMomentum().magnitude() * planeNormal.magnitude()) {
+			return Double.NaN;
+		}
+		return Math.min(timeToDirection(lineOfNodes), timeToDirection(lineOfNodes.multiply(-1)));
+	}
+
+	/**
+	 * @return O tempo até a nave passar pela direção informada (projetada no plano da órbita), ou NaN se a órbita não
+	 * for elíptica.
+	 */
+	public double timeToDirection(Vector direction) {
+		if (getEccentricity() >= 1) {
+			return Double.NaN;
+		}
+		Vector normal = getAngularMomentum().normalize();
+		Vector current = position.normalize();
+		double angle = Math.atan2(cross(current, direction).dotP(normal), current.dotP(direction));
+		return timeToTrueAnomaly(getTrueAnomaly() + angle);
+	}
+
+	/**
+	 * @return O tempo até o periastro, ou NaN se a órbita não for elíptica.
+	 */
+	public double timeToPeriapsis() {
+		return getEccentricity() >= 1 ? Double.NaN : timeToTrueAnomaly(TWO_PI);
+	}
+
+	/**
+	 * @return O tempo até a nave chegar à anomalia verdadeira informada (rad), na próxima volta se já tiver passado.
+	 */
+	public double timeToTrueAnomaly(double trueAnomaly) {
+		double e = getEccentricity();
+		double a = getSemiMajorAxis();
+		double meanMotion = Math.sqrt(gravitationalParameter / (a * a * a));
+		double delta = meanAnomaly(trueAnomaly, e) - meanAnomaly(getTrueAnomaly(), e);
+		delta = ((delta % TWO_PI) + TWO_PI) % TWO_PI;
+		return delta / meanMotion;
+	}
+
+	private static double meanAnomaly(double trueAnomaly, double e) {
+		double eccentricAnomaly = 2 * Math.atan(Math.sqrt((1 - e) / (1 + e)) * Math.tan(trueAnomaly / 2));
+		return eccentricAnomaly - e * Math.sin(eccentricAnomaly);
+	}
+
+	public double getGravitationalParameter() {
+		return gravitationalParameter;
+	}
+
+	public Vector getPosition() {
+		return new Vector(position);
+	}
+
+	public Vector getVelocity() {
+		return new Vector(velocity);
+	}
+
+	/**
+	 * @return O momento angular específico (r × v).
+	 */
+	public Vector getAngularMomentum() {
+		return cross(position, velocity);
+	}
+
+	/**
+	 * @return O vetor de excentricidade, que aponta para o periastro.
+	 */
+	public Vector getEccentricityVector() {
+		Vector term = cross(velocity, getAngularMomentum()).divide(gravitationalParameter);
+		return term.subtract(position.normalize());
+	}
+
+	public double getEccentricity() {
+		return getEccentricityVector().magnitude();
+	}
+
+	/**
+	 * @return O semieixo maior (m), negativo em órbitas hiperbólicas.
+	 */
+	public double getSemiMajorAxis() {
+		return 1 / (2 / position.magnitude() - velocity.dotP(velocity) / gravitationalParameter);
+	}
+
+	/**
+	 * @return A inclinação em relação ao equador do corpo (rad).
+	 */
+	public double getInclination() {
+		Vector h = getAngularMomentum();
+		return Math.acos(Utilities.clamp(h.z / h.magnitude(), -1, 1));
+	}
+
+	/**
+	 * @return O raio do apoastro (m), ou infinito se a órbita não for elíptica.
+	 */
+	public double getApoapsis() {
+		double e = getEccentricity();
+		return e >= 1 ? Double.POSITIVE_INFINITY : getSemiMajorAxis() * (1 + e);
+	}
+
+	/**
+	 * @return O raio do periastro (m).
+	 */
+	public double getPeriapsis() {
+		double h = getAngularMomentum().magnitude();
+		return h * h / gravitationalParameter / (1 + getEccentricity());
+	}
+
+	/**
+	 * @return A anomalia verdadeira atual (rad, de 0 a 2π). Em órbitas circulares, o periastro é tomado na posição
+	 * atual.
+	 */
+	public double getTrueAnomaly() {
+		Vector eccentricity = getEccentricityVector();
+		double e = eccentricity.magnitude();
+		if (e < TOLERANCE) {
+			return 0;
+		}
+		double cosine = Utilities.clamp(eccentricity.dotP(position) / (e * position.magnitude()), -1, 1);
+		double anomaly = Math.acos(cosine);
+		return position.dotP(velocity) < 0 ? TWO_PI - anomaly : anomaly;
+	}
+
+	static double stumpffC(double z) {
+		if (z > TOLERANCE) {
+			return (1 - Math.cos(Math.sqrt(z))) / z;
+		}
+		if (z < -TOLERANCE) {
+			return (Math.cosh(Math.sqrt(-z)) - 1) / -z;
+		}
+		return 0.5 - z / 24;
+	}
+
+	static double stumpffS(double z) {
+		if (z > TOLERANCE) {
+			double sqrt = Math.sqrt(z);
+			return (sqrt - Math.sin(sqrt)) / (sqrt * sqrt * sqrt);
+		}
+		if (z < -TOLERANCE) {
+			double sqrt = Math.sqrt(-z);
+			return (Math.sinh(sqrt) - sqrt) / (sqrt * sqrt * sqrt);
+		}
+		return 1.0 / 6 - z / 120;
+	}
+}
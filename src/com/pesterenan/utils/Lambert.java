@@ -0,0 +1,95 @@
+package com.pesterenan.utils;
+
+/**
+ * Resolve o problema de Lambert: encontrar a órbita que liga duas posições em um tempo de voo dado.
+ * <p>
+ * Usa a formulação de variáveis universais (Bate, Mueller e White), para transferências de menos de uma volta. A
+ * variável z é encontrada por bisseção, já que o tempo de voo cresce com z: é mais lento que o método de Newton, mas
+ * não diverge perto de órbitas parabólicas nem de transferências de quase 180°. Os vetores ficam no sistema destro de
+ * {@link KeplerOrbit}.
+ */
+public final class Lambert {
+
+	private static final double TWO_PI = 2 * Math.PI;
+	private static final int MAX_ITERATIONS = 200;
+	private static final double TOLERANCE = 1e-9;
+
+	private Lambert() {
+	}
+
+	/**
+	 * @param gravitationalParameter - Parâmetro gravitacional do corpo (m³/s²)
+	 * @param departure              - Posição de partida (m)
+	 * @param arrival                - Posição de chegada (m)
+	 * @param timeOfFlight           - Tempo de voo (s)
+	 * @param orbitNormal            - Direção do momento angular desejado, para escolher o sentido da transferência
+	 *                               (normalmente o da órbita de partida)
+	 * @return As velocidades na partida e na chegada, ou {@code null} se não houver solução
+	 */
+	public static Vector[] solve(double gravitationalParameter, Vector departure, Vector arrival, double timeOfFlight,
+	                             Vector orbitNormal) {
+		double r1 = departure.magnitude(), r2 = arrival.magnitude();
+		double cosAngle = Utilities.clamp(departure.dotP(arrival) / (r1 * r2), -1, 1);
+		double transferAngle = Math.acos(cosAngle);
+		if (KeplerOrbit.cross(departure, arrival).dotP(orbitNormal) < 0) {
+			transferAngle = TWO_PI - transferAngle;
+		}
+		if (timeOfFlight <= 0 || 1 - cosAngle < TOLERANCE) {
+			// Posições alinhadas no mesmo sentido: o plano da transferência fica indefinido
+			return null;
+		}
+		double a = Math.sin(transferAngle) * Math.sqrt(r1 * r2 / (1 - cosAngle));
+		double sqrtMu = Math.sqrt(gravitationalParameter);
+
+		// O limite superior é o de uma volta completa; o inferior é ampliado até o tempo ficar abaixo do pedido
+		double low = -4 * Math.PI * Math.PI, high = 4 * Math.PI * Math.PI;
+		while (timeOfFlight(low, r1, r2, a, sqrtMu) > timeOfFlight) {
+			low *= 2;
+			if (low < -1e6) {
+				return null;
+			}
+		}
+		double z = 0;
+		for (int i = 0; i < MAX_ITERATIONS; i++) {
+			z = (low + high) / 2;
+			if (timeOfFlight(z, r1, r2, a, sqrtMu) < timeOfFlight) {
+				low = z;
+			} else {
+				high = z;
+			}
+			if (high - low < TOLERANCE) {
+				break;
+			}
+		}
+		double y = y(z, r1, r2, a);
+		if (!(y > 0)) {
+			return null;
+		}
+		// Coeficientes de Lagrange
+		double f = 1 - y / r1;
+		double g = a * Math.sqrt(y / gravitationalParameter);
+		double gDot = 1 - y / r2;
+		Vector departureVelocity = arrival.subtract(departure.multiply(f)).divide(g);
+		Vector arrivalVelocity = arrival.multiply(gDot).subtract(departure).divide(g);
+		return new Vector[]{ departureVelocity, arrivalVelocity };
+	}
+
+	private static double y(double z, double r1, double r2, double a) {
+		double c = KeplerOrbit.stumpffC(z);
+		return r1 + r2 + a * (z * KeplerOrbit.stumpffS(z) - 1) / Math.sqrt(c);
+	}
+
+	/**
+	 * Tempo de voo para um valor de z. Onde y fica negativo não há órbita; o tempo é tratado como zero, o que mantém
+	 * a função crescente para a bisseção.
+	 */
+	private static double timeOfFlight(double z, double r1, double r2, double a, double sqrtMu) {
+		double y = y(z, r1, r2, a);
+		if (y < 0) {
+			return 0;
+		}
+		double c = KeplerOrbit.stumpffC(z);
+		double chi = Math.sqrt(y / c);
+		return (chi * chi * chi * KeplerOrbit.stumpffS(z) + a * Math.sqrt(y)) / sqrtMu;
+	}
+}
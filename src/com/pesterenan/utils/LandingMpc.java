@@ -0,0 +1,161 @@
+package com.pesterenan.utils;
+
+import java.util.Arrays;
+
+/**
+ * Controlador preditivo (MPC) do acelerador na descida do pouso.
+ * <p>
+ * A cada ciclo, otimiza o acelerador dos próximos segundos sobre um modelo local da dinâmica vertical (altitude,
+ * velocidade vertical e massa, com o empuxo e a gravidade constantes no horizonte) e aplica só o primeiro valor. O
+ * custo é a distância da velocidade simulada a um perfil de descida, que deixa a nave cair livre enquanto há altitude
+ * e a freia com uma fração da desaceleração máxima, mais um custo pequeno do acelerador (combustível) e das mudanças
+ * dele. O horizonte é dividido em blocos de acelerador constante, e a busca é um gradiente projetado em [0, 1] com
+ * passo adaptativo, partindo do plano do ciclo anterior.
+ * <p>
+ * A busca para ao convergir, ao atingir o limite de iterações ou ao estourar o prazo de cálculo por ciclo, o que vier
+ * primeiro; o plano encontrado até ali é sempre válido. Não faz nenhuma requisição e não cria objetos por ciclo.
+ */
+public class LandingMpc {
+
+	// Horizonte de 5 segundos, em passos de 0,25 s agrupados em blocos de 1 segundo
+	private static final int STEPS = 20, STEPS_PER_BLOCK = 4, BLOCKS = STEPS / STEPS_PER_BLOCK;
+	private static final double STEP_SECONDS = 0.25;
+	private static final int MAX_ITERATIONS = 60;
+	// Fração da desaceleração máxima usada no perfil de descida, o resto é margem para erros do modelo
+	private static final double BRAKING_FRACTION = 0.7;
+	// Velocidade de toque no chão (m/s) e altitude (m) abaixo da qual a descida é feita nela
+	private static final double TOUCHDOWN_SPEED = 2, FLARE_ALTITUDE = 10;
+	private static final double THROTTLE_WEIGHT = 1, THROTTLE_RATE_WEIGHT = 20;
+	private static final double MIN_STEP = 1e-3, INITIAL_STEP = 0.25, FINITE_DIFFERENCE = 1e-4;
+
+	private final double gravity;
+	private final long budgetNanos;
+	private final double[] plan = new double[BLOCKS], candidate = new double[BLOCKS], gradient = new double[BLOCKS];
+	private double altitude, verticalSpeed, mass, verticalThrust, massFlow, brakingDeceleration, lastThrottle;
+	private int lastIterations;
+	private double lastCost;
+
+	/**
+	 * @param gravity     - Gravidade na superfície do corpo (m/s²)
+	 * @param budgetNanos - Prazo de cálculo de cada ciclo (ns)
+	 */
+	public LandingMpc(double gravity, long budgetNanos) {
+		this.gravity = gravity;
+		this.budgetNanos = budgetNanos;
+	}
+
+	/**
+	 * Otimiza o acelerador do horizonte a partir do estado atual.
+	 *
+	 * @param altitude        - Altitude acima da superfície (m)
+	 * @param verticalSpeed   - Velocidade vertical (m/s), positiva subindo
+	 * @param mass            - Massa atual da nave (kg)
+	 * @param thrust          - Empuxo máximo disponível (N), que define o consumo de massa
+	 * @param verticalThrust  - Componente vertical desse empuxo (N), que define a aceleração
+	 * @param exhaustVelocity - Velocidade de exaustão dos motores (m/s), infinita para ignorar o consumo de massa
+	 * @return O acelerador a aplicar agora, entre 0 e 1
+	 */
+	public double solve(double altitude, double verticalSpeed, double mass, double thrust, double verticalThrust,
+	                    double exhaustVelocity) {
+		long deadline = System.nanoTime() + budgetNanos;
+		this.altitude = altitude;
+		this.verticalSpeed = verticalSpeed;
+		this.mass = mass;
+		this.verticalThrust = verticalThrust;
+		this.massFlow = thrust / exhaustVelocity;
+		this.brakingDeceleration = Math.max(0.1, (verticalThrust / mass - gravity) * BRAKING_FRACTION);
+
+		// O plano anterior avança um passo do horizonte a cada ciclo, mas o ciclo é bem mais curto que um bloco:
+		// reaproveitá-lo como está já é um bom ponto de partida
+		double cost = cost(plan);
+		double step = INITIAL_STEP;
+		int iteration = 0;
+		while (iteration < MAX_ITERATIONS && step > MIN_STEP && System.nanoTime() < deadline) {
+			iteration++;
+			double norm = gradient(cost);
+			if (norm == 0) {
+				break;
+			}
+			for (int i = 0; i < BLOCKS; i++) {
+				candidate[i] = Utilities.clamp(plan[i] - step * gradient[i] / norm, 0, 1);
+			}
+			double candidateCost = cost(candidate);
+			if (candidateCost < cost) {
+				System.arraycopy(candidate, 0, plan, 0, BLOCKS);
+				cost = candidateCost;
+				step *= 1.5;
+			} else {
+				step /= 2;
+			}
+		}
+		lastIterations = iteration;
+		lastCost = cost;
+		lastThrottle = plan[0];
+		return plan[0];
+	}
+
+	/**
+	 * Esquece o plano anterior, para a próxima busca partir do acelerador zerado.
+	 */
+	public void reset() {
+		Arrays.fill(plan, 0);
+		lastThrottle = 0;
+	}
+
+	public int getLastIterations() {
+		return lastIterations;
+	}
+
+	public double getLastCost() {
+		return lastCost;
+	}
+
+	/**
+	 * @return A velocidade vertical do perfil de descida na altitude (m/s), negativa descendo.
+	 */
+	private double referenceSpeed(double altitude) {
+		return -Math.max(TOUCHDOWN_SPEED, Math.sqrt(2 * brakingDeceleration * Math.max(0, altitude - FLARE_ALTITUDE)));
+	}
+
+	/**
+	 * Gradiente do custo por diferenças finitas, guardado em {@code gradient}.
+	 *
+	 * @return A norma do gradiente
+	 */
+	private double gradient(double cost) {
+		double squares = 0;
+		for (int i = 0; i < BLOCKS; i++) {
+			double original = plan[i];
+			// Perto do limite superior, a diferença é tomada para baixo para não sair de [0, 1]
+			double delta = original + FINITE_DIFFERENCE > 1 ? -FINITE_DIFFERENCE : FINITE_DIFFERENCE;
+			plan[i] = original + delta;
+			gradient[i] = (cost(plan) - cost) / delta;
+			plan[i] = original;
+			// Componentes que empurrariam para fora de [0, 1] não andam
+			if ((original <= 0 && gradient[i] > 0) || (original >= 1 && gradient[i] < 0)) {
+				gradient[i] = 0;
+			}
+			squares += gradient[i] * gradient[i];
+		}
+		return Math.sqrt(squares);
+	}
+
+	/**
+	 * Simula o horizonte com o plano de acelerador e soma o custo de cada passo.
+	 */
+	private double cost(double[] throttles) {
+		double h = altitude, v = verticalSpeed, m = mass, previous = lastThrottle;
+		double total = 0;
+		for (int k = 0; k < STEPS; k++) {
+			double throttle = throttles[k / STEPS_PER_BLOCK];
+			v += (throttle * verticalThrust / m - gravity) * STEP_SECONDS;
+			h += v * STEP_SECONDS;
+			m = Math.max(1, m - throttle * massFlow * STEP_SECONDS);
+			double error = v - referenceSpeed(h);
+			double change = throttle - previous;
+			total += error * error + THROTTLE_WEIGHT * throttle + THROTTLE_RATE_WEIGHT * change * change;
+			previous = throttle;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,226 @@
+package com.pesterenan.utils;
+
+/**
+ * Prevê a trajetória de descida da nave para o pouso: onde e quando ela toca o chão em queda livre, quanta altitude
+ * uma queima a todo empuxo consome até parar, e quanto tempo falta para essa queima precisar começar (a "queima
+ * suicida").
+ * <p>
+ * A trajetória é integrada numericamente no plano vertical da descida, com a gravidade caindo com o quadrado da
+ * distância ao centro do corpo e a curvatura da superfície (a velocidade horizontal alivia o peso). A queima é sempre
+ * retrógrada à velocidade de superfície. Não considera arrasto nem a rotação do corpo, e o chão é tomado na altitude da
+ * superfície logo abaixo da nave. Usa só os valores já lidos dos streams, sem nenhuma requisição, e os vetores de
+ * trabalho são reaproveitados: uma previsão leva bem menos de um milissegundo.
+ */
+public class LandingPredictor {
+
+	// Passos da trajetória em queda livre e da simulação da queima
+	private static final int FREE_FALL_STEPS = 256, BURN_STEPS = 200;
+	private static final int MAX_STEPS = 4 * FREE_FALL_STEPS;
+	private static final double MIN_STEP = 0.01;
+
+	private final double surfaceGravity, bodyRadius;
+	// Amostras da trajetória em queda livre: x, y, vx, vy (origem no centro do corpo, y para cima)
+	private final double[][] samples = new double[MAX_STEPS + 1][4];
+	private final double[] state = new double[4], half = new double[4];
+	private double freeFallStep, lastBurnTime;
+
+	/**
+	 * @param surfaceGravity - Gravidade na superfície do corpo (m/s²)
+	 * @param bodyRadius     - Raio do corpo (m)
+	 */
+	public LandingPredictor(double surfaceGravity, double bodyRadius) {
+		this.surfaceGravity = surfaceGravity;
+		this.bodyRadius = bodyRadius;
+	}
+
+	/**
+	 * @param altitude           - Altitude acima da superfície (m)
+	 * @param verticalSpeed      - Velocidade vertical (m/s), positiva subindo
+	 * @param horizontalSpeed    - Velocidade horizontal de superfície (m/s)
+	 * @param thrustAcceleration - Aceleração do empuxo máximo disponível (m/s²), sem descontar a gravidade
+	 */
+	public Prediction predict(double altitude, double verticalSpeed, double horizontalSpeed,
+	                          double thrustAcceleration) {
+		int impactStep = integrateFreeFall(altitude, verticalSpeed, horizontalSpeed);
+		double step = freeFallStep;
+		double timeToImpact = Double.POSITIVE_INFINITY, impactDistance = Double.NaN;
+		if (impactStep == 0) {
+			timeToImpact = 0;
+			impactDistance = 0;
+		} else if (impactStep > 0) {
+			// Interpola entre a última amostra acima do chão e a primeira abaixo
+			double before = altitudeOf(samples[impactStep - 1]), after = altitudeOf(samples[impactStep]);
+			double fraction = before / (before - after);
+			timeToImpact = (impactStep - 1 + fraction) * step;
+			double angleBefore = Math.atan2(samples[impactStep - 1][0], samples[impactStep - 1][1]);
+			double angleAfter = Math.atan2(samples[impactStep][0], samples[impactStep][1]);
+			impactDistance = (angleBefore + (angleAfter - angleBefore) * fraction) * bodyRadius;
+		}
+
+		double stopAltitude = burnFrom(samples[0], thrustAcceleration);
+		double burnTime = lastBurnTime;
+		double timeToIgnition = 0;
+		if (impactStep < 0) {
+			timeToIgnition = Double.POSITIVE_INFINITY;
+		} else if (stopAltitude > 0) {
+			// A altitude final da queima cai à medida que a ignição atrasa: procura a última amostra que ainda para
+			// acima do chão, e interpola até a seguinte
+			int low = 0, high = impactStep;
+			while (high - low > 1) {
+				int middle = (low + high) >>> 1;
+				if (burnFrom(samples[middle], thrustAcceleration) > 0) {
+					low = middle;
+				} else {
+					high = middle;
+				}
+			}
+			double lowEnd = burnFrom(samples[low], thrustAcceleration);
+			double highEnd = burnFrom(samples[high], thrustAcceleration);
+			timeToIgnition = (low + lowEnd / (lowEnd - highEnd)) * step;
+		}
+		return new Prediction(timeToImpact, impactDistance, timeToIgnition, altitude - stopAltitude, burnTime);
+	}
+
+	/**
+	 * Integra a queda livre a partir do estado atual, guardando as amostras.
+	 *
+	 * @return O índice da primeira amostra abaixo do chão, ou -1 se a nave não cair dentro do prazo simulado
+	 */
+	private int integrateFreeFall(double altitude, double verticalSpeed, double horizontalSpeed) {
+		samples[0][0] = 0;
+		samples[0][1] = bodyRadius + altitude;
+		samples[0][2] = horizontalSpeed;
+		samples[0][3] = verticalSpeed;
+		// Estimativa do tempo de queda com gravidade constante, para escolher o passo
+		double fallTime = (verticalSpeed + Math.sqrt(verticalSpeed * verticalSpeed + 2 * surfaceGravity *
+				Math.max(altitude, 0))) / surfaceGravity;
+		freeFallStep = Math.max(MIN_STEP, fallTime / FREE_FALL_STEPS);
+		if (altitude <= 0) {
+			return 0;
+		}
+		for (int i = 1; i <= MAX_STEPS; i++) {
+			System.arraycopy(samples[i - 1], 0, state, 0, 4);
+			step(state, freeFallStep, 0);
+			System.arraycopy(state, 0, samples[i], 0, 4);
+			if (altitudeOf(state) <= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Simula uma queima retrógrada a todo empuxo a partir de um estado, até a velocidade zerar. O chão não interrompe
+	 * a simulação, para que o resultado varie de forma contínua com o estado inicial.
+	 *
+	 * @return A altitude em que a nave para (negativa se só pararia abaixo do chão)
+	 */
+	private double burnFrom(double[] start, double thrustAcceleration) {
+		System.arraycopy(start, 0, state, 0, 4);
+		double speed = Math.sqrt(state[2] * state[2] + state[3] * state[3]);
+		double netDeceleration = thrustAcceleration - surfaceGravity;
+		if (netDeceleration <= 0) {
+			lastBurnTime = Double.POSITIVE_INFINITY;
+			return Double.NEGATIVE_INFINITY;
+		}
+		double dt = Math.max(MIN_STEP / 10, speed / netDeceleration / BURN_STEPS);
+		double time = 0;
+		for (int i = 0; i < 4 * BURN_STEPS && speed > thrustAcceleration * dt; i++) {
+			step(state, dt, thrustAcceleration);
+			time += dt;
+			speed = Math.sqrt(state[2] * state[2] + state[3] * state[3]);
+		}
+		lastBurnTime = time;
+		return altitudeOf(state);
+	}
+
+	/**
+	 * Um passo do método do ponto médio (Runge-Kutta de segunda ordem).
+	 */
+	private void step(double[] s, double dt, double thrustAcceleration) {
+		half[0] = s[0] + s[2] * dt / 2;
+		half[1] = s[1] + s[3] * dt / 2;
+		half[2] = s[2] + accelerationX(s, thrustAcceleration) * dt / 2;
+		half[3] = s[3] + accelerationY(s, thrustAcceleration) * dt / 2;
+		s[0] += half[2] * dt;
+		s[1] += half[3] * dt;
+		s[2] += accelerationX(half, thrustAcceleration) * dt;
+		s[3] += accelerationY(half, thrustAcceleration) * dt;
+	}
+
+	private double accelerationX(double[] s, double thrust) {
+		return gravityFactor(s) * s[0] - thrustFactor(s, thrust) * s[2];
+	}
+
+	private double accelerationY(double[] s, double thrust) {
+		return gravityFactor(s) * s[1] - thrustFactor(s, thrust) * s[3];
+	}
+
+	// Gravidade g0 * (R / r)², apontando para o centro: multiplicada pela posição dá o vetor
+	private double gravityFactor(double[] s) {
+		double r = Math.sqrt(s[0] * s[0] + s[1] * s[1]);
+		return -surfaceGravity * bodyRadius * bodyRadius / (r * r * r);
+	}
+
+	// Empuxo contra a velocidade: multiplicado pela velocidade dá o vetor
+	private static double thrustFactor(double[] s, double thrust) {
+		double speed = Math.sqrt(s[2] * s[2] + s[3] * s[3]);
+		return speed > 0 ? thrust / speed : 0;
+	}
+
+	private double altitudeOf(double[] s) {
+		return Math.sqrt(s[0] * s[0] + s[1] * s[1]) - bodyRadius;
+	}
+
+	/**
+	 * Resultado de uma previsão.
+	 */
+	public static class Prediction {
+		private final double timeToImpact, impactDistance, timeToIgnition, stoppingAltitude, burnTime;
+
+		private Prediction(double timeToImpact, double impactDistance, double timeToIgnition,
+		                   double stoppingAltitude, double burnTime) {
+			this.timeToImpact = timeToImpact;
+			this.impactDistance = impactDistance;
+			this.timeToIgnition = timeToIgnition;
+			this.stoppingAltitude = stoppingAltitude;
+			this.burnTime = burnTime;
+		}
+
+		/**
+		 * @return O tempo até tocar o chão em queda livre (s), ou infinito se não cair.
+		 */
+		public double getTimeToImpact() {
+			return timeToImpact;
+		}
+
+		/**
+		 * @return A distância sobre a superfície, na direção do movimento, até o ponto de impacto em queda livre (m).
+		 */
+		public double getImpactDistance() {
+			return impactDistance;
+		}
+
+		/**
+		 * @return O tempo até a última ignição que ainda para a nave acima do chão (s), zero se já passou.
+		 */
+		public double getTimeToIgnition() {
+			return timeToIgnition;
+		}
+
+		/**
+		 * @return A altitude consumida por uma queima a todo empuxo iniciada agora (m), infinita se o empuxo não
+		 * vence a gravidade.
+		 */
+		public double getStoppingAltitude() {
+			return stoppingAltitude;
+		}
+
+		/**
+		 * @return A duração de uma queima a todo empuxo iniciada agora (s).
+		 */
+		public double getBurnTime() {
+			return burnTime;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.pesterenan.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latências em microssegundos, no mesmo esquema log-linear do HdrHistogram.
+ * <p>
+ * Os valores até 63 µs têm um balde cada; acima disso, cada potência de dois é dividida em 32 baldes iguais, então o
+ * erro de qualquer percentil é de no máximo 1/32 (cerca de 3%) do valor, com um array fixo de baldes e sem alocação
+ * ao registrar. Pode ser alimentado por várias threads ao mesmo tempo.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_BIT = 36;
+	private static final long MAX_VALUE = (1L << (MAX_BIT + 1)) - 1;
+	private static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong(), sum = new AtomicLong(), max = new AtomicLong();
+
+	/**
+	 * Registra uma medida.
+	 *
+	 * @param micros - Latência em microssegundos. Valores negativos contam como zero.
+	 */
+	public void record(long micros) {
+		long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// outra thread registrou ao mesmo tempo, tenta de novo
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public double getMeanMicros() {
+		long total = count.get();
+		return total == 0 ? 0 : (double) sum.get() / total;
+	}
+
+	public long getMaxMicros() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile - Percentil desejado, de 0 a 100
+	 * @return O limite superior do balde onde o percentil cai, em microssegundos, ou 0 sem medidas.
+	 */
+	public long getPercentileMicros(double percentile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= target) {
+				return Math.min(upperBoundOf(bucket), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Descarta todas as medidas.
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts.set(bucket, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	private static int bucketOf(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
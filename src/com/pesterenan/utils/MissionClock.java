@@ -0,0 +1,89 @@
+package com.pesterenan.utils;
+
+/**
+ * Relógio usado pelos controladores.
+ * <p>
+ * Normalmente segue o relógio do sistema. Na reprodução de voos gravados ele passa a ser virtual: o tempo só anda
+ * quando um laço de controle termina um passo ou um controlador espera com {@link #sleep(long)}, e anda exatamente o
+ * período pedido, sem esperar o tempo real passar. Assim um voo é reproduzido tão rápido quanto o processador
+ * permitir, e sempre com os mesmos instantes, o que torna a reprodução determinística.
+ */
+public final class MissionClock {
+
+	private static volatile Listener listener;
+	private static volatile long virtualNanos, virtualEpochMillis;
+
+	private MissionClock() {
+	}
+
+	/**
+	 * @return O tempo atual em nanossegundos, com origem arbitrária (como {@link System#nanoTime()}).
+	 */
+	public static long nanoTime() {
+		return listener == null ? System.nanoTime() : virtualNanos;
+	}
+
+	/**
+	 * @return O horário atual em milissegundos desde 1970 (como {@link System#currentTimeMillis()}).
+	 */
+	public static long currentTimeMillis() {
+		return listener == null ? System.currentTimeMillis() : virtualEpochMillis + virtualNanos / 1_000_000;
+	}
+
+	/**
+	 * Espera o tempo informado. Com o relógio virtual, apenas avança o tempo.
+	 */
+	public static void sleep(long millis) throws InterruptedException {
+		if (listener == null) {
+			Thread.sleep(millis);
+		} else {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			advance(millis * 1_000_000);
+		}
+	}
+
+	public static boolean isVirtual() {
+		return listener != null;
+	}
+
+	/**
+	 * Passa a usar o relógio virtual, começando do zero.
+	 *
+	 * @param epochMillis - Horário, em milissegundos desde 1970, correspondente ao início do relógio virtual
+	 * @param onAdvance   - Chamado a cada avanço do tempo, antes do controlador continuar
+	 */
+	public static synchronized void useVirtualTime(long epochMillis, Listener onAdvance) {
+		virtualNanos = 0;
+		virtualEpochMillis = epochMillis;
+		listener = onAdvance;
+	}
+
+	/**
+	 * Volta a seguir o relógio do sistema.
+	 */
+	public static synchronized void useRealTime() {
+		listener = null;
+	}
+
+	/**
+	 * Avança o relógio virtual. Sem efeito quando o relógio segue o sistema.
+	 */
+	public static synchronized void advance(long nanos) throws InterruptedException {
+		Listener current = listener;
+		if (current == null) {
+			return;
+		}
+		virtualNanos += nanos;
+		current.advanced(virtualNanos);
+	}
+
+	/**
+	 * Aviso de avanço do relógio virtual. Pode lançar {@link InterruptedException} para encerrar o controlador.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+		void advanced(long nanos) throws InterruptedException;
+	}
+}
@@ -0,0 +1,202 @@
+package com.pesterenan.utils;
+
+import com.pesterenan.model.ActiveVessel;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executa e supervisiona os módulos (controladores) em andamento.
+ * <p>
+ * Cada módulo roda em uma thread própria: virtual quando a JVM tiver threads virtuais (Java 21 ou mais novo), para
+ * que muitos módulos ao mesmo tempo não custem uma thread do sistema cada, ou uma thread comum nas versões anteriores.
+ * Um módulo iniciado de dentro de outro (ex: a circularização iniciada ao fim da decolagem) é filho dele: cancelar o
+ * pai cancela também os filhos. Quando um módulo termina, por fim normal, erro ou cancelamento, os streams e desenhos
+ * do controlador são liberados com {@link ActiveVessel#cleanup()}, e ele deixa de ser acompanhado.
+ */
+public class ModuleExecutor {
+
+	private static final ThreadFactory THREADS = createThreadFactory();
+	private static final ThreadLocal<Module> current = new ThreadLocal<>();
+
+	private final Set<Module> running = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Inicia um módulo. Se for chamado de dentro de outro módulo, o novo é filho do atual.
+	 *
+	 * @param name       - Nome do módulo, usado no nome da thread
+	 * @param controller - Controlador a executar
+	 * @return O módulo iniciado
+	 */
+	public Module start(String name, Runnable controller) {
+		Module parent = current.get();
+		Module module = new Module(name, controller, parent);
+		running.add(module);
+		if (parent != null) {
+			parent.children.add(module);
+		}
+		module.thread = THREADS.newThread(() -> execute(module));
+		module.thread.setName("MechPeste-" + name);
+		module.thread.start();
+		if (parent != null && parent.cancelled) {
+			module.cancel();
+		}
+		return module;
+	}
+
+	/**
+	 * Cancela todos os módulos em andamento, incluindo os filhos.
+	 */
+	public void cancelAll() {
+		for (Module module : running) {
+			module.cancel();
+		}
+	}
+
+	/**
+	 * Espera todos os módulos em andamento terminarem.
+	 *
+	 * @return {@code false} se o prazo acabou antes
+	 */
+	public boolean awaitAll(long timeoutMillis) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (Module module : running) {
+			if (!module.join(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())))) {
+				return false;
+			}
+		}
+		return running.isEmpty();
+	}
+
+	/**
+	 * @return Os módulos que ainda não terminaram.
+	 */
+	public List<Module> getRunning() {
+		return new ArrayList<>(running);
+	}
+
+	/**
+	 * @return Se os módulos rodam em threads virtuais.
+	 */
+	public static boolean usesVirtualThreads() {
+		return !(THREADS instanceof PlatformThreads);
+	}
+
+	private void execute(Module module) {
+		current.set(module);
+		try {
+			module.controller.run();
+		} catch (RuntimeException e) {
+			System.err.println("Módulo " + module.name + " encerrado com erro: " + e);
+		} finally {
+			current.remove();
+			if (module.controller instanceof ActiveVessel) {
+				((ActiveVessel) module.controller).cleanup();
+			}
+			running.remove(module);
+			if (module.parent != null) {
+				module.parent.children.remove(module);
+			}
+			module.done.countDown();
+		}
+	}
+
+	private static ThreadFactory createThreadFactory() {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Object builder = ofVirtual.invoke(null);
+			Method factory = ofVirtual.getReturnType().getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Java sem threads virtuais, ou com elas em versão de prévia desligada
+			return new PlatformThreads();
+		}
+	}
+
+	private static class PlatformThreads implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "MechPeste-Modulo-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Um módulo em execução.
+	 */
+	public static class Module {
+		private final String name;
+		private final Runnable controller;
+		private final Module parent;
+		private final List<Module> children = new CopyOnWriteArrayList<>();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Thread thread;
+		private volatile boolean cancelled;
+
+		private Module(String name, Runnable controller, Module parent) {
+			this.name = name;
+			this.controller = controller;
+			this.parent = parent;
+		}
+
+		/**
+		 * Cancela o módulo e os seus filhos, interrompendo as suas threads. Os recursos são liberados quando cada
+		 * controlador terminar.
+		 */
+		public void cancel() {
+			cancelled = true;
+			for (Module child : children) {
+				child.cancel();
+			}
+			Thread target = thread;
+			if (target != null) {
+				target.interrupt();
+			}
+		}
+
+		/**
+		 * Espera o módulo terminar.
+		 *
+		 * @return {@code false} se o prazo acabou antes
+		 */
+		public boolean join(long timeoutMillis) throws InterruptedException {
+			return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+
+		public boolean isDone() {
+			return done.getCount() == 0;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Module getParent() {
+			return parent;
+		}
+
+		public List<Module> getChildren() {
+			return new ArrayList<>(children);
+		}
+
+		@Override
+		public String toString() {
+			return name + (cancelled ? " (cancelado)" : "");
+		}
+	}
+}
@@ -29,7 +29,19 @@ public enum Modulos {
 	NAVE_ALVO("Nave alvo"),
 	MARCADOR_MAPA("Marcador no mapa"),
 	NOME_MARCADOR("Nome do marcador"),
-	VELOCIDADE_MAX("Velocidade Máxima");
+	VELOCIDADE_MAX("Velocidade Máxima"),
+	VEL_P("Vel P"),
+	VEL_I("Vel I"),
+	VEL_D("Vel D"),
+	TRANSFERIR("Transferir"),
+	TIPO_TRANSFERENCIA("Tipo de Transferência"),
+	HOHMANN("Hohmann"),
+	BI_ELIPTICA("Bi-elíptica"),
+	PLANO_CIRCULAR("Plano + Circular"),
+	ENCONTRO("Encontro"),
+	ALTITUDE_ALVO("Altitude Alvo"),
+	ALTITUDE_INTERMEDIARIA("Altitude Intermediária"),
+	POUSO_PREDITIVO("Pouso Preditivo");
 
 	final String t;
 
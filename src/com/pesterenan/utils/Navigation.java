@@ -4,10 +4,13 @@ import com.pesterenan.model.ActiveVessel;
 import krpc.client.RPCException;
 import krpc.client.StreamException;
 import krpc.client.services.SpaceCenter.Node;
+import krpc.client.services.SpaceCenter.ReferenceFrame;
 import org.javatuples.Triplet;
 
 public class Navigation extends ActiveVessel {
 
+	// Usada nos laços de 25 ms do pouso e das manobras
+	private static final float STREAM_RATE = 40;
 	public static final Triplet<Double, Double, Double> RADIAL = new Triplet<>(1.0, 0.0, 0.0);
 	public static final Triplet<Double, Double, Double> ANTI_RADIAL = new Triplet<>(-1.0, 0.0, 0.0);
 	public static final Triplet<Double, Double, Double> PROGRADE = new Triplet<>(0.0, 1.0, 0.0);
@@ -15,6 +18,11 @@ public class Navigation extends ActiveVessel {
 	public static final Triplet<Double, Double, Double> NORMAL = new Triplet<>(0.0, 0.0, 1.0);
 	public static final Triplet<Double, Double, Double> ANTI_NORMAL = new Triplet<>(0.0, 0.0, -1.0);
 
+	// Vetores reaproveitados a cada chamada de targetLanding, que roda a cada ciclo do pouso
+	private final Vector retrograde = new Vector();
+	private final Vector radial = new Vector();
+	private final Vector landingVector = new Vector();
+
 	public Navigation() {
 		super(getConexao());
 		initializeParameters();
@@ -22,8 +30,7 @@ public class Navigation extends ActiveVessel {
 
 	private void initializeParameters() {
 		try {
-			parametrosDeVoo = naveAtual.flight(pontoRefOrbital);
-			velHorizontal = getConexao().addStream(parametrosDeVoo, "getHorizontalSpeed");
+			velHorizontal = addStream(STREAM_RATE, parametrosDeVoo, "getHorizontalSpeed");
 		} catch (RPCException | StreamException ignored) {
 		}
 	}
@@ -33,42 +40,35 @@ public class Navigation extends ActiveVessel {
 	}
 
 	public void targetLanding() throws RPCException, StreamException {
-		Vector navePosition = new Vector(naveAtual.position(pontoRefOrbital));
-		Vector retrogradeVel = new Vector(
-				centroEspacial.transformPosition(RETROGRADE, naveAtual.getSurfaceVelocityReferenceFrame(),
-				                                 pontoRefOrbital
-				                                ));
-		Vector retrograde = new Vector(retrogradeVel.x - navePosition.x, retrogradeVel.y - navePosition.y,
-		                               retrogradeVel.z - navePosition.z
-		);
-		Vector radial = new Vector(
-				centroEspacial.transformDirection(RADIAL, naveAtual.getSurfaceReferenceFrame(), pontoRefOrbital));
-		double landingX =
-				Utilities.remap(0.0, 10.0, radial.x, retrograde.x, Utilities.clamp(velHorizontal.get(), 0, 10), false);
-		double landingY =
-				Utilities.remap(0.0, 10.0, radial.y, retrograde.y, Utilities.clamp(velHorizontal.get(), 0, 10), false);
-		double landingZ =
-				Utilities.remap(0.0, 10.0, radial.z, retrograde.z, Utilities.clamp(velHorizontal.get(), 0, 10), false);
-		Vector landingVector = new Vector(landingX, landingY, landingZ);
+		// Direção, e não diferença de duas posições: lidas em instantes diferentes, o deslocamento da nave entre
+		// as leituras podia inverter o vetor em uma descida rápida
+		retrograde.set(centroEspacial.transformDirection(RETROGRADE, surfaceVelocityFrame(), pontoRefOrbital));
+		radial.set(centroEspacial.transformDirection(RADIAL, pontoRefSuperficie, pontoRefOrbital));
+		double horizontalSpeed = Utilities.clamp(velHorizontal.get(), 0, 10);
+		double landingX = Utilities.remap(0.0, 10.0, radial.x, retrograde.x, horizontalSpeed, false);
+		double landingY = Utilities.remap(0.0, 10.0, radial.y, retrograde.y, horizontalSpeed, false);
+		double landingZ = Utilities.remap(0.0, 10.0, radial.z, retrograde.z, horizontalSpeed, false);
+		landingVector.setVector(landingX, landingY, landingZ);
 		targetDirection(landingVector.toTriplet());
 	}
 
 
 	public void targetRadialOut() throws RPCException {
-		targetDirection(
-				centroEspacial.transformDirection(RADIAL, naveAtual.getSurfaceReferenceFrame(), pontoRefOrbital));
+		targetDirection(centroEspacial.transformDirection(RADIAL, pontoRefSuperficie, pontoRefOrbital));
 	}
 
 	public void targetRetrograde() throws RPCException {
-		targetDirection(centroEspacial.transformDirection(RETROGRADE, naveAtual.getSurfaceVelocityReferenceFrame(),
-		                                                  pontoRefOrbital
-		                                                 ));
+		targetDirection(centroEspacial.transformDirection(RETROGRADE, surfaceVelocityFrame(), pontoRefOrbital));
+	}
+
+	private ReferenceFrame surfaceVelocityFrame() throws RPCException {
+		return constants().vessel(naveAtual).getSurfaceVelocityReferenceFrame();
 	}
 
 	public void targetDirection(Triplet<Double, Double, Double> currentDirection) {
 		try {
-			ap.setReferenceFrame(pontoRefOrbital);
-			ap.setTargetDirection(currentDirection);
+			sendControl(ap, "setReferenceFrame", pontoRefOrbital);
+			sendControl(ap, "setTargetDirection", currentDirection);
 		} catch (RPCException e) {
 			System.err.println("Não foi possível manobrar a nave.");
 		}
@@ -0,0 +1,145 @@
+package com.pesterenan.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fórmulas fechadas para manobras orbitais clássicas: transferência de Hohmann, transferência bi-elíptica e mudança de
+ * plano nos nós, com ou sem circularização na mesma queima.
+ * <p>
+ * Os cálculos usam só os elementos orbitais (raios, semi-eixo maior, excentricidade, anomalia verdadeira), sem
+ * consultar o servidor, e devolvem cada queima já decomposta nos componentes progrado, normal e radial de um nó de
+ * manobra do KSP. Os raios são medidos a partir do centro do corpo.
+ */
+public final class OrbitalManeuvers {
+
+	private OrbitalManeuvers() {
+	}
+
+	/**
+	 * Transferência de Hohmann entre uma apside da órbita atual e uma órbita circular de outro raio.
+	 *
+	 * @param mu            - Parâmetro gravitacional do corpo (m³/s²)
+	 * @param semiMajorAxis - Semi-eixo maior da órbita atual (m)
+	 * @param startRadius   - Raio da apside onde começa a transferência (m)
+	 * @param finalRadius   - Raio da órbita circular final (m)
+	 * @return A queima de partida, na apside, e a de circularização, meia órbita de transferência depois
+	 */
+	public static List<Burn> hohmann(double mu, double semiMajorAxis, double startRadius, double finalRadius) {
+		double transferAxis = (startRadius + finalRadius) / 2;
+		double departure = visViva(mu, startRadius, transferAxis) - visViva(mu, startRadius, semiMajorAxis);
+		double arrival = circularSpeed(mu, finalRadius) - visViva(mu, finalRadius, transferAxis);
+		return Arrays.asList(new Burn(0, departure, 0, 0), new Burn(halfPeriod(mu, transferAxis), arrival, 0, 0));
+	}
+
+	/**
+	 * Transferência bi-elíptica: a primeira queima leva a apside oposta até um raio intermediário, onde a segunda
+	 * queima leva a apside de partida até o raio final, e a terceira circulariza. Gasta menos que a de Hohmann quando o
+	 * raio final é mais de cerca de 12 vezes o inicial, à custa de um tempo de viagem bem maior.
+	 *
+	 * @param intermediateRadius - Raio intermediário, maior que os raios inicial e final (m)
+	 * @return As três queimas, com os tempos contados a partir da primeira
+	 */
+	public static List<Burn> biElliptic(double mu, double semiMajorAxis, double startRadius, double finalRadius,
+	                                    double intermediateRadius) {
+		double firstAxis = (startRadius + intermediateRadius) / 2;
+		double secondAxis = (intermediateRadius + finalRadius) / 2;
+		double first = visViva(mu, startRadius, firstAxis) - visViva(mu, startRadius, semiMajorAxis);
+		double second = visViva(mu, intermediateRadius, secondAxis) - visViva(mu, intermediateRadius, firstAxis);
+		double third = circularSpeed(mu, finalRadius) - visViva(mu, finalRadius, secondAxis);
+		double secondTime = halfPeriod(mu, firstAxis);
+		return Arrays.asList(new Burn(0, first, 0, 0), new Burn(secondTime, second, 0, 0),
+		                     new Burn(secondTime + halfPeriod(mu, secondAxis), third, 0, 0)
+		                    );
+	}
+
+	/**
+	 * Mudança de plano em um ponto da órbita, girando a velocidade horizontal em torno da vertical local e mantendo a
+	 * velocidade radial.
+	 *
+	 * @param trueAnomaly   - Anomalia verdadeira do nó onde será feita a queima (rad)
+	 * @param deltaPlane    - Ângulo de giro do plano (rad), positivo no sentido da normal da órbita
+	 * @param circularize   - Se a mesma queima deve também circularizar a órbita no raio do nó
+	 * @return A queima no nó, com tempo zero
+	 */
+	public static Burn planeChange(double mu, double semiMajorAxis, double eccentricity, double trueAnomaly,
+	                               double deltaPlane, boolean circularize) {
+		double radius = semiMajorAxis * (1 - eccentricity * eccentricity) / (1 + eccentricity * Math.cos(trueAnomaly));
+		double speed = visViva(mu, radius, semiMajorAxis);
+		// Ângulo de trajetória: inclinação da velocidade acima da horizontal local
+		double flightPath = Math.atan2(eccentricity * Math.sin(trueAnomaly), 1 + eccentricity * Math.cos(trueAnomaly));
+		double radialSpeed = circularize ? 0 : speed * Math.sin(flightPath);
+		double horizontalSpeed = circularize ? circularSpeed(mu, radius) : speed * Math.cos(flightPath);
+		// Nova velocidade decomposta nos eixos do nó: progrado, normal e radial (para fora)
+		double rotatedHorizontal = horizontalSpeed * Math.cos(deltaPlane);
+		double prograde = radialSpeed * Math.sin(flightPath) + rotatedHorizontal * Math.cos(flightPath) - speed;
+		double normal = horizontalSpeed * Math.sin(deltaPlane);
+		double radial = radialSpeed * Math.cos(flightPath) - rotatedHorizontal * Math.sin(flightPath);
+		return new Burn(0, prograde, normal, radial);
+	}
+
+	/**
+	 * @return A soma do delta-V das queimas.
+	 */
+	public static double totalDeltaV(List<Burn> burns) {
+		double total = 0;
+		for (Burn burn : burns) {
+			total += burn.getDeltaV();
+		}
+		return total;
+	}
+
+	private static double visViva(double mu, double radius, double semiMajorAxis) {
+		return Math.sqrt(mu * (2 / radius - 1 / semiMajorAxis));
+	}
+
+	private static double circularSpeed(double mu, double radius) {
+		return Math.sqrt(mu / radius);
+	}
+
+	private static double halfPeriod(double mu, double semiMajorAxis) {
+		return Math.PI * Math.sqrt(Math.pow(semiMajorAxis, 3) / mu);
+	}
+
+	/**
+	 * Uma queima instantânea, com o tempo contado a partir da primeira queima da manobra.
+	 */
+	public static class Burn {
+		private final double time, prograde, normal, radial;
+
+		public Burn(double time, double prograde, double normal, double radial) {
+			this.time = time;
+			this.prograde = prograde;
+			this.normal = normal;
+			this.radial = radial;
+		}
+
+		public Burn delayedBy(double seconds) {
+			return new Burn(time + seconds, prograde, normal, radial);
+		}
+
+		public double getTime() {
+			return time;
+		}
+
+		public double getPrograde() {
+			return prograde;
+		}
+
+		public double getNormal() {
+			return normal;
+		}
+
+		public double getRadial() {
+			return radial;
+		}
+
+		public double getDeltaV() {
+			return Math.sqrt(prograde * prograde + normal * normal + radial * radial);
+		}
+
+		public double[] toArray() {
+			return new double[]{ prograde, normal, radial };
+		}
+	}
+}
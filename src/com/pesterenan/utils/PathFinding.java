@@ -1,27 +1,53 @@
 package com.pesterenan.utils;
 
+import com.google.protobuf.ByteString;
 import com.pesterenan.model.ActiveVessel;
 import krpc.client.Connection;
 import krpc.client.RPCException;
+import krpc.client.StreamException;
 import krpc.client.services.Drawing;
-import krpc.client.services.SpaceCenter;
 import krpc.client.services.SpaceCenter.Waypoint;
 import krpc.client.services.SpaceCenter.WaypointManager;
 import org.javatuples.Triplet;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class PathFinding extends ActiveVessel {
 
-	private static final float SEARCHING_DISTANCE = 4400000;
+	// Grade do planejamento da rota: tamanho da célula, margem em volta do rover e do alvo, e limite de células por
+	// lado (acima dele as células crescem)
+	private static final double PLANNER_CELL_METERS = 100, PLANNER_MARGIN_METERS = 2000;
+	private static final int PLANNER_MAX_CELLS = 512;
+	// Inclinação máxima do terreno na rota (graus)
+	private static final double MAX_SLOPE = 20;
+	// Sem rota pelo terreno entre dois pontos, o custo é a distância em linha reta multiplicada por esse valor
+	private static final double UNREACHABLE_PENALTY = 10;
+	// Pool próprio dos trechos da rota de visita: as buscas esperam blocos do relevo pela rede, e não devem ocupar o
+	// pool comum usado pelo resto do programa
+	private static final ForkJoinPool PLANNING_POOL =
+			new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
 	private WaypointManager waypointManager;
 	private String waypointName;
 	private List<Waypoint> waypointsToReach;
+	// Marcadores ainda não alcançados na ordem da rota de visita, e as posições deles; o primeiro é o marcador atual
+	private List<Waypoint> tourWaypoints;
+	private List<Vector> waypointTour;
 	private List<Vector> pathToTarget;
 	private Drawing drawing;
+	private FrameTransformer frames;
+	private TerrainCache terrain;
+	private GridPathPlanner planner;
+	private PlannerGrid plannerGrid;
+	private int plannerGoal;
+	private boolean plannerIsIncremental;
+	private Vector plannedTarget;
+	private final double[] coordinates = new double[2], nodePosition = new double[3];
 
 	public PathFinding(Connection con) {
 		super(con);
@@ -32,13 +58,27 @@ public class PathFinding extends ActiveVessel {
 		try {
 			waypointManager = centroEspacial.getWaypointManager();
 			waypointsToReach = new ArrayList<>();
+			tourWaypoints = new ArrayList<>();
+			waypointTour = new ArrayList<>();
 			pathToTarget = new ArrayList<>();
 			drawing = Drawing.newInstance(getConexao());
+			frames = new FrameTransformer();
+			terrain = new TerrainCache(getConexao(), currentBody, pontoRefOrbital,
+			                           constants().body(currentBody).getEquatorialRadius()
+			);
 		} catch (RPCException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	@Override
+	public void releaseStreams() {
+		if (frames != null) {
+			frames.releaseStreams();
+		}
+		super.releaseStreams();
+	}
+
 	public void addWaypointsOnSameBody(String waypointName) throws RPCException {
 		this.waypointName = waypointName;
 		waypointsToReach =
@@ -53,23 +93,153 @@ public class PathFinding extends ActiveVessel {
 		}
 	}
 
-	public Vector findNearestWaypoint() throws RPCException, IOException, InterruptedException {
-		double currentDistance = SEARCHING_DISTANCE;
-		Waypoint currentWaypoint = null;
+	/**
+	 * Ordena os marcadores em uma rota de visita, pelo custo de percorrer o terreno e não pela distância em linha reta.
+	 * O custo de cada trecho (do rover a cada marcador, e entre cada par de marcadores) é planejado com
+	 * {@link GridPathPlanner} sobre o relevo em cache, com todos os trechos em paralelo em um {@link ForkJoinPool}
+	 * próprio.
+	 * A ordem parte do marcador mais próximo e é melhorada com 2-opt.
+	 *
+	 * @return A posição do primeiro marcador da rota
+	 */
+	public Vector findNearestWaypoint() throws RPCException, StreamException, InterruptedException {
+		if (waypointsToReach.isEmpty()) {
+			throw new IllegalStateException("Nenhum marcador com o nome " + waypointName);
+		}
+		int points = waypointsToReach.size() + 1;
+		double[] latitudes = new double[points], longitudes = new double[points];
+		frames.update();
+		terrain.coordinates(frames.getVesselPosition(), coordinates);
+		latitudes[0] = coordinates[0];
+		longitudes[0] = coordinates[1];
+		RpcBatch batch = new RpcBatch(getConexao());
 		for (Waypoint waypoint : waypointsToReach) {
-			double waypointDistance =
-					Vector.distance(new Vector(naveAtual.position(pontoRefOrbital)), waypointPosOnSurface(waypoint));
-			if (currentDistance > waypointDistance) {
-				currentDistance = waypointDistance;
-				currentWaypoint = waypoint;
+			batch.add(waypoint, "getLatitude");
+			batch.add(waypoint, "getLongitude");
+		}
+		List<ByteString> values = batch.execute();
+		for (int i = 1; i < points; i++) {
+			latitudes[i] = RpcBatch.decodeDouble(values.get(2 * i - 2));
+			longitudes[i] = RpcBatch.decodeDouble(values.get(2 * i - 1));
+		}
+		int[] tour = tourOrder(traversalCosts(latitudes, longitudes));
+		tourWaypoints.clear();
+		waypointTour.clear();
+		for (int i = 1; i < points; i++) {
+			tourWaypoints.add(waypointsToReach.get(tour[i] - 1));
+			waypointTour.add(terrain.surfacePosition(latitudes[tour[i]], longitudes[tour[i]]));
+		}
+		return waypointTour.get(0);
+	}
+
+	/**
+	 * @return Se ainda há marcadores a alcançar na rota de visita.
+	 */
+	public boolean hasNextWaypoint() {
+		return !waypointTour.isEmpty();
+	}
+
+	/**
+	 * @return A posição do próximo marcador da rota de visita, depois de {@link #removeWaypointFromList()} tirar o
+	 * alcançado.
+	 */
+	public Vector nextWaypoint() {
+		return waypointTour.get(0);
+	}
+
+	/**
+	 * Planeja em paralelo o custo de percorrer o terreno entre cada par de pontos.
+	 *
+	 * @return A matriz simétrica de custos
+	 */
+	private double[][] traversalCosts(double[] latitudes, double[] longitudes)
+			throws RPCException, InterruptedException {
+		int points = latitudes.length;
+		double[][] costs = new double[points][points];
+		List<Callable<Void>> legs = new ArrayList<>();
+		for (int i = 0; i < points; i++) {
+			for (int j = i + 1; j < points; j++) {
+				int from = i, to = j;
+				legs.add(() -> {
+					costs[from][to] = costs[to][from] =
+							traversalCost(latitudes[from], longitudes[from], latitudes[to], longitudes[to]);
+					return null;
+				});
+			}
+		}
+		try {
+			for (Future<Void> leg : PLANNING_POOL.invokeAll(legs)) {
+				leg.get();
 			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RPCException) {
+				throw (RPCException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
 		}
-		return waypointPosOnSurface(currentWaypoint);
+		return costs;
 	}
 
-	private Vector waypointPosOnSurface(Waypoint waypoint) throws RPCException {
-		return new Vector(
-				currentBody.surfacePosition(waypoint.getLatitude(), waypoint.getLongitude(), pontoRefOrbital));
+	private double traversalCost(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude)
+			throws RPCException {
+		PlannerGrid grid = new PlannerGrid(fromLatitude, fromLongitude, toLatitude, toLongitude,
+		                                   constants().body(currentBody).getEquatorialRadius()
+		);
+		GridPathPlanner legPlanner = grid.newPlanner(terrain);
+		int from = grid.node(fromLatitude, fromLongitude), to = grid.node(toLatitude, toLongitude);
+		if (legPlanner.findPath(from, to) != null) {
+			return legPlanner.getPathCost();
+		}
+		double[] a = new double[3], b = new double[3];
+		legPlanner.position(from, a);
+		legPlanner.position(to, b);
+		double dx = b[0] - a[0], dy = b[1] - a[1], dz = b[2] - a[2];
+		return UNREACHABLE_PENALTY * Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * Ordem de visita dos pontos a partir do ponto 0, sem voltar a ele: vai sempre ao ponto mais barato ainda não
+	 * visitado, e depois inverte trechos da rota enquanto isso diminuir o custo total (2-opt).
+	 *
+	 * @param costs - Matriz simétrica de custos entre os pontos
+	 * @return Os pontos na ordem de visita, começando pelo 0
+	 */
+	static int[] tourOrder(double[][] costs) {
+		int points = costs.length;
+		int[] tour = new int[points];
+		boolean[] visited = new boolean[points];
+		visited[0] = true;
+		for (int i = 1; i < points; i++) {
+			int next = -1;
+			for (int candidate = 1; candidate < points; candidate++) {
+				if (!visited[candidate] && (next < 0 || costs[tour[i - 1]][candidate] < costs[tour[i - 1]][next])) {
+					next = candidate;
+				}
+			}
+			tour[i] = next;
+			visited[next] = true;
+		}
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int i = 1; i < points - 1; i++) {
+				for (int j = i + 1; j < points; j++) {
+					double change = costs[tour[i - 1]][tour[j]] - costs[tour[i - 1]][tour[i]];
+					if (j < points - 1) {
+						change += costs[tour[i]][tour[j + 1]] - costs[tour[j]][tour[j + 1]];
+					}
+					if (change < -1e-9) {
+						for (int a = i, b = j; a < b; a++, b--) {
+							int swap = tour[a];
+							tour[a] = tour[b];
+							tour[b] = swap;
+						}
+						improved = true;
+					}
+				}
+			}
+		}
+		return tour;
 	}
 
 	public boolean isPathToTargetEmpty() {
@@ -90,31 +260,42 @@ public class PathFinding extends ActiveVessel {
 		pathToTarget.remove(0);
 	}
 
-	public void removeWaypointFromList() throws RPCException {
-		if (!waypointsToReach.isEmpty()) {
-			if (!waypointsToReach.get(0).getHasContract()) {
-				waypointsToReach.remove(0);
-			}
+	/**
+	 * Tira o marcador alcançado (o primeiro da rota de visita) da rota e dos marcadores a alcançar, para que um novo
+	 * planejamento com {@link #findNearestWaypoint()} não passe por ele de novo.
+	 */
+	public void removeWaypointFromList() {
+		if (tourWaypoints.isEmpty()) {
+			return;
 		}
+		Waypoint reached = tourWaypoints.remove(0);
+		waypointTour.remove(0);
+		waypointsToReach.removeIf(waypoint -> waypoint == reached);
 	}
 
 	/**
-	 * Builds the path to the targetPosition, on the Celestial Body Reference ( Orbital Ref )
+	 * Builds the path to the targetPosition, on the Celestial Body Reference ( Orbital Ref ). The path is planned
+	 * over the terrain slope with {@link GridPathPlanner}; if no path is found, it falls back to a straight line.
 	 *
 	 * @param targetPosition the target pos to build the path to
-	 * @throws IOException
 	 * @throws RPCException
+	 * @throws StreamException
 	 * @throws InterruptedException
 	 */
-	public void buildPathToTarget(Vector targetPosition) throws IOException, RPCException, InterruptedException {
-		// Get current rover Position on Orbital Ref, transform to Surf Ref and add 2 meters on height:
+	public void buildPathToTarget(Vector targetPosition)
+			throws RPCException, StreamException, InterruptedException {
+		frames.update();
+		// Get current rover Position on Orbital Ref, transform to Surf Ref and add 2 meters on height.
+		// The rover is the origin of the Surf Ref, so its position there is just the height:
 		Vector roverHeight = new Vector(2.0, 0.0, 0.0);
-		Vector currentRoverPos =
-				transformSurfToOrb(new Vector(naveAtual.position(pontoRefSuperficie)).sum(roverHeight));
+		Vector currentRoverPos = transformSurfToOrb(roverHeight);
 		// Calculate distance from rover to target on Orbital Ref:
 		double distanceToTarget = Vector.distance(currentRoverPos, targetPosition);
 		// Add rover pos as first point, on Orbital Ref
 		pathToTarget.add(currentRoverPos);
+		if (planPathToTarget(currentRoverPos, targetPosition)) {
+			return;
+		}
 		// Calculate the next points positions and add to the list on Orbital Ref
 		int index = 0;
 		while (distanceToTarget > 10) {
@@ -133,13 +314,91 @@ public class PathFinding extends ActiveVessel {
 		pathToTarget.add(getPosOnSurface(targetPosition));
 	}
 
+	/**
+	 * Planeja a rota com A* em uma grade de latitude e longitude que cobre o rover e o alvo, com uma margem para
+	 * desviar. A grade guarda o plano para {@link #replanAround(Vector, Vector)}.
+	 *
+	 * @return Se encontrou uma rota, já adicionada ao caminho
+	 */
+	private boolean planPathToTarget(Vector roverPosition, Vector targetPosition) throws RPCException {
+		terrain.coordinates(roverPosition, coordinates);
+		double roverLatitude = coordinates[0], roverLongitude = coordinates[1];
+		terrain.coordinates(targetPosition, coordinates);
+		plannerGrid = new PlannerGrid(roverLatitude, roverLongitude, coordinates[0], coordinates[1],
+		                              constants().body(currentBody).getEquatorialRadius()
+		);
+		planner = plannerGrid.newPlanner(terrain);
+		plannerGoal = plannerGrid.node(coordinates[0], coordinates[1]);
+		plannerIsIncremental = false;
+		plannedTarget = targetPosition;
+		int[] path = planner.findPath(plannerGrid.node(roverLatitude, roverLongitude), plannerGoal);
+		if (path == null) {
+			planner = null;
+			return false;
+		}
+		addPlannedPath(path);
+		return true;
+	}
+
+	/**
+	 * Bloqueia a célula à frente do rover na grade da rota, onde ele encontrou um obstáculo, e refaz a rota a partir
+	 * da posição atual com D* Lite. O primeiro replanejamento faz a busca inteira; os seguintes só refazem o que o
+	 * bloqueio mudou.
+	 *
+	 * @param roverPosition - Posição do rover, no sistema de referência do corpo celeste
+	 * @param direction     - Direção em que está o obstáculo, no mesmo sistema
+	 * @return Se a rota foi refeita
+	 */
+	public boolean replanAround(Vector roverPosition, Vector direction) throws RPCException {
+		if (planner == null) {
+			return false;
+		}
+		terrain.coordinates(roverPosition.sum(direction.normalize().multiply(PLANNER_CELL_METERS)), coordinates);
+		int blocked = plannerGrid.node(coordinates[0], coordinates[1]);
+		terrain.coordinates(roverPosition, coordinates);
+		int start = plannerGrid.node(coordinates[0], coordinates[1]);
+		if (blocked == start || blocked == plannerGoal) {
+			return false;
+		}
+		planner.setBlocked(blocked);
+		int[] path;
+		if (plannerIsIncremental) {
+			path = planner.replan(start);
+		} else {
+			path = planner.planIncremental(start, plannerGoal);
+			plannerIsIncremental = true;
+		}
+		if (path == null) {
+			return false;
+		}
+		pathToTarget.clear();
+		pathToTarget.add(roverPosition);
+		addPlannedPath(path);
+		return true;
+	}
+
+	/**
+	 * Adiciona ao caminho os nós da rota, menos o primeiro (a posição do rover), 2 metros acima da superfície, e por
+	 * último o alvo.
+	 */
+	private void addPlannedPath(int[] path) throws RPCException {
+		for (int i = 1; i < path.length; i++) {
+			planner.position(path[i], nodePosition);
+			Vector surfacePoint = new Vector(nodePosition[0], nodePosition[1], nodePosition[2]);
+			Vector point = transformSurfToOrb(transformOrbToSurf(surfacePoint).sum(new Vector(2.0, 0.0, 0.0)));
+			drawLineBetweenPoints(pathToTarget.get(pathToTarget.size() - 1), point);
+			pathToTarget.add(point);
+		}
+		pathToTarget.add(getPosOnSurface(plannedTarget));
+	}
+
 	private void drawLineBetweenPoints(Vector pointA, Vector pointB) throws RPCException {
 		Drawing.Line line = drawing.addLine(pointA.toTriplet(), pointB.toTriplet(), pontoRefOrbital, true);
 		line.setThickness(0.5f);
 		line.setColor(new Triplet<>(1.0, 0.5, 0.0));
 	}
 
-	private Vector calculateNextPoint(Vector currentPoint, Vector targetDirection) throws RPCException, IOException {
+	private Vector calculateNextPoint(Vector currentPoint, Vector targetDirection) throws RPCException {
 		// PONTO REF SUPERFICIE: X = CIMA, Y = NORTE, Z = LESTE;
 		double stepDistance = 100.0;
 		// Calculate the next point position on surface:
@@ -148,38 +407,68 @@ public class PathFinding extends ActiveVessel {
 		return transformOrbToSurf(nextPoint).sum(new Vector(2.0, 0.0, 0.0));
 	}
 
-	public double raycastDistance(Vector currentPoint, Vector targetDirection, SpaceCenter.ReferenceFrame reference,
-	                              double searchDistance) throws RPCException {
-		return Math.min(
-				centroEspacial.raycastDistance(currentPoint.toTriplet(), targetDirection.toTriplet(), reference),
-				searchDistance
-		               );
+	private Vector getPosOnSurface(Vector vector) throws RPCException {
+		return terrain.surfacePositionBelow(vector);
 	}
 
-	private Vector transformDirection(Vector vector, boolean toSurf) throws RPCException {
-		if (toSurf) {
-			return new Vector(centroEspacial.transformDirection(vector.toTriplet(), naveAtual.getReferenceFrame(),
-			                                                    pontoRefSuperficie
-			                                                   ));
-		}
-		return new Vector(centroEspacial.transformDirection(vector.toTriplet(), pontoRefSuperficie,
-		                                                    naveAtual.getReferenceFrame()
-		                                                   ));
+	private Vector transformSurfToOrb(Vector vector) {
+		return frames.surfaceToBodyPosition(vector);
 	}
 
-	private Vector getPosOnSurface(Vector vector) throws RPCException {
-		return new Vector(
-				currentBody.surfacePosition(currentBody.latitudeAtPosition(vector.toTriplet(), pontoRefOrbital),
-				                            currentBody.longitudeAtPosition(vector.toTriplet(), pontoRefOrbital),
-				                            pontoRefOrbital
-				                           ));
+	private Vector transformOrbToSurf(Vector vector) {
+		return frames.bodyToSurfacePosition(vector);
 	}
 
-	private Vector transformSurfToOrb(Vector vector) throws IOException, RPCException {
-		return new Vector(centroEspacial.transformPosition(vector.toTriplet(), pontoRefSuperficie, pontoRefOrbital));
-	}
+	/**
+	 * Grade de latitude e longitude de um planejamento, cobrindo os dois pontos com uma margem para desviar. Acima de
+	 * {@value #PLANNER_MAX_CELLS} células por lado, as células crescem.
+	 */
+	private static final class PlannerGrid {
+		private final double south, west, step;
+		private final int rows, columns;
+
+		private PlannerGrid(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude,
+		                    double radius) {
+			// Pela menor volta, se o destino estiver do outro lado do antimeridiano
+			toLongitude = nearestTurn(toLongitude, fromLongitude);
+			double margin = Math.toDegrees(PLANNER_MARGIN_METERS / radius);
+			double latitudeSpan = Math.abs(toLatitude - fromLatitude) + 2 * margin;
+			double longitudeSpan = Math.abs(toLongitude - fromLongitude) + 2 * margin;
+			south = Math.min(fromLatitude, toLatitude) - margin;
+			west = Math.min(fromLongitude, toLongitude) - margin;
+			step = Math.max(Math.toDegrees(PLANNER_CELL_METERS / radius),
+			                Math.max(latitudeSpan, longitudeSpan) / (PLANNER_MAX_CELLS - 1)
+			               );
+			rows = (int) Math.ceil(latitudeSpan / step) + 1;
+			columns = (int) Math.ceil(longitudeSpan / step) + 1;
+		}
+
+		private GridPathPlanner newPlanner(TerrainCache terrain) {
+			return new GridPathPlanner(rows, columns, MAX_SLOPE,
+			                           (row, column, out) -> terrain.sample(south + row * step, west + column * step,
+			                                                                out
+			                                                               )
+			);
+		}
 
-	private Vector transformOrbToSurf(Vector vector) throws IOException, RPCException {
-		return new Vector(centroEspacial.transformPosition(vector.toTriplet(), pontoRefOrbital, pontoRefSuperficie));
+		/**
+		 * @return O nó da grade mais próximo da latitude e longitude, limitado às bordas da grade.
+		 */
+		private int node(double latitude, double longitude) {
+			longitude = nearestTurn(longitude, west + columns * step / 2);
+			int row = (int) Math.round((latitude - south) / step);
+			int column = (int) Math.round((longitude - west) / step);
+			return Math.max(0, Math.min(rows - 1, row)) * columns + Math.max(0, Math.min(columns - 1, column));
+		}
+
+		private static double nearestTurn(double longitude, double reference) {
+			if (longitude - reference > 180) {
+				return longitude - 360;
+			}
+			if (reference - longitude > 180) {
+				return longitude + 360;
+			}
+			return longitude;
+		}
 	}
 }
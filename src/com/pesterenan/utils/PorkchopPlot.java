@@ -0,0 +1,212 @@
+package com.pesterenan.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Busca a transferência de encontro mais barata em uma grade de horários de partida e tempos de voo (o "gráfico
+ * porco-espinho" de delta-V).
+ * <p>
+ * Para cada ponto da grade, a nave e o alvo são propagados localmente com {@link KeplerOrbit} e a transferência entre
+ * eles é resolvida com {@link Lambert}; o custo é a soma da queima de partida com a de chegada (para igualar a
+ * velocidade do alvo). São milhares de soluções independentes, então as linhas da grade são divididas entre os núcleos
+ * com um {@link ForkJoinPool}. Depois da grade, uma segunda busca mais fina em volta do melhor ponto refina o
+ * resultado.
+ */
+public final class PorkchopPlot {
+
+	// Linhas de partida por tarefa, abaixo disso a tarefa não é mais dividida
+	private static final int ROWS_PER_TASK = 4;
+
+	private final KeplerOrbit vessel, target;
+	private final ForkJoinPool pool;
+
+	/**
+	 * @param vessel - Órbita da nave, no instante zero da busca
+	 * @param target - Órbita do alvo, no mesmo instante e sistema de referência
+	 */
+	public PorkchopPlot(KeplerOrbit vessel, KeplerOrbit target) {
+		this(vessel, target, ForkJoinPool.commonPool());
+	}
+
+	public PorkchopPlot(KeplerOrbit vessel, KeplerOrbit target, ForkJoinPool pool) {
+		this.vessel = vessel;
+		this.target = target;
+		this.pool = pool;
+	}
+
+	/**
+	 * Calcula o delta-V de todos os pontos da grade.
+	 *
+	 * @param firstDeparture - Primeiro horário de partida, em segundos a partir do instante zero
+	 * @param lastDeparture  - Último horário de partida
+	 * @param departures     - Quantidade de horários de partida
+	 * @param minFlightTime  - Menor tempo de voo (s)
+	 * @param maxFlightTime  - Maior tempo de voo (s)
+	 * @param flightTimes    - Quantidade de tempos de voo
+	 */
+	public Result compute(double firstDeparture, double lastDeparture, int departures, double minFlightTime,
+	                      double maxFlightTime, int flightTimes) {
+		Result result = new Result(firstDeparture, step(firstDeparture, lastDeparture, departures), minFlightTime,
+		                           step(minFlightTime, maxFlightTime, flightTimes), departures, flightTimes
+		);
+		pool.invoke(new RowsTask(result, 0, departures));
+		return result;
+	}
+
+	/**
+	 * Calcula a grade e depois uma grade do mesmo tamanho em volta do melhor ponto, com um passo de cada lado.
+	 *
+	 * @return A grade refinada, cujo melhor ponto é a transferência escolhida
+	 */
+	public Result search(double firstDeparture, double lastDeparture, int departures, double minFlightTime,
+	                     double maxFlightTime, int flightTimes) {
+		Result coarse = compute(firstDeparture, lastDeparture, departures, minFlightTime, maxFlightTime, flightTimes);
+		if (Double.isInfinite(coarse.getBestDeltaV())) {
+			return coarse;
+		}
+		double departure = coarse.getBestDeparture(), flightTime = coarse.getBestFlightTime();
+		double departureStep = coarse.departureStep, flightStep = coarse.flightTimeStep;
+		Result fine = compute(Math.max(firstDeparture, departure - departureStep), departure + departureStep,
+		                      departures, Math.max(minFlightTime, flightTime - flightStep), flightTime + flightStep,
+		                      flightTimes
+		                     );
+		return fine.getBestDeltaV() <= coarse.getBestDeltaV() ? fine : coarse;
+	}
+
+	private static double step(double first, double last, int count) {
+		return count > 1 ? (last - first) / (count - 1) : 0;
+	}
+
+	private void computeRow(Result result, int row) {
+		double departure = result.getDeparture(row);
+		KeplerOrbit vesselAtDeparture = vessel.propagate(departure);
+		Vector normal = vesselAtDeparture.getAngularMomentum();
+		for (int column = 0; column < result.flightTimes; column++) {
+			double flightTime = result.getFlightTime(column);
+			KeplerOrbit targetAtArrival = target.propagate(departure + flightTime);
+			Vector[] transfer = Lambert.solve(vessel.getGravitationalParameter(), vesselAtDeparture.getPosition(),
+			                                  targetAtArrival.getPosition(), flightTime, normal
+			                                 );
+			double deltaV = Double.POSITIVE_INFINITY;
+			if (transfer != null) {
+				deltaV = transfer[0].subtract(vesselAtDeparture.getVelocity()).magnitude() +
+						targetAtArrival.getVelocity().subtract(transfer[1]).magnitude();
+			}
+			result.deltaV[row][column] = deltaV;
+		}
+	}
+
+	private class RowsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Result result;
+		private final int start, end;
+
+		RowsTask(Result result, int start, int end) {
+			this.result = result;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= ROWS_PER_TASK) {
+				for (int row = start; row < end; row++) {
+					computeRow(result, row);
+				}
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new RowsTask(result, start, middle), new RowsTask(result, middle, end));
+		}
+	}
+
+	/**
+	 * A grade de delta-V: linhas são horários de partida, colunas são tempos de voo. Pontos sem transferência possível
+	 * ficam com delta-V infinito.
+	 */
+	public class Result {
+		private final double firstDeparture, departureStep, minFlightTime, flightTimeStep;
+		private final int departures, flightTimes;
+		private final double[][] deltaV;
+		private int bestRow = -1, bestColumn = -1;
+
+		private Result(double firstDeparture, double departureStep, double minFlightTime, double flightTimeStep,
+		               int departures, int flightTimes) {
+			this.firstDeparture = firstDeparture;
+			this.departureStep = departureStep;
+			this.minFlightTime = minFlightTime;
+			this.flightTimeStep = flightTimeStep;
+			this.departures = departures;
+			this.flightTimes = flightTimes;
+			this.deltaV = new double[departures][flightTimes];
+		}
+
+		public double getDeparture(int row) {
+			return firstDeparture + row * departureStep;
+		}
+
+		public double getFlightTime(int column) {
+			return minFlightTime + column * flightTimeStep;
+		}
+
+		/**
+		 * @return A grade de delta-V total (m/s), indexada por [partida][tempo de voo].
+		 */
+		public double[][] getDeltaV() {
+			return deltaV;
+		}
+
+		public double getBestDeparture() {
+			findBest();
+			return bestRow < 0 ? Double.NaN : getDeparture(bestRow);
+		}
+
+		public double getBestFlightTime() {
+			findBest();
+			return bestColumn < 0 ? Double.NaN : getFlightTime(bestColumn);
+		}
+
+		public double getBestDeltaV() {
+			findBest();
+			return bestRow < 0 ? Double.POSITIVE_INFINITY : deltaV[bestRow][bestColumn];
+		}
+
+		/**
+		 * @return A órbita da nave no horário de partida do melhor ponto, logo antes da queima.
+		 */
+		public KeplerOrbit getBestDepartureOrbit() {
+			return vessel.propagate(getBestDeparture());
+		}
+
+		/**
+		 * @return A velocidade logo depois da queima de partida do melhor ponto, ou {@code null} se não houver.
+		 */
+		public Vector getBestDepartureVelocity() {
+			if (Double.isInfinite(getBestDeltaV())) {
+				return null;
+			}
+			KeplerOrbit departure = getBestDepartureOrbit();
+			KeplerOrbit arrival = target.propagate(getBestDeparture() + getBestFlightTime());
+			return Lambert.solve(vessel.getGravitationalParameter(), departure.getPosition(), arrival.getPosition(),
+			                     getBestFlightTime(), departure.getAngularMomentum()
+			                    )[0];
+		}
+
+		private synchronized void findBest() {
+			if (bestRow >= 0) {
+				return;
+			}
+			double best = Double.POSITIVE_INFINITY;
+			for (int row = 0; row < departures; row++) {
+				for (int column = 0; column < flightTimes; column++) {
+					if (deltaV[row][column] < best) {
+						best = deltaV[row][column];
+						bestRow = row;
+						bestColumn = column;
+					}
+				}
+			}
+		}
+	}
+}
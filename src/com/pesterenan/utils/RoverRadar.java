@@ -0,0 +1,167 @@
+package com.pesterenan.utils;
+
+/**
+ * Raios do radar do rover, no sistema de referência do rover (X = direita, Y = frente, Z = baixo).
+ * <p>
+ * Os raios saem da caixa do rover em leque, da esquerda (-90°) para a direita (90°). Os senos e cossenos dos
+ * {@value #MAX_RAYS} ângulos são calculados uma vez só; com pouca velocidade o leque usa só parte deles (a cada
+ * quatro ou a cada dois), e o alcance cresce com a velocidade, para ver o que o rover alcança nos próximos
+ * {@value #LOOKAHEAD_SECONDS} segundos. O raio da frente é o mais longo, os dos lados têm dois terços dele.
+ * <p>
+ * Um raio que não encontrou nada no último ciclo não é lançado de novo enquanto os vizinhos também estiverem livres,
+ * por até {@value #CLEAR_SKIP_TICKS} ciclos seguidos: nesse tempo vale o alcance inteiro dele.
+ */
+public class RoverRadar {
+
+	public static final int MAX_RAYS = 17;
+	// Abaixo dessas velocidades (m/s) o leque usa um raio a cada quatro ou a cada dois
+	private static final double SLOW_SPEED = 3, MEDIUM_SPEED = 8;
+	private static final double LOOKAHEAD_SECONDS = 4, MIN_LENGTH = 20, MAX_LENGTH = 80;
+	private static final double SIDE_LENGTH_RATIO = 2.0 / 3.0;
+	private static final int CLEAR_SKIP_TICKS = 3;
+	private static final double[] SINES = new double[MAX_RAYS], COSINES = new double[MAX_RAYS];
+
+	static {
+		for (int i = 0; i < MAX_RAYS; i++) {
+			double angle = Math.toRadians(-90 + 180.0 * i / (MAX_RAYS - 1));
+			SINES[i] = Math.sin(angle);
+			COSINES[i] = Math.cos(angle);
+		}
+	}
+
+	private final Vector[] origins = new Vector[MAX_RAYS], directions = new Vector[MAX_RAYS];
+	private final Vector[] hits = new Vector[MAX_RAYS];
+	private final double[] lengths = new double[MAX_RAYS];
+	private final boolean[] clear = new boolean[MAX_RAYS], cast = new boolean[MAX_RAYS];
+	private final int[] skippedTicks = new int[MAX_RAYS];
+	private double centerX, centerY, centerZ, halfWidth, halfLength;
+	private double frontLength;
+	private int stride = 1, rayCount, casts;
+
+	public RoverRadar() {
+		for (int i = 0; i < MAX_RAYS; i++) {
+			origins[i] = new Vector();
+			directions[i] = new Vector();
+			hits[i] = new Vector();
+		}
+	}
+
+	/**
+	 * Define a caixa do rover, de onde os raios saem.
+	 *
+	 * @param min - Canto esquerdo, de trás e de cima
+	 * @param max - Canto direito, da frente e de baixo
+	 */
+	public void setBoundingBox(Vector min, Vector max) {
+		centerX = min.x * 0.5 + max.x * 0.5;
+		centerY = min.y * 0.5 + max.y * 0.5;
+		centerZ = min.z * 0.5 + max.z * 0.5;
+		halfWidth = Math.abs(max.x - min.x) * 0.5;
+		halfLength = Math.abs(max.y - min.y) * 0.5;
+	}
+
+	/**
+	 * Monta os raios do ciclo para a velocidade do rover e escolhe quais precisam ser lançados.
+	 *
+	 * @param speed - Velocidade horizontal do rover (m/s)
+	 * @return Quantos raios o leque tem neste ciclo
+	 */
+	public int prepare(double speed) {
+		int newStride = speed < SLOW_SPEED ? 4 : speed < MEDIUM_SPEED ? 2 : 1;
+		if (newStride != stride || rayCount == 0) {
+			stride = newStride;
+			rayCount = (MAX_RAYS - 1) / stride + 1;
+			for (int i = 0; i < rayCount; i++) {
+				clear[i] = false;
+			}
+		}
+		frontLength = Math.max(MIN_LENGTH, Math.min(MAX_LENGTH, speed * LOOKAHEAD_SECONDS));
+		casts = 0;
+		for (int i = 0; i < rayCount; i++) {
+			int angle = i * stride;
+			double sine = SINES[angle], cosine = COSINES[angle];
+			directions[i].setVector(sine, cosine, 0);
+			// O raio sai do ponto da caixa na direção dele, visto do centro
+			double scale = Math.min(Math.abs(sine) > 1e-9 ? halfWidth / Math.abs(sine) : Double.MAX_VALUE,
+			                        cosine > 1e-9 ? halfLength / cosine : Double.MAX_VALUE
+			                       );
+			origins[i].setVector(centerX + scale * sine, centerY + scale * cosine, centerZ);
+			lengths[i] = frontLength * (SIDE_LENGTH_RATIO + (1 - SIDE_LENGTH_RATIO) * cosine);
+			boolean neighborsClear = (i == 0 || clear[i - 1]) && (i == rayCount - 1 || clear[i + 1]);
+			cast[i] = !clear[i] || !neighborsClear || skippedTicks[i] >= CLEAR_SKIP_TICKS;
+			if (cast[i]) {
+				skippedTicks[i] = 0;
+				casts++;
+			} else {
+				skippedTicks[i]++;
+				directions[i].multiplyInto(lengths[i], hits[i]);
+			}
+		}
+		return rayCount;
+	}
+
+	/**
+	 * @return O alcance do raio da frente neste ciclo (m), que cresce com a velocidade.
+	 */
+	public double getFrontLength() {
+		return frontLength;
+	}
+
+	public int getRayCount() {
+		return rayCount;
+	}
+
+	/**
+	 * @return Quantos raios precisam ser lançados neste ciclo.
+	 */
+	public int getCasts() {
+		return casts;
+	}
+
+	/**
+	 * @return Se o raio precisa ser lançado neste ciclo; senão, vale o alcance inteiro dele.
+	 */
+	public boolean needsCast(int ray) {
+		return cast[ray];
+	}
+
+	public Vector getOrigin(int ray) {
+		return origins[ray];
+	}
+
+	public Vector getDirection(int ray) {
+		return directions[ray];
+	}
+
+	public double getLength(int ray) {
+		return lengths[ray];
+	}
+
+	/**
+	 * Guarda a distância medida por um raio lançado, limitada ao alcance dele.
+	 */
+	public void setHit(int ray, double distance) {
+		clear[ray] = distance >= lengths[ray];
+		directions[ray].multiplyInto(Math.min(distance, lengths[ray]), hits[ray]);
+	}
+
+	/**
+	 * @return O ponto onde o raio parou, relativo à origem dele.
+	 */
+	public Vector getHit(int ray) {
+		return hits[ray];
+	}
+
+	/**
+	 * Soma os raios do ciclo em uma direção de desvio: os raios livres puxam o rover para o lado deles.
+	 *
+	 * @param dest - Vetor que recebe a direção normalizada
+	 */
+	public Vector direction(Vector dest) {
+		dest.setVector(0, 0, 0);
+		for (int i = 0; i < rayCount; i++) {
+			dest.sumInto(hits[i], dest);
+		}
+		return dest.normalizeInto(dest);
+	}
+}
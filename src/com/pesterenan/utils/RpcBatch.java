@@ -0,0 +1,206 @@
+package com.pesterenan.utils;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.RemoteObject;
+import krpc.schema.KRPC.Argument;
+import krpc.schema.KRPC.ProcedureCall;
+import krpc.schema.KRPC.ProcedureResult;
+import krpc.schema.KRPC.Request;
+import krpc.schema.KRPC.Response;
+import krpc.schema.KRPC.Tuple;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Agrupa várias chamadas RPC em uma única requisição ao servidor KRPC.
+ * <p>
+ * O protocolo do KRPC aceita várias chamadas em uma mesma requisição, executadas em ordem pelo servidor, mas o
+ * cliente Java só envia uma chamada por vez. Este lote monta as chamadas com {@link Connection#getCall} e as envia
+ * juntas pelo socket RPC da conexão, trocando várias idas e voltas pela rede por uma só.
+ */
+public class RpcBatch {
+
+	private static Field connectionLock, rpcOutputStream, rpcInputStream;
+	private static boolean canSendBatches;
+
+	static {
+		try {
+			connectionLock = Connection.class.getDeclaredField("connectionLock");
+			rpcOutputStream = Connection.class.getDeclaredField("rpcOutputStream");
+			rpcInputStream = Connection.class.getDeclaredField("rpcInputStream");
+			connectionLock.setAccessible(true);
+			rpcOutputStream.setAccessible(true);
+			rpcInputStream.setAccessible(true);
+			canSendBatches = true;
+		} catch (NoSuchFieldException | RuntimeException e) {
+			canSendBatches = false;
+		}
+	}
+
+	private final Connection connection;
+	private final List<ProcedureCall> calls = new ArrayList<>();
+
+	public RpcBatch(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Adiciona ao lote a chamada de um método de um objeto remoto.
+	 *
+	 * @param target - Objeto remoto (ex: Control, AutoPilot)
+	 * @param method - Nome do método (ex: "setThrottle")
+	 * @param args   - Argumentos do método, com os mesmos tipos da assinatura (float, boolean, etc.)
+	 * @return A posição do resultado dessa chamada na lista retornada por {@link #execute()}
+	 */
+	public int add(RemoteObject target, String method, Object... args) throws RPCException {
+		calls.add(connection.getCall(target, method, args));
+		return calls.size() - 1;
+	}
+
+	/**
+	 * Adiciona ao lote a chamada de um método estático de um serviço.
+	 *
+	 * @param service - Classe do serviço (ex: SpaceCenter.class)
+	 * @param method  - Nome do método
+	 * @param args    - Argumentos do método
+	 * @return A posição do resultado dessa chamada na lista retornada por {@link #execute()}
+	 */
+	public int add(Class<?> service, String method, Object... args) throws RPCException {
+		calls.add(connection.getCall(service, method, args));
+		return calls.size() - 1;
+	}
+
+	public boolean isEmpty() {
+		return calls.isEmpty();
+	}
+
+	public int size() {
+		return calls.size();
+	}
+
+	public void clear() {
+		calls.clear();
+	}
+
+	/**
+	 * Envia todas as chamadas do lote em uma única requisição e esvazia o lote.
+	 *
+	 * @return Os valores retornados por cada chamada, na ordem em que foram adicionadas
+	 * @throws RPCException Caso a requisição falhe ou alguma das chamadas retorne erro. As chamadas são executadas
+	 *                      pelo servidor mesmo que uma anterior tenha falhado.
+	 */
+	public List<ByteString> execute() throws RPCException {
+		if (calls.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<ProcedureCall> pending = new ArrayList<>(calls);
+		calls.clear();
+		if (!canSendBatches) {
+			return executeOneByOne(pending);
+		}
+		Response response = send(Request.newBuilder().addAllCalls(pending).build());
+		if (response.hasError()) {
+			throw new RPCException(response.getError().getDescription());
+		}
+		List<ByteString> values = new ArrayList<>(response.getResultsCount());
+		String firstError = null;
+		for (ProcedureResult result : response.getResultsList()) {
+			if (result.hasError() && firstError == null) {
+				firstError = result.getError().getService() + "." + result.getError().getName() + ": " +
+						result.getError().getDescription();
+			}
+			values.add(result.getValue());
+		}
+		if (firstError != null) {
+			throw new RPCException(firstError);
+		}
+		return values;
+	}
+
+	private Response send(Request request) throws RPCException {
+		try {
+			byte[] data;
+			synchronized (connectionLock.get(connection)) {
+				CodedOutputStream output = (CodedOutputStream) rpcOutputStream.get(connection);
+				CodedInputStream input = (CodedInputStream) rpcInputStream.get(connection);
+				output.writeMessageNoTag(request);
+				output.flush();
+				data = input.readRawBytes(input.readRawVarint32());
+			}
+			return Response.parseFrom(data);
+		} catch (IOException | IllegalAccessException e) {
+			throw new RPCException("Failed to invoke batch", e);
+		}
+	}
+
+	private List<ByteString> executeOneByOne(List<ProcedureCall> pending) throws RPCException {
+		List<ByteString> values = new ArrayList<>(pending.size());
+		for (ProcedureCall call : pending) {
+			ByteString[] args = new ByteString[call.getArgumentsCount()];
+			for (Argument arg : call.getArgumentsList()) {
+				args[arg.getPosition()] = arg.getValue();
+			}
+			values.add(connection.invoke(call.getService(), call.getProcedure(), args));
+		}
+		return values;
+	}
+
+	/**
+	 * Decodifica um valor double retornado por uma chamada do lote.
+	 */
+	public static double decodeDouble(ByteString value) throws RPCException {
+		try {
+			return value.newCodedInput().readDouble();
+		} catch (IOException e) {
+			throw new RPCException("Failed to decode value", e);
+		}
+	}
+
+	/**
+	 * Decodifica um valor float retornado por uma chamada do lote.
+	 */
+	public static float decodeFloat(ByteString value) throws RPCException {
+		try {
+			return value.newCodedInput().readFloat();
+		} catch (IOException e) {
+			throw new RPCException("Failed to decode value", e);
+		}
+	}
+
+	/**
+	 * Decodifica uma tupla de três doubles (posição, direção) retornada por uma chamada do lote.
+	 */
+	public static Vector decodeVector(ByteString value) throws RPCException {
+		try {
+			List<ByteString> items = Tuple.parseFrom(value).getItemsList();
+			return new Vector(decodeDouble(items.get(0)), decodeDouble(items.get(1)), decodeDouble(items.get(2)));
+		} catch (IOException e) {
+			throw new RPCException("Failed to decode value", e);
+		}
+	}
+
+	/**
+	 * Decodifica uma tupla de tuplas de três doubles (ex: os cantos da caixa de uma nave) retornada por uma chamada do
+	 * lote.
+	 */
+	public static Vector[] decodeVectors(ByteString value) throws RPCException {
+		try {
+			List<ByteString> items = Tuple.parseFrom(value).getItemsList();
+			Vector[] vectors = new Vector[items.size()];
+			for (int i = 0; i < vectors.length; i++) {
+				vectors[i] = decodeVector(items.get(i));
+			}
+			return vectors;
+		} catch (IOException e) {
+			throw new RPCException("Failed to decode value", e);
+		}
+	}
+}
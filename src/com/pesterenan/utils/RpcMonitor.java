@@ -0,0 +1,520 @@
+package com.pesterenan.utils;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import krpc.schema.KRPC.ProcedureCall;
+import krpc.schema.KRPC.ProcedureResult;
+import krpc.schema.KRPC.Request;
+import krpc.schema.KRPC.Response;
+import krpc.schema.KRPC.StreamResult;
+import krpc.schema.KRPC.StreamUpdate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monitor das chamadas feitas ao servidor KRPC.
+ * <p>
+ * Funciona como um proxy TCP local entre a {@link krpc.client.Connection} e o servidor: a conexão é aberta nas
+ * portas do monitor, que repassa cada mensagem sem alterá-la e, depois de repassar, lê o conteúdo para contar as
+ * chamadas por procedimento, medir o tempo de ida e volta de cada requisição e contar os valores recebidos por
+ * stream. Assim todas as chamadas são vistas, inclusive as feitas diretamente pelos objetos do kRPC, sem alterar o
+ * código dos controladores.
+ * <p>
+ * Com {@link #startCapture(Path)}, todo o tráfego também é gravado em uma {@link FlightCapture}, para reproduzir o voo
+ * depois.
+ */
+public class RpcMonitor implements Closeable {
+
+	private final String host;
+	private final int rpcPort, streamPort;
+	private final Map<String, ProcedureStatistics> procedures = new ConcurrentHashMap<>();
+	private final Map<Long, StreamStatistics> streams = new ConcurrentHashMap<>();
+	private final LatencyHistogram requestLatency = new LatencyHistogram();
+	private final AtomicLong requests = new AtomicLong();
+	private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+	private ServerSocket rpcServer, streamServer;
+	private volatile long resetTime = System.nanoTime();
+	private volatile boolean running;
+	private volatile FlightCapture capture;
+
+	/**
+	 * @param host       - Endereço do servidor KRPC
+	 * @param rpcPort    - Porta das chamadas RPC do servidor
+	 * @param streamPort - Porta dos streams do servidor
+	 */
+	public RpcMonitor(String host, int rpcPort, int streamPort) {
+		this.host = host;
+		this.rpcPort = rpcPort;
+		this.streamPort = streamPort;
+	}
+
+	/**
+	 * Abre as portas locais do monitor. A conexão deve ser aberta em {@link #getRpcPort()} e
+	 * {@link #getStreamPort()}.
+	 */
+	public void start() throws IOException {
+		InetAddress localhost = InetAddress.getLoopbackAddress();
+		rpcServer = new ServerSocket(0, 50, localhost);
+		streamServer = new ServerSocket(0, 50, localhost);
+		running = true;
+		startThread("RpcMonitor-RPC", () -> accept(rpcServer, rpcPort, true));
+		startThread("RpcMonitor-Stream", () -> accept(streamServer, streamPort, false));
+	}
+
+	public int getRpcPort() {
+		return rpcServer.getLocalPort();
+	}
+
+	public int getStreamPort() {
+		return streamServer.getLocalPort();
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		try {
+			stopCapture();
+		} catch (IOException e) {
+			captureFailed(e);
+		}
+		closeQuietly(rpcServer);
+		closeQuietly(streamServer);
+		for (Socket socket : sockets) {
+			closeQuietly(socket);
+		}
+		sockets.clear();
+	}
+
+	/**
+	 * @return Quantidade de requisições, isto é, idas e voltas até o servidor, desde o último {@link #reset()}.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return Tempo de ida e volta das requisições.
+	 */
+	public LatencyHistogram getRequestLatency() {
+		return requestLatency;
+	}
+
+	/**
+	 * @return Segundos desde o último {@link #reset()}.
+	 */
+	public double getElapsedSeconds() {
+		return (System.nanoTime() - resetTime) / 1e9;
+	}
+
+	/**
+	 * @return As estatísticas de cada procedimento chamado, em ordem alfabética.
+	 */
+	public Map<String, ProcedureStatistics> getProcedures() {
+		return new TreeMap<>(procedures);
+	}
+
+	/**
+	 * @return As estatísticas de cada stream criado, pelo id do stream.
+	 */
+	public Map<Long, StreamStatistics> getStreams() {
+		return new TreeMap<>(streams);
+	}
+
+	/**
+	 * Zera as contagens e medidas, para observar um novo trecho da execução. Os streams ainda ativos continuam
+	 * listados.
+	 */
+	public void reset() {
+		requests.set(0);
+		requestLatency.reset();
+		procedures.clear();
+		streams.values().removeIf(stream -> !stream.active);
+		for (StreamStatistics stream : streams.values()) {
+			stream.updates.set(0);
+		}
+		resetTime = System.nanoTime();
+	}
+
+	/**
+	 * Começa a gravar todo o tráfego com o servidor no arquivo informado, encerrando a captura anterior.
+	 */
+	public void startCapture(Path file) throws IOException {
+		stopCapture();
+		capture = new FlightCapture(file);
+	}
+
+	/**
+	 * Encerra a captura em andamento, se houver.
+	 */
+	public void stopCapture() throws IOException {
+		FlightCapture current = capture;
+		capture = null;
+		if (current != null) {
+			current.close();
+		}
+	}
+
+	public boolean isCapturing() {
+		return capture != null;
+	}
+
+	/**
+	 * Grava uma marca de texto na captura em andamento, se houver (ex: o início de um módulo).
+	 */
+	public void mark(String text) {
+		FlightCapture current = capture;
+		if (current != null) {
+			try {
+				current.mark(text);
+			} catch (IOException e) {
+				captureFailed(e);
+			}
+		}
+	}
+
+	/**
+	 * @return Um relatório em texto das chamadas, streams e laços de controle.
+	 */
+	public String report() {
+		double seconds = Math.max(getElapsedSeconds(), 1e-9);
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Requisições: %d em %.1f s (%.1f/s), latência média %.2f ms, p50 %.2f ms, " +
+				                            "p99 %.2f ms, máx %.2f ms%n", requests.get(), seconds,
+		                            requests.get() / seconds, requestLatency.getMeanMicros() / 1000,
+		                            requestLatency.getPercentileMicros(50) / 1000.0,
+		                            requestLatency.getPercentileMicros(99) / 1000.0,
+		                            requestLatency.getMaxMicros() / 1000.0
+		                           ));
+		report.append(String.format("%nProcedimento                                        Chamadas      /s   " +
+				                            "p50 ms   p90 ms   p99 ms   máx ms%n"));
+		for (ProcedureStatistics procedure : getProcedures().values()) {
+			LatencyHistogram latency = procedure.getLatency();
+			report.append(String.format("%-50s %9d %7.1f %8.2f %8.2f %8.2f %8.2f%n", procedure.getName(),
+			                            procedure.getCalls(), procedure.getCalls() / seconds,
+			                            latency.getPercentileMicros(50) / 1000.0,
+			                            latency.getPercentileMicros(90) / 1000.0,
+			                            latency.getPercentileMicros(99) / 1000.0, latency.getMaxMicros() / 1000.0
+			                           ));
+		}
+		report.append(String.format("%nStream                                                   Id   Valores      " +
+				                            "/s  Ativo%n"));
+		for (StreamStatistics stream : getStreams().values()) {
+			report.append(String.format("%-50s %8d %9d %7.1f  %s%n", stream.getProcedure(), stream.getId(),
+			                            stream.getUpdates(), stream.getUpdates() / seconds,
+			                            stream.isActive() ? "sim" : "não"
+			                           ));
+		}
+		report.append(String.format("%nLaço           Passos   Média ms    Pior ms  Estouros%n"));
+		for (ControlLoop.Statistics loop : ControlLoop.getStatistics().values()) {
+			report.append(String.format("%-12s %8d %10.2f %10.2f %9d%n", loop.getName(), loop.getTicks(),
+			                            loop.getAverageTickMillis(), loop.getWorstTickMillis(), loop.getOverruns()
+			                           ));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Grava o {@link #report()} no arquivo informado.
+	 */
+	public void dump(Path file) throws IOException {
+		Files.write(file, report().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void accept(ServerSocket server, int upstreamPort, boolean rpc) {
+		while (running) {
+			try {
+				Pump clientToServer, serverToClient;
+				if (rpc) {
+					Queue<PendingRequest> pending = new ConcurrentLinkedQueue<>();
+					clientToServer = (input, output) -> forwardRequests(input, output, pending);
+					serverToClient = (input, output) -> forwardResponses(input, output, pending);
+				} else {
+					clientToServer = RpcMonitor::forward;
+					serverToClient = this::forwardStreamUpdates;
+				}
+				Socket client = server.accept();
+				Socket upstream;
+				try {
+					upstream = new Socket(host, upstreamPort);
+				} catch (IOException e) {
+					// Fechar o cliente faz a conexão dele falhar, em vez de esperar para sempre pela resposta
+					closeQuietly(client);
+					throw e;
+				}
+				client.setTcpNoDelay(true);
+				upstream.setTcpNoDelay(true);
+				sockets.add(client);
+				sockets.add(upstream);
+				startThread("RpcMonitor-Up", () -> pump(clientToServer, client, upstream));
+				startThread("RpcMonitor-Down", () -> pump(serverToClient, upstream, client));
+			} catch (IOException e) {
+				if (running) {
+					System.err.println("Monitor RPC: falha ao conectar ao servidor KRPC: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void pump(Pump pump, Socket from, Socket to) {
+		try {
+			pump.run(new BufferedInputStream(from.getInputStream()), new BufferedOutputStream(to.getOutputStream()));
+		} catch (IOException e) {
+			// Conexão encerrada
+		} finally {
+			closeQuietly(from);
+			closeQuietly(to);
+			sockets.remove(from);
+			sockets.remove(to);
+		}
+	}
+
+	private void forwardRequests(InputStream input, OutputStream output, Queue<PendingRequest> pending)
+			throws IOException {
+		writeMessage(output, readMessage(input)); // ConnectionRequest
+		while (true) {
+			byte[] message = readMessage(input);
+			// Registrada antes de repassar, para que a resposta nunca chegue antes do seu pedido
+			PendingRequest request = new PendingRequest(message);
+			pending.add(request);
+			request.sent = System.nanoTime();
+			writeMessage(output, message);
+		}
+	}
+
+	private void forwardResponses(InputStream input, OutputStream output, Queue<PendingRequest> pending)
+			throws IOException {
+		writeMessage(output, readMessage(input)); // ConnectionResponse
+		while (true) {
+			byte[] message = readMessage(input);
+			long received = System.nanoTime();
+			writeMessage(output, message);
+			PendingRequest request = pending.poll();
+			if (request != null) {
+				record(Request.parseFrom(request.message), Response.parseFrom(message),
+				       (received - request.sent) / 1000
+				      );
+				FlightCapture current = capture;
+				if (current != null) {
+					try {
+						current.call(request.sent, received, request.message, message);
+					} catch (IOException e) {
+						captureFailed(e);
+					}
+				}
+			}
+		}
+	}
+
+	private void forwardStreamUpdates(InputStream input, OutputStream output) throws IOException {
+		writeMessage(output, readMessage(input)); // ConnectionResponse
+		while (true) {
+			byte[] message = readMessage(input);
+			long received = System.nanoTime();
+			writeMessage(output, message);
+			FlightCapture current = capture;
+			if (current != null) {
+				try {
+					current.streamUpdate(received, message);
+				} catch (IOException e) {
+					captureFailed(e);
+				}
+			}
+			for (StreamResult result : StreamUpdate.parseFrom(message).getResultsList()) {
+				StreamStatistics stream = streams.computeIfAbsent(result.getId(), id -> new StreamStatistics(id, "?"));
+				stream.updates.incrementAndGet();
+			}
+		}
+	}
+
+	private static void forward(InputStream input, OutputStream output) throws IOException {
+		while (true) {
+			writeMessage(output, readMessage(input));
+		}
+	}
+
+	private void record(Request request, Response response, long micros) {
+		requests.incrementAndGet();
+		requestLatency.record(micros);
+		List<ProcedureResult> results = response.getResultsList();
+		for (int i = 0; i < request.getCallsCount(); i++) {
+			ProcedureCall call = request.getCalls(i);
+			String name = call.getService() + "." + call.getProcedure();
+			ProcedureStatistics procedure = procedures.computeIfAbsent(name, ProcedureStatistics::new);
+			procedure.calls.incrementAndGet();
+			procedure.latency.record(micros);
+			if (i < results.size() && !results.get(i).hasError() && "KRPC".equals(call.getService())) {
+				recordStreamCall(call, results.get(i));
+			}
+		}
+	}
+
+	private void recordStreamCall(ProcedureCall call, ProcedureResult result) {
+		try {
+			if ("AddStream".equals(call.getProcedure()) && call.getArgumentsCount() > 0) {
+				ProcedureCall streamed = ProcedureCall.parseFrom(call.getArguments(0).getValue());
+				long id = krpc.schema.KRPC.Stream.parseFrom(result.getValue()).getId();
+				StreamStatistics stream = streams.computeIfAbsent(id, key -> new StreamStatistics(key, ""));
+				stream.procedure = streamed.getService() + "." + streamed.getProcedure();
+				stream.active = true;
+			} else if ("RemoveStream".equals(call.getProcedure()) && call.getArgumentsCount() > 0) {
+				StreamStatistics stream = streams.get(call.getArguments(0).getValue().newCodedInput().readUInt64());
+				if (stream != null) {
+					stream.active = false;
+				}
+			}
+		} catch (IOException ignored) {
+			// Argumento fora do formato esperado, o stream fica sem nome
+		}
+	}
+
+	/**
+	 * Lê uma mensagem delimitada pelo tamanho (varint seguido do conteúdo).
+	 */
+	private static byte[] readMessage(InputStream input) throws IOException {
+		int size = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = input.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			if (shift >= 35) {
+				throw new InvalidProtocolBufferException("Tamanho de mensagem inválido");
+			}
+			size |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		byte[] message = new byte[size];
+		int read = 0;
+		while (read < size) {
+			int count = input.read(message, read, size - read);
+			if (count < 0) {
+				throw new EOFException();
+			}
+			read += count;
+		}
+		return message;
+	}
+
+	private static void writeMessage(OutputStream output, byte[] message) throws IOException {
+		int size = message.length;
+		while ((size & ~0x7F) != 0) {
+			output.write((size & 0x7F) | 0x80);
+			size >>>= 7;
+		}
+		output.write(size);
+		output.write(message);
+		output.flush();
+	}
+
+	private void captureFailed(IOException e) {
+		System.err.println("Monitor RPC: captura encerrada por erro: " + e.getMessage());
+		capture = null;
+	}
+
+	private static void startThread(String name, Runnable task) {
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			if (closeable != null) {
+				closeable.close();
+			}
+		} catch (IOException ignored) {
+		}
+	}
+
+	@FunctionalInterface
+	private interface Pump {
+		void run(InputStream input, OutputStream output) throws IOException;
+	}
+
+	private static class PendingRequest {
+		private final byte[] message;
+		private volatile long sent;
+
+		private PendingRequest(byte[] message) {
+			this.message = message;
+		}
+	}
+
+	/**
+	 * Chamadas e latências de um procedimento. Numa requisição com várias chamadas, todas recebem o tempo de ida e
+	 * volta da requisição inteira.
+	 */
+	public static class ProcedureStatistics {
+		private final String name;
+		private final AtomicLong calls = new AtomicLong();
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		private ProcedureStatistics(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCalls() {
+			return calls.get();
+		}
+
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+	}
+
+	/**
+	 * Valores recebidos de um stream.
+	 */
+	public static class StreamStatistics {
+		private final long id;
+		private final AtomicLong updates = new AtomicLong();
+		private volatile String procedure;
+		private volatile boolean active = true;
+
+		private StreamStatistics(long id, String procedure) {
+			this.id = id;
+			this.procedure = procedure;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getProcedure() {
+			return procedure;
+		}
+
+		public long getUpdates() {
+			return updates.get();
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package com.pesterenan.utils;
+
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.RemoteObject;
+import krpc.client.Stream;
+import krpc.client.StreamException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Registro de streams compartilhados por conexão.
+ * <p>
+ * Cada chamada idêntica (objeto, método e argumentos) recebe o mesmo {@link Stream}, e o stream só é removido do
+ * servidor quando o último usuário o libera com {@link #release(Stream)}.
+ * <p>
+ * Cada usuário pode pedir uma taxa de atualização (em Hz). Por padrão o servidor envia o valor a cada quadro da
+ * física, mas a telemetria só precisa de alguns valores por segundo; a taxa aplicada no servidor
+ * ({@link Stream#setRate(float)}) é a maior entre as pedidas pelos usuários atuais do stream, ou {@link #UNLIMITED}
+ * se algum deles não informar taxa.
+ */
+public class StreamRegistry {
+
+	/**
+	 * Taxa que deixa o servidor enviar o valor a cada quadro da física.
+	 */
+	public static final float UNLIMITED = 0;
+
+	private static final Map<Connection, StreamRegistry> registries = new IdentityHashMap<>();
+
+	private final Connection connection;
+	private final Map<StreamKey, SharedStream> streamsByKey = new HashMap<>();
+	private final Map<Stream<?>, SharedStream> streamsByHandle = new IdentityHashMap<>();
+
+	private StreamRegistry(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Retorna o registro de streams da conexão informada, criando um novo se necessário.
+	 *
+	 * @param connection - Conexão com o KRPC
+	 * @return O registro de streams dessa conexão
+	 */
+	public static synchronized StreamRegistry of(Connection connection) {
+		return registries.computeIfAbsent(connection, StreamRegistry::new);
+	}
+
+	/**
+	 * Descarta o registro da conexão informada, sem remover os streams do servidor. Usado quando a conexão é
+	 * fechada ou substituída.
+	 *
+	 * @param connection - Conexão com o KRPC
+	 */
+	public static synchronized void discard(Connection connection) {
+		registries.remove(connection);
+	}
+
+	/**
+	 * Obtém um stream compartilhado para um método de um objeto remoto.
+	 *
+	 * @param target - Objeto remoto (ex: Flight, Orbit, Vessel)
+	 * @param method - Nome do método a ser transmitido (ex: "getSurfaceAltitude")
+	 * @param args   - Argumentos do método
+	 * @return O stream compartilhado, que deve ser liberado com {@link #release(Stream)}
+	 */
+	public <T> Stream<T> acquire(RemoteObject target, String method, Object... args)
+			throws StreamException, RPCException {
+		return acquire(UNLIMITED, target, method, args);
+	}
+
+	/**
+	 * Obtém um stream compartilhado para um método de um objeto remoto, pedindo uma taxa de atualização.
+	 *
+	 * @param rate   - Atualizações por segundo de que este usuário precisa, ou {@link #UNLIMITED}
+	 * @param target - Objeto remoto (ex: Flight, Orbit, Vessel)
+	 * @param method - Nome do método a ser transmitido (ex: "getSurfaceAltitude")
+	 * @param args   - Argumentos do método
+	 * @return O stream compartilhado, que deve ser liberado com {@link #release(Stream, float)}
+	 */
+	public synchronized <T> Stream<T> acquire(float rate, RemoteObject target, String method, Object... args)
+			throws StreamException, RPCException {
+		StreamKey key = new StreamKey(target, method, args);
+		SharedStream shared = streamsByKey.get(key);
+		if (shared == null) {
+			shared = new SharedStream(key, connection.addStream(target, method, args));
+			register(shared);
+		}
+		return retain(shared, rate);
+	}
+
+	/**
+	 * Obtém um stream compartilhado para um método estático de um serviço.
+	 *
+	 * @param service - Classe do serviço (ex: SpaceCenter.class)
+	 * @param method  - Nome do método a ser transmitido
+	 * @param args    - Argumentos do método
+	 * @return O stream compartilhado, que deve ser liberado com {@link #release(Stream)}
+	 */
+	public <T> Stream<T> acquire(Class<?> service, String method, Object... args)
+			throws StreamException, RPCException {
+		return acquire(UNLIMITED, service, method, args);
+	}
+
+	/**
+	 * Obtém um stream compartilhado para um método estático de um serviço, pedindo uma taxa de atualização.
+	 *
+	 * @param rate    - Atualizações por segundo de que este usuário precisa, ou {@link #UNLIMITED}
+	 * @param service - Classe do serviço (ex: SpaceCenter.class)
+	 * @param method  - Nome do método a ser transmitido
+	 * @param args    - Argumentos do método
+	 * @return O stream compartilhado, que deve ser liberado com {@link #release(Stream, float)}
+	 */
+	public synchronized <T> Stream<T> acquire(float rate, Class<?> service, String method, Object... args)
+			throws StreamException, RPCException {
+		StreamKey key = new StreamKey(service, method, args);
+		SharedStream shared = streamsByKey.get(key);
+		if (shared == null) {
+			shared = new SharedStream(key, connection.addStream(service, method, args));
+			register(shared);
+		}
+		return retain(shared, rate);
+	}
+
+	/**
+	 * Libera um stream obtido sem taxa de atualização.
+	 *
+	 * @param stream - Stream a ser liberado
+	 */
+	public void release(Stream<?> stream) {
+		release(stream, UNLIMITED);
+	}
+
+	/**
+	 * Libera um stream obtido por este registro, com a taxa pedida ao obtê-lo. A taxa do servidor passa a ser a dos
+	 * usuários restantes, e quando não houver mais usuários o stream é removido do servidor.
+	 *
+	 * @param stream - Stream a ser liberado
+	 * @param rate   - Taxa informada ao obter o stream
+	 */
+	public synchronized void release(Stream<?> stream, float rate) {
+		SharedStream shared = streamsByHandle.get(stream);
+		if (shared == null) {
+			return;
+		}
+		if (!shared.rates.remove((Float) rate)) {
+			shared.rates.remove(0);
+		}
+		if (!shared.rates.isEmpty()) {
+			try {
+				applyRate(shared);
+			} catch (RPCException ignored) {
+			}
+			return;
+		}
+		streamsByKey.remove(shared.key);
+		streamsByHandle.remove(shared.stream);
+		try {
+			shared.stream.remove();
+		} catch (RPCException ignored) {
+		}
+	}
+
+	/**
+	 * @return Quantidade de streams distintos abertos no servidor por este registro.
+	 */
+	public synchronized int getOpenStreams() {
+		return streamsByKey.size();
+	}
+
+	private void register(SharedStream shared) {
+		streamsByKey.put(shared.key, shared);
+		streamsByHandle.put(shared.stream, shared);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> Stream<T> retain(SharedStream shared, float rate) throws RPCException {
+		shared.rates.add(rate);
+		applyRate(shared);
+		return (Stream<T>) shared.stream;
+	}
+
+	private static void applyRate(SharedStream shared) throws RPCException {
+		float merged = 0;
+		for (float rate : shared.rates) {
+			if (rate == UNLIMITED) {
+				merged = UNLIMITED;
+				break;
+			}
+			merged = Math.max(merged, rate);
+		}
+		if (merged != shared.appliedRate) {
+			shared.stream.setRate(merged);
+			shared.appliedRate = merged;
+		}
+	}
+
+	private static class SharedStream {
+		private final StreamKey key;
+		private final Stream<?> stream;
+		// Taxa pedida por cada usuário atual
+		private final List<Float> rates = new ArrayList<>();
+		private float appliedRate = UNLIMITED;
+
+		private SharedStream(StreamKey key, Stream<?> stream) {
+			this.key = key;
+			this.stream = stream;
+		}
+	}
+
+	private static class StreamKey {
+		private final Object target;
+		private final String method;
+		private final Object[] args;
+
+		private StreamKey(Object target, String method, Object[] args) {
+			this.target = target;
+			this.method = method;
+			this.args = args == null ? new Object[0] : args.clone();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof StreamKey)) {
+				return false;
+			}
+			StreamKey other = (StreamKey) o;
+			return target.equals(other.target) && method.equals(other.method) && Arrays.equals(args, other.args);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(target, method) * 31 + Arrays.hashCode(args);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.pesterenan.utils;
+
+import krpc.client.RPCException;
+import krpc.client.Stream;
+import krpc.client.StreamException;
+
+import java.util.function.Predicate;
+
+/**
+ * Espera por condições sobre os valores de um stream.
+ * <p>
+ * Em vez de consultar o servidor em um laço até um valor cruzar um limite, a thread fica bloqueada na condição do
+ * {@link Stream} e é acordada a cada atualização recebida, sem enviar nenhuma requisição enquanto espera. A condição é
+ * testada assim que o valor chega, então a reação é limitada pela taxa do stream e não por um intervalo de consulta.
+ * <p>
+ * Com o relógio virtual do {@link MissionClock} (reprodução de voos), o tempo só anda quando alguém dorme, então a
+ * espera consulta o valor a cada {@value #VIRTUAL_POLL_MILLIS} ms de tempo virtual.
+ */
+public final class StreamWaits {
+
+	private static final long VIRTUAL_POLL_MILLIS = 25;
+	// Espera máxima em cada bloqueio, para conferir o prazo mesmo sem atualizações
+	private static final double MAX_BLOCK_SECONDS = 0.5;
+
+	private StreamWaits() {
+	}
+
+	/**
+	 * Espera, sem prazo, até o valor do stream satisfazer a condição.
+	 *
+	 * @return O valor que satisfez a condição
+	 */
+	public static <T> T waitFor(Stream<T> stream, Predicate<? super T> condition)
+			throws RPCException, StreamException, InterruptedException {
+		return waitFor(stream, condition, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Espera até o valor do stream satisfazer a condição ou o prazo acabar.
+	 *
+	 * @param timeoutMillis - Prazo máximo da espera, em milissegundos
+	 * @return O valor que satisfez a condição, ou {@code null} se o prazo acabou antes
+	 */
+	public static <T> T waitFor(Stream<T> stream, Predicate<? super T> condition, long timeoutMillis)
+			throws RPCException, StreamException, InterruptedException {
+		long start = MissionClock.nanoTime();
+		long timeoutNanos = timeoutMillis > Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : timeoutMillis * 1_000_000;
+		if (MissionClock.isVirtual()) {
+			while (true) {
+				T value = stream.get();
+				if (condition.test(value)) {
+					return value;
+				}
+				if (MissionClock.nanoTime() - start >= timeoutNanos) {
+					return null;
+				}
+				MissionClock.sleep(VIRTUAL_POLL_MILLIS);
+			}
+		}
+		synchronized (stream.getCondition()) {
+			while (true) {
+				T value = stream.get();
+				if (condition.test(value)) {
+					return value;
+				}
+				long remaining = timeoutNanos - (System.nanoTime() - start);
+				if (remaining <= 0) {
+					return null;
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				try {
+					stream.waitForUpdateWithTimeout(Math.max(0.001, Math.min(MAX_BLOCK_SECONDS, remaining / 1e9)));
+				} catch (StreamException e) {
+					if (e.getCause() instanceof InterruptedException) {
+						throw (InterruptedException) e.getCause();
+					}
+					throw e;
+				}
+			}
+		}
+	}
+}
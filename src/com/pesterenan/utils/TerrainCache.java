@@ -0,0 +1,320 @@
+package com.pesterenan.utils;
+
+import com.google.protobuf.ByteString;
+import krpc.client.Connection;
+import krpc.client.RPCException;
+import krpc.client.services.SpaceCenter.CelestialBody;
+import krpc.client.services.SpaceCenter.ReferenceFrame;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Cache local do relevo de um corpo celeste, para consultar posições na superfície sem uma requisição por ponto.
+ * <p>
+ * A superfície é amostrada em uma grade de latitude e longitude com nós a cada {@value #CELL_METERS} metros, dividida
+ * em blocos de {@value #TILE_CELLS} x {@value #TILE_CELLS} células. Cada bloco é buscado de uma vez, com todas as
+ * chamadas de {@code surfacePosition} e {@code surfaceHeight} em uma só requisição ({@link RpcBatch}), e guardado
+ * como deslocamentos em float a partir do primeiro nó, mais a altitude de cada nó. As consultas interpolam os nós de
+ * forma bilinear. Os blocos menos usados são descartados quando o cache passa de {@value #MAX_TILES} blocos.
+ * <p>
+ * As posições são as do próprio servidor, no sistema de referência informado, então o cache não depende da forma do
+ * corpo. O sistema de referência deve girar junto com o corpo, para que a superfície fique parada nele. Só
+ * {@link #sample(double, double, double[])} pode ser chamado por várias threads ao mesmo tempo: cada bloco que falta é
+ * buscado por uma thread só, e as outras que precisam dele esperam essa busca, sem bloquear as que usam outros
+ * blocos. As outras consultas guardam a última posição e devem ficar em uma thread só.
+ */
+public class TerrainCache {
+
+	private static final int CELL_METERS = 50, TILE_CELLS = 16, TILE_NODES = TILE_CELLS + 1;
+	private static final int MAX_TILES = 256;
+	private static final int MAX_HOPS = 8, NEWTON_ITERATIONS = 6;
+	private static final double CONVERGENCE = 1e-6;
+
+	private final Connection connection;
+	private final CelestialBody body;
+	private final ReferenceFrame frame;
+	// Distância em graus entre dois nós da grade
+	private final double spacing;
+	// Blocos já buscados ou sendo buscados, acessados só com o lock do próprio mapa
+	private final Map<Long, CompletableFuture<Tile>> tiles =
+			new LinkedHashMap<Long, CompletableFuture<Tile>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<Tile>> eldest) {
+			return size() > MAX_TILES;
+		}
+	};
+	// Vetores de trabalho da busca da posição na superfície
+	private final double[] point = new double[4], alongLatitude = new double[3], alongLongitude = new double[3];
+	private final double[] latitudeLongitude = new double[2];
+	private double lastLatitude = Double.NaN, lastLongitude = Double.NaN;
+	private int tileFetches;
+
+	/**
+	 * @param body       - Corpo celeste
+	 * @param frame      - Sistema de referência das posições, fixo no corpo
+	 * @param bodyRadius - Raio do corpo (m), usado só para espaçar os nós da grade
+	 */
+	public TerrainCache(Connection connection, CelestialBody body, ReferenceFrame frame, double bodyRadius) {
+		this.connection = connection;
+		this.body = body;
+		this.frame = frame;
+		this.spacing = Math.toDegrees(CELL_METERS / bodyRadius);
+	}
+
+	/**
+	 * @return A posição da superfície na latitude e longitude informadas (graus).
+	 */
+	public Vector surfacePosition(double latitude, double longitude) throws RPCException {
+		sample(latitude, longitude, point);
+		lastLatitude = latitude;
+		lastLongitude = longitude;
+		return new Vector(point[0], point[1], point[2]);
+	}
+
+	/**
+	 * Preenche {@code out} com a posição da superfície (x, y, z) e a altitude dela acima do nível do mar (m), na
+	 * latitude e longitude informadas (graus).
+	 */
+	public void sample(double latitude, double longitude, double[] out) throws RPCException {
+		double row = latitude / spacing, column = longitude / spacing;
+		int tileRow = Math.floorDiv((int) Math.floor(row), TILE_CELLS);
+		int tileColumn = Math.floorDiv((int) Math.floor(column), TILE_CELLS);
+		Tile tile = tile(tileRow, tileColumn);
+		tile.interpolate(row - tileRow * TILE_CELLS, column - tileColumn * TILE_CELLS, out, null, null);
+		out[0] += tile.originX;
+		out[1] += tile.originY;
+		out[2] += tile.originZ;
+	}
+
+	/**
+	 * Projeta uma posição na superfície logo abaixo (ou acima) dela, como {@code surfacePosition} com a latitude e a
+	 * longitude da posição. A busca parte da última posição consultada, e só a primeira consulta pede a latitude e a
+	 * longitude ao servidor.
+	 *
+	 * @param position - Posição no sistema de referência do cache
+	 * @return A posição da superfície
+	 */
+	public Vector surfacePositionBelow(Vector position) throws RPCException {
+		coordinates(position, latitudeLongitude);
+		return surfacePosition(latitudeLongitude[0], latitudeLongitude[1]);
+	}
+
+	/**
+	 * Preenche {@code out} com a latitude e a longitude (graus) do ponto da superfície na vertical da posição, sem
+	 * pedi-las ao servidor, como em {@link #surfacePositionBelow(Vector)}.
+	 */
+	public void coordinates(Vector position, double[] out) throws RPCException {
+		if (Double.isNaN(lastLatitude)) {
+			lastLatitude = body.latitudeAtPosition(position.toTriplet(), frame);
+			lastLongitude = body.longitudeAtPosition(position.toTriplet(), frame);
+		}
+		double row = lastLatitude / spacing, column = lastLongitude / spacing;
+		Tile tile = null;
+		for (int hop = 0; hop < MAX_HOPS; hop++) {
+			int tileRow = Math.floorDiv((int) Math.floor(row), TILE_CELLS);
+			int tileColumn = Math.floorDiv((int) Math.floor(column), TILE_CELLS);
+			tile = tile(tileRow, tileColumn);
+			// Dentro do bloco a busca pode sair dos limites dele: a interpolação continua as células da borda
+			double[] local = tile.project(position, row - tileRow * TILE_CELLS, column - tileColumn * TILE_CELLS);
+			row = tileRow * TILE_CELLS + local[0];
+			column = tileColumn * TILE_CELLS + local[1];
+			if (Math.floorDiv((int) Math.floor(row), TILE_CELLS) == tileRow &&
+					Math.floorDiv((int) Math.floor(column), TILE_CELLS) == tileColumn) {
+				break;
+			}
+		}
+		lastLatitude = row * spacing;
+		lastLongitude = column * spacing;
+		out[0] = lastLatitude;
+		out[1] = lastLongitude;
+	}
+
+	/**
+	 * @return Quantos blocos foram buscados no servidor desde a criação do cache.
+	 */
+	public int getTileFetches() {
+		synchronized (tiles) {
+			return tileFetches;
+		}
+	}
+
+	public int getCachedTiles() {
+		synchronized (tiles) {
+			return tiles.size();
+		}
+	}
+
+	/**
+	 * @return O bloco, buscado no servidor por esta thread se ninguém o buscou ainda, ou esperando a busca de outra.
+	 */
+	private Tile tile(int tileRow, int tileColumn) throws RPCException {
+		long key = ((long) tileRow << 32) | (tileColumn & 0xffffffffL);
+		CompletableFuture<Tile> tile;
+		boolean fetchHere = false;
+		synchronized (tiles) {
+			tile = tiles.get(key);
+			if (tile == null) {
+				tile = new CompletableFuture<>();
+				tiles.put(key, tile);
+				tileFetches++;
+				fetchHere = true;
+			}
+		}
+		if (fetchHere) {
+			try {
+				tile.complete(fetch(tileRow, tileColumn));
+			} catch (RPCException | RuntimeException e) {
+				synchronized (tiles) {
+					tiles.remove(key, tile);
+				}
+				tile.completeExceptionally(e);
+				throw e;
+			}
+		}
+		try {
+			return tile.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RPCException) {
+				throw (RPCException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private Tile fetch(int tileRow, int tileColumn) throws RPCException {
+		RpcBatch batch = new RpcBatch(connection);
+		for (int i = 0; i < TILE_NODES; i++) {
+			for (int j = 0; j < TILE_NODES; j++) {
+				batch.add(body, "surfacePosition", (tileRow * TILE_CELLS + i) * spacing,
+				          (tileColumn * TILE_CELLS + j) * spacing, frame
+				         );
+			}
+		}
+		for (int i = 0; i < TILE_NODES; i++) {
+			for (int j = 0; j < TILE_NODES; j++) {
+				batch.add(body, "surfaceHeight", (tileRow * TILE_CELLS + i) * spacing,
+				          (tileColumn * TILE_CELLS + j) * spacing
+				         );
+			}
+		}
+		List<ByteString> values = batch.execute();
+		int nodes = TILE_NODES * TILE_NODES;
+		Vector origin = RpcBatch.decodeVector(values.get(0));
+		float[] offsets = new float[3 * nodes], heights = new float[nodes];
+		for (int n = 0; n < nodes; n++) {
+			Vector node = RpcBatch.decodeVector(values.get(n));
+			offsets[3 * n] = (float) (node.x - origin.x);
+			offsets[3 * n + 1] = (float) (node.y - origin.y);
+			offsets[3 * n + 2] = (float) (node.z - origin.z);
+			heights[n] = (float) RpcBatch.decodeDouble(values.get(nodes + n));
+		}
+		return new Tile(origin, offsets, heights);
+	}
+
+	/**
+	 * Um bloco da grade: a posição do primeiro nó e os deslocamentos dos outros até ele, linha a linha (latitude) e
+	 * coluna a coluna (longitude), e a altitude de cada nó.
+	 */
+	private final class Tile {
+		private final double originX, originY, originZ;
+		private final float[] offsets, heights;
+		// Vertical média do bloco, perpendicular às direções de latitude e longitude
+		private final double upX, upY, upZ;
+		private final double[] local = new double[2];
+
+		private Tile(Vector origin, float[] offsets, float[] heights) {
+			this.originX = origin.x;
+			this.originY = origin.y;
+			this.originZ = origin.z;
+			this.offsets = offsets;
+			this.heights = heights;
+			int north = 3 * (TILE_CELLS * TILE_NODES), east = 3 * TILE_CELLS;
+			double nx = offsets[north], ny = offsets[north + 1], nz = offsets[north + 2];
+			double ex = offsets[east], ey = offsets[east + 1], ez = offsets[east + 2];
+			double ux = ny * ez - nz * ey, uy = nz * ex - nx * ez, uz = nx * ey - ny * ex;
+			double norm = Math.sqrt(ux * ux + uy * uy + uz * uz);
+			this.upX = ux / norm;
+			this.upY = uy / norm;
+			this.upZ = uz / norm;
+		}
+
+		/**
+		 * Interpola a posição (relativa ao primeiro nó) e a altitude nas coordenadas de grade do bloco, nessa ordem em
+		 * {@code position}, e as derivadas da posição nas duas direções, quando pedidas. Fora do bloco, continua as
+		 * células da borda.
+		 */
+		private void interpolate(double row, double column, double[] position, double[] dRow, double[] dColumn) {
+			int i = Math.max(0, Math.min(TILE_CELLS - 1, (int) Math.floor(row)));
+			int j = Math.max(0, Math.min(TILE_CELLS - 1, (int) Math.floor(column)));
+			double u = row - i, v = column - j;
+			int n00 = 3 * (i * TILE_NODES + j), n01 = n00 + 3, n10 = n00 + 3 * TILE_NODES, n11 = n10 + 3;
+			for (int k = 0; k < 3; k++) {
+				double p00 = offsets[n00 + k], p01 = offsets[n01 + k], p10 = offsets[n10 + k], p11 = offsets[n11 + k];
+				position[k] = p00 * (1 - u) * (1 - v) + p10 * u * (1 - v) + p01 * (1 - u) * v + p11 * u * v;
+				if (dRow != null) {
+					dRow[k] = (p10 - p00) * (1 - v) + (p11 - p01) * v;
+					dColumn[k] = (p01 - p00) * (1 - u) + (p11 - p10) * u;
+				}
+			}
+			int h00 = n00 / 3, h10 = n10 / 3;
+			position[3] = heights[h00] * (1 - u) * (1 - v) + heights[h10] * u * (1 - v) +
+					heights[h00 + 1] * (1 - u) * v + heights[h10 + 1] * u * v;
+		}
+
+		/**
+		 * Busca, pelo método de Newton, as coordenadas de grade do ponto da superfície que está na vertical da posição,
+		 * partindo da estimativa informada.
+		 *
+		 * @return As coordenadas de grade (linha, coluna), relativas ao bloco
+		 */
+		private double[] project(Vector position, double row, double column) {
+			for (int iteration = 0; iteration < NEWTON_ITERATIONS; iteration++) {
+				interpolate(row, column, point, alongLatitude, alongLongitude);
+				double rx = position.x - originX - point[0];
+				double ry = position.y - originY - point[1];
+				double rz = position.z - originZ - point[2];
+				// Só conta o erro na horizontal: a diferença de altura é o que a projeção deve ignorar
+				double rUp = rx * upX + ry * upY + rz * upZ;
+				rx -= rUp * upX;
+				ry -= rUp * upY;
+				rz -= rUp * upZ;
+				horizontal(alongLatitude);
+				horizontal(alongLongitude);
+				double aa = dot(alongLatitude, alongLatitude), ab = dot(alongLatitude, alongLongitude);
+				double bb = dot(alongLongitude, alongLongitude);
+				double ar = alongLatitude[0] * rx + alongLatitude[1] * ry + alongLatitude[2] * rz;
+				double br = alongLongitude[0] * rx + alongLongitude[1] * ry + alongLongitude[2] * rz;
+				double determinant = aa * bb - ab * ab;
+				if (determinant == 0) {
+					break;
+				}
+				double dRow = (bb * ar - ab * br) / determinant, dColumn = (aa * br - ab * ar) / determinant;
+				row += dRow;
+				column += dColumn;
+				if (Math.abs(dRow) + Math.abs(dColumn) < CONVERGENCE) {
+					break;
+				}
+			}
+			local[0] = row;
+			local[1] = column;
+			return local;
+		}
+
+		private void horizontal(double[] vector) {
+			double along = vector[0] * upX + vector[1] * upY + vector[2] * upZ;
+			vector[0] -= along * upX;
+			vector[1] -= along * upY;
+			vector[2] -= along * upZ;
+		}
+
+		private double dot(double[] a, double[] b) {
+			return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+		}
+	}
+}
@@ -7,6 +7,7 @@ public class Vector {
 	public double x = 0;
 	public double y = 0;
 	public double z = 0;
+	private Triplet<Double, Double, Double> triplet;
 
 	public Vector() {
 
@@ -107,6 +108,28 @@ public class Vector {
 		this.z = Z;
 	}
 
+	/**
+	 * Copia os valores de outro vetor para este, sem criar um novo Vetor
+	 *
+	 * @param otherVector - Vetor de origem
+	 * @return Este vetor, modificado
+	 */
+	public Vector set(Vector otherVector) {
+		setVector(otherVector.x, otherVector.y, otherVector.z);
+		return this;
+	}
+
+	/**
+	 * Copia os valores de uma tupla (Triplet) para este vetor, sem criar um novo Vetor
+	 *
+	 * @param triplet - Triplet com valores X,Y,Z em conjunto
+	 * @return Este vetor, modificado
+	 */
+	public Vector set(Triplet<Double, Double, Double> triplet) {
+		setVector(triplet.getValue0(), triplet.getValue1(), triplet.getValue2());
+		return this;
+	}
+
 	/**
 	 * @return Retorna um novo Vetor com os valores X e Y invertidos
 	 */
@@ -145,6 +168,22 @@ public class Vector {
 		return new Vector(x, y, z);
 	}
 
+	/**
+	 * Normaliza este vetor e guarda o resultado no vetor de destino, sem criar um novo Vetor
+	 *
+	 * @param dest - Vetor que recebe o resultado (pode ser este mesmo vetor)
+	 * @return O vetor de destino
+	 */
+	public Vector normalizeInto(Vector dest) {
+		double m = magnitude();
+		if (m != 0) {
+			dest.setVector(x / m, y / m, z / m);
+		} else {
+			dest.setVector(x, y, z);
+		}
+		return dest;
+	}
+
 	/**
 	 * Soma os componentes de outro vetor com o vetor informado
 	 *
@@ -169,6 +208,18 @@ public class Vector {
 		return new Vector(x + otherVector.x, y + otherVector.y, z + otherVector.z);
 	}
 
+	/**
+	 * Soma os componentes de outro vetor com este e guarda no vetor de destino, sem criar um novo Vetor
+	 *
+	 * @param otherVector - Vetor para somar os componentes
+	 * @param dest        - Vetor que recebe o resultado (pode ser este mesmo vetor)
+	 * @return O vetor de destino
+	 */
+	public Vector sumInto(Vector otherVector, Vector dest) {
+		dest.setVector(x + otherVector.x, y + otherVector.y, z + otherVector.z);
+		return dest;
+	}
+
 	/**
 	 * Subtrai os componentes de outro vetor com o vetor informado
 	 *
@@ -179,6 +230,18 @@ public class Vector {
 		return new Vector(x - otherVector.x, y - otherVector.y, z - otherVector.z);
 	}
 
+	/**
+	 * Subtrai os componentes de outro vetor deste e guarda no vetor de destino, sem criar um novo Vetor
+	 *
+	 * @param otherVector - Vetor para subtrair os componentes
+	 * @param dest        - Vetor que recebe o resultado (pode ser este mesmo vetor)
+	 * @return O vetor de destino
+	 */
+	public Vector subtractInto(Vector otherVector, Vector dest) {
+		dest.setVector(x - otherVector.x, y - otherVector.y, z - otherVector.z);
+		return dest;
+	}
+
 	/**
 	 * Multiplica os componentes desse vetor por uma escalar
 	 *
@@ -194,6 +257,22 @@ public class Vector {
 		return new Vector(0, 0, 0);
 	}
 
+	/**
+	 * Multiplica os componentes desse vetor por uma escalar e guarda no vetor de destino, sem criar um novo Vetor
+	 *
+	 * @param scalar - Fator para multiplicar os componentes
+	 * @param dest   - Vetor que recebe o resultado (pode ser este mesmo vetor)
+	 * @return O vetor de destino
+	 */
+	public Vector multiplyInto(double scalar, Vector dest) {
+		if (scalar != 0) {
+			dest.setVector(x * scalar, y * scalar, z * scalar);
+		} else {
+			dest.setVector(0, 0, 0);
+		}
+		return dest;
+	}
+
 	/**
 	 * Divide os componentes desse vetor por uma escalar
 	 *
@@ -209,11 +288,15 @@ public class Vector {
 	}
 
 	/**
-	 * Transforma um Vetor em uma tupla com os valores.
+	 * Transforma um Vetor em uma tupla com os valores. A tupla é reaproveitada enquanto os componentes do vetor não
+	 * mudarem, evitando criar uma nova a cada chamada para vetores constantes.
 	 *
-	 * @return - Nova tupla contendo os valores do vetor em seus componentes.
+	 * @return - Tupla contendo os valores do vetor em seus componentes.
 	 */
 	public Triplet<Double, Double, Double> toTriplet() {
-		return new Triplet<>(this.x, this.y, this.z);
+		if (triplet == null || triplet.getValue0() != x || triplet.getValue1() != y || triplet.getValue2() != z) {
+			triplet = new Triplet<>(this.x, this.y, this.z);
+		}
+		return triplet;
 	}
 }
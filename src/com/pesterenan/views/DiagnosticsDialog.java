@@ -0,0 +1,210 @@
+package com.pesterenan.views;
+
+import com.pesterenan.MechPeste;
+import com.pesterenan.resources.Bundle;
+import com.pesterenan.utils.ControlLoop;
+import com.pesterenan.utils.LatencyHistogram;
+import com.pesterenan.utils.RpcMonitor;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+public class DiagnosticsDialog extends JDialog {
+	private static final long serialVersionUID = 1L;
+	private static final int REFRESH_MILLIS = 1000;
+	private final DefaultTableModel procedureModel = readOnlyModel("dlg_diag_col_procedure", "dlg_diag_col_calls",
+	                                                               "dlg_diag_col_rate", "dlg_diag_col_p50",
+	                                                               "dlg_diag_col_p90", "dlg_diag_col_p99",
+	                                                               "dlg_diag_col_max"
+	                                                              );
+	private final DefaultTableModel streamModel = readOnlyModel("dlg_diag_col_stream", "dlg_diag_col_id",
+	                                                            "dlg_diag_col_updates", "dlg_diag_col_rate",
+	                                                            "dlg_diag_col_active"
+	                                                           );
+	private final DefaultTableModel loopModel = readOnlyModel("dlg_diag_col_loop", "dlg_diag_col_ticks",
+	                                                          "dlg_diag_col_avg_tick", "dlg_diag_col_worst_tick",
+	                                                          "dlg_diag_col_overruns", "dlg_diag_col_rpcs_per_tick"
+	                                                         );
+	private JLabel lblSummary;
+	private JButton btnReset;
+	private JButton btnSave;
+	private JButton btnCapture;
+	private JButton btnClose;
+	private Timer refreshTimer;
+
+	public DiagnosticsDialog() {
+		try {
+			initComponents();
+		} catch (Throwable e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void initComponents() {
+		setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+		setTitle(Bundle.getString("dlg_diag_title")); //$NON-NLS-1$
+		setAlwaysOnTop(true);
+		setSize(720, 420);
+		setLocationRelativeTo(MainGui.getInstance());
+
+		JTabbedPane tabs = new JTabbedPane();
+		tabs.addTab(Bundle.getString("dlg_diag_tab_calls"), new JScrollPane(new JTable(procedureModel)));
+		tabs.addTab(Bundle.getString("dlg_diag_tab_streams"), new JScrollPane(new JTable(streamModel)));
+		tabs.addTab(Bundle.getString("dlg_diag_tab_loops"), new JScrollPane(new JTable(loopModel)));
+
+		lblSummary = new JLabel(" ");
+		btnReset = new JButton(Bundle.getString("dlg_diag_btn_reset")); //$NON-NLS-1$
+		btnReset.addActionListener((e) -> handleBtnResetActionPerformed());
+		btnSave = new JButton(Bundle.getString("dlg_diag_btn_save")); //$NON-NLS-1$
+		btnSave.addActionListener((e) -> handleBtnSaveActionPerformed());
+		btnCapture = new JButton(Bundle.getString("dlg_diag_btn_start_capture")); //$NON-NLS-1$
+		btnCapture.addActionListener((e) -> handleBtnCaptureActionPerformed());
+		btnClose = new JButton(Bundle.getString("dlg_diag_btn_close")); //$NON-NLS-1$
+		btnClose.addActionListener((e) -> this.dispose());
+
+		JPanel pnlButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		pnlButtons.add(btnReset);
+		pnlButtons.add(btnSave);
+		pnlButtons.add(btnCapture);
+		pnlButtons.add(btnClose);
+		JPanel pnlBottom = new JPanel(new BorderLayout());
+		pnlBottom.add(lblSummary, BorderLayout.CENTER);
+		pnlBottom.add(pnlButtons, BorderLayout.EAST);
+
+		getContentPane().setLayout(new BorderLayout(0, 5));
+		getContentPane().add(tabs, BorderLayout.CENTER);
+		getContentPane().add(pnlBottom, BorderLayout.SOUTH);
+
+		refreshTimer = new Timer(REFRESH_MILLIS, (e) -> refresh());
+		refreshTimer.setInitialDelay(0);
+		refreshTimer.start();
+		setVisible(true);
+	}
+
+	@Override
+	public void dispose() {
+		if (refreshTimer != null) {
+			refreshTimer.stop();
+		}
+		super.dispose();
+	}
+
+	private void refresh() {
+		RpcMonitor monitor = MechPeste.getRpcMonitor();
+		btnReset.setEnabled(monitor != null);
+		btnSave.setEnabled(monitor != null);
+		btnCapture.setEnabled(monitor != null);
+		btnCapture.setText(Bundle.getString(monitor != null && monitor.isCapturing() ? "dlg_diag_btn_stop_capture" :
+		                                    "dlg_diag_btn_start_capture"));
+		procedureModel.setRowCount(0);
+		streamModel.setRowCount(0);
+		loopModel.setRowCount(0);
+		if (monitor == null) {
+			lblSummary.setText(Bundle.getString("dlg_diag_lbl_disabled"));
+			return;
+		}
+		double seconds = Math.max(monitor.getElapsedSeconds(), 1e-9);
+		LatencyHistogram latency = monitor.getRequestLatency();
+		lblSummary.setText(String.format(Bundle.getString("dlg_diag_lbl_summary"), monitor.getRequests(),
+		                                 monitor.getRequests() / seconds, latency.getPercentileMicros(50) / 1000.0,
+		                                 latency.getPercentileMicros(99) / 1000.0
+		                                ));
+		for (RpcMonitor.ProcedureStatistics procedure : monitor.getProcedures().values()) {
+			LatencyHistogram calls = procedure.getLatency();
+			procedureModel.addRow(new Object[]{ procedure.getName(), procedure.getCalls(),
+			                                    format(procedure.getCalls() / seconds),
+			                                    millis(calls.getPercentileMicros(50)),
+			                                    millis(calls.getPercentileMicros(90)),
+			                                    millis(calls.getPercentileMicros(99)), millis(calls.getMaxMicros()) });
+		}
+		for (RpcMonitor.StreamStatistics stream : monitor.getStreams().values()) {
+			streamModel.addRow(new Object[]{ stream.getProcedure(), stream.getId(), stream.getUpdates(),
+			                                 format(stream.getUpdates() / seconds),
+			                                 stream.isActive() ? Bundle.getString("dlg_diag_yes") :
+			                                 Bundle.getString("dlg_diag_no") });
+		}
+		long ticks = 0;
+		for (ControlLoop.Statistics loop : ControlLoop.getStatistics().values()) {
+			ticks += loop.getTicks();
+		}
+		for (ControlLoop.Statistics loop : ControlLoop.getStatistics().values()) {
+			loopModel.addRow(new Object[]{ loop.getName(), loop.getTicks(), format(loop.getAverageTickMillis()),
+			                               format(loop.getWorstTickMillis()), loop.getOverruns(),
+			                               ticks == 0 ? "-" : format((double) monitor.getRequests() / ticks) });
+		}
+	}
+
+	private void handleBtnResetActionPerformed() {
+		RpcMonitor monitor = MechPeste.getRpcMonitor();
+		if (monitor != null) {
+			monitor.reset();
+			ControlLoop.resetStatistics();
+			refresh();
+		}
+	}
+
+	private void handleBtnSaveActionPerformed() {
+		RpcMonitor monitor = MechPeste.getRpcMonitor();
+		JFileChooser chooser = new JFileChooser();
+		chooser.setSelectedFile(new File("mechpeste-rpc.txt"));
+		if (monitor == null || chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+			return;
+		}
+		try {
+			monitor.dump(chooser.getSelectedFile().toPath());
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(this, e.getMessage(), getTitle(), JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	private void handleBtnCaptureActionPerformed() {
+		RpcMonitor monitor = MechPeste.getRpcMonitor();
+		if (monitor == null) {
+			return;
+		}
+		try {
+			if (monitor.isCapturing()) {
+				monitor.stopCapture();
+			} else {
+				Path folder = Paths.get(System.getProperty("user.home"), "MechPeste", "capturas");
+				Files.createDirectories(folder);
+				String name = "captura-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".mpcap";
+				monitor.startCapture(folder.resolve(name));
+			}
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(this, e.getMessage(), getTitle(), JOptionPane.ERROR_MESSAGE);
+		}
+		refresh();
+	}
+
+	private static String millis(long micros) {
+		return format(micros / 1000.0);
+	}
+
+	private static String format(double value) {
+		return String.format("%.2f", value);
+	}
+
+	private static DefaultTableModel readOnlyModel(String... columnKeys) {
+		Object[] columns = new Object[columnKeys.length];
+		for (int i = 0; i < columnKeys.length; i++) {
+			columns[i] = Bundle.getString(columnKeys[i]);
+		}
+		return new DefaultTableModel(columns, 0) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public boolean isCellEditable(int row, int column) {
+				return false;
+			}
+		};
+	}
+}
@@ -25,6 +25,7 @@ public class LandingJPanel extends JPanel implements ActionListener {
 	private final JPanel pnlHover = new JPanel();
 	private JLabel lblAlt;
 	private final JLabel lblAutolanding = new JLabel(Bundle.getString("pnl_land_lbl_land"));
+	private final JCheckBox chkPredictive = new JCheckBox(Bundle.getString("pnl_land_chk_predictive"));
 //$NON-NLS-1$
 
 	public LandingJPanel() {
@@ -63,6 +64,8 @@ public class LandingJPanel extends JPanel implements ActionListener {
 		btnAutoLanding.setMinimumSize(btnAutoLanding.getSize());
 		btnAutoLanding.setMaximumSize(btnAutoLanding.getSize());
 
+		chkPredictive.setToolTipText(Bundle.getString("pnl_land_chk_predictive_tooltip"));
+
 		GroupLayout groupLayout = new GroupLayout(this);
 		groupLayout.setHorizontalGroup(groupLayout.createParallelGroup(Alignment.LEADING)
 		                                          .addGroup(groupLayout.createSequentialGroup()
@@ -84,6 +87,11 @@ public class LandingJPanel extends JPanel implements ActionListener {
 						                                                                                               GroupLayout.DEFAULT_SIZE,
 						                                                                                               GroupLayout.PREFERRED_SIZE
 				                                                                                                            ))
+		                                                                                    .addGroup(
+				                                                                                    groupLayout.createSequentialGroup()
+				                                                                                               .addContainerGap()
+				                                                                                               .addComponent(
+						                                                                                               chkPredictive))
 		                                                                                    .addGroup(
 				                                                                                    Alignment.TRAILING,
 				                                                                                    groupLayout.createSequentialGroup()
@@ -118,11 +126,13 @@ public class LandingJPanel extends JPanel implements ActionListener {
 		                                                                                                GroupLayout.PREFERRED_SIZE
 		                                                                                               ))
 		                                                             .addPreferredGap(ComponentPlacement.RELATED)
+		                                                             .addComponent(chkPredictive)
+		                                                             .addPreferredGap(ComponentPlacement.RELATED)
 		                                                             .addComponent(pnlHover,
 		                                                                           GroupLayout.PREFERRED_SIZE,
 		                                                                           60, GroupLayout.PREFERRED_SIZE
 		                                                                          )
-		                                                             .addPreferredGap(ComponentPlacement.RELATED, 62,
+		                                                             .addPreferredGap(ComponentPlacement.RELATED, 35,
 		                                                                              Short.MAX_VALUE
 		                                                                             )
 		                                                             .addComponent(btnBack, GroupLayout.PREFERRED_SIZE,
@@ -184,6 +194,7 @@ public class LandingJPanel extends JPanel implements ActionListener {
 	protected void handleBtnAutoLandingActionPerformed(ActionEvent e) {
 		Map<String, String> commands = new HashMap<>();
 		commands.put(Modulos.MODULO.get(), Modulos.MODULO_POUSO.get());
+		commands.put(Modulos.POUSO_PREDITIVO.get(), String.valueOf(chkPredictive.isSelected()));
 		MechPeste.startModule(commands);
 	}
 
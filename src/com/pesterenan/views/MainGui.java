@@ -21,6 +21,7 @@ public class MainGui extends JFrame implements ActionListener {
 	private JMenu mnHelp;
 	private JMenuItem mntmAbout;
 	private JMenuItem mntmInstallKrpc;
+	private JMenuItem mntmDiagnostics;
 
 	private MainGui() {
 		try {
@@ -60,6 +61,10 @@ public class MainGui extends JFrame implements ActionListener {
 		mntmInstallKrpc.addActionListener(this);
 		mnFile.add(mntmInstallKrpc);
 
+		mntmDiagnostics = new JMenuItem(Bundle.getString("main_mntm_diagnostics")); //$NON-NLS-1$
+		mntmDiagnostics.addActionListener(this);
+		mnFile.add(mntmDiagnostics);
+
 		mnFile.add(new JSeparator());
 		mntmExit = new JMenuItem(Bundle.getString("main_mntm_exit")); //$NON-NLS-1$
 		mntmExit.addActionListener(this);
@@ -86,6 +91,9 @@ public class MainGui extends JFrame implements ActionListener {
 		if (e.getSource() == mntmInstallKrpc) {
 			handleMntmInstallKrpcActionPerformed(e);
 		}
+		if (e.getSource() == mntmDiagnostics) {
+			handleMntmDiagnosticsActionPerformed(e);
+		}
 		if (e.getSource() == mntmExit) {
 			handleMntmExitActionPerformed(e);
 		}
@@ -95,6 +103,10 @@ public class MainGui extends JFrame implements ActionListener {
 		InstallKrpcDialog ikd = new InstallKrpcDialog();
 	}
 
+	protected void handleMntmDiagnosticsActionPerformed(ActionEvent e) {
+		new DiagnosticsDialog();
+	}
+
 	protected void handleMntmExitActionPerformed(ActionEvent e) {
 		System.exit(0);
 	}
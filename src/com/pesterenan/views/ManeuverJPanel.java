@@ -28,6 +28,9 @@ public class ManeuverJPanel extends JPanel implements ActionListener {
 	private final JButton btnAdjustInc = new JButton(Bundle.getString("pnl_mnv_btn_adj_inc"));
 	//$NON-NLS-1$
 	private final JButton btnBack = new JButton(Bundle.getString("pnl_mnv_btn_back")); //$NON-NLS-1$
+	private final JButton btnTransfer = new JButton(Bundle.getString("pnl_mnv_btn_transfer")); //$NON-NLS-1$
+	private final JComboBox<String> cbTransfer = new JComboBox<>();
+	private final JTextField txfTargetAltitude = new JTextField("250000"); //$NON-NLS-1$
 	private final JPanel pnlCircularize = new JPanel();
 	private final JCheckBox chkFineAdjusment = new JCheckBox(Bundle.getString("pnl_mnv_chk_adj_mnv_rcs"));
 //$NON-NLS-1$
@@ -56,6 +59,17 @@ public class ManeuverJPanel extends JPanel implements ActionListener {
 		btnAdjustInc.setMaximumSize(btnAdjustInc.getSize());
 		btnAdjustInc.setActionCommand(Modulos.AJUSTAR.get());
 		btnAdjustInc.setEnabled(false);
+		btnTransfer.addActionListener(this);
+		btnTransfer.setSize(ParametersJPanel.BTN_DIMENSION);
+		btnTransfer.setPreferredSize(btnTransfer.getSize());
+		btnTransfer.setMinimumSize(btnTransfer.getSize());
+		btnTransfer.setMaximumSize(btnTransfer.getSize());
+		cbTransfer.setToolTipText(Bundle.getString("pnl_mnv_cb_transfer_tooltip")); //$NON-NLS-1$
+		cbTransfer.setModel(new DefaultComboBoxModel<>(
+				new String[]{ Modulos.HOHMANN.get(), Modulos.BI_ELIPTICA.get(), Modulos.PLANO_CIRCULAR.get(),
+						Modulos.ENCONTRO.get() }));
+		txfTargetAltitude.setToolTipText(Bundle.getString("pnl_mnv_txf_target_alt_tooltip")); //$NON-NLS-1$
+		txfTargetAltitude.setColumns(7);
 		btnBack.addActionListener(this);
 
 		btnBack.setSize(ParametersJPanel.BTN_DIMENSION);
@@ -80,6 +94,25 @@ public class ManeuverJPanel extends JPanel implements ActionListener {
 		                                                                             GroupLayout.PREFERRED_SIZE
 		                                                                            )
 		                                                               .addContainerGap())
+		                                          .addGroup(groupLayout.createSequentialGroup()
+		                                                               .addGap(10)
+		                                                               .addComponent(cbTransfer,
+		                                                                             GroupLayout.PREFERRED_SIZE,
+		                                                                             GroupLayout.DEFAULT_SIZE,
+		                                                                             GroupLayout.PREFERRED_SIZE
+		                                                                            )
+		                                                               .addPreferredGap(ComponentPlacement.RELATED)
+		                                                               .addComponent(txfTargetAltitude,
+		                                                                             GroupLayout.DEFAULT_SIZE, 60,
+		                                                                             Short.MAX_VALUE
+		                                                                            )
+		                                                               .addPreferredGap(ComponentPlacement.RELATED)
+		                                                               .addComponent(btnTransfer,
+		                                                                             GroupLayout.PREFERRED_SIZE,
+		                                                                             GroupLayout.DEFAULT_SIZE,
+		                                                                             GroupLayout.PREFERRED_SIZE
+		                                                                            )
+		                                                               .addContainerGap())
 		                                          .addGroup(Alignment.TRAILING, groupLayout.createSequentialGroup()
 		                                                                                   .addGroup(
 				                                                                                   groupLayout.createParallelGroup(
@@ -160,7 +193,26 @@ public class ManeuverJPanel extends JPanel implements ActionListener {
 		                                                                                                GroupLayout.DEFAULT_SIZE,
 		                                                                                                GroupLayout.PREFERRED_SIZE
 		                                                                                               ))
-		                                                             .addGap(25)
+		                                                             .addGap(3)
+		                                                             .addGroup(groupLayout.createParallelGroup(
+				                                                                                  Alignment.BASELINE)
+		                                                                                  .addComponent(cbTransfer,
+		                                                                                                GroupLayout.PREFERRED_SIZE,
+		                                                                                                GroupLayout.DEFAULT_SIZE,
+		                                                                                                GroupLayout.PREFERRED_SIZE
+		                                                                                               )
+		                                                                                  .addComponent(
+				                                                                                  txfTargetAltitude,
+				                                                                                  GroupLayout.PREFERRED_SIZE,
+				                                                                                  GroupLayout.DEFAULT_SIZE,
+				                                                                                  GroupLayout.PREFERRED_SIZE
+		                                                                                               )
+		                                                                                  .addComponent(btnTransfer,
+		                                                                                                GroupLayout.PREFERRED_SIZE,
+		                                                                                                GroupLayout.DEFAULT_SIZE,
+		                                                                                                GroupLayout.PREFERRED_SIZE
+		                                                                                               ))
+		                                                             .addGap(3)
 		                                                             .addComponent(btnBack, GroupLayout.PREFERRED_SIZE,
 		                                                                           GroupLayout.DEFAULT_SIZE,
 		                                                                           GroupLayout.PREFERRED_SIZE
@@ -226,6 +278,9 @@ public class ManeuverJPanel extends JPanel implements ActionListener {
 		if (e.getSource() == btnAdjustInc) {
 			handleManeuverFunction(Modulos.AJUSTAR.get());
 		}
+		if (e.getSource() == btnTransfer) {
+			handleBtnTransferActionPerformed(e);
+		}
 		if (e.getSource() == btnBack) {
 			handleBtnVoltarActionPerformed(e);
 		}
@@ -235,6 +290,16 @@ public class ManeuverJPanel extends JPanel implements ActionListener {
 		MainGui.getParametros().firePropertyChange("Telemetria", false, true);
 	}
 
+	protected void handleBtnTransferActionPerformed(ActionEvent e) {
+		Map<String, String> commands = new HashMap<>();
+		commands.put(Modulos.MODULO.get(), Modulos.MODULO_MANOBRAS.get());
+		commands.put(Modulos.FUNCAO.get(), Modulos.TRANSFERIR.get());
+		commands.put(Modulos.TIPO_TRANSFERENCIA.get(), cbTransfer.getSelectedItem().toString());
+		commands.put(Modulos.ALTITUDE_ALVO.get(), txfTargetAltitude.getText());
+		commands.put(Modulos.AJUSTE_FINO.get(), String.valueOf(chkFineAdjusment.isSelected()));
+		MechPeste.startModule(commands);
+	}
+
 	protected void handleManeuverFunction(String maneuverFunction) {
 		Map<String, String> commands = new HashMap<>();
 		commands.put(Modulos.MODULO.get(), Modulos.MODULO_MANOBRAS.get());
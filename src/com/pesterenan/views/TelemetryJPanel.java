@@ -1,20 +1,30 @@
 package com.pesterenan.views;
 
 import com.pesterenan.MechPeste;
+import com.pesterenan.model.TelemetrySnapshot;
 import com.pesterenan.resources.Bundle;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.pesterenan.views.ParametersJPanel.BTN_DIMENSION;
 import static com.pesterenan.views.ParametersJPanel.dmsParameters;
 
-public class TelemetryJPanel extends JPanel implements PropertyChangeListener {
+/**
+ * Painel de telemetria.
+ * <p>
+ * A thread de telemetria só publica o último {@link TelemetrySnapshot} com {@link #publish(TelemetrySnapshot)}, sem
+ * esperar a interface. Um {@link Timer} do Swing desenha o valor mais recente no máximo a cada
+ * {@value #FRAME_MILLIS} ms, na thread da interface; valores publicados entre dois quadros são substituídos pelo
+ * seguinte, sem formatar texto nem refazer o layout por eles.
+ */
+public class TelemetryJPanel extends JPanel {
 
 	private static final long serialVersionUID = 1L;
+	private static final int FRAME_MILLIS = 100;
+	private final AtomicReference<TelemetrySnapshot> pending = new AtomicReference<>();
 	private final JLabel tempoValorLabel = new JLabel(""); //$NON-NLS-1$
 	private JLabel altitudeValorLabel;
 	private JLabel altitudeSupValorLabel;
@@ -39,7 +49,6 @@ public class TelemetryJPanel extends JPanel implements PropertyChangeListener {
 				                 null
 				)); //$NON-NLS-1$
 
-		addPropertyChangeListener(this);
 		setLayout(new GridLayout(0, 2, 0, 0));
 		JLabel altitudeLabel = new JLabel(Bundle.getString("pnl_tel_lbl_alt")); //$NON-NLS-1$
 		add(altitudeLabel);
@@ -89,10 +98,33 @@ public class TelemetryJPanel extends JPanel implements PropertyChangeListener {
 		btnCancelar.setMaximumSize(btnCancelar.getSize());
 		btnCancelar.addActionListener(e -> MechPeste.finalizarTarefa());
 		add(btnCancelar);
+
+		new Timer(FRAME_MILLIS, e -> render()).start();
+	}
+
+	/**
+	 * Publica novos valores para o próximo quadro. Pode ser chamado de qualquer thread.
+	 */
+	public void publish(TelemetrySnapshot snapshot) {
+		pending.set(snapshot);
 	}
 
-	private String converterMetros(Object obj) {
-		double metros = Math.abs((double) obj);
+	private void render() {
+		TelemetrySnapshot snapshot = pending.getAndSet(null);
+		if (snapshot == null) {
+			return;
+		}
+		altitudeValorLabel.setText(converterMetros(snapshot.getAltitude()));
+		altitudeSupValorLabel.setText(converterMetros(snapshot.getSurfaceAltitude()));
+		apoastroValorLabel.setText(converterMetros(snapshot.getApoapsis()));
+		periastroValorLabel.setText(converterMetros(snapshot.getPeriapsis()));
+		velVValorLabel.setText(converterMetros(snapshot.getVerticalSpeed()) + "/s"); //$NON-NLS-1$
+		velHValorLabel.setText(converterMetros(snapshot.getHorizontalSpeed()) + "/s"); //$NON-NLS-1$
+		tempoValorLabel.setText(formatarTempoDecorrido(snapshot.getMissionTime()));
+	}
+
+	private String converterMetros(double valor) {
+		double metros = Math.abs(valor);
 		String casasDecimais = "%.2f"; //$NON-NLS-1$
 		if (metros >= 1000000000) {
 			return String.format(casasDecimais + "Gm", metros / 1000000000); //$NON-NLS-1$
@@ -116,35 +148,4 @@ public class TelemetryJPanel extends JPanel implements PropertyChangeListener {
 		                    ); //$NON-NLS-1$
 	}
 
-	@Override
-	public void propertyChange(PropertyChangeEvent evt) {
-		switch (evt.getPropertyName()) {
-			case "altitude": //$NON-NLS-1$
-				altitudeValorLabel.setText(converterMetros(evt.getNewValue()));
-				break;
-			case "altitudeSup": //$NON-NLS-1$
-				altitudeSupValorLabel.setText(converterMetros(evt.getNewValue()));
-				break;
-			case "bateria": //$NON-NLS-1$
-				bateriaValorLabel.setText(String.format("%.1f", evt.getNewValue()) + "%"); //$NON-NLS-1$ //$NON-NLS-2$
-				break;
-			case "apoastro": //$NON-NLS-1$
-				apoastroValorLabel.setText(converterMetros(evt.getNewValue()));
-				break;
-			case "periastro": //$NON-NLS-1$
-				periastroValorLabel.setText(converterMetros(evt.getNewValue()));
-				break;
-			case "tempoRestante": //$NON-NLS-1$
-			case "tempoMissao": //$NON-NLS-1$
-				tempoValorLabel.setText(formatarTempoDecorrido((Double) evt.getNewValue()));
-				break;
-			case "velVertical": //$NON-NLS-1$
-				velVValorLabel.setText(converterMetros(evt.getNewValue()) + "/s"); //$NON-NLS-1$
-				break;
-			case "velHorizontal": //$NON-NLS-1$
-				velHValorLabel.setText(converterMetros(evt.getNewValue()) + "/s"); //$NON-NLS-1$
-				break;
-		}
-	}
-
 }